@@ -6,6 +6,8 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 import crimeSpy.crimeData.CrimeCollectionManager;
+import crimeSpy.crimeData.CrimeRecordWriteQueue;
+import crimeSpy.crimeData.SQLiteConnectionManager;
 import crimeSpy.crimeData.SQLiteDBHandler;
 import crimeSpy.exceptionHandling.ResourceNotFoundException;
 import crimeSpy.uiElements.CrimeSpyController;
@@ -109,6 +111,18 @@ public class Main extends Application {
     }
 
 
+    /**
+     * Called when the JavaFX GUI exits, writes the crime record changes still queued and then closes the database
+     * connections kept open while crimeSpy was running
+     * @throws Exception never thrown
+     */
+    @Override
+    public void stop() throws Exception {
+        CrimeRecordWriteQueue.flushAll();
+        SQLiteConnectionManager.closeAll();
+    }
+
+
     /**
      * Ensures that the crimeSPy UI resource exists
      * @param resourceLoc the location of the resource
@@ -0,0 +1,106 @@
+package crimeSpy.crimeData;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * A CSVTokenizer that works directly on the bytes of a (usually memory mapped) ByteBuffer.
+ * <p>The record is split on its ASCII commas, quotes and newlines without decoding it, and a field is
+ * only decoded (as UTF-8) into a String when it is asked for. Numeric and flag fields are read straight
+ * from the bytes. As all of the delimiters are ASCII this is safe for UTF-8 encoded files.</p>
+ */
+class ByteBufferCSVTokenizer extends CSVTokenizer {
+
+
+    private ByteBuffer buffer;
+    private byte[] scratch = new byte[256];
+
+
+    /**
+     * Split the next record of a buffer into fields.
+     * A record ends at the first newline that is not inside quotes. A carriage return before that newline is dropped.
+     * @param buffer the buffer to read from, it is read with absolute gets so its position is not changed
+     * @param from the index of the first byte of the record
+     * @param limit the index after the last byte that may be read
+     * @param endOfInput true if there is no more input after limit, so a record without a newline is complete
+     * @return the index after the end of the record, or -1 if no complete record was found before limit
+     */
+    int tokenize(ByteBuffer buffer, int from, int limit, boolean endOfInput) {
+        this.buffer = buffer;
+        this.fieldCount = 0;
+        boolean quoted = false;
+        int start = from;
+        for (int i = from; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (!quoted) {
+                if (b == ',') {
+                    addField(start, i);
+                    start = i + 1;
+                } else if (b == '\n') {
+                    int end = i;
+                    if (end > start && buffer.get(end - 1) == '\r') {
+                        end--;
+                    }
+                    addField(start, end);
+                    this.inQuotes = false;
+                    return i + 1;
+                }
+            }
+        }
+        if (!endOfInput) {
+            return -1;
+        }
+        int end = limit;
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        addField(start, end);
+        this.inQuotes = quoted;
+        return limit;
+    }
+
+
+    /**
+     * Split a line into fields by encoding it as UTF-8 into a buffer of its own
+     * @param line a single line (or record) of a csv file, without its line terminator
+     * @return the number of fields in the line
+     */
+    @Override
+    public int tokenize(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        tokenize(ByteBuffer.wrap(bytes), 0, bytes.length, true);
+        return fieldCount;
+    }
+
+
+    /**
+     * Get a byte of the record as a character. Bytes of multi-byte UTF-8 characters are never
+     * ASCII digits or signs, so this is only meaningful for ASCII text.
+     */
+    @Override
+    char charAt(int index) {
+        return (char) (buffer.get(index) & 0xFF);
+    }
+
+
+    /**
+     * Decode part of the record as UTF-8
+     */
+    @Override
+    String text(int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return "";
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(start + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,152 @@
+package crimeSpy.crimeData;
+
+import java.util.zip.DataFormatException;
+
+
+/**
+ * The columns of a crime csv to read in a column projected import.
+ * <p>Columns that are not selected are never turned into Strings, numbers or dates, the crime records get
+ * default values for them instead: UNSELECTED_IUCR for the IUCR, an empty String for other text, 0 for
+ * numbers, N for arrest and domestic and the placeholder date 01/01/0001 01:00:00 for the date. Loading only
+ * the columns an analysis needs saves most of the parse time and heap of the records.</p>
+ * <u>Notes</u>
+ * <ul>
+ *     <li>The case id is always read, as it is what makes a crime record unique.</li>
+ *     <li>The primary and secondary descriptions are looked up from the IUCR code (see CrimeType), so they
+ *     are UNKNOWN when IUCR is not selected.</li>
+ *     <li>Selecting LOCATION (the "(latitude, longitude)" column) selects latitude and longitude.</li>
+ * </ul>
+ * <u>Example Use:</u><br>
+ *    CSVColumnSelection columns = new CSVColumnSelection(CSVColumnSelection.DATE, CSVColumnSelection.IUCR,
+ *    CSVColumnSelection.BEAT, CSVColumnSelection.LATITUDE, CSVColumnSelection.LONGITUDE);<br>
+ *    List&lt;CrimeRecord&gt; crimes = CSVFileHandler.readCrimeRecords(location, columns);<br>
+ */
+public class CSVColumnSelection {
+
+
+    /**
+     * Column indexes, in the order of the crime csv header
+     */
+    public static final Integer CASE_ID = 0;
+    public static final Integer DATE = 1;
+    public static final Integer BLOCK = 2;
+    public static final Integer IUCR = 3;
+    public static final Integer PRIMARY_DESCRIPTION = 4;
+    public static final Integer SECONDARY_DESCRIPTION = 5;
+    public static final Integer LOCATION_DESCRIPTION = 6;
+    public static final Integer ARREST = 7;
+    public static final Integer DOMESTIC = 8;
+    public static final Integer BEAT = 9;
+    public static final Integer WARD = 10;
+    public static final Integer FBI_CD = 11;
+    public static final Integer X_COORDINATE = 12;
+    public static final Integer Y_COORDINATE = 13;
+    public static final Integer LATITUDE = 14;
+    public static final Integer LONGITUDE = 15;
+    public static final Integer LOCATION = 16;
+
+    /**
+     * The IUCR given to records when the IUCR column is not selected, a crime type needs a valid IUCR
+     */
+    public static final String UNSELECTED_IUCR = "NA";
+
+    private static final String[] COLUMN_NAMES = {"CASE#", "DATE OF OCCURRENCE", "BLOCK", "IUCR",
+            "PRIMARY DESCRIPTION", "SECONDARY DESCRIPTION", "LOCATION DESCRIPTION", "ARREST", "DOMESTIC", "BEAT",
+            "WARD", "FBI CD", "X COORDINATE", "Y COORDINATE", "LATITUDE", "LONGITUDE", "LOCATION"};
+
+    /**
+     * Every column, the same as a normal import
+     */
+    public static final CSVColumnSelection ALL = new CSVColumnSelection(CASE_ID, DATE, BLOCK, IUCR,
+            PRIMARY_DESCRIPTION, SECONDARY_DESCRIPTION, LOCATION_DESCRIPTION, ARREST, DOMESTIC, BEAT, WARD, FBI_CD,
+            X_COORDINATE, Y_COORDINATE, LATITUDE, LONGITUDE, LOCATION);
+
+    private final boolean[] selected = new boolean[COLUMN_NAMES.length];
+
+
+    /**
+     * Constructor for a selection of columns
+     * @param columns the indexes of the columns to read, eg: CSVColumnSelection.DATE
+     */
+    public CSVColumnSelection(Integer... columns) {
+        selected[CASE_ID] = true;
+        for (Integer column : columns) {
+            if (column < 0 || column >= selected.length) {
+                throw new IllegalArgumentException("No crime csv column " + column);
+            }
+            selected[column] = true;
+        }
+        if (selected[LOCATION]) {
+            selected[LATITUDE] = true;
+            selected[LONGITUDE] = true;
+        }
+    }
+
+
+    /**
+     * Creates a selection from the names of columns in the crime csv header, eg: "DATE OF OCCURRENCE", "BEAT".
+     * Names are matched ignoring case and extra spaces.
+     * @param names the names of the columns to read
+     * @return the selection
+     * @throws DataFormatException a name is not a column of the crime csv
+     */
+    public static CSVColumnSelection fromNames(String... names) throws DataFormatException {
+        Integer[] columns = new Integer[names.length];
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i].trim().replaceAll("\\s+", " ").toUpperCase();
+            for (int column = 0; column < COLUMN_NAMES.length && columns[i] == null; column++) {
+                if (COLUMN_NAMES[column].equals(name)) {
+                    columns[i] = column;
+                }
+            }
+            if (columns[i] == null) {
+                throw new DataFormatException("\"" + names[i] + "\" is not a crime csv column.");
+            }
+        }
+        return new CSVColumnSelection(columns);
+    }
+
+
+    /**
+     * @param column the index of a column, eg: CSVColumnSelection.BEAT
+     * @return true if the column is read
+     */
+    public Boolean isSelected(Integer column) {
+        return selected[column];
+    }
+
+
+    /**
+     * @return true if every column that is read from the csv is selected
+     */
+    public Boolean isAll() {
+        return selected[DATE] && selected[BLOCK] && selected[IUCR] && selected[LOCATION_DESCRIPTION]
+                && selected[ARREST] && selected[DOMESTIC] && selected[BEAT] && selected[WARD] && selected[FBI_CD]
+                && selected[X_COORDINATE] && selected[Y_COORDINATE] && selected[LATITUDE] && selected[LONGITUDE];
+    }
+
+
+    /**
+     * Create a crime record from a tokenized line of a crime csv, reading only the selected columns
+     * @param fields a tokenizer holding a line of the csv (not the header line)
+     * @param dates the parser to read the date with
+     * @return the crime record, with default values for the columns that are not selected
+     */
+    CrimeRecord createCrimeRecord(CSVTokenizer fields, CrimeDateParser dates) {
+        return new CrimeRecord(fields.getField(CASE_ID),
+                selected[DATE] ? dates.parse(fields, DATE) : dates.getPlaceholder(),
+                selected[ARREST] && fields.fieldEquals(ARREST, "Y"),
+                selected[DOMESTIC] && fields.fieldEquals(DOMESTIC, "Y"),
+                selected[IUCR] ? fields.getFieldWithoutLeadingZeros(IUCR) : UNSELECTED_IUCR,
+                selected[FBI_CD] ? fields.getField(FBI_CD) : "",
+                selected[BLOCK] ? fields.getField(BLOCK) : "",
+                selected[BEAT] ? fields.getInt(BEAT) : 0,
+                selected[WARD] ? fields.getInt(WARD) : 0,
+                selected[X_COORDINATE] ? fields.getDouble(X_COORDINATE) : 0,
+                selected[Y_COORDINATE] ? fields.getDouble(Y_COORDINATE) : 0,
+                selected[LATITUDE] ? fields.getDouble(LATITUDE) : 0,
+                selected[LONGITUDE] ? fields.getDouble(LONGITUDE) : 0,
+                selected[LOCATION_DESCRIPTION] ? fields.getField(LOCATION_DESCRIPTION) : ""
+        );
+    }
+}
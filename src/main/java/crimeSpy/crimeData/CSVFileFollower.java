@@ -0,0 +1,291 @@
+package crimeSpy.crimeData;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.*;
+import java.util.zip.DataFormatException;
+
+
+/**
+ * Follows a crime csv that is still being appended to, adding each new record to a crime collection and its
+ * database as it is written.
+ * <p>The byte offset after the last record read is kept in an ImportCheckpoint, saved to the IMPORT_CHECKPOINT
+ * table of the collection's database in the same transaction as the records. Each poll() only maps and parses
+ * the bytes after that offset, and a record that has not been ended with a line break yet is left until the
+ * next poll. Following a csv that was imported in full before (eg: by importNewCrimeDB_Replace) carries on from
+ * the end of that import.</p>
+ * <p>start() watches the directory of the csv with a WatchService and polls whenever the csv is modified. Some
+ * file systems (eg: network drives) don't report changes, so the size of the csv is also checked every
+ * CHECK_INTERVAL_MILLIS. The csv is read and the records written to the database on the watching thread, only
+ * the new records are handed to an Executor so the collection can be updated on the thread that owns it (see
+ * CrimeCollection.insertSavedCrimeRecords()).</p>
+ * <u>Notes</u>
+ * <ul>
+ *     <li>If the csv becomes smaller than the saved offset it is taken to have been replaced and is followed
+ *     from the start again, records that are already in the collection are skipped.</li>
+ *     <li>Compressed csv files can't be followed.</li>
+ * </ul>
+ * <u>Example Use:</u><br>
+ *    CSVFileFollower follower = new CSVFileFollower(file, cc, executor);<br>
+ *    follower.start();<br>
+ *    ...<br>
+ *    follower.stop();<br>
+ */
+public class CSVFileFollower {
+
+
+    /**
+     * LOGGER is the class wide instance of java.util.logging for CSVFileFollower
+     * Logging to root directory: ./LOG_CSVFileFollower
+     */
+    private static final Logger LOGGER = Logger.getLogger(CSVFileFollower.class.getName());
+    private static final String LOG_FILE_STORE_LOC = "./LOG_CSVFileFollower";
+
+    // initialise the logger for fileloc
+    private static Handler fileHandler;
+    private static SimpleFormatter simpleFormatter;
+
+    static {
+        try {
+            simpleFormatter = new SimpleFormatter();
+            fileHandler  = new FileHandler(LOG_FILE_STORE_LOC);
+            fileHandler.setFormatter(simpleFormatter);
+            LOGGER.addHandler(fileHandler);
+            fileHandler.setLevel(Level.INFO);
+            LOGGER.setUseParentHandlers(false);
+            LOGGER.setLevel(Level.INFO);
+            LOGGER.config("Configuration done.");
+        } catch (IOException e) {
+            LOGGER.warning("Failed to initiate file handler");
+            LOGGER.setLevel(Level.SEVERE); // for case of console only
+        }
+    }
+
+
+    /**
+     * How often the size of the csv is checked when no change has been reported for it
+     */
+    public static final Long CHECK_INTERVAL_MILLIS = 2000L;
+
+    private final File csv;
+    private final CrimeCollection cc;
+    private final Executor executor;
+    private final CrimeDateParser dates = new CrimeDateParser();
+    private ImportCheckpoint checkpoint = null;
+    private Thread watcher = null;
+
+
+    /**
+     * Constructor for a follower of a csv
+     * @param csv the csv to follow
+     * @param cc the collection to add the new records to, they are also written to its database
+     * @param executor adds the new records to the collection (eg: on the FX thread)
+     */
+    public CSVFileFollower(File csv, CrimeCollection cc, Executor executor) {
+        this.csv = csv.getAbsoluteFile();
+        this.cc = cc;
+        this.executor = executor;
+    }
+
+
+    /**
+     * Reads the records added to the end of the csv since the last poll and writes them to the collection's
+     * database, then hands them to the executor to be added to the collection
+     * @return the number of records read
+     * @throws DataFormatException the csv header did not match the supported format, or the csv is compressed
+     * @throws Exception the csv could not be read or the records could not be written
+     */
+    public synchronized Integer poll() throws Exception {
+        if (checkpoint == null) {
+            checkpoint = loadCheckpoint();
+        }
+        long size = csv.length();
+        if (size < checkpoint.getByteOffset()) {
+            LOGGER.info(csv.getName() + " is smaller than when it was last read, following it from the start");
+            checkpoint = new ImportCheckpoint(csv);
+        }
+        if (size == checkpoint.getByteOffset()) {
+            return 0;
+        }
+
+        FileChannel channel = FileChannel.open(csv.toPath(), StandardOpenOption.READ);
+        CrimeRecordBatchWriter writer = null;
+        List<CrimeRecord> read = new ArrayList<CrimeRecord>();
+        Integer count = 0;
+        try {
+            long start = checkpoint.getByteOffset();
+            if (checkpoint.getRowNumber() == 0) {
+                start = MappedCSVReader.readHeader(channel);
+            }
+            checkpoint.sourceChanged(size, csv.lastModified());
+            writer = SQLiteDBHandler.openCrimeRecordWriter(cc.getDirectory(), CrimeRecordBatchWriter.DEFAULT_BATCH_SIZE);
+            writer.setCheckpoint(checkpoint);
+            count = MappedCSVReader.read(channel, start, size, MappedCSVReader.DEFAULT_WINDOW_SIZE,
+                    newFollowSink(read, writer), dates, checkpoint, null, false);
+        } finally {
+            try {
+                if (writer != null) {
+                    writer.close();
+                }
+            } finally {
+                channel.close();
+            }
+        }
+        if (count > 0) {
+            final List<CrimeRecord> saved = read;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    cc.insertSavedCrimeRecords(saved);
+                }
+            });
+            LOGGER.info(count + " new records read from " + csv.getName());
+        }
+        return count;
+    }
+
+
+    /**
+     * Creates the sink a poll reads the csv into. Each record is kept for the collection and passed on to the
+     * database writer, which skips records whose case ids are already in the database.
+     * @param read the list the records are kept in
+     * @param writer the batch writer for the collection's database
+     * @return a sink for MappedCSVReader.read()
+     */
+    private static CrimeRecordSink newFollowSink(final List<CrimeRecord> read, final CrimeRecordBatchWriter writer) {
+        return new CrimeRecordSink() {
+            @Override
+            public void accept(CrimeRecord crime) throws Exception {
+                read.add(crime);
+                writer.accept(crime);
+            }
+        };
+    }
+
+
+    /**
+     * @return the saved checkpoint for the csv, or a checkpoint at the start of the csv if there isn't one
+     * @throws DataFormatException the csv is compressed
+     */
+    private ImportCheckpoint loadCheckpoint() throws Exception {
+        if (CSVFileHandler.isCompressed(csv.getPath())) {
+            throw new DataFormatException("A compressed csv can't be followed.");
+        }
+        ImportCheckpoint saved = SQLiteDBHandler.readImportCheckpoint(cc.getDirectory(), csv);
+        if (saved == null || saved.getByteOffset() < 0) {
+            return new ImportCheckpoint(csv);
+        }
+        LOGGER.info("Following " + csv.getName() + " from record " + saved.getRowNumber());
+        return saved;
+    }
+
+
+    /**
+     * Starts watching the csv for changes, polling it straight away and then whenever it grows
+     * @throws IOException the directory of the csv could not be watched
+     */
+    public synchronized void start() throws IOException {
+        if (watcher != null) {
+            return;
+        }
+        final WatchService watchService = csv.toPath().getFileSystem().newWatchService();
+        Path directory = csv.getParentFile().toPath();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch(watchService);
+            }
+        }, "Follow " + csv.getName());
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+
+    /**
+     * Stops watching the csv. A poll that has already been started is allowed to finish.
+     */
+    public synchronized void stop() {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+
+
+    /**
+     * Polls the csv, then again after each change to it until the watching thread is interrupted
+     */
+    private void watch(WatchService watchService) {
+        long lastSize = csv.length();
+        pollQuietly();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.poll(CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                Boolean changed = false;
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || csv.getName().equals(String.valueOf(event.context()))) {
+                            changed = true;
+                        }
+                    }
+                    if (!key.reset()) {
+                        LOGGER.warning("The directory of " + csv.getName() + " can no longer be watched");
+                        return;
+                    }
+                }
+                long size = csv.length();
+                if (changed || size != lastSize) {
+                    lastSize = size;
+                    pollQuietly();
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop() was called
+        } finally {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * Polls the csv on the watching thread, logging rather than throwing any errors
+     */
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (Exception e) {
+            LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+        }
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // GETTERS
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    public File getCsv() { return csv; }
+
+    public CrimeCollection getCrimeCollection() { return cc; }
+
+    public synchronized Boolean isFollowing() { return watcher != null; }
+
+    public synchronized ImportCheckpoint getCheckpoint() { return checkpoint; }
+}
@@ -1,17 +1,23 @@
 package crimeSpy.crimeData;
 
 
-import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormat;
-
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.*;
 import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 
 /**
@@ -82,6 +88,34 @@ public class CSVFileHandler {
     }
 
 
+    /**
+     * The header line expected at the top of a crime csv
+     */
+    private static final String CSV_HEADER = "CASE#,DATE  OF OCCURRENCE,BLOCK, IUCR, PRIMARY DESCRIPTION, " +
+            "SECONDARY DESCRIPTION, LOCATION DESCRIPTION,ARREST,DOMESTIC,BEAT,WARD,FBI CD,X COORDINATE," +
+            "Y COORDINATE,LATITUDE,LONGITUDE,LOCATION";
+
+    /**
+     * Files smaller than this are always read on a single thread, as starting the workers costs more than it saves
+     */
+    public static final Long PARALLEL_READ_THRESHOLD = 8L * 1024 * 1024;
+
+    /**
+     * Extension of gzip compressed csv files. Exporting to a file with this extension compresses it
+     */
+    public static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * Extensions removed from a csv file name to name its crime collection, longest first
+     */
+    private static final String[] CSV_EXTENSIONS = {".csv.gz", ".csv.zip", ".gz", ".zip", ".csv"};
+
+    /**
+     * Buffer size used when decompressing or compressing a csv
+     */
+    private static final int COMPRESSED_BUFFER_SIZE = 64 * 1024;
+
+
     //////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // make it accept empty strings
     // feel free to use an OR_Map for easy saving to csv format as well.
@@ -98,71 +132,469 @@ public class CSVFileHandler {
      * @throws IOException The database is corrupted
      */
     public static List<CrimeRecord> readCrimeRecords(String location) throws Exception {
-        BufferedReader br = null;
-        String line = "";
-        ArrayList<CrimeRecord> results = new ArrayList<CrimeRecord>();
-        br = new BufferedReader(new FileReader(location));
-        String firstLine = br.readLine(); //Read the first header line and disregard, validation goes here
-        String expectedFirstLine = "CASE#,DATE  OF OCCURRENCE,BLOCK, IUCR, PRIMARY DESCRIPTION, " +
-                "SECONDARY DESCRIPTION, LOCATION DESCRIPTION,ARREST,DOMESTIC,BEAT,WARD,FBI CD,X COORDINATE," +
-                "Y COORDINATE,LATITUDE,LONGITUDE,LOCATION";
-
-        if (!firstLine.equals(expectedFirstLine)) {
+        final ArrayList<CrimeRecord> results = new ArrayList<CrimeRecord>();
+        readCrimeRecords(location, new CrimeRecordSink() {
+            @Override
+            public void accept(CrimeRecord crime) {
+                results.add(crime);
+            }
+        });
+        return results;
+    }
+
+
+    /**
+     * Read a collection of crime records from a csv, using several threads for large files.
+     * The records are returned in file order, exactly as readCrimeRecords(location) would return them.
+     * @param location the file location to read from. Note that this file is expected to be in csv format
+     * @param parallelism the number of threads to read with, 1 to read on the calling thread only
+     * @return a list of the crime records in the file
+     * @throws DataFormatException The csv header did not match the supported format
+     */
+    public static List<CrimeRecord> readCrimeRecords(String location, Integer parallelism) throws Exception {
+        final ArrayList<CrimeRecord> results = new ArrayList<CrimeRecord>();
+        readCrimeRecords(location, new CrimeRecordSink() {
+            @Override
+            public void accept(CrimeRecord crime) {
+                results.add(crime);
+            }
+        }, parallelism);
+        return results;
+    }
+
+
+    /**
+     * Read a collection of crime records from a csv, reading only some of the columns.
+     * The columns that are not selected are left with default values (see CSVColumnSelection), which saves
+     * the time and memory of turning them into Strings, numbers and dates.
+     * @param location the file location to read from. Note that this file is expected to be in csv format
+     * @param columns the columns to read
+     * @return a list of the crime records in the file
+     * @throws DataFormatException The csv header did not match the supported format
+     */
+    public static List<CrimeRecord> readCrimeRecords(String location, CSVColumnSelection columns) throws Exception {
+        final ArrayList<CrimeRecord> results = new ArrayList<CrimeRecord>();
+        readCrimeRecords(location, new CrimeRecordSink() {
+            @Override
+            public void accept(CrimeRecord crime) {
+                results.add(crime);
+            }
+        }, 1, null, null, columns);
+        return results;
+    }
+
+
+    /**
+     * Stream the crime records in a csv file to a CrimeRecordSink.
+     * The file is read through memory mapped windows (see MappedCSVReader) and each record is parsed
+     * and handed to the sink before the next is read, so only a single record is held by this method
+     * at any time. Any exception thrown by the sink stops the read and is passed on to the caller.
+     * <p>A gzip file, or a zip archive holding a csv, is detected from its first bytes and decompressed
+     * as it is read, no matter what its file extension is.</p>
+     * @param location the file location to read from. Note that this file is expected to be in csv format
+     * @param sink receives each crime record as it is read
+     * @return the number of crime records passed to the sink
+     * @throws java.io.FileNotFoundException The csv could not be found
+     * @throws DataFormatException The csv header did not match the supported format
+     */
+    public static Integer readCrimeRecords(String location, CrimeRecordSink sink) throws Exception {
+        return readCrimeRecords(location, sink, 1, null);
+    }
+
+
+    /**
+     * Stream the crime records in a csv from a reader to a CrimeRecordSink.
+     * This is used for csv data that does not come straight from a file on disk.
+     * @param reader a reader positioned at the header line of the csv, it is not closed
+     * @param sink receives each crime record as it is read
+     * @return the number of crime records passed to the sink
+     * @throws DataFormatException The csv header did not match the supported format
+     */
+    public static Integer readCrimeRecords(BufferedReader reader, CrimeRecordSink sink) throws Exception {
+        return readCrimeRecords(reader, sink, null);
+    }
+
+
+    /**
+     * Stream the crime records in a csv file to a CrimeRecordSink, using several threads for large files.
+     * The sink is always called on the calling thread and in file order (see ParallelCSVReader).
+     * Compressed files are always read on a single thread.
+     * @param location the file location to read from. Note that this file is expected to be in csv format
+     * @param sink receives each crime record as it is read
+     * @param parallelism the number of threads to read with, 1 to read on the calling thread only
+     * @return the number of crime records passed to the sink
+     * @throws DataFormatException The csv header did not match the supported format
+     */
+    public static Integer readCrimeRecords(String location, CrimeRecordSink sink, Integer parallelism)
+            throws Exception {
+        return readCrimeRecords(location, sink, parallelism, null);
+    }
+
+
+    /**
+     * Stream the crime records in a csv file to a CrimeRecordSink, carrying on from an import checkpoint.
+     * The checkpoint is moved past each record just before the record is passed to the sink, so a
+     * CrimeRecordBatchWriter holding the same checkpoint always saves it in step with the records it has written.
+     * <p>A plain csv is read on from the byte offset of the checkpoint. A compressed csv can't be read from an
+     * offset, so it is decompressed from the start and the records already imported are skipped.</p>
+     * @param location the file location to read from. Note that this file is expected to be in csv format
+     * @param sink receives each crime record as it is read
+     * @param parallelism the number of threads to read with, 1 to read on the calling thread only
+     * @param checkpoint the checkpoint to carry on from, null to read the whole file
+     * @return the number of crime records passed to the sink
+     * @throws java.io.FileNotFoundException The csv could not be found
+     * @throws DataFormatException The csv header did not match the supported format
+     */
+    public static Integer readCrimeRecords(String location, CrimeRecordSink sink, Integer parallelism,
+                                           ImportCheckpoint checkpoint) throws Exception {
+        return readCrimeRecords(location, sink, parallelism, checkpoint, null);
+    }
+
+
+    /**
+     * Stream the crime records in a csv file to a CrimeRecordSink, carrying on from an import checkpoint and
+     * reporting progress as it goes.
+     * @param location the file location to read from. Note that this file is expected to be in csv format
+     * @param sink receives each crime record as it is read
+     * @param parallelism the number of threads to read with, 1 to read on the calling thread only
+     * @param checkpoint the checkpoint to carry on from, null to read the whole file
+     * @param progress counts the records and bytes read, null if not needed
+     * @return the number of crime records passed to the sink
+     * @throws java.io.FileNotFoundException The csv could not be found
+     * @throws DataFormatException The csv header did not match the supported format
+     * @throws java.util.concurrent.CancellationException The import was cancelled through its progress
+     */
+    public static Integer readCrimeRecords(String location, CrimeRecordSink sink, Integer parallelism,
+                                           ImportCheckpoint checkpoint, ImportProgress progress) throws Exception {
+        return readCrimeRecords(location, sink, parallelism, checkpoint, progress, null);
+    }
+
+
+    /**
+     * Stream the crime records in a csv file to a CrimeRecordSink, reading only some of the columns.
+     * The fields of every column are still found, but only the selected ones are turned into Strings, numbers and
+     * dates. The rest are left with default values (see CSVColumnSelection).
+     * @param location the file location to read from. Note that this file is expected to be in csv format
+     * @param sink receives each crime record as it is read
+     * @param parallelism the number of threads to read with, 1 to read on the calling thread only
+     * @param checkpoint the checkpoint to carry on from, null to read the whole file
+     * @param progress counts the records and bytes read, null if not needed
+     * @param columns the columns to read, null to read them all
+     * @return the number of crime records passed to the sink
+     * @throws java.io.FileNotFoundException The csv could not be found
+     * @throws DataFormatException The csv header did not match the supported format
+     * @throws java.util.concurrent.CancellationException The import was cancelled through its progress
+     */
+    public static Integer readCrimeRecords(String location, CrimeRecordSink sink, Integer parallelism,
+                                           ImportCheckpoint checkpoint, ImportProgress progress,
+                                           CSVColumnSelection columns) throws Exception {
+        if (progress != null) {
+            if (checkpoint == null) {
+                checkpoint = new ImportCheckpoint(new File(location));
+            }
+            sink = progress.track(sink, checkpoint);
+        }
+        InputStream decompressed = openDecompressed(location, progress);
+        if (decompressed != null) {
+            BufferedReader br = new BufferedReader(new InputStreamReader(decompressed, StandardCharsets.UTF_8));
+            try {
+                Integer count = readCrimeRecords(br, sink, checkpoint, columns);
+                LOGGER.info("compressed csv read");
+                return count;
+            } finally {
+                br.close();
+            }
+        }
+        if (progress != null) {
+            progress.start(MappedCSVReader.resumeOffset(checkpoint));
+        }
+        if (parallelism == null || parallelism <= 1 || new File(location).length() < PARALLEL_READ_THRESHOLD) {
+            MappedCSVReader reader = new MappedCSVReader(MappedCSVReader.DEFAULT_WINDOW_SIZE, columns);
+            Integer count = reader.read(location, sink, checkpoint);
+            logMalformedDates(reader.getMalformedDateCount());
+            LOGGER.info("csv read");
+            return count;
+        }
+        ParallelCSVReader reader = new ParallelCSVReader(parallelism, ParallelCSVReader.DEFAULT_CHUNK_SIZE, columns);
+        Integer count = reader.read(location, sink, checkpoint);
+        logMalformedDates(reader.getMalformedDateCount());
+        LOGGER.info("csv read on " + parallelism + " threads");
+        return count;
+    }
+
+
+    /**
+     * Stream the crime records in a csv from a reader to a CrimeRecordSink, skipping the records already
+     * counted by a checkpoint.
+     * @param reader a reader positioned at the header line of the csv, it is not closed
+     * @param sink receives each crime record as it is read
+     * @param checkpoint the checkpoint to carry on from, null to read every record
+     * @return the number of crime records passed to the sink
+     * @throws DataFormatException The csv header did not match the supported format
+     */
+    static Integer readCrimeRecords(BufferedReader reader, CrimeRecordSink sink, ImportCheckpoint checkpoint)
+            throws Exception {
+        return readCrimeRecords(reader, sink, checkpoint, null);
+    }
+
+
+    /**
+     * Stream the crime records in a csv from a reader to a CrimeRecordSink, reading only some of the columns.
+     * @param reader a reader positioned at the header line of the csv, it is not closed
+     * @param sink receives each crime record as it is read
+     * @param checkpoint the checkpoint to carry on from, null to read every record
+     * @param columns the columns to read, null to read them all
+     * @return the number of crime records passed to the sink
+     * @throws DataFormatException The csv header did not match the supported format
+     */
+    static Integer readCrimeRecords(BufferedReader reader, CrimeRecordSink sink, ImportCheckpoint checkpoint,
+                                    CSVColumnSelection columns) throws Exception {
+        checkHeader(reader.readLine()); //Read the first header line and disregard, validation goes here
+        CrimeDateParser dates = new CrimeDateParser();
+        Integer count = readRecords(reader, sink, dates, checkpoint, columns);
+        logMalformedDates(dates.getMalformedCount());
+        return count;
+    }
+
+
+    /**
+     * Checks if a file is gzip compressed or a zip archive, from the first bytes of the file
+     * @param location the file location
+     * @return true if the file is compressed
+     * @throws java.io.FileNotFoundException The file could not be found
+     */
+    public static Boolean isCompressed(String location) throws IOException {
+        InputStream in = new FileInputStream(location);
+        try {
+            byte[] magic = readMagic(in);
+            return isGzip(magic) || isZip(magic);
+        } finally {
+            in.close();
+        }
+    }
+
+
+    /**
+     * Opens a stream of the decompressed contents of a gzip file, or of the first csv in a zip archive
+     * @param location the file location
+     * @return the decompressed stream, or null if the file isn't compressed
+     * @throws java.io.FileNotFoundException The file could not be found
+     * @throws DataFormatException A zip archive did not hold a csv
+     */
+    static InputStream openDecompressed(String location) throws IOException, DataFormatException {
+        return openDecompressed(location, null);
+    }
+
+
+    /**
+     * Opens a compressed csv for reading, counting the compressed bytes read from the file
+     * @param location the file location
+     * @param progress counts the bytes read from the file, null if not needed
+     * @return the decompressed csv data, or null if the file is not compressed
+     * @throws java.io.FileNotFoundException The file could not be found
+     * @throws DataFormatException The file is a zip archive without a csv in it
+     */
+    static InputStream openDecompressed(String location, final ImportProgress progress)
+            throws IOException, DataFormatException {
+        InputStream file = new FileInputStream(location);
+        if (progress != null) {
+            file = new FilterInputStream(file) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        progress.addBytesRead(1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int read = super.read(b, off, len);
+                    if (read > 0) {
+                        progress.addBytesRead(read);
+                    }
+                    return read;
+                }
+            };
+        }
+        InputStream in = new BufferedInputStream(file, COMPRESSED_BUFFER_SIZE);
+        try {
+            in.mark(4);
+            byte[] magic = readMagic(in);
+            in.reset();
+            if (isGzip(magic)) {
+                return new GZIPInputStream(in, COMPRESSED_BUFFER_SIZE);
+            }
+            if (isZip(magic)) {
+                ZipInputStream zip = new ZipInputStream(in);
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (!entry.isDirectory() && entry.getName().toLowerCase().endsWith(".csv")) {
+                        return zip;
+                    }
+                }
+                throw new DataFormatException("Zip archive doesn't contain a csv file.");
+            }
+        } catch (IOException | DataFormatException e) {
+            in.close();
+            throw e;
+        }
+        in.close();
+        return null;
+    }
+
+
+    /**
+     * Reads up to the first four bytes of a stream
+     */
+    private static byte[] readMagic(InputStream in) throws IOException {
+        byte[] magic = new byte[4];
+        int read = 0;
+        int n;
+        while (read < magic.length && (n = in.read(magic, read, magic.length - read)) > 0) {
+            read += n;
+        }
+        return magic;
+    }
+
+
+    private static boolean isGzip(byte[] magic) {
+        return (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B;
+    }
+
+
+    private static boolean isZip(byte[] magic) {
+        return magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4;
+    }
+
+
+    /**
+     * Removes the csv extension from a file name, including any compression extension.
+     * eg: "crimes.csv.gz" becomes "crimes"
+     * @param fileName the name of a csv file
+     * @return the name without its extension
+     */
+    public static String stripCSVExtension(String fileName) {
+        String lowerName = fileName.toLowerCase();
+        for (String extension : CSV_EXTENSIONS) {
+            if (lowerName.endsWith(extension)) {
+                return fileName.substring(0, fileName.length() - extension.length());
+            }
+        }
+        return fileName;
+    }
+
+
+    /**
+     * Checks the header line of a crime csv
+     * @param header the first line of the csv
+     * @throws DataFormatException The csv header did not match the supported format
+     */
+    static void checkHeader(String header) throws DataFormatException {
+        if (header == null || !header.equals(CSV_HEADER)) {
             throw new DataFormatException("CSV didn't follow supported data format.");
         }
+    }
+
 
+    /**
+     * Reads crime records from the lines of a csv (after the header) and passes them to a sink.
+     * @param br a reader positioned at the start of a record
+     * @param sink receives each crime record as it is read
+     * @param dates the parser to read dates with
+     * @param checkpoint the records it has counted are skipped, then it is moved past each record (may be null)
+     * @param columns the columns to read, null to read them all
+     * @return the number of crime records passed to the sink
+     * @throws Exception a line could not be read or parsed, or the sink failed
+     */
+    static Integer readRecords(BufferedReader br, CrimeRecordSink sink, CrimeDateParser dates,
+                               ImportCheckpoint checkpoint, CSVColumnSelection columns) throws Exception {
+        String line = "";
+        Integer count = 0;
+        long skip = (checkpoint == null) ? 0 : checkpoint.getRowNumber();
+        CSVTokenizer tokenizer = new CSVTokenizer();
         while ((line = br.readLine()) != null) {
-            // use comma as separator and ignore commas that have a odd number of quotes ahead of them
-            while (line.contains(",,")) {
-                line = line.replaceAll(",,", ",0,");
+            tokenizer.tokenize(line);
+            // A quoted field may carry on over a line break, keep joining lines until the quotes close
+            String nextLine;
+            while (tokenizer.isInQuotes() && (nextLine = br.readLine()) != null) {
+                line = line + "\n" + nextLine;
+                tokenizer.tokenize(line);
             }
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            CrimeRecord crime = createCrimeRecord(tokenizer, dates, columns);
+            if (checkpoint != null) {
+                checkpoint.recordRead(-1);
+            }
+            sink.accept(crime);
+            count++;
+        }
+        return count;
+    }
 
-            //////////////////////////////////////////////////////////////////////////////////
-            //  The csv is expected to follow the format:
-            //  [0]caseId, [1]date, [2]block, [3]iucr, [4]priDesc, [5]secDesc
-            //  [6]location, [7]arrest, [8]domestic, [9]beat, [10]ward, [11]fbicd
-            //  [12]xCoord, [13]yCoord, [14]latitude, [15]longitude, [16]latLong
-            //  Where [x] is not in the string, just to assist with referencing :)
-
-            String[] currLine = line.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)", -1);
-            // See javaDoc for class as to why the array ordering is out of kilter
-            CrimeRecord newcr;
-            newcr = new CrimeRecord(currLine[0],                                                        // caseId
-                    convertDateTime(currLine[1]),                                                       // date
-                    (currLine[7].equals("Y")),                                                          // arrest
-                    (currLine[8].equals("Y")),                                                          // domestic
-                    // CrimeType info
-                    currLine[3].replaceFirst("^0+(?!$)", ""),                                           // iucr
-                    currLine[11],                                                                       // fbicd
-                    // CrimeLocation info
-                    currLine[2],                                                                        // block
-                    Integer.parseInt(currLine[9]),                                                      // beat
-                    Integer.parseInt(currLine[10]),                                                     // ward
-                    Double.parseDouble(currLine[12]),                                                   // xCoord
-                    Double.parseDouble(currLine[13]),                                                   // yCoord
-                    Double.parseDouble(currLine[14]),                                                   // latitude
-                    Double.parseDouble(currLine[15]),                                                   // longitude
-                    currLine[6]                                                                         // location
-            );
-            results.add(newcr);
-
-        }
-        LOGGER.info("csv read");
-        br.close();
-        return results;
+
+    /**
+     * Create a single CrimeRecord from a tokenized line of a crime csv.
+     * Empty numerical fields are read as 0, empty text fields are left empty.
+     * @param fields a tokenizer holding a line of the csv (not the header line)
+     * @param dates the parser to read the date with
+     * @return the equivalent CrimeRecord
+     */
+    static CrimeRecord createCrimeRecord(CSVTokenizer fields, CrimeDateParser dates) {
+        //////////////////////////////////////////////////////////////////////////////////
+        //  The csv is expected to follow the format:
+        //  [0]caseId, [1]date, [2]block, [3]iucr, [4]priDesc, [5]secDesc
+        //  [6]location, [7]arrest, [8]domestic, [9]beat, [10]ward, [11]fbicd
+        //  [12]xCoord, [13]yCoord, [14]latitude, [15]longitude, [16]latLong
+        //  Where [x] is not in the string, just to assist with referencing :)
+
+        // See javaDoc for class as to why the field ordering is out of kilter
+        return new CrimeRecord(fields.getField(0),                                              // caseId
+                dates.parse(fields, 1),                                                         // date
+                fields.fieldEquals(7, "Y"),                                                     // arrest
+                fields.fieldEquals(8, "Y"),                                                     // domestic
+                // CrimeType info
+                fields.getFieldWithoutLeadingZeros(3),                                          // iucr
+                fields.getField(11),                                                            // fbicd
+                // CrimeLocation info
+                fields.getField(2),                                                             // block
+                fields.getInt(9),                                                               // beat
+                fields.getInt(10),                                                              // ward
+                fields.getDouble(12),                                                           // xCoord
+                fields.getDouble(13),                                                           // yCoord
+                fields.getDouble(14),                                                           // latitude
+                fields.getDouble(15),                                                           // longitude
+                fields.getField(6)                                                              // location
+        );
     }
 
 
     /**
-     * Convert a string from csv to DateTime <i>safely</i>.
-     * This should take into account the various problems with daylight savings...
+     * Create a single CrimeRecord from a tokenized line of a crime csv, reading only some of the columns
+     * @param fields a tokenizer holding a line of the csv (not the header line)
+     * @param dates the parser to read the date with
+     * @param columns the columns to read, null to read them all
+     * @return the equivalent CrimeRecord, with default values for the columns that were not read
      */
-    private static DateTime convertDateTime(String date) {
-        try {
-            return DateTimeFormat.forPattern("MM/dd/yyyy HH:mm:ss a").parseDateTime(date);
-        } catch (Exception e) {
-            // couldn't convert date time for some reason
-            return DateTimeFormat.forPattern("MM/dd/yyyy HH:mm:ss a").parseDateTime("01/01/0001 01:00:00 AM"); //Placeholder Date Time
+    static CrimeRecord createCrimeRecord(CSVTokenizer fields, CrimeDateParser dates, CSVColumnSelection columns) {
+        if (columns == null || columns.isAll()) {
+            return createCrimeRecord(fields, dates);
+        }
+        return columns.createCrimeRecord(fields, dates);
+    }
+
+
+    /**
+     * Logs the number of dates that couldn't be read while reading a csv
+     * @param malformedDates the number of dates replaced with the placeholder date
+     */
+    private static void logMalformedDates(Integer malformedDates) {
+        if (malformedDates > 0) {
+            LOGGER.warning(malformedDates + " malformed dates were replaced with a placeholder date");
         }
     }
 
@@ -170,21 +602,21 @@ public class CSVFileHandler {
     /**
      * Write a collection of crime data to persistent storage.
      * This method expects a CrimeCollection (collection object of CrimeRecords)
+     * The records are formatted straight into a byte buffer as UTF-8 (see CrimeCSVWriter).
+     * If the location ends in .gz the csv is gzip compressed as it is written.
      * @param crimes is a CrimeCollection object
      * @param location the file location for which to write the csv data
      */
     public static void writeCrimeRecords(CrimeCollection crimes, String location) throws Exception {
-        FileWriter writer = new FileWriter(location);
-        String expectedFirstLine = "CASE#,DATE  OF OCCURRENCE,BLOCK, IUCR, PRIMARY DESCRIPTION, " +
-                "SECONDARY DESCRIPTION, LOCATION DESCRIPTION,ARREST,DOMESTIC,BEAT,WARD,FBI CD,X COORDINATE," +
-                "Y COORDINATE,LATITUDE,LONGITUDE,LOCATION\n";
-        writer.append(expectedFirstLine);
-        for (CrimeRecord crime : crimes.getCrimes()) {
-            OR_Map cr = new OR_Map(crime);
-            writer.append(cr.toCSVString());
-        }
-        writer.flush();
-        writer.close();
+        CrimeCSVWriter writer = CrimeCSVWriter.open(location);
+        try {
+            writer.writeLine(CSV_HEADER);
+            for (CrimeRecord crime : crimes.getCrimes()) {
+                writer.accept(crime);
+            }
+        } finally {
+            writer.close();
+        }
         LOGGER.info("CSV has been written");
     }
 
@@ -199,10 +631,11 @@ public class CSVFileHandler {
         try {
             br = new BufferedReader(new FileReader("IUCRcodes.csv"));
             String line = "";
+            CSVTokenizer tokenizer = new CSVTokenizer();
             br.readLine(); //Read first title line and disregard
             while ((line = br.readLine()) != null) {
-                String[] currLine = line.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)", -1);
-                result.add(currLine);
+                tokenizer.tokenize(line);
+                result.add(tokenizer.getFields());
             }
             LOGGER.info("IUCR csv read");
         } catch (Exception e) {
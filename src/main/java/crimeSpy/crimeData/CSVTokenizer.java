@@ -0,0 +1,303 @@
+package crimeSpy.crimeData;
+
+
+/**
+ * A reusable, single pass tokenizer for lines of a csv file.
+ * <p>tokenize() walks the line once and records the start and end offset of each field in
+ * buffers that are kept between lines, so no per line arrays or regular expressions are needed.
+ * Field Strings are only created when they are asked for, and numeric fields can be read without
+ * creating a String at all.</p>
+ * <u>Notes</u>
+ * <ul>
+ *     <li>A comma inside double quotes is part of the field, not a separator. Quote characters
+ *     toggle the quoted state wherever they appear and are kept in the field text, this matches
+ *     how crimeSpy has always split its csv files (eg: <code>"SCHOOL, PUBLIC, BUILDING"</code>
+ *     is read with its quotes).</li>
+ *     <li>Empty fields are reported as empty. getInt() and getDouble() read an empty field as 0.</li>
+ *     <li>If a line ends while still inside quotes isInQuotes() returns true, the caller can join
+ *     the next line on and tokenize again to read a field with a newline in it.</li>
+ * </ul>
+ * <u>Example Use:</u><br>
+ *    CSVTokenizer tokenizer = new CSVTokenizer();<br>
+ *    tokenizer.tokenize("HX321538,06/27/2014 07:31:00 PM,080XX S HALSTED ST");<br>
+ *    String block = tokenizer.getField(2);<br>
+ */
+public class CSVTokenizer {
+
+
+    private static final int INITIAL_FIELD_CAPACITY = 20;
+
+    /**
+     * Largest mantissa that converts to a double without rounding (2^53)
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * Powers of ten that can be represented exactly as a double
+     */
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private String line = "";
+    int[] starts = new int[INITIAL_FIELD_CAPACITY];
+    int[] ends = new int[INITIAL_FIELD_CAPACITY];
+    int fieldCount = 0;
+    boolean inQuotes = false;
+
+
+    /**
+     * Split a line into fields. Any fields from the previous line are discarded.
+     * @param line a single line (or record) of a csv file, without its line terminator
+     * @return the number of fields in the line
+     */
+    public int tokenize(String line) {
+        this.line = line;
+        this.fieldCount = 0;
+        boolean quoted = false;
+        int start = 0;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char ch = line.charAt(i);
+            if (ch == '"') {
+                quoted = !quoted;
+            } else if (ch == ',' && !quoted) {
+                addField(start, i);
+                start = i + 1;
+            }
+        }
+        addField(start, length);
+        this.inQuotes = quoted;
+        return fieldCount;
+    }
+
+
+    /**
+     * Record the offsets of a field, growing the offset buffers if needed.
+     */
+    void addField(int start, int end) {
+        if (fieldCount == starts.length) {
+            int[] newStarts = new int[starts.length * 2];
+            int[] newEnds = new int[ends.length * 2];
+            System.arraycopy(starts, 0, newStarts, 0, fieldCount);
+            System.arraycopy(ends, 0, newEnds, 0, fieldCount);
+            starts = newStarts;
+            ends = newEnds;
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+
+
+    /**
+     * Check that a field exists in the current line
+     * @throws IndexOutOfBoundsException there is no field at this index
+     */
+    void checkIndex(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + index + " requested from a line with " + fieldCount + " fields");
+        }
+    }
+
+
+    /**
+     * Get a single character of the text being tokenized. All field access goes through this method and
+     * text() so that subclasses can tokenize text that is not held in a String.
+     * @param index the offset of the character
+     * @return the character at index
+     */
+    char charAt(int index) {
+        return line.charAt(index);
+    }
+
+
+    /**
+     * Create a String from part of the text being tokenized
+     * @param start the offset of the first character
+     * @param end the offset after the last character
+     * @return the text between start and end
+     */
+    String text(int start, int end) {
+        return line.substring(start, end);
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // FIELD ACCESS
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * @return the number of fields found in the last line tokenized
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+
+    /**
+     * @return true if the last line tokenized ended inside a quoted field
+     */
+    public boolean isInQuotes() {
+        return inQuotes;
+    }
+
+
+    /**
+     * Get the text of a field
+     * @param index the index of the field (starting at 0)
+     * @return the field text, an empty string for an empty field
+     */
+    public String getField(int index) {
+        checkIndex(index);
+        return text(starts[index], ends[index]);
+    }
+
+
+    /**
+     * Get the text of a field with any leading zeros removed. A field of only zeros keeps its last zero.
+     * This is used for IUCR codes, eg: "0460" becomes "460" and "0000" becomes "0".
+     * @param index the index of the field (starting at 0)
+     * @return the field text without leading zeros
+     */
+    public String getFieldWithoutLeadingZeros(int index) {
+        checkIndex(index);
+        int start = starts[index];
+        int end = ends[index];
+        while (start < end - 1 && charAt(start) == '0') {
+            start++;
+        }
+        return text(start, end);
+    }
+
+
+    /**
+     * Get every field of the last line tokenized
+     * @return a new array of the field text
+     */
+    public String[] getFields() {
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = text(starts[i], ends[i]);
+        }
+        return fields;
+    }
+
+
+    /**
+     * @param index the index of the field (starting at 0)
+     * @return true if the field has no text
+     */
+    public boolean isEmpty(int index) {
+        checkIndex(index);
+        return starts[index] == ends[index];
+    }
+
+
+    /**
+     * Compare a field to a string without creating a String for the field
+     * @param index the index of the field (starting at 0)
+     * @param value the value to compare to
+     * @return true if the field text is exactly value
+     */
+    public boolean fieldEquals(int index, String value) {
+        checkIndex(index);
+        int start = starts[index];
+        int length = ends[index] - start;
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Read a field as an integer. An empty field is read as 0.
+     * @param index the index of the field (starting at 0)
+     * @return the integer value of the field
+     * @throws NumberFormatException the field is not an integer
+     */
+    public int getInt(int index) throws NumberFormatException {
+        checkIndex(index);
+        int pos = starts[index];
+        int end = ends[index];
+        if (pos == end) {
+            return 0;
+        }
+        boolean negative = false;
+        if (charAt(pos) == '-' || charAt(pos) == '+') {
+            negative = charAt(pos) == '-';
+            pos++;
+        }
+        // 9 digits can never overflow an int, anything longer or unusual is left to Integer.parseInt
+        if (pos == end || end - pos > 9) {
+            return Integer.parseInt(getField(index));
+        }
+        int value = 0;
+        for (; pos < end; pos++) {
+            char ch = charAt(pos);
+            if (ch < '0' || ch > '9') {
+                return Integer.parseInt(getField(index));
+            }
+            value = value * 10 + (ch - '0');
+        }
+        return negative ? -value : value;
+    }
+
+
+    /**
+     * Read a field as a double. An empty field is read as 0.0.
+     * <p>Plain decimals (eg: -87.70587610484924) with up to 15-16 significant digits are converted directly,
+     * this gives exactly the same result as Double.parseDouble as both the digits and the power of ten
+     * are exact doubles. Anything else (exponents, very long fractions, whitespace) falls back to
+     * Double.parseDouble.</p>
+     * @param index the index of the field (starting at 0)
+     * @return the double value of the field
+     * @throws NumberFormatException the field is not a number
+     */
+    public double getDouble(int index) throws NumberFormatException {
+        checkIndex(index);
+        int pos = starts[index];
+        int end = ends[index];
+        if (pos == end) {
+            return 0.0;
+        }
+        boolean negative = false;
+        if (charAt(pos) == '-' || charAt(pos) == '+') {
+            negative = charAt(pos) == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int fractionDigits = 0;
+        int digits = 0;
+        boolean seenPoint = false;
+        for (; pos < end; pos++) {
+            char ch = charAt(pos);
+            if (ch >= '0' && ch <= '9') {
+                mantissa = mantissa * 10 + (ch - '0');
+                digits++;
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+                if (mantissa > MAX_EXACT_MANTISSA) {
+                    return Double.parseDouble(getField(index));
+                }
+            } else if (ch == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                return Double.parseDouble(getField(index));
+            }
+        }
+        if (digits == 0 || fractionDigits >= EXACT_POWERS_OF_TEN.length) {
+            return Double.parseDouble(getField(index));
+        }
+        double value = mantissa / EXACT_POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,390 @@
+package crimeSpy.crimeData;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Writes crime records to a csv file, formatting each field straight into a reusable byte buffer.
+ * <p>The output is byte for byte what OR_Map.toCSVString() gives (encoded as UTF-8), but no OR_Map, String
+ * or formatter is created per record. Integers, whole number coordinates and dates are formatted as digits
+ * directly into the buffer, and text fields are encoded into it a character at a time. The buffer is written
+ * to the file channel whenever it fills.</p>
+ * <u>Notes</u>
+ * <ul>
+ *     <li>Decimal values that are not whole numbers (eg: most latitudes) still go through Double.toString(),
+ *     which is the only way to match its shortest round trip digits exactly. Each is formatted once and copied
+ *     into both its own column and the "(latitude, longitude)" column.</li>
+ *     <li>Records sharing the same DateTime object (see CrimeDateParser's timestamp cache) reuse the formatted
+ *     date of the record before.</li>
+ *     <li>A writer is not thread safe.</li>
+ * </ul>
+ * <u>Example Use:</u><br>
+ *    CrimeCSVWriter writer = CrimeCSVWriter.open(location);<br>
+ *    writer.writeLine(header);<br>
+ *    writer.accept(crime);<br>
+ *    writer.close();<br>
+ */
+public class CrimeCSVWriter implements CrimeRecordSink {
+
+
+    /**
+     * The number of bytes buffered between writes when no buffer size is given
+     */
+    public static final Integer DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * The longest output of Double.toString() is 24 characters
+     */
+    private static final int MAX_NUMBER_LENGTH = 32;
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.UTF_8);
+
+    private final WritableByteChannel channel;
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+    private int position = 0;
+
+    private final DateTimeFormatter formatter = DateTimeFormat.forPattern(CrimeDateParser.DATE_PATTERN);
+    private final byte[] amText;
+    private final byte[] pmText;
+    private final byte[] dateText = new byte[64];
+    private int dateLength = 0;
+    private DateTime lastDate = null;
+    private final byte[] latitudeText = new byte[MAX_NUMBER_LENGTH];
+    private final byte[] longitudeText = new byte[MAX_NUMBER_LENGTH];
+
+
+    /**
+     * Constructor for a writer over an open channel
+     * @param channel the channel to write to, it is closed by close()
+     * @param bufferSize the number of bytes to buffer between writes
+     */
+    public CrimeCSVWriter(WritableByteChannel channel, Integer bufferSize) {
+        if (bufferSize == null || bufferSize < 1024) {
+            bufferSize = DEFAULT_BUFFER_SIZE;
+        }
+        this.channel = channel;
+        this.bytes = new byte[bufferSize];
+        this.buffer = ByteBuffer.wrap(bytes);
+        // The half day marker text depends on the locale, take it from the same formatter as OR_Map
+        this.amText = new DateTime(2000, 1, 1, 1, 0, 0, 0).toString("a").getBytes(StandardCharsets.UTF_8);
+        this.pmText = new DateTime(2000, 1, 1, 13, 0, 0, 0).toString("a").getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Opens a csv file for writing, replacing anything already in it
+     * @param location the file location to write to, it is gzip compressed if it ends in .gz
+     * @return the writer
+     * @throws IOException the file could not be opened
+     */
+    public static CrimeCSVWriter open(String location) throws IOException {
+        if (location.toLowerCase().endsWith(CSVFileHandler.GZIP_EXTENSION)) {
+            GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(location), DEFAULT_BUFFER_SIZE);
+            return new CrimeCSVWriter(Channels.newChannel(out), DEFAULT_BUFFER_SIZE);
+        }
+        FileChannel channel = FileChannel.open(Paths.get(location), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new CrimeCSVWriter(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+
+    /**
+     * Writes a line of text, eg: the csv header
+     * @param line the line, without its line break
+     * @throws IOException the line could not be written
+     */
+    public void writeLine(String line) throws IOException {
+        writeString(line);
+        writeByte('\n');
+    }
+
+
+    /**
+     * Writes a crime record as a line of the csv
+     * @param crime the crime record to write
+     * @throws IOException the record could not be written
+     */
+    @Override
+    public void accept(CrimeRecord crime) throws IOException {
+        CrimeType type = crime.getCrimeType();
+        CrimeLocation location = crime.getCrimeLocation();
+        int latitudeLength = formatDouble(location.getLatitude(), latitudeText);
+        int longitudeLength = formatDouble(location.getLongitude(), longitudeText);
+
+        writeString(crime.getCaseID());
+        writeByte(',');
+        writeDate(crime.getDate());
+        writeByte(',');
+        writeString(location.getBlock());
+        writeByte(',');
+        writeString(type.getIucr());
+        writeByte(',');
+        writeString(type.getPrimaryDescription());
+        writeByte(',');
+        writeString(type.getSecondaryDescription());
+        writeByte(',');
+        writeString(location.getLocationStr());
+        writeByte(',');
+        writeByte(crime.getArrest() ? 'Y' : 'N');
+        writeByte(',');
+        writeByte(crime.getDomestic() ? 'Y' : 'N');
+        writeByte(',');
+        writeInteger(location.getBeat());
+        writeByte(',');
+        writeInteger(location.getWard());
+        writeByte(',');
+        writeString(crime.getFbiCD());
+        writeByte(',');
+        writeDouble(location.getxCoordinate());
+        writeByte(',');
+        writeDouble(location.getyCoordinate());
+        writeByte(',');
+        writeBytes(latitudeText, latitudeLength);
+        writeByte(',');
+        writeBytes(longitudeText, longitudeLength);
+        writeByte(',');
+        writeByte(' ');
+        writeByte('"');
+        writeByte('(');
+        writeBytes(latitudeText, latitudeLength);
+        writeByte(',');
+        writeByte(' ');
+        writeBytes(longitudeText, longitudeLength);
+        writeByte(')');
+        writeByte('"');
+        writeByte('\n');
+    }
+
+
+    /**
+     * Writes everything buffered to the channel
+     * @throws IOException the buffer could not be written
+     */
+    public void flush() throws IOException {
+        buffer.clear();
+        buffer.limit(position);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        position = 0;
+    }
+
+
+    /**
+     * Writes everything buffered and closes the channel
+     * @throws IOException the buffer could not be written or the channel could not be closed
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // FORMATTING
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    private void ensure(int length) throws IOException {
+        if (position + length > bytes.length) {
+            flush();
+        }
+    }
+
+
+    private void writeByte(char b) throws IOException {
+        if (position == bytes.length) {
+            flush();
+        }
+        bytes[position++] = (byte) b;
+    }
+
+
+    private void writeBytes(byte[] source, int length) throws IOException {
+        ensure(length);
+        System.arraycopy(source, 0, bytes, position, length);
+        position += length;
+    }
+
+
+    /**
+     * Writes a String as UTF-8, "null" for null (as string concatenation would)
+     */
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writeBytes(NULL, NULL.length);
+            return;
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char ch = value.charAt(i);
+            if (ch < 0x80) {
+                if (position == bytes.length) {
+                    flush();
+                }
+                bytes[position++] = (byte) ch;
+            } else {
+                ensure(4);
+                if (ch < 0x800) {
+                    bytes[position++] = (byte) (0xC0 | (ch >> 6));
+                    bytes[position++] = (byte) (0x80 | (ch & 0x3F));
+                } else if (Character.isHighSurrogate(ch) && i + 1 < length
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(ch, value.charAt(++i));
+                    bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(ch)) {
+                    bytes[position++] = '?'; // an unpaired surrogate, as the UTF-8 encoder replaces it
+                } else {
+                    bytes[position++] = (byte) (0xE0 | (ch >> 12));
+                    bytes[position++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | (ch & 0x3F));
+                }
+            }
+        }
+    }
+
+
+    private void writeInteger(Integer value) throws IOException {
+        if (value == null) {
+            writeBytes(NULL, NULL.length);
+            return;
+        }
+        ensure(MAX_NUMBER_LENGTH);
+        position = formatLong(value, bytes, position);
+    }
+
+
+    private void writeDouble(Double value) throws IOException {
+        ensure(MAX_NUMBER_LENGTH);
+        position += formatDouble(value, bytes, position);
+    }
+
+
+    private int formatDouble(Double value, byte[] target) {
+        return formatDouble(value, target, 0);
+    }
+
+
+    /**
+     * Formats a Double exactly as String.valueOf() would
+     * @return the number of bytes written
+     */
+    private static int formatDouble(Double value, byte[] target, int offset) {
+        if (value == null) {
+            System.arraycopy(NULL, 0, target, offset, NULL.length);
+            return NULL.length;
+        }
+        double d = value;
+        // Double.toString() writes whole numbers from 1 up to 10^7 as digits followed by ".0"
+        if (d >= 1 && d < 1e7 && d == Math.floor(d)) {
+            int end = formatLong((long) d, target, offset);
+            target[end++] = '.';
+            target[end++] = '0';
+            return end - offset;
+        }
+        if (d <= -1 && d > -1e7 && d == Math.floor(d)) {
+            target[offset] = '-';
+            int end = formatLong((long) -d, target, offset + 1);
+            target[end++] = '.';
+            target[end++] = '0';
+            return end - offset;
+        }
+        String text = Double.toString(d);
+        for (int i = 0; i < text.length(); i++) {
+            target[offset + i] = (byte) text.charAt(i);
+        }
+        return text.length();
+    }
+
+
+    /**
+     * Writes the decimal digits of a number
+     * @return the offset after the last digit
+     */
+    private static int formatLong(long value, byte[] target, int offset) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                String text = Long.toString(value);
+                for (int i = 0; i < text.length(); i++) {
+                    target[offset++] = (byte) text.charAt(i);
+                }
+                return offset;
+            }
+            target[offset++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int end = offset + digits;
+        for (int i = end - 1; i >= offset; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+
+    /**
+     * Writes a date in the crime csv date pattern "MM/dd/yyyy HH:mm:ss a"
+     */
+    private void writeDate(DateTime date) throws IOException {
+        if (date != lastDate) {
+            int year = date.getYear();
+            if (year < 0 || year > 9999) {
+                byte[] text = date.toString(formatter).getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(text, 0, dateText, 0, text.length);
+                dateLength = text.length;
+            } else {
+                int hour = date.getHourOfDay();
+                int i = 0;
+                i = twoDigits(date.getMonthOfYear(), i);
+                dateText[i++] = '/';
+                i = twoDigits(date.getDayOfMonth(), i);
+                dateText[i++] = '/';
+                i = twoDigits(year / 100, i);
+                i = twoDigits(year % 100, i);
+                dateText[i++] = ' ';
+                i = twoDigits(hour, i);
+                dateText[i++] = ':';
+                i = twoDigits(date.getMinuteOfHour(), i);
+                dateText[i++] = ':';
+                i = twoDigits(date.getSecondOfMinute(), i);
+                dateText[i++] = ' ';
+                byte[] halfday = (hour < 12) ? amText : pmText;
+                System.arraycopy(halfday, 0, dateText, i, halfday.length);
+                dateLength = i + halfday.length;
+            }
+            lastDate = date;
+        }
+        writeBytes(dateText, dateLength);
+    }
+
+
+    private int twoDigits(int value, int offset) {
+        dateText[offset] = (byte) ('0' + value / 10);
+        dateText[offset + 1] = (byte) ('0' + value % 10);
+        return offset + 2;
+    }
+}
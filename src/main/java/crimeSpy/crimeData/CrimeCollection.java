@@ -1,7 +1,10 @@
 package crimeSpy.crimeData;
 
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import org.joda.time.DateTime;
 
 import java.sql.SQLException;
 import java.util.*;
@@ -11,6 +14,10 @@ import java.util.*;
  * It is intended that this class be used to display to store a set
  * or a filtered/searched set of CrimeRecord objects. Each crime collection is
  * intended to be managed by the CrimeCollectionManager.
+ * <p>A collection opened from a crime database with openPaged() does not read its crime records until they are
+ * needed. Until then getObservableCrList() shows the database a page at a time (see CrimeRecordPages), and
+ * anything else that uses the crime records reads all of them first. observableCrListProperty() changes when
+ * that happens, so a TableView showing the pages can show the crime records read instead.</p>
  */
 public class CrimeCollection {
 
@@ -20,6 +27,10 @@ public class CrimeCollection {
     private String name = "";
     private Integer id = null;
     private String directory = "";
+    private CrimeStringDictionary stringDictionary = new CrimeStringDictionary();
+    private CrimeRecordPages pages = null;
+    private final ReadOnlyObjectWrapper<ObservableList<CrimeRecord>> observableCrList =
+            new ReadOnlyObjectWrapper<ObservableList<CrimeRecord>>();
 
 
     /**
@@ -28,6 +39,7 @@ public class CrimeCollection {
     public CrimeCollection() {
         this.crimeList = new ArrayList<CrimeRecord>();
         this.allCaseIDs = new HashSet();
+        updateObservableCrList();
     }
 
     /**
@@ -39,6 +51,7 @@ public class CrimeCollection {
         this.directory = directory;
         this.crimeList = new ArrayList<CrimeRecord>();
         this.allCaseIDs = new HashSet();
+        updateObservableCrList();
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -58,6 +71,59 @@ public class CrimeCollection {
 
     public String getDirectory() { return directory; }
 
+    public CrimeStringDictionary getStringDictionary() { return stringDictionary; }
+
+    /**
+     * @return the pages of the collection's database if its crime records have not been read yet, otherwise null
+     */
+    public CrimeRecordPages getPages() { return pages; }
+
+
+    /**
+     * Shows the crime records of the collection's database a page at a time, without reading them all.
+     * They are read in full the first time the collection's crime records are used.
+     * @param pages the pages of the collection's database
+     */
+    public void openPaged(CrimeRecordPages pages) {
+        if (crimeList.isEmpty()) {
+            this.pages = pages;
+            updateObservableCrList();
+        }
+    }
+
+
+    /**
+     * Reads all the crime records of a collection opened with openPaged()
+     */
+    private void loadPaged() {
+        if (pages != null) {
+            pages.close();
+            pages = null;
+            CrimeCollectionManager.openKnownCrimeDB(this);
+            updateObservableCrList();
+        }
+    }
+
+
+    /**
+     * Refreshes the pages of a collection opened with openPaged(), to show changes made to its database
+     * @return true if the collection is paged
+     * @throws IllegalStateException the pages could not be refreshed
+     */
+    private boolean refreshPaged() {
+        CrimeRecordPages paged = pages;
+        if (paged == null) {
+            return false;
+        }
+        try {
+            paged.refresh();
+        } catch (Exception e) {
+            throw new IllegalStateException("The pages of " + directory + " could not be refreshed", e);
+        }
+        updateObservableCrList();
+        return true;
+    }
+
 
     /**
      * Finds a crime record object given a crime id
@@ -65,6 +131,7 @@ public class CrimeCollection {
      * @return the crime record object if found - else null
      */
     public CrimeRecord getCrimeRecord(String CrimeID) {
+        loadPaged();
         for (CrimeRecord cr : crimeList) {
             if (cr.getCaseID().equals(CrimeID)) {
                 return cr;
@@ -74,18 +141,67 @@ public class CrimeCollection {
     }
 
 
+    /**
+     * Finds the crime record after a crime record of the collection, reading it from the database while the
+     * collection is paged
+     * @param cr a crime record of the collection
+     * @return the next crime record, or null if there is none
+     */
+    public CrimeRecord getNextCrimeRecord(CrimeRecord cr) {
+        CrimeRecordPages paged = pages;
+        return (paged != null) ? paged.getNext(cr) : getCrimeRecord(cr.getNextCrimeID());
+    }
+
+
+    /**
+     * Finds the crime record before a crime record of the collection, reading it from the database while the
+     * collection is paged
+     * @param cr a crime record of the collection
+     * @return the previous crime record, or null if there is none
+     */
+    public CrimeRecord getPrevCrimeRecord(CrimeRecord cr) {
+        CrimeRecordPages paged = pages;
+        return (paged != null) ? paged.getPrevious(cr) : getCrimeRecord(cr.getPrevCrimeID());
+    }
+
+
     /**
      * Return an ArrayList of all CrimeRecords in the collection
      * @return Arraylist of all crimes in the collection
      */
-    public List<CrimeRecord> getCrimes() { return crimeList; }
+    public List<CrimeRecord> getCrimes() {
+        loadPaged();
+        return crimeList;
+    }
 
 
     /**
-     * Returns the CrimeCollection's observableList for the TableView
+     * Returns the CrimeCollection's observableList for the TableView, the pages of its database if its crime
+     * records have not been read yet
      * @return An ObservableArrayList
      */
-    public ObservableList getObservableCrList() { return FXCollections.observableList(this.crimeList); }
+    public ObservableList<CrimeRecord> getObservableCrList() {
+        CrimeRecordPages paged = pages;
+        return FXCollections.observableList((paged != null) ? paged : this.crimeList);
+    }
+
+
+    /**
+     * The observable list of the collection, replaced when the crime records behind it are, ie: when a paged
+     * collection is read in full or its pages are refreshed. May change on any thread.
+     * @return the property
+     */
+    public ReadOnlyObjectProperty<ObservableList<CrimeRecord>> observableCrListProperty() {
+        return observableCrList.getReadOnlyProperty();
+    }
+
+
+    /**
+     * Replaces the observable list of the collection with one of the crime records it now keeps
+     */
+    private void updateObservableCrList() {
+        observableCrList.set(getObservableCrList());
+    }
 
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -96,10 +212,10 @@ public class CrimeCollection {
     /**
      * This method adds a crime record to the CrimeCollection object iff
      * the CrimeRecord is not already in the collection.
-     * Then saves that crime record to the database
+     * Then queues that crime record to be saved to the database (see CrimeRecordWriteQueue)
      * @param cr a CrimeRecord to add to the CrimeCollection
      * @return 0 if success, 1 if fail unique case ID, 2 if sql exception on writing database,
-     * 3 if other exception on writing database
+     * 3 if other exception on writing database. Writing errors are only returned if the write queue is durable.
      */
     public Integer addCrimeRecordtoDB(CrimeRecord cr) {
         // verify that the caseId of the crime we are trying to add to the collection is unique
@@ -109,7 +225,7 @@ public class CrimeCollection {
         }
         // Crime is not in the collection so add and update record
         try {
-            SQLiteDBHandler.writeCrimeRecord(cr);
+            getWriteQueue().insert(cr);
         } catch (SQLException e) {
             return 2;
         } catch (Exception e) {
@@ -141,14 +257,100 @@ public class CrimeCollection {
 
 
     /**
-     * This method updates a current crime record in the database
+     * Appends crime records whose case ids are known to be unique in the collection (see
+     * CrimeCollectionManager.mergeCollections()) in one pass, without sorting them or saving them to the database.
+     * A collection that is still paged (see openPaged()) refreshes its pages instead, the crime records must then
+     * already be in its database.
+     * @param crimes the crime records to append
+     * @throws IllegalStateException the pages of a paged collection could not be refreshed
+     */
+    void appendCrimeRecords(List<CrimeRecord> crimes) {
+        if (refreshPaged()) {
+            return;
+        }
+        for (CrimeRecord crime : crimes) {
+            stringDictionary.intern(crime);
+            crimeList.add(crime);
+            allCaseIDs.add(crime.getCaseID());
+        }
+    }
+
+
+    /**
+     * Adds crime records that have already been saved to the collection's database (eg: by CSVFileFollower), in
+     * order of time. Crime records whose case ids are taken are skipped. Rather than sorting the whole collection,
+     * the new crime records are sorted and merged with the crime records from the time of the earliest of them
+     * on, which for records added to the end of a csv is none. A collection that is still paged (see openPaged())
+     * refreshes its pages instead, so it does not read all of its crime records.
+     * @param crimes the crime records to add
+     * @return the number of crime records added
+     * @throws IllegalStateException the pages of a paged collection could not be refreshed
+     */
+    public Integer insertSavedCrimeRecords(List<CrimeRecord> crimes) {
+        if (refreshPaged()) {
+            return 0;
+        }
+        List<CrimeRecord> added = new ArrayList<CrimeRecord>(crimes.size());
+        for (CrimeRecord crime : crimes) {
+            if (allCaseIDs.add(crime.getCaseID())) {
+                stringDictionary.intern(crime);
+                added.add(crime);
+            }
+        }
+        if (added.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(added, new TimeComparator());
+
+        // The first crime record later than the earliest new one, the new crime records go after any of the same time
+        DateTime earliest = added.get(0).getDate();
+        int low = 0;
+        int high = crimeList.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (crimeList.get(mid).getDate().compareTo(earliest) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        List<CrimeRecord> tail = crimeList.subList(low, crimeList.size());
+        List<CrimeRecord> later = new ArrayList<CrimeRecord>(tail);
+        tail.clear();
+        int i = 0;
+        int j = 0;
+        while (i < later.size() || j < added.size()) {
+            if (j == added.size() || (i < later.size()
+                    && later.get(i).getDate().compareTo(added.get(j).getDate()) <= 0)) {
+                crimeList.add(later.get(i++));
+            } else {
+                crimeList.add(added.get(j++));
+            }
+        }
+        linkCrimeRecords(Math.max(low - 1, 0));
+        return added.size();
+    }
+
+
+    /**
+     * @param caseId the case identification number of a CrimeRecord
+     * @return true if the collection has a crime record with the case id
+     */
+    Boolean containsCaseID(String caseId) {
+        return !uniqueCaseIdCheck(caseId);
+    }
+
+
+    /**
+     * This method queues a current crime record to be updated in the database (see CrimeRecordWriteQueue)
      * @param cr a CrimeRecord to update in the CrimeCollection
-     * @return 0 if success, 1 if sql exception on writing database, 3 if other exception on writing to database
+     * @return 0 if success, 1 if sql exception on writing database, 3 if other exception on writing to database.
+     * Writing errors are only returned if the write queue is durable.
      */
     public Integer updateCrimeRecord(CrimeRecord cr) {
         // verify that the caseId of the crime we are trying to add to the collection is unique
         try {
-            SQLiteDBHandler.editCrimeRecord(cr);
+            getWriteQueue().update(cr);
         } catch (SQLException e) {
             return 1;
         } catch (Exception e) {
@@ -160,13 +362,16 @@ public class CrimeCollection {
 
 
     /**
-     * This method removes a crime record from the CrimeCollection object  and database
+     * This method removes a crime record from the CrimeCollection object and queues it to be deleted from the
+     * database (see CrimeRecordWriteQueue)
      * @param cR The caseID number of the crime which to remove from the CrimeCollection [String]
-     * @return 0 if success, 1 if sql exception on deleting from database, 3 if other exception on deleting from database
+     * @return 0 if success, 1 if sql exception on deleting from database, 3 if other exception on deleting from
+     * database. Deleting errors are only returned if the write queue is durable.
      */
     public Integer removeCrimeRecord(CrimeRecord cR) {
+        loadPaged();
         try {
-            SQLiteDBHandler.deleteCrimeRecord(cR.getCaseID());
+            getWriteQueue().delete(cR.getCaseID());
         } catch (SQLException e) {
             return 1;
         } catch (Exception e) {
@@ -178,24 +383,35 @@ public class CrimeCollection {
     }
 
 
+    /**
+     * @return the write queue of the database crime records are saved to, the working collection's database
+     */
+    private CrimeRecordWriteQueue getWriteQueue() {
+        return CrimeRecordWriteQueue.forDatabase(CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
+    }
+
+
     /**
      * Checks if the caseId is already in the collection.
      * @param caseId the case identification number of a CrimeRecord
      * @return true if unique
      */
     private Boolean uniqueCaseIdCheck(String caseId) {
+        loadPaged();
         return !allCaseIDs.contains(caseId);
     }
 
 
     /**
      * Given an arraylist of CrimeRecords, this function adds them all to the Crime Collection if they have unique ID
-     * Then sorts them by time
+     * Then sorts them by time. The text fields of the added records are shared through the collection's
+     * string dictionary.
      * @param newCrimes An arraylist of crimerecords to add to the crime collection
      */
     public void populateCrimeRecords(List<CrimeRecord> newCrimes) {
         for (CrimeRecord crime : newCrimes) {
             if (uniqueCaseIdCheck(crime.getCaseID())) {
+                stringDictionary.intern(crime);
                 this.crimeList.add(crime);
                 this.allCaseIDs.add(crime.getCaseID());
             }
@@ -222,18 +438,28 @@ public class CrimeCollection {
      * @return  0 if everything is all good, 1 if the crimelist has a zero size.
      */
     public int sortCrimeRecordsByTime(){
+        loadPaged();
         if(crimeList.size() == 0) {
             return 1;
         }
         Collections.sort(crimeList, new TimeComparator());
-        Integer numCrimes = this.getCrimes().size();
-        CrimeRecord prevCrime = crimeList.get(0);
-        for (Integer i = 1; i < numCrimes; i++) {
+        linkCrimeRecords(0);
+        return 0;
+    }
+
+
+    /**
+     * Sets the nextCrimeID and prevCrimeID of each crime record from a position in crimeList on
+     * @param from the position of the first crime record to link to the next one
+     */
+    private void linkCrimeRecords(Integer from) {
+        Integer numCrimes = crimeList.size();
+        CrimeRecord prevCrime = crimeList.get(from);
+        for (Integer i = from + 1; i < numCrimes; i++) {
             prevCrime.setNextCrimeID(crimeList.get(i).getCaseID());
             crimeList.get(i).setPrevCrimeID(prevCrime.getCaseID());
             prevCrime = crimeList.get(i);
         }
-        return 0;
     }
 
 
@@ -1,5 +1,6 @@
 package crimeSpy.crimeData;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
@@ -7,7 +8,12 @@ import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
 import java.util.logging.*;
 import java.util.zip.DataFormatException;
 
@@ -54,6 +60,28 @@ public class CrimeCollectionManager {
     private static ArrayList<CrimeCollection> allCrimeCollections = new ArrayList<CrimeCollection>(0);
     public static ObservableList<String> observableList = FXCollections.observableArrayList();
     private static CrimeCollection filteredCollection = currWorkingCollection;
+    private static CrimeFilter activeFilter = null;
+    private static Integer importParallelism = Runtime.getRuntime().availableProcessors();
+    private static CSVFileFollower follower = null;
+
+    /**
+     * Runs tasks on the FX thread, as collections and the lists backing the main window must only be changed there.
+     * If the FX toolkit is not running (eg: a batch job) there is no window to update and tasks are run straight away.
+     */
+    private static final Executor FX_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            if (!Platform.isFxApplicationThread()) {
+                try {
+                    Platform.runLater(task);
+                    return;
+                } catch (IllegalStateException e) {
+                    // The FX toolkit is not running
+                }
+            }
+            task.run();
+        }
+    };
 
 
     /**
@@ -81,10 +109,11 @@ public class CrimeCollectionManager {
      * @param workingCollection The new working collection
      */
     public static void setCurrWorkingCollection(CrimeCollection workingCollection) {
+        switchDatabase(workingCollection);
         CrimeCollectionManager.currWorkingCollection = workingCollection;
         CrimeCollectionManager.filteredCollection = currWorkingCollection;
-        if (workingCollection.getCrimes().isEmpty()) {
-            openKnownCrimeDB(workingCollection);
+        if (workingCollection.getPages() == null && workingCollection.getCrimes().isEmpty()) {
+            openKnownCrimeDBPaged(workingCollection);
         }
     }
 
@@ -98,28 +127,59 @@ public class CrimeCollectionManager {
     public static void setCurrWorkingCollection(String workingCollection) {
         for (CrimeCollection cc : CrimeCollectionManager.allCrimeCollections) {
             if (cc.getName().equals(workingCollection)) {
+                switchDatabase(cc);
                 CrimeCollectionManager.currWorkingCollection = cc;
                 CrimeCollectionManager.filteredCollection = currWorkingCollection;
-                if (cc.getCrimes().isEmpty()) {
-                    openKnownCrimeDB(cc);
+                if (cc.getPages() == null && cc.getCrimes().isEmpty()) {
+                    openKnownCrimeDBPaged(cc);
                 }
             }
         }
     }
 
 
+    /**
+     * Moves the kept database connections (see SQLiteConnectionManager) from the current working collection
+     * to the one about to replace it, once its queued changes are written
+     * @param next the new working collection
+     */
+    private static void switchDatabase(CrimeCollection next) {
+        String previous = (currWorkingCollection == null) ? null : currWorkingCollection.getDirectory();
+        if (previous != null) {
+            flushWrites(previous);
+        }
+        SQLiteConnectionManager.switchDatabase(previous, (next == null) ? null : next.getDirectory());
+    }
+
+
     /**
      * Adds a crime collection to the list of all crime collections and sets it as current
      * @param cc The new crime collection
      */
     public static void addCrimeCollection(CrimeCollection cc) {
         CrimeCollectionManager.allCrimeCollections.add(cc);
-        CrimeCollectionManager.observableList.add(cc.getName());
+        addCollectionName(cc.getName());
         CrimeCollectionManager.currWorkingCollection = cc;
         CrimeCollectionManager.filteredCollection = cc;
     }
 
 
+    /**
+     * Adds a collection name to the observable list. The list backs the collection selector of the main window,
+     * so when a collection is added from another thread (eg: a background import) the change is passed to the
+     * FX thread.
+     * @param name the name of the collection
+     */
+    private static void addCollectionName(final String name) {
+        FX_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                CrimeCollectionManager.observableList.add(name);
+            }
+        });
+    }
+
+
     /**
      * @return the number of crime collection known to the system
      */
@@ -145,7 +205,82 @@ public class CrimeCollectionManager {
      * @param filteredCollection new filtered collection to be set to
      */
     public static void setFilteredCollection(CrimeCollection filteredCollection) {
+        setFilteredCollection(filteredCollection, null);
+    }
+
+
+    /**
+     * Sets the current filtered collection and the filter it was made with
+     * @param filteredCollection new filtered collection to be set to
+     * @param filter the options of the filter, null if not known
+     */
+    public static void setFilteredCollection(CrimeCollection filteredCollection, CrimeFilter filter) {
         CrimeCollectionManager.filteredCollection = filteredCollection;
+        CrimeCollectionManager.activeFilter = filter;
+    }
+
+
+    /**
+     * @return the filter the current filtered collection was made with, null if it is not filtered or the filter is
+     * not known
+     */
+    public static CrimeFilter getActiveFilter() {
+        return (filteredCollection == currWorkingCollection) ? null : activeFilter;
+    }
+
+
+    /**
+     * Counts the crime records of the current working collection with filters applied to it, by a grouping.
+     * The crime records are counted in its crime database, along with the active filter, so they do not need to be
+     * loaded (see SQLiteDBHandler.countCrimeRecordsBy()). A collection without a database, or filtered without a
+     * known filter, is counted in memory.
+     * @param grouping the grouping to count by, eg: CrimeRecordCounts.BY_ARREST
+     * @return the number of crime records with each value of the grouping
+     */
+    public static CrimeRecordCounts countCurrWorkingCollection(Integer grouping) {
+        CrimeCollection cc = getCurrWorkingCollection();
+        if (cc == null) {
+            return CrimeRecordCounts.count(new ArrayList<CrimeRecord>(), grouping);
+        }
+        CrimeFilter filter = getActiveFilter();
+        String location = currWorkingCollection.getDirectory();
+        if (location != null && new File(location).isFile() && (cc == currWorkingCollection || filter != null)) {
+            flushWrites(location);
+            try {
+                return SQLiteDBHandler.countCrimeRecordsBy(location, grouping, filter);
+            } catch (Exception e) {
+                LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+            }
+        }
+        return CrimeRecordCounts.count(cc.getCrimes(), grouping);
+    }
+
+
+    /**
+     * Picks crime records at random from the current working collection with filters applied to it. Like
+     * countCurrWorkingCollection() they are picked in its crime database, so the collection does not need to be
+     * loaded, unless it has no database or is filtered without a known filter.
+     * @param count the most crime records to pick
+     * @return the crime records, in no particular order
+     */
+    public static List<CrimeRecord> sampleCurrWorkingCollection(Integer count) {
+        CrimeCollection cc = getCurrWorkingCollection();
+        if (cc == null) {
+            return new ArrayList<CrimeRecord>();
+        }
+        CrimeFilter filter = getActiveFilter();
+        String location = currWorkingCollection.getDirectory();
+        if (location != null && new File(location).isFile() && (cc == currWorkingCollection || filter != null)) {
+            flushWrites(location);
+            try {
+                return SQLiteDBHandler.readCrimeRecordSample(location, filter, count);
+            } catch (Exception e) {
+                LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+            }
+        }
+        List<CrimeRecord> crimes = new ArrayList<CrimeRecord>(cc.getCrimes());
+        Collections.shuffle(crimes);
+        return crimes.subList(0, Math.min(count, crimes.size()));
     }
 
 
@@ -157,6 +292,23 @@ public class CrimeCollectionManager {
         CrimeCollectionManager.allCrimeCollections = allCrimeCollections;
     }
 
+    /**
+     * Sets the number of threads used to parse large csv files on import. 1 parses on the calling thread only.
+     * @param parallelism the number of parsing threads
+     */
+    public static void setImportParallelism(Integer parallelism) {
+        CrimeCollectionManager.importParallelism = parallelism;
+    }
+
+
+    /**
+     * @return the number of threads used to parse large csv files on import, defaults to the number of processors
+     */
+    public static Integer getImportParallelism() {
+        return CrimeCollectionManager.importParallelism;
+    }
+
+
     /**
      * Adds the contents of the second CrimeCollection to the first CrimeCollection. The
      * first CrimeCollection will have already been loaded into the system. The second list is deleted
@@ -166,44 +318,91 @@ public class CrimeCollectionManager {
      * @return The first CrimeCollection with the contents of the second one that were successfully added to it.
      */
     public static CrimeCollection mergeCollections(CrimeCollection cC1, CrimeCollection cC2) {
-        Integer index = 0;
-        Integer arraySize = cC2.getCrimes().size();
-
-        while (index < arraySize) {
-            // Check for uniqueness of CrimeID's by trying to add it
-            Integer res = cC1.addCrimeRecordtoDB(cC2.getCrimes().get(index));
-            if (res == 0) {
-                index++;
-            } else if (res == 1) {
-                // Non unique crimeID. If CrimeID is 19 characters long drop it as the database can't store it.
-                if (cC2.getCrimes().get(index).getCaseID().length() >= 19) {
-                    index++;
-
-                // Else add a random letter/number to the CrimeID of the CrimeRecord to be appended and try add it again.
-                } else {
-                    String newID = cC2.getCrimes().get(index).getCaseID() + getRandomChar();
-                    cC2.getCrimes().get(index).setCaseID(newID);
+        return mergeCollections(cC1, cC2, null);
+    }
+
+
+    /**
+     * Adds the contents of the second CrimeCollection to the first CrimeCollection as one set, counting the records
+     * written. A case id already in the first collection (or earlier in the second) is made unique by appending
+     * characters of SQLiteDBHandler.CASE_ID_SUFFIXES to it. If the first collection has a database the case ids are
+     * made unique and the crime records merged in SQLite, in one transaction on the calling thread (see
+     * SQLiteDBHandler.mergeCrimeRecordsRenaming()), so the first collection is not read in full. Otherwise they are
+     * made unique in memory, see uniqueCaseID(). The crime records are then appended to the first collection in one
+     * pass on the FX thread (see FX_EXECUTOR), as it may back the main window.
+     * @param cC1 CrimeCollection 1 to be merged
+     * @param cC2 CrimeCollection 2 to be merged. Will be altered
+     * @param progress counts the records added to the first collection, null if not needed
+     * @return The first CrimeCollection with the contents of the second one that were successfully added to it.
+     * @throws IllegalStateException the crime records could not be written to the first collection's database,
+     * neither the collection nor the database were changed
+     */
+    public static CrimeCollection mergeCollections(CrimeCollection cC1, CrimeCollection cC2, ImportProgress progress) {
+        List<CrimeRecord> merged;
+        String location = cC1.getDirectory();
+        if (location != null && !location.isEmpty() && !cC2.getCrimes().isEmpty()) {
+            flushWrites(location);
+            try {
+                merged = SQLiteDBHandler.mergeCrimeRecordsRenaming(location, cC2.getCrimes());
+            } catch (SQLException e) {
+                LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+                throw new IllegalStateException("The crime records could not be merged into " + location, e);
+            }
+        } else {
+            Set<String> mergedIDs = new HashSet<String>();
+            merged = new ArrayList<CrimeRecord>(cC2.getCrimes().size());
+            for (CrimeRecord crime : cC2.getCrimes()) {
+                String caseID = uniqueCaseID(crime.getCaseID(), cC1, mergedIDs);
+                if (caseID == null) {
+                    LOGGER.warning(crime.getCaseID() + " is a duplicate crime record too long to be renamed, " +
+                            "it was not merged");
+                    continue;
                 }
-            } else {
-                String err;
-                err = "Exception encountered while attempting to add crime record to a new crime collection";
-                LOGGER.warning(err);
+                crime.setCaseID(caseID);
+                mergedIDs.add(caseID);
+                merged.add(crime);
             }
         }
+        final CrimeCollection target = cC1;
+        final List<CrimeRecord> added = merged;
+        FX_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                target.appendCrimeRecords(added);
+            }
+        });
+        if (progress != null) {
+            progress.recordWritten(merged.size());
+        }
         cC2 = null; // Dispose of list
         return cC1;
     }
 
 
     /**
-     * Generates a random number or character to put on the end of a non-unique crimeID
-     * @return Random number or character
+     * Finds a case id for a crime record being merged into a collection without a database. A case id that is taken
+     * has the first character of SQLiteDBHandler.CASE_ID_SUFFIXES that makes it unique appended to it. If every one
+     * of them is taken the first is appended and the search carries on from there.
+     * @param caseID the case id of the crime record
+     * @param cc the collection being merged into
+     * @param mergedIDs the case ids given to the crime records merged before this one
+     * @return the case id to use, or null if it would be longer than the database can store
      */
-    public static String getRandomChar() {
-        Random r = new Random();
-        String alphabet = "1234567890ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-        char randomChar = alphabet.charAt(r.nextInt(36));
-        return Character.toString(randomChar);
+    private static String uniqueCaseID(String caseID, CrimeCollection cc, Set<String> mergedIDs) {
+        String base = caseID;
+        while (cc.containsCaseID(base) || mergedIDs.contains(base)) {
+            if (base.length() >= SQLiteDBHandler.MAX_MERGED_CASE_ID_LENGTH) {
+                return null;
+            }
+            for (int i = 0; i < SQLiteDBHandler.CASE_ID_SUFFIXES.length(); i++) {
+                String candidate = base + SQLiteDBHandler.CASE_ID_SUFFIXES.charAt(i);
+                if (!cc.containsCaseID(candidate) && !mergedIDs.contains(candidate)) {
+                    return candidate;
+                }
+            }
+            base = base + SQLiteDBHandler.CASE_ID_SUFFIXES.charAt(0);
+        }
+        return base;
     }
 
 
@@ -516,11 +715,14 @@ public class CrimeCollectionManager {
 
     /**
      * Used in the open file menu for a known db file, populates a given crime collection with crime records from open
+     * The database is upgraded first if it was made by an older version of crimeSpy
      * @param cc Crime collection to populate with open crime records
      * @return 0 for success, 1 for read sql error, 2 for other read error
      */
     public static Integer openKnownCrimeDB(CrimeCollection cc) {
+        flushWrites(cc.getDirectory());
         try {
+            SQLiteDBHandler.upgradeCrimedb(cc.getDirectory());
             cc.populateCrimeRecords(SQLiteDBHandler.readCrimeRecords(cc.getDirectory()));
         } catch (SQLException e) {
             LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
@@ -534,6 +736,40 @@ public class CrimeCollectionManager {
     }
 
 
+    /**
+     * Opens a known db file without reading its crime records, the collection shows them a page at a time until
+     * they are used (see CrimeCollection.openPaged()). Falls back to reading every crime record if the database
+     * can't be paged.
+     * @param cc Crime collection to open
+     * @return 0 for success, 1 for read sql error, 2 for other read error
+     */
+    public static Integer openKnownCrimeDBPaged(CrimeCollection cc) {
+        flushWrites(cc.getDirectory());
+        try {
+            SQLiteDBHandler.upgradeCrimedb(cc.getDirectory());
+            cc.openPaged(new CrimeRecordPages(cc.getDirectory()));
+        } catch (Exception e) {
+            LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+            return openKnownCrimeDB(cc);
+        }
+        return 0;
+    }
+
+
+    /**
+     * Writes the changes to a crime database still waiting in its write queue (see CrimeRecordWriteQueue), so that
+     * they are read back. Failures are logged, the changes that failed are lost.
+     * @param location the location of the crime database
+     */
+    private static void flushWrites(String location) {
+        try {
+            CrimeRecordWriteQueue.forDatabase(location).flush();
+        } catch (SQLException e) {
+            LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+        }
+    }
+
+
     /**
      * Used in the open file menu for a unknown db file, creates a crime collection with crime records from open
      * @param file a file that will be opened and read from
@@ -545,6 +781,7 @@ public class CrimeCollectionManager {
         CrimeCollectionManager.currWorkingCollection = newCC;
 
         try {
+            SQLiteDBHandler.upgradeCrimedb(file.getAbsolutePath());
             newCC.populateCrimeRecords(SQLiteDBHandler.readCrimeRecords(file.getAbsolutePath()));
         } catch (SQLException e) {
             LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
@@ -572,6 +809,7 @@ public class CrimeCollectionManager {
 
     /**
      * Imports a csv to a temp crime collection and appends it to current collection
+     * The csv may be gzip compressed or inside a zip archive
      * @param file the csv file to import from
      * @return 0  is success, 3 is a csv data format exception, 4 if exception on csv read, 8 if merging failed
      * <ul>
@@ -579,10 +817,36 @@ public class CrimeCollectionManager {
      * <ul/>
      */
     public static Integer importNewCrimeDB_Append(File file) {
+        return importNewCrimeDB_Append(file, null);
+    }
+
+
+    /**
+     * Imports a csv to a temp crime collection and appends it to current collection, reporting progress as it goes.
+     * The csv is read and merged into the collection's database on the calling thread, the collection itself is
+     * changed on the FX thread (see mergeCollections()).
+     * The import can be cancelled through the progress while the csv is being read, the current collection is
+     * left unchanged
+     * @param file the csv file to import from
+     * @param progress the progress of the import, null if not needed
+     * @return 0  is success, 3 is a csv data format exception, 4 if exception on csv read, 8 if merging failed,
+     * 10 if the import was cancelled
+     */
+    public static Integer importNewCrimeDB_Append(File file, ImportProgress progress) {
         // Retrieve data from CSV
         CrimeCollection mergeCC = new CrimeCollection();
+        final ArrayList<CrimeRecord> crimes = new ArrayList<CrimeRecord>();
         try {
-            mergeCC.populateCrimeRecords(CSVFileHandler.readCrimeRecords(file.getAbsolutePath()));
+            CSVFileHandler.readCrimeRecords(file.getAbsolutePath(), new CrimeRecordSink() {
+                @Override
+                public void accept(CrimeRecord crime) {
+                    crimes.add(crime);
+                }
+            }, importParallelism, null, progress);
+            mergeCC.populateCrimeRecords(crimes);
+        } catch (CancellationException e) {
+            LOGGER.info("Import of " + file.getName() + " cancelled");
+            return 10;
         } catch (DataFormatException e) {
             LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
             return 3;
@@ -591,8 +855,12 @@ public class CrimeCollectionManager {
             return 4;
         }
 
+        if (progress != null) {
+            progress.finish();
+        }
+
         try {
-            mergeCollections(currWorkingCollection, mergeCC);
+            mergeCollections(currWorkingCollection, mergeCC, progress);
         } catch (Exception e) {
             LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
             return 9;
@@ -606,8 +874,13 @@ public class CrimeCollectionManager {
 
     /**
      * Imports a csv to a new crime collection and sets it as current collection
-     * First creates a crime database file, then populates it with read csv records, then writes those records to the database,
-     * then writes the collection info to the database and finally adds it to the collection list
+     * First creates a crime database file, then streams the csv records into the collection and the database in
+     * batches, then writes the collection info to the database and finally adds it to the collection list
+     * The csv may be gzip compressed or inside a zip archive, the database is named after the csv without its extensions
+     * (eg: crimes.csv.gz creates crimes.db)
+     * The progress of the import is saved to the database with every batch (see ImportCheckpoint). If an earlier
+     * import of the same unchanged csv was interrupted, the records it committed are read back from the database and
+     * the import carries on from the record after them.
      * @param file the csv file to import and create a database file from
      * @return 0 if success,
      * 1 for SQL error when creating new crime record database, 2 for other error when creating new crime record database,
@@ -616,9 +889,23 @@ public class CrimeCollectionManager {
      * 7 for write collection sql error, 8 for other collection write error,
      */
     public static Integer importNewCrimeDB_Replace(File file) {
-        String name = file.getName().replaceFirst(".csv", "");
-        CrimeCollection newCC = new CrimeCollection(name, getLength(), file.getAbsolutePath().substring(0, file.getAbsolutePath().length() - 3) + "db");
-        CrimeCollectionManager.currWorkingCollection = newCC;
+        return importNewCrimeDB_Replace(file, null);
+    }
+
+
+    /**
+     * Imports a csv to a new crime collection and sets it as current collection, reporting progress as it goes
+     * The import can be cancelled through the progress. The records already written are kept along with the
+     * import checkpoint, so importing the same csv again carries on from where it was cancelled.
+     * The csv is read and written on the calling thread, the new collection is set as current on the FX thread.
+     * @param file the csv file to import and create a database file from
+     * @param progress the progress of the import, null if not needed
+     * @return the same codes as importNewCrimeDB_Replace(file), or 10 if the import was cancelled
+     */
+    public static Integer importNewCrimeDB_Replace(File file, ImportProgress progress) {
+        String name = CSVFileHandler.stripCSVExtension(file.getName());
+        String directory = new File(file.getAbsoluteFile().getParentFile(), name + ".db").getAbsolutePath();
+        final CrimeCollection newCC = new CrimeCollection(name, getLength(), directory);
 
         try {
             SQLiteDBHandler.createNewCrimedb(newCC.getDirectory());
@@ -630,18 +917,28 @@ public class CrimeCollectionManager {
             return 2;
         }
 
+        ImportCheckpoint checkpoint;
         try {
-            newCC.populateCrimeRecords(CSVFileHandler.readCrimeRecords(file.getAbsolutePath()));
-        } catch (DataFormatException e) {
+            checkpoint = SQLiteDBHandler.readImportCheckpoint(newCC.getDirectory(), file);
+            if (checkpoint != null && checkpoint.canResume(file)) {
+                LOGGER.info("Resuming import of " + file.getName() + " after record " + checkpoint.getRowNumber());
+                newCC.populateCrimeRecords(SQLiteDBHandler.readCrimeRecords(newCC.getDirectory()));
+            } else {
+                checkpoint = new ImportCheckpoint(file);
+            }
+        } catch (SQLException e) {
             LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
-            return 3;
+            return 1;
         } catch (Exception e) {
             LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
-            return 4;
+            return 2;
         }
 
+        // Stream the csv straight into the collection and the database so the records are never held twice
+        final CrimeRecordBatchWriter writer;
         try {
-            SQLiteDBHandler.writeCrimeRecords(newCC, newCC.getDirectory());
+            writer = SQLiteDBHandler.openCrimeRecordWriter(newCC.getDirectory(), CrimeRecordBatchWriter.DEFAULT_BATCH_SIZE,
+                    true);
         } catch (SQLException e) {
             LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
             return 5;
@@ -649,6 +946,36 @@ public class CrimeCollectionManager {
             LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
             return 6;
         }
+        writer.setCheckpoint(checkpoint);
+        writer.setProgress(progress);
+
+        try {
+            CSVFileHandler.readCrimeRecords(file.getAbsolutePath(), newImportSink(newCC, writer), importParallelism,
+                    checkpoint, progress);
+            checkpoint.setComplete(true);
+            writer.close();
+            if (progress != null) {
+                progress.finish();
+            }
+        } catch (CancellationException e) {
+            LOGGER.info("Import of " + file.getName() + " cancelled after record " + checkpoint.getRowNumber());
+            closeQuietly(writer);
+            return 10;
+        } catch (DataFormatException e) {
+            LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+            closeQuietly(writer);
+            return 3;
+        } catch (SQLException e) {
+            LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+            closeQuietly(writer);
+            return 5;
+        } catch (Exception e) {
+            LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+            closeQuietly(writer);
+            return 4;
+        }
+        newCC.sortCrimeRecordsByTime();
+        LOGGER.info("String dictionary for " + name + ":\n" + newCC.getStringDictionary().getReport());
 
         try {
             SQLiteDBHandler.writeNewCrimeCollection(newCC);
@@ -660,14 +987,108 @@ public class CrimeCollectionManager {
             return 8;
         }
 
-        addCrimeCollection(newCC);
+        // Only the FX thread changes the working collection, the import may be running on another
+        FX_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                addCrimeCollection(newCC);
+            }
+        });
 
         return 0;
     }
 
 
+    /**
+     * Follows a csv that is still being appended to, adding each new record to the current collection and its database
+     * as it is written to the csv (see CSVFileFollower). The records already in the csv are read straight away,
+     * or if the csv has been imported or followed into the collection before, the records added since.
+     * Any csv that was already being followed is no longer followed.
+     * @param file the csv to follow
+     * @return 0 if success, 1 if there is no current collection, 3 if the csv was in the wrong format or compressed,
+     * 4 if the csv could not be read or watched, 5 for write records sql error
+     */
+    public static Integer followCrimeCSV(File file) {
+        stopFollowingCrimeCSV();
+        if (currWorkingCollection == null) {
+            return 1;
+        }
+        CSVFileFollower newFollower = new CSVFileFollower(file, currWorkingCollection, FX_EXECUTOR);
+        try {
+            newFollower.poll();
+            newFollower.start();
+        } catch (DataFormatException e) {
+            LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+            return 3;
+        } catch (SQLException e) {
+            LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+            return 5;
+        } catch (Exception e) {
+            LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+            return 4;
+        }
+        follower = newFollower;
+        LOGGER.info("Following " + file.getName());
+        return 0;
+    }
+
+
+    /**
+     * Stops following the csv passed to followCrimeCSV, if there is one
+     */
+    public static void stopFollowingCrimeCSV() {
+        if (follower != null) {
+            follower.stop();
+            follower = null;
+        }
+    }
+
+
+    /**
+     * @return the follower of the csv passed to followCrimeCSV, null if no csv is being followed
+     */
+    public static CSVFileFollower getFollower() {
+        return follower;
+    }
+
+
+    /**
+     * Creates the sink used when importing a csv into a new crime collection.
+     * Each record is added to the collection and, if its caseId is unique, passed on to the database writer.
+     * The text fields of added records are shared through the collection's string dictionary.
+     * @param cc the crime collection being imported into
+     * @param writer the batch writer for the crime collection's database
+     * @return a sink for CSVFileHandler.readCrimeRecords()
+     */
+    static CrimeRecordSink newImportSink(final CrimeCollection cc, final CrimeRecordBatchWriter writer) {
+        return new CrimeRecordSink() {
+            @Override
+            public void accept(CrimeRecord crime) throws Exception {
+                if (cc.addCrimeRecord(crime) == 0) {
+                    cc.getStringDictionary().intern(crime);
+                    writer.accept(crime);
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Closes a batch writer after a failed import, logging rather than throwing any further errors
+     * @param writer the writer to close
+     */
+    private static void closeQuietly(CrimeRecordBatchWriter writer) {
+        try {
+            writer.close();
+        } catch (Exception e) {
+            LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+        }
+    }
+
+
     /**
      * Exports a the current working collection (with filters applied) to a csv file at a given location
+     * The csv is gzip compressed if the save location ends in .gz
      * @param saveLocation the save location and name of the file
      * @return 0 if success, 1 for error when writing crime records to csv
      */
@@ -683,13 +1104,38 @@ public class CrimeCollectionManager {
 
 
     /**
-     * Saves the current crime collection to a database file in a user specified location
+     * Saves the current crime collection to a database file in a user specified location.
+     * A collection with a crime database is saved from it: in full with a page by page copy of the database
+     * (see SQLiteDBHandler.copyCrimedb()), which replaces anything at the save location, or filtered with the active
+     * filter in SQL (see SQLiteDBHandler.writeFilteredCrimeRecords()). Otherwise its crime records are written.
      * @param filtered if the save collection should be filtered or not
      * @param saveLocation the location on disk to save to
      * @return 0 if success, 1 if SQL exception on database creation, 2 if other exception on database creation,
      * 3 if SQL exception on crime record writing, 4 if other exception on crime record writing,
      */
     public static Integer saveCrimeDB(Boolean filtered, String saveLocation) {
+        CrimeCollection full = getFullWorkingCollection();
+        String location = (full == null) ? null : full.getDirectory();
+        CrimeFilter filter = getActiveFilter();
+        boolean fromDatabase = location != null && new File(location).isFile() &&
+                !new File(location).getAbsoluteFile().equals(new File(saveLocation).getAbsoluteFile());
+        if (fromDatabase) {
+            flushWrites(location);
+        }
+
+        if (fromDatabase && (!filtered || getCurrWorkingCollection() == full)) {
+            try {
+                SQLiteDBHandler.copyCrimedb(location, saveLocation);
+            } catch (SQLException e) {
+                LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+                return 3;
+            } catch (Exception e) {
+                LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+                return 4;
+            }
+            return 0;
+        }
+
         try {
             SQLiteDBHandler.createNewCrimedb(saveLocation);
         } catch (SQLException e) {
@@ -702,7 +1148,11 @@ public class CrimeCollectionManager {
 
         if (filtered) {
             try {
-                SQLiteDBHandler.writeCrimeRecords(getCurrWorkingCollection(), saveLocation);
+                if (fromDatabase && filter != null) {
+                    SQLiteDBHandler.writeFilteredCrimeRecords(location, filter, saveLocation);
+                } else {
+                    SQLiteDBHandler.writeCrimeRecords(getCurrWorkingCollection(), saveLocation);
+                }
             } catch (SQLException e) {
                 LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
                 return 3;
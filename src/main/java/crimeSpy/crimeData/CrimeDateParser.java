@@ -0,0 +1,202 @@
+package crimeSpy.crimeData;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+
+/**
+ * A parser for the dates found in crime csv files, eg: "06/27/2014 07:31:00 PM".
+ * <p>The date is read straight from the character offsets of the field, so no formatter, String or
+ * exception is created for a well formed date. Many crimes share the same (often rounded) time, so
+ * recently parsed timestamps are kept in a small fixed size cache and their DateTime is reused.</p>
+ * <u>Notes</u>
+ * <ul>
+ *     <li>The result is exactly what DateTimeFormat.forPattern("MM/dd/yyyy HH:mm:ss a") gives, which
+ *     is the pattern crimeSpy has always read and written dates with. As the hour is read as an hour of
+ *     day the AM/PM marker has to be present but does not change the hour.</li>
+ *     <li>Dates that don't follow the layout (eg: a different number of digits) are handed to the Joda
+ *     formatter, so nothing that used to be accepted is rejected.</li>
+ *     <li>A date that can't be read is counted (see getMalformedCount()) and replaced with the
+ *     placeholder date 01/01/0001 01:00:00.</li>
+ *     <li>A parser is not thread safe, use one per thread.</li>
+ * </ul>
+ * <u>Example Use:</u><br>
+ *    CrimeDateParser parser = new CrimeDateParser();<br>
+ *    DateTime date = parser.parse("06/27/2014 07:31:00 PM");<br>
+ */
+public class CrimeDateParser {
+
+
+    /**
+     * The pattern crime csv dates are written in
+     */
+    public static final String DATE_PATTERN = "MM/dd/yyyy HH:mm:ss a";
+
+    /**
+     * The number of timestamps kept in the cache, must be a power of two
+     */
+    private static final int CACHE_SIZE = 4096;
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormat.forPattern(DATE_PATTERN);
+
+    private final DateTime placeholder = placeholderDate();
+    private final long[] cacheKeys = new long[CACHE_SIZE];
+    private final DateTime[] cacheValues = new DateTime[CACHE_SIZE];
+    private final CSVTokenizer stringTokenizer = new CSVTokenizer();
+    private int position;
+    private Integer malformedCount = 0;
+
+
+    /**
+     * The date given to a crime whose date can't be read, 01/01/0001 01:00:00 in the default time zone
+     * @return the placeholder date
+     */
+    public static DateTime placeholderDate() {
+        return new DateTime(1, 1, 1, 1, 0, 0, 0);
+    }
+
+
+    /**
+     * Parse a crime date
+     * @param date the date text, eg: "06/27/2014 07:31:00 PM"
+     * @return the date, or the placeholder date if it could not be read
+     */
+    public DateTime parse(String date) {
+        if (date == null) {
+            malformedCount++;
+            return placeholder;
+        }
+        stringTokenizer.tokenize(date);
+        if (stringTokenizer.getFieldCount() != 1) {
+            return parseWithFormatter(date);
+        }
+        return parse(stringTokenizer, 0);
+    }
+
+
+    /**
+     * Parse the date in a field of a tokenized csv line
+     * @param fields a tokenizer holding a line of the csv
+     * @param index the index of the date field
+     * @return the date, or the placeholder date if it could not be read
+     */
+    DateTime parse(CSVTokenizer fields, int index) {
+        fields.checkIndex(index);
+        int end = fields.ends[index];
+        position = fields.starts[index];
+
+        // MM/dd/yyyy HH:mm:ss a
+        int month = readNumber(fields, end, 2, '/');
+        int day = readNumber(fields, end, 2, '/');
+        int year = readNumber(fields, end, 4, ' ');
+        int hour = readNumber(fields, end, 2, ':');
+        int minute = readNumber(fields, end, 2, ':');
+        int second = readNumber(fields, end, 2, ' ');
+        if (month < 0 || day < 0 || year < 0 || hour < 0 || minute < 0 || second < 0
+                || end - position != 2 || !isHalfdayMarker(fields.charAt(position), fields.charAt(position + 1))) {
+            return parseWithFormatter(fields.getField(index));
+        }
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            malformedCount++;
+            return placeholder;
+        }
+
+        long key = (((((long) year * 16 + month) * 32 + day) * 32 + hour) * 64 + minute) * 64 + second + 1;
+        int slot = (int) ((key ^ (key >>> 17)) & (CACHE_SIZE - 1));
+        if (cacheKeys[slot] == key) {
+            return cacheValues[slot];
+        }
+        DateTime result;
+        try {
+            result = new DateTime(year, month, day, hour, minute, second, 0);
+        } catch (IllegalArgumentException e) {
+            // The time does not exist in the local time zone (eg: skipped by daylight savings)
+            malformedCount++;
+            return placeholder;
+        }
+        cacheKeys[slot] = key;
+        cacheValues[slot] = result;
+        return result;
+    }
+
+
+    /**
+     * Read an unsigned number of 1 to maxDigits digits at the current position, followed by a separator.
+     * The position is moved past the separator.
+     * @return the number, or -1 if there is no number and separator at the current position. Once a read
+     * has failed every later read fails as well.
+     */
+    private int readNumber(CSVTokenizer fields, int end, int maxDigits, char separator) {
+        if (position < 0) {
+            return -1;
+        }
+        int from = position;
+        int value = 0;
+        while (position < end && position - from < maxDigits) {
+            char ch = fields.charAt(position);
+            if (ch < '0' || ch > '9') {
+                break;
+            }
+            value = value * 10 + (ch - '0');
+            position++;
+        }
+        if (position == from || position >= end || fields.charAt(position) != separator) {
+            position = -1;
+            return -1;
+        }
+        position++;
+        return value;
+    }
+
+
+    private static boolean isHalfdayMarker(char first, char second) {
+        return (first == 'A' || first == 'a' || first == 'P' || first == 'p') && (second == 'M' || second == 'm');
+    }
+
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+
+    /**
+     * Parse a date that does not follow the usual layout with the Joda formatter
+     */
+    private DateTime parseWithFormatter(String date) {
+        try {
+            return FORMATTER.parseDateTime(date);
+        } catch (IllegalArgumentException e) {
+            malformedCount++;
+            return placeholder;
+        }
+    }
+
+
+    /**
+     * @return the placeholder date, given for dates that could not be read
+     */
+    DateTime getPlaceholder() {
+        return placeholder;
+    }
+
+
+    /**
+     * @return the number of dates that could not be read and were replaced with the placeholder date
+     */
+    public Integer getMalformedCount() {
+        return malformedCount;
+    }
+}
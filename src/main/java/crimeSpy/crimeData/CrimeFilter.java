@@ -0,0 +1,135 @@
+package crimeSpy.crimeData;
+
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+
+
+/**
+ * The options of a filter applied to the current working collection (see FilterCrimeCollection).
+ * <p>The filtered collection only holds the crime records that matched, so the options are kept as well for
+ * counting the crime records that match in the crime database (see SQLiteDBHandler.countCrimeRecordsBy()).</p>
+ * <u>Notes</u>
+ * <ul>
+ *     <li>An option that is null, empty or negative does not filter.</li>
+ *     <li>Strings are matched ignoring case. The location, block and secondary description match if they contain
+ *     the option, the others must be equal to it.</li>
+ * </ul>
+ */
+public class CrimeFilter {
+
+
+    private final Boolean domestic;
+    private final Boolean arrest;
+    private final ArrayList<String> crimeTypes;
+    private final String location;
+    private final int beat;
+    private final int ward;
+    private final String block;
+    private final String primary;
+    private final String secondary;
+    private final String IUCR;
+    private final String FBICD;
+    private final DateTime to;
+    private final DateTime from;
+
+
+    /**
+     * Constructor for the options of a filter, in the same order as FilterCrimeCollection.filter()
+     * @param domestic Domestic flag
+     * @param arrest Arrest flag
+     * @param crimeTypes an ArrayList of accepted primary descriptions
+     * @param location accepted location description
+     * @param beat beat location number
+     * @param ward Ward location number
+     * @param block block address
+     * @param primary the primary description
+     * @param secondary the secondary description
+     * @param IUCR IUCR code
+     * @param FBICD FBICD code
+     * @param to the DateTime value that the crime records have to be <= than
+     * @param from the DateTime value that the crime records have to be >= than
+     */
+    public CrimeFilter(Boolean domestic, Boolean arrest, ArrayList<String> crimeTypes, String location, int beat,
+                       int ward, String block, String primary, String secondary, String IUCR, String FBICD,
+                       DateTime to, DateTime from) {
+        this.domestic = domestic;
+        this.arrest = arrest;
+        this.crimeTypes = (crimeTypes == null) ? new ArrayList<String>() : crimeTypes;
+        this.location = location;
+        this.beat = beat;
+        this.ward = ward;
+        this.block = block;
+        this.primary = primary;
+        this.secondary = secondary;
+        this.IUCR = IUCR;
+        this.FBICD = FBICD;
+        this.to = to;
+        this.from = from;
+    }
+
+
+    public Boolean getDomestic() {
+        return domestic;
+    }
+
+
+    public Boolean getArrest() {
+        return arrest;
+    }
+
+
+    public ArrayList<String> getCrimeTypes() {
+        return crimeTypes;
+    }
+
+
+    public String getLocation() {
+        return location;
+    }
+
+
+    public int getBeat() {
+        return beat;
+    }
+
+
+    public int getWard() {
+        return ward;
+    }
+
+
+    public String getBlock() {
+        return block;
+    }
+
+
+    public String getPrimary() {
+        return primary;
+    }
+
+
+    public String getSecondary() {
+        return secondary;
+    }
+
+
+    public String getIUCR() {
+        return IUCR;
+    }
+
+
+    public String getFBICD() {
+        return FBICD;
+    }
+
+
+    public DateTime getTo() {
+        return to;
+    }
+
+
+    public DateTime getFrom() {
+        return from;
+    }
+}
@@ -123,6 +123,16 @@ public class CrimeLocation {
     }
 
 
+    /**
+     * Swap the text fields of this location for the shared copies held by a dictionary
+     * @param dictionary the string dictionary of the collection this location belongs to
+     */
+    void internStrings(CrimeStringDictionary dictionary) {
+        this.block = dictionary.intern(CrimeStringDictionary.BLOCK, this.block);
+        this.locationStr = dictionary.intern(CrimeStringDictionary.LOCATION, this.locationStr);
+    }
+
+
     //////////////////////////////////////////////////////////////////////////////////////////////////////////////
     // GETTERS / SETTERS
     //////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -110,6 +110,18 @@ public class CrimeRecord {
     //////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
 
+    /**
+     * Swap the repeated text fields of this record (and its type and location) for the shared copies
+     * held by a dictionary. The values are unchanged so no validation is needed.
+     * @param dictionary the string dictionary of the collection this record belongs to
+     */
+    void internStrings(CrimeStringDictionary dictionary) {
+        this.fbiCD = dictionary.intern(CrimeStringDictionary.FBICD, this.fbiCD);
+        this.crimeType.internStrings(dictionary);
+        this.crimeLocation.internStrings(dictionary);
+    }
+
+
     /**
      * Public access to the obfuscate method<br>
      * Calls obfuscateRecord()
@@ -642,7 +654,7 @@ public class CrimeRecord {
      * @return The distance to the next crime after current [Double]
      */
     public Double getNextCrimeDistance() {
-        return this.distanceBetween(CrimeCollectionManager.getFullWorkingCollection().getCrimeRecord(this.nextCrimeID));
+        return this.distanceBetween(CrimeCollectionManager.getFullWorkingCollection().getNextCrimeRecord(this));
     }
 
 
@@ -651,7 +663,7 @@ public class CrimeRecord {
      * @return The time to the next crime after current [String]
      */
     public Period getNextCrimeTimeSince() {
-        return this.millisBetween(CrimeCollectionManager.getFullWorkingCollection().getCrimeRecord(this.nextCrimeID));
+        return this.millisBetween(CrimeCollectionManager.getFullWorkingCollection().getNextCrimeRecord(this));
     }
 
     /**
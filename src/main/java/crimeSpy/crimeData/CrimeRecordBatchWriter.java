@@ -0,0 +1,137 @@
+package crimeSpy.crimeData;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Writes a stream of crime records to a crime database in bounded batches.
+ * <p>Records passed to accept() are buffered until batchSize records are waiting, they are then
+ * inserted and committed in a single transaction and the buffer is cleared. This keeps the memory
+ * used by a write constant no matter how many records are streamed through it. The database's writer
+ * connection (see SQLiteConnectionManager) is only held while a batch is committed, so other writes to the
+ * database can go ahead between batches.</p>
+ * <u>Example Use:</u><br>
+ *    CrimeRecordBatchWriter writer = SQLiteDBHandler.openCrimeRecordWriter(location, 1000);<br>
+ *    CSVFileHandler.readCrimeRecords(csvLocation, writer);<br>
+ *    writer.close();<br>
+ */
+public class CrimeRecordBatchWriter implements CrimeRecordSink {
+
+
+    /**
+     * The number of records buffered between commits when no batch size is given.
+     */
+    public static final Integer DEFAULT_BATCH_SIZE = 1000;
+
+    private String location;
+    private Integer batchSize;
+    private List<CrimeRecord> buffer;
+    private Integer written = 0;
+    private Boolean bulkLoad;
+    private ImportCheckpoint checkpoint = null;
+    private ImportProgress progress = null;
+
+
+    /**
+     * Constructor for a batch writer to a crime database. Use SQLiteDBHandler.openCrimeRecordWriter()
+     * @param location the location of the crime database
+     * @param batchSize the maximum number of records to buffer before writing
+     * @param bulkLoad true if the database has been switched to the bulk load profile for this writer
+     */
+    CrimeRecordBatchWriter(String location, Integer batchSize, Boolean bulkLoad) {
+        if (batchSize == null || batchSize < 1) {
+            batchSize = DEFAULT_BATCH_SIZE;
+        }
+        this.location = location;
+        this.batchSize = batchSize;
+        this.bulkLoad = bulkLoad;
+        this.buffer = new ArrayList<CrimeRecord>(batchSize);
+    }
+
+
+    /**
+     * Saves the progress of an import with every batch. The checkpoint is written in the same transaction
+     * as the records, so after a failure it points just after the last record that was committed.
+     * @param checkpoint the progress of the import feeding this writer
+     */
+    public void setCheckpoint(ImportCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+
+    /**
+     * Counts the records written by this writer as they are committed
+     * @param progress the progress of the import feeding this writer
+     */
+    public void setProgress(ImportProgress progress) {
+        this.progress = progress;
+    }
+
+
+    /**
+     * Buffers a crime record, writing the buffer to the database once it is full.
+     * @param crime the crime record to write
+     * @throws SQLException the batch could not be written
+     */
+    @Override
+    public void accept(CrimeRecord crime) throws SQLException {
+        buffer.add(crime);
+        if (buffer.size() >= batchSize) {
+            flush();
+        }
+    }
+
+
+    /**
+     * Writes and commits all buffered crime records, along with the import checkpoint if there is one.
+     * @throws SQLException the batch could not be written
+     */
+    public void flush() throws SQLException {
+        if (buffer.isEmpty() && checkpoint == null) {
+            return;
+        }
+        Connection connection = SQLiteConnectionManager.acquireWriter(location);
+        try {
+            SQLiteDBHandler.insertCrimeRecords(connection, buffer);
+            if (checkpoint != null) {
+                SQLiteDBHandler.writeImportCheckpoint(connection, checkpoint);
+            }
+            connection.commit();
+        } finally {
+            SQLiteConnectionManager.releaseWriter(connection);
+        }
+        written += buffer.size();
+        if (progress != null) {
+            progress.recordWritten(buffer.size());
+        }
+        buffer.clear();
+    }
+
+
+    /**
+     * Writes any remaining buffered records and ends the writer's bulk load, if it has one. The bulk load is
+     * ended even if the final batch could not be written.
+     * @throws SQLException the final batch could not be written
+     */
+    public void close() throws SQLException {
+        try {
+            flush();
+        } finally {
+            if (bulkLoad) {
+                bulkLoad = false;
+                SQLiteDBHandler.endBulkLoad(location);
+            }
+        }
+    }
+
+
+    /**
+     * @return the number of crime records that have been committed to the database
+     */
+    public Integer getWrittenCount() {
+        return written;
+    }
+}
@@ -0,0 +1,162 @@
+package crimeSpy.crimeData;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+
+/**
+ * The number of crime records with each value of a grouping, eg: the number of crime records of each primary
+ * description. Used to draw the graphs without going through every crime record.
+ * <p>Counts are read from a crime database with SQLiteDBHandler.countCrimeRecordsBy(), which counts in SQLite,
+ * or counted from crime records in memory with count(). Both give the same values for the same crime records.</p>
+ * <u>Notes</u>
+ * <ul>
+ *     <li>The values are in order and kept in an array next to an array of their counts.</li>
+ *     <li>Values are strings: true or false for BY_ARREST and BY_DOMESTIC, the day in the form 2014-06-27 for
+ *     BY_DAY and an empty string for a crime record without one.</li>
+ *     <li>The day is the day in Joda's default time zone (DateTimeZone.getDefault()), which crime records are
+ *     read in.</li>
+ * </ul>
+ * <u>Example Use:</u><br>
+ *    CrimeRecordCounts counts = CrimeCollectionManager.countCurrWorkingCollection(CrimeRecordCounts.BY_ARREST);<br>
+ *    Integer arrests = counts.getCount("true");<br>
+ */
+public class CrimeRecordCounts {
+
+
+    /**
+     * The groupings crime records can be counted by
+     */
+    public static final Integer BY_PRIMARY_DESCRIPTION = 0;
+    public static final Integer BY_LOCATION_DESCRIPTION = 1;
+    public static final Integer BY_ARREST = 2;
+    public static final Integer BY_DOMESTIC = 3;
+    public static final Integer BY_DAY = 4;
+    public static final Integer BY_BEAT = 5;
+    public static final Integer BY_WARD = 6;
+
+    private final Integer grouping;
+    private final String[] values;
+    private final int[] counts;
+    private final Integer total;
+
+
+    /**
+     * Constructor for counts that have already been made
+     * @param grouping the grouping the crime records were counted by
+     * @param counts the number of crime records with each value
+     */
+    CrimeRecordCounts(Integer grouping, SortedMap<String, Integer> counts) {
+        this.grouping = grouping;
+        this.values = new String[counts.size()];
+        this.counts = new int[counts.size()];
+        int total = 0;
+        int i = 0;
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            this.values[i] = count.getKey();
+            this.counts[i] = count.getValue();
+            total += count.getValue();
+            i++;
+        }
+        this.total = total;
+    }
+
+
+    /**
+     * Counts crime records in memory
+     * @param crimes the crime records to count
+     * @param grouping the grouping to count them by, eg: BY_ARREST
+     * @return the number of crime records with each value of the grouping
+     */
+    public static CrimeRecordCounts count(Iterable<CrimeRecord> crimes, Integer grouping) {
+        SortedMap<String, Integer> counts = new TreeMap<String, Integer>();
+        for (CrimeRecord crime : crimes) {
+            String value = valueOf(crime, grouping);
+            Integer count = counts.get(value);
+            counts.put(value, (count == null) ? 1 : count + 1);
+        }
+        return new CrimeRecordCounts(grouping, counts);
+    }
+
+
+    /**
+     * @param crime a crime record
+     * @param grouping a grouping, eg: BY_ARREST
+     * @return the value of the grouping for the crime record
+     */
+    public static String valueOf(CrimeRecord crime, Integer grouping) {
+        Object value;
+        if (grouping.equals(BY_PRIMARY_DESCRIPTION)) {
+            value = (crime.getCrimeType() == null) ? null : crime.getCrimeType().getPrimaryDescription();
+        } else if (grouping.equals(BY_LOCATION_DESCRIPTION)) {
+            value = crime.getCrimeLocation().getLocationStr();
+        } else if (grouping.equals(BY_ARREST)) {
+            value = crime.getArrest();
+        } else if (grouping.equals(BY_DOMESTIC)) {
+            value = crime.getDomestic();
+        } else if (grouping.equals(BY_DAY)) {
+            value = (crime.getDate() == null) ? null : crime.getDate().toLocalDate();
+        } else if (grouping.equals(BY_BEAT)) {
+            value = crime.getCrimeLocation().getBeat();
+        } else if (grouping.equals(BY_WARD)) {
+            value = crime.getCrimeLocation().getWard();
+        } else {
+            throw new IllegalArgumentException("Unknown grouping " + grouping);
+        }
+        return (value == null) ? "" : value.toString();
+    }
+
+
+    /**
+     * @return the grouping the crime records were counted by
+     */
+    public Integer getGrouping() {
+        return grouping;
+    }
+
+
+    /**
+     * @return the number of values
+     */
+    public Integer size() {
+        return values.length;
+    }
+
+
+    /**
+     * @param index the position of a value, from 0
+     * @return the value, the values are in order
+     */
+    public String getValue(int index) {
+        return values[index];
+    }
+
+
+    /**
+     * @param index the position of a value, from 0
+     * @return the number of crime records with the value
+     */
+    public Integer getCount(int index) {
+        return counts[index];
+    }
+
+
+    /**
+     * @param value a value of the grouping
+     * @return the number of crime records with the value, 0 if there are none
+     */
+    public Integer getCount(String value) {
+        int index = Arrays.binarySearch(values, value);
+        return (index < 0) ? 0 : counts[index];
+    }
+
+
+    /**
+     * @return the number of crime records counted
+     */
+    public Integer getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,394 @@
+package crimeSpy.crimeData;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.*;
+
+
+/**
+ * A read only list of the crime records of a crime database, in order of (date, case id), that only reads the
+ * pages of crime records that are asked for.
+ * <p>Opening the list only counts the crime records, so it is as quick for millions of crime records as for a
+ * few. get() reads the page holding the crime record if it isn't cached. Pages next to a page that is already known
+ * are read with keyset pagination, starting from the last crime record of the page before (or the first of the
+ * page after), which the date index finds straight away. Only a jump to a page far from any known page has to be
+ * read by position. After a page is read the pages either side of it are read in the background, so scrolling
+ * through the list seldom waits on the database.</p>
+ * <p>At most cachedPages pages are kept, the least recently used page is dropped when another is read.</p>
+ * <p>The count and every page are read from one snapshot of the database (see
+ * SQLiteConnectionManager.acquireSnapshot()), so the list stays the same while an import or merge is writing to the
+ * database, until refresh() takes a new snapshot. close() gives the snapshot back, after which the list reads
+ * nothing more.</p>
+ * <u>Notes</u>
+ * <ul>
+ *     <li>The list does not see changes to the database until refresh() is called.</li>
+ *     <li>If the snapshot was closed with its database (eg: another collection was worked on) the next read takes
+ *     a new one, the list is then refreshed and get() returns null for positions past its new end.</li>
+ *     <li>get() returns null once the list is closed.</li>
+ *     <li>get() may be called from any thread.</li>
+ * </ul>
+ * <u>Example Use:</u><br>
+ *    CrimeRecordPages pages = new CrimeRecordPages(location);<br>
+ *    gridTable.setItems(FXCollections.observableList(pages));<br>
+ */
+public class CrimeRecordPages extends AbstractList<CrimeRecord> {
+
+
+    /**
+     * LOGGER is the class wide instance of java.util.logging for CrimeRecordPages
+     * Logging to root directory: ./LOG_CrimeRecordPages
+     */
+    private static final Logger LOGGER = Logger.getLogger(CrimeRecordPages.class.getName());
+    private static final String LOG_FILE_STORE_LOC = "./LOG_CrimeRecordPages";
+
+    // initialise the logger for fileloc
+    private static Handler fileHandler;
+    private static SimpleFormatter simpleFormatter;
+
+    static {
+        try {
+            simpleFormatter = new SimpleFormatter();
+            fileHandler  = new FileHandler(LOG_FILE_STORE_LOC);
+            fileHandler.setFormatter(simpleFormatter);
+            LOGGER.addHandler(fileHandler);
+            fileHandler.setLevel(Level.INFO);
+            LOGGER.setUseParentHandlers(false);
+            LOGGER.setLevel(Level.INFO);
+            LOGGER.config("Configuration done.");
+        } catch (IOException e) {
+            LOGGER.warning("Failed to initiate file handler");
+            LOGGER.setLevel(Level.SEVERE); // for case of console only
+        }
+    }
+
+
+    /**
+     * The number of crime records in a page when no page size is given, a few screens of the grid
+     */
+    public static final Integer DEFAULT_PAGE_SIZE = 200;
+
+    /**
+     * The number of pages kept when no number is given
+     */
+    public static final Integer DEFAULT_CACHED_PAGES = 32;
+
+    /**
+     * Reads the pages next to the pages that are used, one at a time so the reads of the UI are not held up
+     */
+    private static final ExecutorService PREFETCHER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "Crime record prefetch");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final String location;
+    private final Integer pageSize;
+    private final LinkedHashMap<Integer, List<CrimeRecord>> pages;
+    // The first and last crime record of every page read so far, where keyset pagination can start from
+    private final Map<Integer, CrimeRecord[]> bounds = new HashMap<Integer, CrimeRecord[]>();
+    private final Set<Integer> prefetching = new HashSet<Integer>();
+    private volatile Integer size;
+    private Integer generation = 0;
+    // Every read of the database is made on the snapshot, one at a time
+    private final Object reading = new Object();
+    private Connection snapshot = null;
+    private volatile boolean closed = false;
+
+
+    /**
+     * Opens the crime records of a crime database with the default page size and cache
+     * @param location the location of the crime database
+     * @throws SQLException the crime records could not be counted
+     */
+    public CrimeRecordPages(String location) throws Exception {
+        this(location, DEFAULT_PAGE_SIZE, DEFAULT_CACHED_PAGES);
+    }
+
+
+    /**
+     * Opens the crime records of a crime database
+     * @param location the location of the crime database
+     * @param pageSize the number of crime records read at once
+     * @param cachedPages the most pages to keep, at least 3 so a page and the pages either side of it fit
+     * @throws SQLException the crime records could not be counted
+     */
+    public CrimeRecordPages(String location, Integer pageSize, final Integer cachedPages) throws Exception {
+        if (pageSize < 1 || cachedPages < 3) {
+            throw new IllegalArgumentException("A page must hold a crime record and at least 3 pages must be cached");
+        }
+        this.location = location;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<Integer, List<CrimeRecord>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<CrimeRecord>> eldest) {
+                return size() > cachedPages;
+            }
+        };
+        takeSnapshot();
+    }
+
+
+    /**
+     * @param index the position of a crime record, in order of (date, case id)
+     * @return the crime record, or null if it was deleted from the database since the list was refreshed or the
+     * list is closed
+     * @throws IndexOutOfBoundsException index is not in the list
+     * @throws IllegalStateException the page could not be read from the database
+     */
+    @Override
+    public CrimeRecord get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        List<CrimeRecord> page = getPage(index / pageSize);
+        int offset = index % pageSize;
+        return (offset < page.size()) ? page.get(offset) : null;
+    }
+
+
+    /**
+     * @return the number of crime records in the database when the list was opened or last refreshed
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns a page of crime records, reading it if it isn't cached
+     * @param pageNumber the number of the page, from 0
+     * @return the crime records of the page, in order of (date, case id), empty if the list is closed
+     * @throws IllegalStateException the page could not be read from the database
+     */
+    public List<CrimeRecord> getPage(Integer pageNumber) {
+        List<CrimeRecord> page;
+        synchronized (pages) {
+            page = pages.get(pageNumber);
+        }
+        if (page == null) {
+            try {
+                page = readPage(pageNumber);
+            } catch (SQLException e) {
+                LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+                throw new IllegalStateException("Page " + pageNumber + " of " + location + " could not be read", e);
+            }
+        }
+        prefetch(pageNumber - 1);
+        prefetch(pageNumber + 1);
+        return page;
+    }
+
+
+    /**
+     * Reads the crime record after a crime record in order of (date, case id), with the date index rather than
+     * by position
+     * @param crime a crime record of the list
+     * @return the next crime record, or null if it is the last or the list is closed
+     * @throws IllegalStateException the crime record could not be read from the database
+     */
+    public CrimeRecord getNext(CrimeRecord crime) {
+        return readNeighbour(crime, true);
+    }
+
+
+    /**
+     * Reads the crime record before a crime record in order of (date, case id), with the date index rather than
+     * by position
+     * @param crime a crime record of the list
+     * @return the previous crime record, or null if it is the first or the list is closed
+     * @throws IllegalStateException the crime record could not be read from the database
+     */
+    public CrimeRecord getPrevious(CrimeRecord crime) {
+        return readNeighbour(crime, false);
+    }
+
+
+    /**
+     * Takes a new snapshot of the database, dropping every cached page and counting the crime records again,
+     * for after the database has been changed. Does nothing once the list is closed.
+     * @throws SQLException the crime records could not be counted
+     */
+    public void refresh() throws Exception {
+        synchronized (reading) {
+            if (closed) {
+                return;
+            }
+            takeSnapshot();
+        }
+    }
+
+
+    /**
+     * Gives back the snapshot of the database and drops the cached pages. The list takes no new snapshot after, so
+     * get() returns null.
+     */
+    public void close() {
+        synchronized (reading) {
+            closed = true;
+            if (snapshot != null) {
+                SQLiteConnectionManager.releaseSnapshot(snapshot);
+                snapshot = null;
+            }
+            synchronized (pages) {
+                pages.clear();
+                bounds.clear();
+                generation++;
+            }
+        }
+    }
+
+
+    /**
+     * @return the number of pages that are cached
+     */
+    public Integer getCachedPageCount() {
+        synchronized (pages) {
+            return pages.size();
+        }
+    }
+
+
+    /**
+     * @return the location of the crime database
+     */
+    public String getLocation() {
+        return location;
+    }
+
+
+    /**
+     * Reads a page from the database and caches it, starting from a neighbouring page where one is known
+     */
+    private List<CrimeRecord> readPage(Integer pageNumber) throws SQLException {
+        CrimeRecord[] before;
+        CrimeRecord[] after;
+        Integer readGeneration;
+        synchronized (pages) {
+            before = bounds.get(pageNumber - 1);
+            after = bounds.get(pageNumber + 1);
+            readGeneration = generation;
+        }
+        List<CrimeRecord> page;
+        synchronized (reading) {
+            if (closed) {
+                return new ArrayList<CrimeRecord>();
+            }
+            if (snapshot == null || snapshot.isClosed()) {
+                // The known pages were dropped with the old snapshot, so the page is read by position
+                takeSnapshot();
+                before = null;
+                after = null;
+                synchronized (pages) {
+                    readGeneration = generation;
+                }
+            }
+            if (pageNumber == 0) {
+                page = SQLiteDBHandler.readCrimeRecordsAt(snapshot, 0, pageSize);
+            } else if (before != null) {
+                page = SQLiteDBHandler.readCrimeRecordsAfter(snapshot, before[1], pageSize);
+            } else if (after != null) {
+                page = SQLiteDBHandler.readCrimeRecordsBefore(snapshot, after[0], pageSize);
+            } else {
+                page = SQLiteDBHandler.readCrimeRecordsAt(snapshot, pageNumber * pageSize, pageSize);
+            }
+        }
+        synchronized (pages) {
+            // A page read before a refresh may be out of date
+            if (readGeneration.equals(generation)) {
+                pages.put(pageNumber, page);
+                if (!page.isEmpty()) {
+                    bounds.put(pageNumber, new CrimeRecord[]{page.get(0), page.get(page.size() - 1)});
+                }
+            }
+        }
+        return page;
+    }
+
+
+    /**
+     * Reads the crime record either side of a crime record from the snapshot
+     */
+    private CrimeRecord readNeighbour(CrimeRecord crime, boolean next) {
+        List<CrimeRecord> read;
+        synchronized (reading) {
+            if (closed) {
+                return null;
+            }
+            try {
+                if (snapshot == null || snapshot.isClosed()) {
+                    takeSnapshot();
+                }
+                read = next ? SQLiteDBHandler.readCrimeRecordsAfter(snapshot, crime, 1)
+                        : SQLiteDBHandler.readCrimeRecordsBefore(snapshot, crime, 1);
+            } catch (SQLException e) {
+                LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+                throw new IllegalStateException("The crime record next to " + crime.getCaseID() + " of " + location +
+                        " could not be read", e);
+            }
+        }
+        return read.isEmpty() ? null : read.get(0);
+    }
+
+
+    /**
+     * Gives back the snapshot if there is one and takes a new one, the caller must hold reading
+     */
+    private void takeSnapshot() throws SQLException {
+        if (snapshot != null) {
+            SQLiteConnectionManager.releaseSnapshot(snapshot);
+            snapshot = null;
+        }
+        synchronized (pages) {
+            pages.clear();
+            bounds.clear();
+            generation++;
+        }
+        snapshot = SQLiteConnectionManager.acquireSnapshot(location);
+        size = SQLiteDBHandler.countCrimeRecords(snapshot);
+    }
+
+
+    /**
+     * Reads a page in the background if it is in the list and isn't cached or already being read
+     */
+    private void prefetch(final Integer pageNumber) {
+        if (closed || pageNumber < 0 || pageNumber * pageSize >= size) {
+            return;
+        }
+        synchronized (pages) {
+            if (pages.containsKey(pageNumber) || !prefetching.add(pageNumber)) {
+                return;
+            }
+        }
+        PREFETCHER.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    readPage(pageNumber);
+                } catch (SQLException e) {
+                    LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+                } finally {
+                    synchronized (pages) {
+                        prefetching.remove(pageNumber);
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,20 @@
+package crimeSpy.crimeData;
+
+/**
+ * Receives crime records one at a time as they are read from persistent storage.
+ * <p>Readers that accept a CrimeRecordSink (eg: CSVFileHandler.readCrimeRecords(location, sink)) hand each
+ * record over as soon as it has been parsed rather than building up a full list first. This allows
+ * an import to parse, validate and persist records without holding the whole file in memory.</p>
+ */
+public interface CrimeRecordSink {
+
+
+    /**
+     * Accept a single crime record from a reader.
+     * @param crime the crime record that has just been read
+     * @throws Exception the record could not be handled, the reader will stop and pass this exception on
+     */
+    void accept(CrimeRecord crime) throws Exception;
+
+
+}
@@ -0,0 +1,341 @@
+package crimeSpy.crimeData;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.*;
+
+
+/**
+ * Writes the crime records added, edited and deleted one at a time (eg: from the info pane) to a crime database in
+ * the background, so the thread making the change never waits on SQLite.
+ * <p>Changes are kept by crime id until they are written. A later change to the same crime id replaces the one
+ * waiting, eg: a crime record that is added and then edited is only inserted once, with its edits, and one that is
+ * added and then deleted is never written at all. FLUSH_DELAY_MILLIS after the first change the waiting changes are
+ * written together in one transaction by a background thread. If MAX_PENDING changes are waiting the thread making
+ * the next change writes them straight away instead, so the queue cannot grow without bound during a merge.</p>
+ * <p>A durable queue (see setDurable()) writes every change before returning, for callers that need to know the
+ * change was committed.</p>
+ * <u>Notes</u>
+ * <ul>
+ *     <li>A crime record is copied when its change is queued, later changes to the object are not written
+ *     unless they are queued too.</li>
+ *     <li>Changes that are still waiting are not seen by reads of the database, call flush() first.
+ *     flushAll() must be called before crimeSpy exits.</li>
+ *     <li>If a write fails its changes are logged and dropped. Unless the queue is durable the changes are then
+ *     only in memory.</li>
+ * </ul>
+ * <u>Example Use:</u><br>
+ *    CrimeRecordWriteQueue queue = CrimeRecordWriteQueue.forDatabase(location);<br>
+ *    queue.update(crimeRecord);<br>
+ *    queue.flush();<br>
+ */
+public class CrimeRecordWriteQueue {
+
+
+    /**
+     * LOGGER is the class wide instance of java.util.logging for CrimeRecordWriteQueue
+     * Logging to root directory: ./LOG_CrimeRecordWriteQueue
+     */
+    private static final Logger LOGGER = Logger.getLogger(CrimeRecordWriteQueue.class.getName());
+    private static final String LOG_FILE_STORE_LOC = "./LOG_CrimeRecordWriteQueue";
+
+    // initialise the logger for fileloc
+    private static Handler fileHandler;
+    private static SimpleFormatter simpleFormatter;
+
+    static {
+        try {
+            simpleFormatter = new SimpleFormatter();
+            fileHandler  = new FileHandler(LOG_FILE_STORE_LOC);
+            fileHandler.setFormatter(simpleFormatter);
+            LOGGER.addHandler(fileHandler);
+            fileHandler.setLevel(Level.INFO);
+            LOGGER.setUseParentHandlers(false);
+            LOGGER.setLevel(Level.INFO);
+            LOGGER.config("Configuration done.");
+        } catch (IOException e) {
+            LOGGER.warning("Failed to initiate file handler");
+            LOGGER.setLevel(Level.SEVERE); // for case of console only
+        }
+    }
+
+
+    /**
+     * How long the first change waits for others to be written with it
+     */
+    public static final Integer FLUSH_DELAY_MILLIS = 250;
+
+    /**
+     * The most changes that wait to be written
+     */
+    public static final Integer MAX_PENDING = 1000;
+
+    /**
+     * The kinds of change. REPLACE is a crime id that was deleted and added again, it is written as both.
+     */
+    private static final Integer INSERT = 0;
+    private static final Integer UPDATE = 1;
+    private static final Integer DELETE = 2;
+    private static final Integer REPLACE = 3;
+
+    /**
+     * The change that is written for a change waiting to be written [row] followed by another [column]
+     * (INSERT, UPDATE or DELETE). null if nothing needs to be written.
+     */
+    private static final Integer[][] COALESCED = {
+            {INSERT, INSERT, null},         // INSERT
+            {REPLACE, UPDATE, DELETE},      // UPDATE
+            {REPLACE, DELETE, DELETE},      // DELETE
+            {REPLACE, REPLACE, DELETE}      // REPLACE
+    };
+
+    /**
+     * Writes the changes of every queue, one write at a time
+     */
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "Crime record write-behind");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private static final Map<String, CrimeRecordWriteQueue> QUEUES = new HashMap<String, CrimeRecordWriteQueue>();
+
+    private final String location;
+    // The changes waiting to be written by crime id, the crime record is the copy to write (none for a DELETE)
+    private final LinkedHashMap<String, Integer> operations = new LinkedHashMap<String, Integer>();
+    private final Map<String, CrimeRecord> records = new HashMap<String, CrimeRecord>();
+    private ScheduledFuture<?> scheduled = null;
+    private volatile Boolean durable = false;
+
+
+    private CrimeRecordWriteQueue(String location) {
+        this.location = location;
+    }
+
+
+    /**
+     * @param location the location of a crime database
+     * @return the queue of changes to the crime database, there is one for each database
+     */
+    public static CrimeRecordWriteQueue forDatabase(String location) {
+        synchronized (QUEUES) {
+            CrimeRecordWriteQueue queue = QUEUES.get(location);
+            if (queue == null) {
+                queue = new CrimeRecordWriteQueue(location);
+                QUEUES.put(location, queue);
+            }
+            return queue;
+        }
+    }
+
+
+    /**
+     * Writes the waiting changes of every crime database, for when crimeSpy exits. Failures are logged.
+     */
+    public static void flushAll() {
+        List<CrimeRecordWriteQueue> queues;
+        synchronized (QUEUES) {
+            queues = new ArrayList<CrimeRecordWriteQueue>(QUEUES.values());
+        }
+        for (CrimeRecordWriteQueue queue : queues) {
+            try {
+                queue.flush();
+            } catch (SQLException e) {
+                LOGGER.severe("Changes to " + queue.location + " were lost, " + e.getClass().getName() + ": " +
+                        e.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * Queues a crime record to be added to the database
+     * @param crime the crime record to add
+     * @throws SQLException the queue is durable and the crime record could not be written
+     */
+    public void insert(CrimeRecord crime) throws SQLException {
+        queue(crime.getCaseID(), INSERT, new CrimeRecord(crime));
+    }
+
+
+    /**
+     * Queues a crime record to be overwritten in the database
+     * @param crime the edited crime record
+     * @throws SQLException the queue is durable and the crime record could not be written
+     */
+    public void update(CrimeRecord crime) throws SQLException {
+        queue(crime.getCaseID(), UPDATE, new CrimeRecord(crime));
+    }
+
+
+    /**
+     * Queues a crime record to be deleted from the database
+     * @param crimeID the crime id of the crime record to delete
+     * @throws SQLException the queue is durable and the crime record could not be deleted
+     */
+    public void delete(String crimeID) throws SQLException {
+        queue(crimeID, DELETE, null);
+    }
+
+
+    /**
+     * Writes every change waiting in the queue, waiting until they are committed
+     * @throws SQLException the changes could not be written, they are dropped
+     */
+    public void flush() throws SQLException {
+        Future<Void> written = WRITER.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws SQLException {
+                writePending();
+                return null;
+            }
+        });
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for changes to " + location + " to be written", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException(e.getCause());
+        }
+    }
+
+
+    /**
+     * @param durable true to write every change before insert(), update() and delete() return
+     * @throws SQLException the changes already waiting could not be written
+     */
+    public void setDurable(Boolean durable) throws SQLException {
+        this.durable = durable;
+        if (durable) {
+            flush();
+        }
+    }
+
+
+    /**
+     * @return true if every change is written before insert(), update() and delete() return
+     */
+    public Boolean isDurable() {
+        return durable;
+    }
+
+
+    /**
+     * @return the number of crime records with changes waiting to be written
+     */
+    public Integer getPendingCount() {
+        synchronized (operations) {
+            return operations.size();
+        }
+    }
+
+
+    /**
+     * @return the location of the crime database
+     */
+    public String getLocation() {
+        return location;
+    }
+
+
+    /**
+     * Combines a change with any change to the same crime id that is waiting, then writes it now or later
+     */
+    private void queue(String crimeID, Integer operation, CrimeRecord crime) throws SQLException {
+        Boolean full;
+        synchronized (operations) {
+            Integer waiting = operations.remove(crimeID);
+            Integer combined = (waiting == null) ? operation : COALESCED[waiting][operation];
+            records.remove(crimeID);
+            if (combined != null) {
+                operations.put(crimeID, combined);
+                if (!combined.equals(DELETE)) {
+                    records.put(crimeID, crime);
+                }
+            }
+            full = operations.size() >= MAX_PENDING;
+            if (!full && !durable && scheduled == null) {
+                scheduled = WRITER.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            writePending();
+                        } catch (SQLException e) {
+                            // Logged by writePending()
+                        }
+                    }
+                }, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (durable) {
+            flush();
+        } else if (full) {
+            try {
+                flush();
+            } catch (SQLException e) {
+                // Logged by writePending(), the change is kept in memory
+            }
+        }
+    }
+
+
+    /**
+     * Writes the waiting changes in one transaction, only run by WRITER
+     */
+    private void writePending() throws SQLException {
+        List<String> deletes = new ArrayList<String>();
+        List<CrimeRecord> updates = new ArrayList<CrimeRecord>();
+        List<CrimeRecord> inserts = new ArrayList<CrimeRecord>();
+        synchronized (operations) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+                scheduled = null;
+            }
+            for (Map.Entry<String, Integer> change : operations.entrySet()) {
+                Integer operation = change.getValue();
+                if (operation.equals(DELETE) || operation.equals(REPLACE)) {
+                    deletes.add(change.getKey());
+                }
+                if (operation.equals(UPDATE)) {
+                    updates.add(records.get(change.getKey()));
+                } else if (operation.equals(INSERT) || operation.equals(REPLACE)) {
+                    inserts.add(records.get(change.getKey()));
+                }
+            }
+            operations.clear();
+            records.clear();
+        }
+        if (deletes.isEmpty() && updates.isEmpty() && inserts.isEmpty()) {
+            return;
+        }
+        try {
+            SQLiteDBHandler.writeCrimeRecordChanges(location, deletes, updates, inserts);
+        } catch (SQLException e) {
+            LOGGER.severe(deletes.size() + " deletions, " + updates.size() + " edits and " + inserts.size() +
+                    " additions to " + location + " could not be written, " + e.getClass().getName() + ": " +
+                    e.getMessage());
+            throw e;
+        }
+    }
+}
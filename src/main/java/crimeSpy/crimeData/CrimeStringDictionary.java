@@ -0,0 +1,157 @@
+package crimeSpy.crimeData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A dictionary of the repeated text fields of the crime records in a collection.
+ * <p>Fields such as the block, location description, FBI code and IUCR only have a few hundred distinct
+ * values across millions of crimes, but each record read from a csv or database holds its own copy of
+ * every String. intern() swaps each of these fields for a single shared copy of its value, so each
+ * distinct value is stored once per collection and the duplicates can be garbage collected.
+ * The primary and secondary descriptions are not included, these already come from the single shared
+ * copy held for each IUCR code by SQLiteDBHandler.getCrimeTypeData().</p>
+ * <p>The dictionary keeps a count of lookups and the approximate memory freed for each field,
+ * see getReport().</p>
+ * <u>Example Use:</u><br>
+ *    CrimeStringDictionary dictionary = cc.getStringDictionary();<br>
+ *    String block = dictionary.intern(CrimeStringDictionary.BLOCK, "080XX S HALSTED ST");<br>
+ */
+public class CrimeStringDictionary {
+
+
+    /**
+     * Field indexes
+     */
+    public static final Integer BLOCK = 0;
+    public static final Integer LOCATION = 1;
+    public static final Integer FBICD = 2;
+    public static final Integer IUCR = 3;
+
+    private static final String[] FIELD_NAMES = {"block", "location", "fbiCD", "iucr"};
+
+    /**
+     * Approximate size of a String object and the header of its char array (Java 8, 64 bit, compressed oops)
+     */
+    private static final long STRING_OVERHEAD_BYTES = 24 + 16;
+
+    private final List<Map<String, String>> values;
+    private final long[] lookups;
+    private final long[] bytesSaved;
+
+
+    /**
+     * Constructor for an empty dictionary
+     */
+    public CrimeStringDictionary() {
+        values = new ArrayList<Map<String, String>>(FIELD_NAMES.length);
+        for (int i = 0; i < FIELD_NAMES.length; i++) {
+            values.add(new HashMap<String, String>());
+        }
+        lookups = new long[FIELD_NAMES.length];
+        bytesSaved = new long[FIELD_NAMES.length];
+    }
+
+
+    /**
+     * Get the shared copy of a value
+     * @param field the field the value belongs to, eg: CrimeStringDictionary.BLOCK
+     * @param value the value to look up
+     * @return the shared String equal to value (value itself the first time it is seen)
+     */
+    public String intern(Integer field, String value) {
+        if (value == null) {
+            return null;
+        }
+        Map<String, String> fieldValues = values.get(field);
+        lookups[field]++;
+        String shared = fieldValues.get(value);
+        if (shared == null) {
+            fieldValues.put(value, value);
+            return value;
+        }
+        if (shared != value) {
+            bytesSaved[field] += estimateSize(value);
+        }
+        return shared;
+    }
+
+
+    /**
+     * Swap the text fields of a crime record for their shared copies
+     * @param crime the crime record to update
+     */
+    public void intern(CrimeRecord crime) {
+        crime.internStrings(this);
+    }
+
+
+    /**
+     * Approximate number of bytes held by a String (object, array header and chars, rounded to 8 bytes)
+     */
+    private static long estimateSize(String value) {
+        long size = STRING_OVERHEAD_BYTES + 2L * value.length();
+        return (size + 7) / 8 * 8;
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // STATISTICS
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * @param field the field, eg: CrimeStringDictionary.BLOCK
+     * @return the number of distinct values of the field
+     */
+    public Integer getDistinctCount(Integer field) {
+        return values.get(field).size();
+    }
+
+
+    /**
+     * @param field the field, eg: CrimeStringDictionary.BLOCK
+     * @return the number of values of the field that have been looked up
+     */
+    public Long getLookupCount(Integer field) {
+        return lookups[field];
+    }
+
+
+    /**
+     * @param field the field, eg: CrimeStringDictionary.BLOCK
+     * @return the approximate number of bytes freed by sharing the values of the field
+     */
+    public Long getBytesSaved(Integer field) {
+        return bytesSaved[field];
+    }
+
+
+    /**
+     * @return the approximate number of bytes freed across all fields
+     */
+    public Long getTotalBytesSaved() {
+        long total = 0;
+        for (long saved : bytesSaved) {
+            total += saved;
+        }
+        return total;
+    }
+
+
+    /**
+     * @return a line per field giving its distinct values, lookups and approximate memory saved
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < FIELD_NAMES.length; i++) {
+            report.append(FIELD_NAMES[i]).append(": ").append(values.get(i).size()).append(" distinct of ")
+                    .append(lookups[i]).append(", ").append(bytesSaved[i] / 1024).append("KB saved\n");
+        }
+        report.append("total: ").append(getTotalBytesSaved() / 1024).append("KB saved");
+        return report.toString();
+    }
+}
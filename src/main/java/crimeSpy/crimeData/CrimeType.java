@@ -83,6 +83,16 @@ public class CrimeType {
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
 
+    /**
+     * Swap the iucr of this crime type for the shared copy held by a dictionary.
+     * The descriptions are already shared between crime types with the same iucr (see SQLiteDBHandler.getCrimeTypeData)
+     * @param dictionary the string dictionary of the collection this crime type belongs to
+     */
+    void internStrings(CrimeStringDictionary dictionary) {
+        this.iucr = dictionary.intern(CrimeStringDictionary.IUCR, this.iucr);
+    }
+
+
     /**
      * <p>Change any occurrences of lower case letters to upper case for the IUCR code</p>
      * <p>See also <a href="https://data.cityofchicago.org/Public-Safety/Chicago-Police-Department-Illinois-Uniform-Crime-R/c7ck-438e">
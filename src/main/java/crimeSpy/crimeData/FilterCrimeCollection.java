@@ -15,7 +15,7 @@ public class FilterCrimeCollection {
 
 
     /**
-     * Return a filtered version of the current collection
+     * Return a filtered version of the current collection. The options are kept with it (see CrimeFilter).
      * @param domestic boolean description of whether there has been a domestic in this crime
      * @param arrest boolean description of whether there has been an arrest in this crime
      * @param crimeTypes ArrayList of the CrimeTypes to filter by
@@ -29,14 +29,15 @@ public class FilterCrimeCollection {
         CrimeCollection filterCollection = new CrimeCollection();
         List<CrimeRecord> crimeRecords = CrimeCollectionManager.getFullWorkingCollection().getCrimes();
         for (CrimeRecord cR : crimeRecords) {
-            if (isFilter(cR, domestic, arrest, crimeTypes, location, beat, ward, block, primary, secondary, FBICD,
-                    IUCR, to, from)) {
+            if (isFilter(cR, domestic, arrest, crimeTypes, location, beat, ward, block, primary, secondary, IUCR,
+                    FBICD, to, from)) {
                 filterCollection.addCrimeRecord(cR);
 
             }
         }
 
-        CrimeCollectionManager.setFilteredCollection(filterCollection);
+        CrimeCollectionManager.setFilteredCollection(filterCollection, new CrimeFilter(domestic, arrest, crimeTypes,
+                location, beat, ward, block, primary, secondary, IUCR, FBICD, to, from));
     }
 
 
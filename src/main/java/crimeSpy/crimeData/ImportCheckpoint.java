@@ -0,0 +1,111 @@
+package crimeSpy.crimeData;
+
+import java.io.File;
+
+
+/**
+ * The progress of a csv import into a crime database.
+ * <p>The csv readers move the checkpoint on past each record just before the record is handed to their sink.
+ * A CrimeRecordBatchWriter with a checkpoint saves it to the IMPORT_CHECKPOINT table of the crime database in
+ * the same transaction as each batch. So the saved checkpoint always points just after the last record that
+ * was committed, and an import that was interrupted can carry on from there (see
+ * CrimeCollectionManager.importNewCrimeDB_Replace).</p>
+ * <u>Notes</u>
+ * <ul>
+ *     <li>The size and last modified time of the csv are kept so that a checkpoint is only resumed from if the
+ *     csv has not changed.</li>
+ *     <li>A compressed csv can't be read from a byte offset, so it is resumed from by skipping rowNumber records.
+ *     Its byte offset is always -1.</li>
+ * </ul>
+ */
+public class ImportCheckpoint {
+
+
+    private String source;
+    private Long sourceSize;
+    private Long sourceModified;
+    private Long byteOffset;
+    private Long rowNumber;
+    private Boolean complete;
+
+
+    /**
+     * Constructor for a checkpoint at the start of a csv
+     * @param source the csv being imported
+     */
+    public ImportCheckpoint(File source) {
+        this(source.getAbsolutePath(), source.length(), source.lastModified(), 0L, 0L, false);
+    }
+
+
+    /**
+     * Constructor for a saved checkpoint
+     * @param source the absolute path of the csv being imported
+     * @param sourceSize the size of the csv in bytes
+     * @param sourceModified the time the csv was last modified
+     * @param byteOffset the byte offset of the first record that has not been imported
+     * @param rowNumber the number of records that have been imported
+     * @param complete true if the whole csv has been imported
+     */
+    public ImportCheckpoint(String source, Long sourceSize, Long sourceModified, Long byteOffset, Long rowNumber,
+                            Boolean complete) {
+        this.source = source;
+        this.sourceSize = sourceSize;
+        this.sourceModified = sourceModified;
+        this.byteOffset = byteOffset;
+        this.rowNumber = rowNumber;
+        this.complete = complete;
+    }
+
+
+    /**
+     * Moves the checkpoint past a record
+     * @param recordEnd the byte offset after the record, -1 if it is not known
+     */
+    void recordRead(long recordEnd) {
+        this.byteOffset = recordEnd;
+        this.rowNumber++;
+    }
+
+
+    /**
+     * Records the size and last modified time of a csv that is still growing (see CSVFileFollower)
+     * @param size the size of the csv in bytes
+     * @param modified the time the csv was last modified
+     */
+    void sourceChanged(long size, long modified) {
+        this.sourceSize = size;
+        this.sourceModified = modified;
+    }
+
+
+    /**
+     * Checks if this checkpoint can be resumed from for a csv
+     * @param csv the csv file about to be imported
+     * @return true if the checkpoint is for this csv, the csv has not changed, and the import was not finished
+     */
+    public Boolean canResume(File csv) {
+        return !complete && rowNumber > 0 && source.equals(csv.getAbsolutePath())
+                && sourceSize == csv.length() && sourceModified == csv.lastModified();
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // GETTERS / SETTERS
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    public String getSource() { return source; }
+
+    public Long getSourceSize() { return sourceSize; }
+
+    public Long getSourceModified() { return sourceModified; }
+
+    public Long getByteOffset() { return byteOffset; }
+
+    public Long getRowNumber() { return rowNumber; }
+
+    public Boolean isComplete() { return complete; }
+
+    public void setComplete(Boolean complete) { this.complete = complete; }
+}
@@ -0,0 +1,185 @@
+package crimeSpy.crimeData;
+
+import java.io.File;
+import java.util.concurrent.CancellationException;
+
+
+/**
+ * The progress of a csv import, for showing to the user or reporting from a batch job.
+ * <p>The import updates the counts from its own thread, any other thread can read them (eg: the FX thread
+ * refreshing a progress bar) and can ask for the import to stop with cancel(). A cancelled import stops at
+ * the next record and CrimeCollectionManager returns 10.</p>
+ * <u>Notes</u>
+ * <ul>
+ *     <li>Bytes are counted from the csv file as stored, so for a compressed csv they are compressed bytes.</li>
+ *     <li>The rates and estimated time left are worked out from the start of this run, so an import that
+ *     carries on from a checkpoint does not count the bytes that were skipped.</li>
+ * </ul>
+ * <u>Example Use:</u><br>
+ *    ImportProgress progress = new ImportProgress(file);<br>
+ *    Integer res = CrimeCollectionManager.importNewCrimeDB_Replace(file, progress);<br>
+ *    LOGGER.info(progress.getReport());<br>
+ */
+public class ImportProgress {
+
+
+    private final long totalBytes;
+    private volatile long startBytes = 0;
+    private volatile long bytesRead = 0;
+    private volatile long rowsParsed = 0;
+    private volatile long rowsWritten = 0;
+    private volatile long startTime;
+    private volatile long endTime = -1;
+    private volatile boolean cancelled = false;
+
+
+    /**
+     * Constructor for the progress of importing a csv
+     * @param source the csv being imported
+     */
+    public ImportProgress(File source) {
+        this.totalBytes = source.length();
+        this.startTime = System.currentTimeMillis();
+    }
+
+
+    /**
+     * Asks the import to stop. This can be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+
+    /**
+     * Starts timing the read of the csv
+     * @param offset the number of bytes of the csv that are skipped over (eg: when resuming from a checkpoint)
+     */
+    void start(long offset) {
+        startTime = System.currentTimeMillis();
+        startBytes = offset;
+        bytesRead = offset;
+    }
+
+
+    /**
+     * Stops the clock, the rates are frozen at their final values
+     */
+    void finish() {
+        endTime = System.currentTimeMillis();
+    }
+
+
+    /**
+     * Counts bytes read from the csv file
+     * @param bytes the number of bytes just read
+     */
+    void addBytesRead(long bytes) {
+        bytesRead += bytes;
+    }
+
+
+    /**
+     * Counts crime records written and committed to the database
+     * @param rows the number of records just written
+     */
+    void recordWritten(long rows) {
+        rowsWritten += rows;
+    }
+
+
+    /**
+     * Wraps a sink so each record passing through it is counted, and the read is stopped once the import has
+     * been cancelled
+     * @param sink the sink to pass the records on to
+     * @param checkpoint the checkpoint of the read, its byte offset is used as the number of bytes read when known
+     * @return the counting sink
+     */
+    CrimeRecordSink track(final CrimeRecordSink sink, final ImportCheckpoint checkpoint) {
+        return new CrimeRecordSink() {
+            @Override
+            public void accept(CrimeRecord crime) throws Exception {
+                rowsParsed++;
+                if (checkpoint != null && checkpoint.getByteOffset() >= 0) {
+                    bytesRead = checkpoint.getByteOffset();
+                }
+                sink.accept(crime);
+                // Only stop once the record has been handed on, the checkpoint has already been moved past it
+                if (cancelled) {
+                    throw new CancellationException("Import cancelled");
+                }
+            }
+        };
+    }
+
+
+    private long getElapsedMillis() {
+        long end = (endTime < 0) ? System.currentTimeMillis() : endTime;
+        return Math.max(end - startTime, 1);
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // GETTERS
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    public Long getRowsParsed() { return rowsParsed; }
+
+    public Long getRowsWritten() { return rowsWritten; }
+
+    public Long getBytesRead() { return bytesRead; }
+
+    public Long getTotalBytes() { return totalBytes; }
+
+    public Boolean isCancelled() { return cancelled; }
+
+    public Boolean isFinished() { return endTime >= 0; }
+
+
+    /**
+     * @return the number of crime records parsed per second
+     */
+    public Double getRowsPerSecond() {
+        return rowsParsed * 1000.0 / getElapsedMillis();
+    }
+
+
+    /**
+     * @return the fraction of the csv that has been read, from 0 to 1, or -1 if the size of the csv is not known
+     */
+    public Double getFractionDone() {
+        if (totalBytes <= 0) {
+            return -1.0;
+        }
+        return Math.min((double) bytesRead / totalBytes, 1.0);
+    }
+
+
+    /**
+     * @return the estimated number of milliseconds until the csv has been read, or -1 if it can't be estimated yet
+     */
+    public Long getEtaMillis() {
+        long read = bytesRead - startBytes;
+        if (totalBytes <= 0 || read <= 0) {
+            return -1L;
+        }
+        return (long) ((double) (totalBytes - bytesRead) / read * getElapsedMillis());
+    }
+
+
+    /**
+     * @return a one line summary, eg: "120000 rows read, 100000 written, 60000 rows/s, 24 of 96 MB, 6s left"
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(rowsParsed).append(" rows read, ").append(rowsWritten).append(" written, ")
+                .append(Math.round(getRowsPerSecond())).append(" rows/s, ")
+                .append(bytesRead / (1024 * 1024)).append(" of ").append(totalBytes / (1024 * 1024)).append(" MB");
+        long eta = getEtaMillis();
+        if (eta >= 0 && !isFinished()) {
+            report.append(", ").append((eta + 999) / 1000).append("s left");
+        }
+        return report.toString();
+    }
+}
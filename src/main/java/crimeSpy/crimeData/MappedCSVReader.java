@@ -0,0 +1,230 @@
+package crimeSpy.crimeData;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Reads a crime csv through memory mapped windows of the file.
+ * <p>Rather than decoding the whole file into Strings line by line, each window of the file is mapped
+ * and records are tokenized straight from the mapped bytes (see ByteBufferCSVTokenizer). Only the text
+ * fields kept by a CrimeRecord are ever turned into Strings.</p>
+ * <u>Windows</u>
+ * <p>A single mapping is limited to 2GB, so the file is mapped a window at a time. When a record runs
+ * past the end of a window the next window is mapped from the start of that record, so no record is
+ * ever split between two mappings. A record bigger than a whole window doubles the window size.</p>
+ * <u>Example Use:</u><br>
+ *    new MappedCSVReader(MappedCSVReader.DEFAULT_WINDOW_SIZE).read(location, sink);<br>
+ */
+public class MappedCSVReader {
+
+
+    /**
+     * The default number of bytes mapped at once
+     */
+    public static final Long DEFAULT_WINDOW_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * The longest header line that will be looked for before the file is rejected
+     */
+    private static final int MAX_HEADER_LENGTH = 4096;
+
+    private Long windowSize;
+    private CSVColumnSelection columns;
+    private Integer malformedDates = 0;
+
+
+    /**
+     * Create a memory mapped reader
+     * @param windowSize the number of bytes to map at once
+     */
+    public MappedCSVReader(Long windowSize) {
+        this(windowSize, null);
+    }
+
+
+    /**
+     * Create a memory mapped reader that only reads some of the columns
+     * @param windowSize the number of bytes to map at once
+     * @param columns the columns to read, null to read them all
+     */
+    public MappedCSVReader(Long windowSize, CSVColumnSelection columns) {
+        if (windowSize == null || windowSize < 1) {
+            windowSize = DEFAULT_WINDOW_SIZE;
+        }
+        this.windowSize = Math.min(windowSize, Integer.MAX_VALUE);
+        this.columns = columns;
+    }
+
+
+    /**
+     * Read the crime records of a csv file, passing them to the sink in file order
+     * @param location the file location to read from. Note that this file is expected to be in csv format
+     * @param sink receives each crime record as it is read
+     * @return the number of crime records passed to the sink
+     * @throws FileNotFoundException The csv could not be found
+     * @throws java.util.zip.DataFormatException The csv header did not match the supported format
+     * @throws Exception the file could not be read or a record could not be parsed
+     */
+    public Integer read(String location, CrimeRecordSink sink) throws Exception {
+        return read(location, sink, null);
+    }
+
+
+    /**
+     * Read the crime records of a csv file from a checkpoint, passing them to the sink in file order
+     * @param location the file location to read from. Note that this file is expected to be in csv format
+     * @param sink receives each crime record as it is read
+     * @param checkpoint where to start reading from (null for the start of the file), it is moved past each
+     *                   record before the record is passed to the sink
+     * @return the number of crime records passed to the sink
+     * @throws FileNotFoundException The csv could not be found
+     * @throws java.util.zip.DataFormatException The csv header did not match the supported format
+     * @throws Exception the file could not be read or a record could not be parsed
+     */
+    public Integer read(String location, CrimeRecordSink sink, ImportCheckpoint checkpoint) throws Exception {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(Paths.get(location), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(location);
+        }
+        try {
+            long start = Math.max(readHeader(channel), resumeOffset(checkpoint));
+            CrimeDateParser dates = new CrimeDateParser();
+            try {
+                return read(channel, start, channel.size(), windowSize, sink, dates, checkpoint, columns, true);
+            } finally {
+                malformedDates += dates.getMalformedCount();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+
+    /**
+     * Read the crime records in a byte range of a csv file
+     * @param channel the open csv file
+     * @param start the offset of the first record, this must be the start of a record
+     * @param end the offset after the last record
+     * @param windowSize the number of bytes to map at once
+     * @param sink receives each crime record as it is read
+     * @param dates the parser to read dates with
+     * @param checkpoint moved past each record before the record is passed to the sink, may be null
+     * @param columns the columns to read, null to read them all
+     * @return the number of crime records passed to the sink
+     * @throws Exception the file could not be read or a record could not be parsed
+     */
+    static Integer read(FileChannel channel, long start, long end, long windowSize, CrimeRecordSink sink,
+                        CrimeDateParser dates, ImportCheckpoint checkpoint, CSVColumnSelection columns)
+            throws Exception {
+        return read(channel, start, end, windowSize, sink, dates, checkpoint, columns, true);
+    }
+
+
+    /**
+     * Read the crime records in a byte range of a csv file that may still be being written to
+     * @param channel the open csv file
+     * @param start the offset of the first record, this must be the start of a record
+     * @param end the offset to read up to
+     * @param windowSize the number of bytes to map at once
+     * @param sink receives each crime record as it is read
+     * @param dates the parser to read dates with
+     * @param checkpoint moved past each record before the record is passed to the sink, may be null
+     * @param columns the columns to read, null to read them all
+     * @param endIsFinal true if end is the end of the last record. If false a record that has not been ended with a
+     *                   line break before end is left unread, as the rest of it may not have been written yet
+     * @return the number of crime records passed to the sink
+     * @throws Exception the file could not be read or a record could not be parsed
+     */
+    static Integer read(FileChannel channel, long start, long end, long windowSize, CrimeRecordSink sink,
+                        CrimeDateParser dates, ImportCheckpoint checkpoint, CSVColumnSelection columns,
+                        boolean endIsFinal) throws Exception {
+        ByteBufferCSVTokenizer tokenizer = new ByteBufferCSVTokenizer();
+        long window = Math.min(windowSize, Integer.MAX_VALUE);
+        long position = start;
+        Integer count = 0;
+        while (position < end) {
+            int limit = (int) Math.min(window, end - position);
+            boolean endOfInput = endIsFinal && position + limit == end;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, limit);
+            int offset = 0;
+            int next;
+            while (offset < limit && (next = tokenizer.tokenize(buffer, offset, limit, endOfInput)) >= 0) {
+                CrimeRecord crime = CSVFileHandler.createCrimeRecord(tokenizer, dates, columns);
+                if (checkpoint != null) {
+                    checkpoint.recordRead(position + next);
+                }
+                sink.accept(crime);
+                count++;
+                offset = next;
+            }
+            if (offset == 0 && position + limit == end) {
+                // Only the start of a record is left
+                break;
+            }
+            if (offset == 0 && !endOfInput) {
+                // A single record is bigger than the window
+                if (window >= Integer.MAX_VALUE) {
+                    throw new IOException("Record at byte " + position + " is too large to read");
+                }
+                window = Math.min(window * 2, Integer.MAX_VALUE);
+            }
+            position += offset;
+        }
+        return count;
+    }
+
+
+    /**
+     * @param checkpoint an import checkpoint, may be null
+     * @return the byte offset to carry on reading a file from, 0 if there is nothing to resume
+     */
+    static long resumeOffset(ImportCheckpoint checkpoint) {
+        if (checkpoint == null || checkpoint.getRowNumber() == 0 || checkpoint.getByteOffset() < 0) {
+            return 0;
+        }
+        return checkpoint.getByteOffset();
+    }
+
+
+    /**
+     * @return the number of dates read by this reader that were replaced with the placeholder date
+     */
+    public Integer getMalformedDateCount() {
+        return malformedDates;
+    }
+
+
+    /**
+     * Checks the header line of the csv
+     * @param channel the open csv file
+     * @return the byte offset of the first record
+     * @throws java.util.zip.DataFormatException The csv header did not match the supported format
+     */
+    static long readHeader(FileChannel channel) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(MAX_HEADER_LENGTH, channel.size()));
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            // keep reading until the buffer is full or the file ends
+        }
+        byte[] bytes = buffer.array();
+        int newline = 0;
+        while (newline < bytes.length && bytes[newline] != '\n') {
+            newline++;
+        }
+        int headerEnd = newline;
+        if (headerEnd > 0 && bytes[headerEnd - 1] == '\r') {
+            headerEnd--;
+        }
+        CSVFileHandler.checkHeader(new String(bytes, 0, headerEnd, StandardCharsets.UTF_8));
+        return Math.min(newline + 1, channel.size());
+    }
+}
@@ -266,16 +266,16 @@ public class OR_Map {
      */
     public String toDBCreateString() {
         String result;
-        result = "'" + id + "', '" + date.toString() + "', '" + block + "', '" + locationStr +
+        result = "'" + id + "', " + date.getMillis() + ", '" + block + "', '" + locationStr +
             "', " + arrest + ", " + domestic + ", " + beat + ", " + ward + ", " + xCoord +
             ", " + yCoord + ", " + latitude + ", " + longitude + ", '" + locationStr +
-            "', 0, 0, '" + iucr.replaceFirst("^0+(?!$)", "") + "', '" + fbiCD + "'"; //Remove leading zeros in IUCR code
+            "', NULL, NULL, '" + iucr.replaceFirst("^0+(?!$)", "") + "', '" + fbiCD + "'"; //Remove leading zeros in IUCR code
         return result;
         /*
         FORMAT for sql:
         "INSERT INTO CRIME_RECORD " +
                 "(CRIME_RECORD_ID, CRIME_RECORD_DATE, CRIME_RECORD_BLOCK, CRIME_RECORD_LOCATION_DESCRIPTION, CRIME_RECORD_ARREST, CRIME_RECORD_DOMESTIC, CRIME_RECORD_BEAT, CRIME_RECORD_WARD, CRIME_RECORD_XCOORDINATE, CRIME_RECORD_YCOORDINATE, CRIME_RECORD_LATITUDE, CRIME_RECORD_LONGITUDE, CRIME_RECORD_LOCATIONSTR, PREV_CRIME_RECORD, NEXT_CRIME_RECORD, CRIME_TYPE_ID) " +
-                "VALUES ('HX321538', 'HiDate', '080XX S HALSTED ST', 'DEPARTMENT STORE', 0, 1, 621, 21, 0.0, 0.0, 0.0, 0.0, 'latlong', 0, 0, 'THEFT')";
+                "VALUES ('HX321538', 1403915460000, '080XX S HALSTED ST', 'DEPARTMENT STORE', 0, 1, 621, 21, 0.0, 0.0, 0.0, 0.0, 'latlong', NULL, NULL, 'THEFT')";
         */
     }
 
@@ -306,7 +306,7 @@ public class OR_Map {
      */
     public String toDBUpdateString() {
         String result;
-        result = "CRIME_RECORD_ID = '" + id + "', CRIME_RECORD_DATE = '" + date.toString() + "', " +
+        result = "CRIME_RECORD_ID = '" + id + "', CRIME_RECORD_DATE = " + date.getMillis() + ", " +
                 "CRIME_RECORD_BLOCK = '" + block + "', CRIME_RECORD_LOCATION_DESCRIPTION = '" + locationStr +
                 "', CRIME_RECORD_ARREST = " + arrest + ", CRIME_RECORD_DOMESTIC = " + domestic +
                 ", CRIME_RECORD_BEAT = " + beat + ", CRIME_RECORD_WARD = " + ward +
@@ -317,7 +317,7 @@ public class OR_Map {
         return result;
         /*
         SQL format:
-        UPDATE CRIME_RECORD SET CRIME_RECORD_ID = 'HX321533', CRIME_RECORD_DATE = '2014-01-27T00:00:00.000+13:00',
+        UPDATE CRIME_RECORD SET CRIME_RECORD_ID = 'HX321533', CRIME_RECORD_DATE = 1390734000000,
         CRIME_RECORD_BLOCK = '10', CRIME_RECORD_LOCATION_DESCRIPTION = 'CONVENIENCE STORE',
         CRIME_RECORD_ARREST = 1, CRIME_RECORD_DOMESTIC = 0, CRIME_RECORD_BEAT = 423,
         CRIME_RECORD_WARD = 10, CRIME_RECORD_XCOORDINATE = 1197615.0, CRIME_RECORD_YCOORDINATE = 1847794.0,
@@ -0,0 +1,314 @@
+package crimeSpy.crimeData;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * Reads a crime csv on several threads at once.
+ * <p>The file is split into byte ranges that start and end on record boundaries. Each range is parsed
+ * into its own list of CrimeRecords on a ForkJoinPool worker, and the lists are handed to the sink in
+ * file order on the calling thread. The sink therefore sees exactly the same records in exactly the same
+ * order as CSVFileHandler.readCrimeRecords(location, sink), and does not need to be thread safe.</p>
+ * <u>Finding record boundaries</u>
+ * <p>A newline inside a quoted field is not the end of a record, so a boundary can't be found by looking
+ * for the next newline after an arbitrary offset. Instead the file is first cut into raw ranges, and each
+ * range is scanned (in parallel) for its number of quote characters and the first newline seen after an
+ * even and after an odd number of quotes. Adding up the quote counts of the earlier ranges tells us whether
+ * each range starts inside quotes, and so which of its two newlines is the real end of a record.</p>
+ * <p>Only a bounded number of parsed ranges are held in memory at once: parsing runs at most a few ranges
+ * ahead of the range being handed to the sink.</p>
+ */
+public class ParallelCSVReader {
+
+
+    /**
+     * The default size of each range parsed by a worker
+     */
+    public static final Long DEFAULT_CHUNK_SIZE = 4L * 1024 * 1024;
+
+    /**
+     * How many ranges each worker may have parsed ahead of the sink
+     */
+    private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+
+    private Integer parallelism;
+    private Long chunkSize;
+    private CSVColumnSelection columns;
+    private Integer malformedDates = 0;
+
+
+    /**
+     * Create a parallel reader
+     * @param parallelism the number of worker threads to parse with
+     * @param chunkSize the approximate number of bytes parsed by each task
+     */
+    public ParallelCSVReader(Integer parallelism, Long chunkSize) {
+        this(parallelism, chunkSize, null);
+    }
+
+
+    /**
+     * Create a parallel reader that only reads some of the columns
+     * @param parallelism the number of worker threads to parse with
+     * @param chunkSize the approximate number of bytes parsed by each task
+     * @param columns the columns to read, null to read them all
+     */
+    public ParallelCSVReader(Integer parallelism, Long chunkSize, CSVColumnSelection columns) {
+        if (parallelism == null || parallelism < 1) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        if (chunkSize == null || chunkSize < 1) {
+            chunkSize = DEFAULT_CHUNK_SIZE;
+        }
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.columns = columns;
+    }
+
+
+    /**
+     * Read the crime records of a csv file, passing them to the sink in file order
+     * @param location the file location to read from. Note that this file is expected to be in csv format
+     * @param sink receives each crime record, always on the calling thread
+     * @return the number of crime records passed to the sink
+     * @throws java.util.zip.DataFormatException The csv header did not match the supported format
+     * @throws Exception the file could not be read or a record could not be parsed
+     */
+    public Integer read(String location, CrimeRecordSink sink) throws Exception {
+        return read(location, sink, null);
+    }
+
+
+    /**
+     * Read the crime records of a csv file from a checkpoint, passing them to the sink in file order
+     * @param location the file location to read from. Note that this file is expected to be in csv format
+     * @param sink receives each crime record as it is read
+     * @param checkpoint where to start reading from (null for the start of the file), it is moved past each
+     *                   record before the record is passed to the sink
+     * @return the number of crime records passed to the sink
+     * @throws java.util.zip.DataFormatException The csv header did not match the supported format
+     * @throws Exception the file could not be read or a record could not be parsed
+     */
+    public Integer read(String location, CrimeRecordSink sink, ImportCheckpoint checkpoint) throws Exception {
+        // Descriptions are looked up from a shared map while parsing, make sure it is filled before the workers start
+        SQLiteDBHandler.getCrimeTypeData("");
+
+        FileChannel channel = FileChannel.open(Paths.get(location), StandardOpenOption.READ);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Integer count = 0;
+        try {
+            long size = channel.size();
+            long dataStart = Math.max(MappedCSVReader.readHeader(channel), MappedCSVReader.resumeOffset(checkpoint));
+            List<Long> starts = findChunkStarts(channel, pool, dataStart, size);
+
+            List<ChunkParseTask> tasks = new ArrayList<ChunkParseTask>(starts.size());
+            for (int i = 0; i < starts.size(); i++) {
+                long end = (i + 1 < starts.size()) ? starts.get(i + 1) : size;
+                tasks.add(new ChunkParseTask(channel, starts.get(i), end, columns));
+            }
+
+            int window = parallelism * CHUNKS_AHEAD_PER_THREAD;
+            int submitted = 0;
+            for (int i = 0; i < tasks.size(); i++) {
+                while (submitted < tasks.size() && submitted < i + window) {
+                    pool.execute(tasks.get(submitted));
+                    submitted++;
+                }
+                ChunkParseTask task = tasks.get(i);
+                List<CrimeRecord> records = task.get();
+                if (task.failure != null) {
+                    throw task.failure;
+                }
+                malformedDates += task.dates.getMalformedCount();
+                tasks.set(i, null); // Let the finished chunk be collected
+                for (int j = 0; j < records.size(); j++) {
+                    if (checkpoint != null) {
+                        checkpoint.recordRead(task.recordEnds.get(j));
+                    }
+                    sink.accept(records.get(j));
+                    count++;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            channel.close();
+        }
+        return count;
+    }
+
+
+    /**
+     * @return the number of dates read by this reader that were replaced with the placeholder date
+     */
+    public Integer getMalformedDateCount() {
+        return malformedDates;
+    }
+
+
+    /**
+     * Splits the data part of the file into ranges that each start at the beginning of a record
+     * @return the start offset of every range, in file order
+     */
+    private List<Long> findChunkStarts(FileChannel channel, ForkJoinPool pool, long dataStart, long size)
+            throws Exception {
+        List<BoundaryScanTask> scans = new ArrayList<BoundaryScanTask>();
+        for (long start = dataStart; start < size; start += chunkSize) {
+            BoundaryScanTask scan = new BoundaryScanTask(channel, start, Math.min(start + chunkSize, size));
+            pool.execute(scan);
+            scans.add(scan);
+        }
+
+        List<Long> starts = new ArrayList<Long>();
+        if (dataStart < size) {
+            starts.add(dataStart);
+        }
+        long quotesBefore = 0;
+        for (int i = 0; i < scans.size(); i++) {
+            BoundaryScanTask scan = scans.get(i);
+            scan.get();
+            if (scan.failure != null) {
+                throw scan.failure;
+            }
+            // The first range always starts on a record, for the rest use the first newline outside of quotes
+            if (i > 0) {
+                long newline = scan.firstNewline[(int) (quotesBefore % 2)];
+                if (newline >= 0 && newline + 1 < size) {
+                    starts.add(newline + 1);
+                }
+            }
+            quotesBefore += scan.quotes;
+        }
+        return starts;
+    }
+
+
+    /**
+     * Reads from a channel at a position until the buffer is full or the end of the file is reached
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws Exception {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+    }
+
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // WORKER TASKS
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Counts the quotes in a raw byte range and finds the first newline after an even and an odd number of them.
+     * Failures are kept in failure rather than thrown so the original exception reaches the caller.
+     */
+    private static class BoundaryScanTask extends RecursiveTask<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private FileChannel channel;
+        private long start;
+        private long end;
+        private long quotes = 0;
+        private long[] firstNewline = {-1, -1};
+        private Exception failure = null;
+
+        BoundaryScanTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Void compute() {
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+                readFully(channel, buffer, start);
+                byte[] bytes = buffer.array();
+                int length = buffer.position();
+                for (int i = 0; i < length; i++) {
+                    byte b = bytes[i];
+                    if (b == '"') {
+                        quotes++;
+                    } else if (b == '\n') {
+                        int parity = (int) (quotes % 2);
+                        if (firstNewline[parity] < 0) {
+                            firstNewline[parity] = start + i;
+                            if (firstNewline[1 - parity] >= 0) {
+                                // Both newlines found, only the quote count is still needed
+                                quotes += countQuotes(bytes, i + 1, length);
+                                break;
+                            }
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                failure = e;
+            }
+            return null;
+        }
+
+        private static long countQuotes(byte[] bytes, int from, int to) {
+            long count = 0;
+            for (int i = from; i < to; i++) {
+                if (bytes[i] == '"') {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+
+    /**
+     * Parses the records in a byte range that starts and ends on record boundaries, straight from a mapping of the range.
+     * Failures are kept in failure rather than thrown so the original exception reaches the caller.
+     */
+    private static class ChunkParseTask extends RecursiveTask<List<CrimeRecord>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private FileChannel channel;
+        private long start;
+        private long end;
+        private CSVColumnSelection columns;
+        private CrimeDateParser dates = new CrimeDateParser();
+        private List<Long> recordEnds = new ArrayList<Long>();
+        private Exception failure = null;
+
+        ChunkParseTask(FileChannel channel, long start, long end, CSVColumnSelection columns) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.columns = columns;
+        }
+
+        @Override
+        protected List<CrimeRecord> compute() {
+            final List<CrimeRecord> records = new ArrayList<CrimeRecord>();
+            // Only used to find where each record ends, so the reader's checkpoint can be moved on in file order
+            final ImportCheckpoint position = new ImportCheckpoint(null, 0L, 0L, start, 0L, false);
+            try {
+                MappedCSVReader.read(channel, start, end, end - start, new CrimeRecordSink() {
+                    @Override
+                    public void accept(CrimeRecord crime) {
+                        records.add(crime);
+                        recordEnds.add(position.getByteOffset());
+                    }
+                }, dates, position, columns);
+            } catch (Exception e) {
+                failure = e;
+            }
+            return records;
+        }
+    }
+}
@@ -0,0 +1,623 @@
+package crimeSpy.crimeData;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.*;
+
+
+/**
+ * Keeps long lived connections to the SQLite databases used by crimeSpy, so SQLiteDBHandler does not open
+ * (and parse the schema of) a database for every statement it runs.
+ * <p>Each database has one writer connection and a small pool of reader connections. Databases are always in write
+ * ahead logging mode, so reading never waits for the writer and writing never waits for a reader.</p>
+ * <ul>
+ *     <li><b>writer</b> auto commit is off. Only one thread holds the writer at a time, as SQLite only allows a
+ *     single writer per database anyway. The same thread may acquire it again while holding it (eg: creating
+ *     a database also fills in its IUCR codes), only the outermost release ends the transaction. Anything not
+ *     committed by then is rolled back.</li>
+ *     <li><b>readers</b> auto commit is on, so a reader never holds a lock on the database between queries.
+ *     A reader is never waited for: if none is idle a new one is opened, and at most READER_POOL_SIZE idle
+ *     readers are kept.</li>
+ *     <li><b>snapshots</b> a reader that stays in one read transaction until it is given back, so all of its queries
+ *     see the database as it was last committed when it was taken, eg: the grid and graphs of a collection while
+ *     an import or merge is still writing to it (see acquireSnapshot()).</li>
+ * </ul>
+ * <u>Profiles</u>
+ * <p>The writer of each database runs with one of two sets of PRAGMAs.</p>
+ * <ul>
+ *     <li><b>PROFILE_INTERACTIVE</b> (the default) synchronous=NORMAL, so a commit does not wait on the disk.
+ *     Readers also map up to MMAP_SIZE bytes of the database into memory.</li>
+ *     <li><b>PROFILE_BULK_LOAD</b> used while a large number of records are written (eg: importing a csv).
+ *     synchronous=OFF, a large page cache and temp tables in memory. The journal stays in WAL, which writes an
+ *     import as quickly as a rollback journal kept in memory and lets readers keep reading during it.
+ *     If the computer stops during a bulk load the database may be left corrupt, it should then be deleted and
+ *     imported again.</li>
+ * </ul>
+ * <p>beginBulkLoad() and endBulkLoad() switch between them. They count, so the interactive profile comes back
+ * after the last bulk load on a database has ended.</p>
+ * <u>Lifecycle</u>
+ * <p>CrimeCollectionManager.setCurrWorkingCollection() opens the connections of the new working collection and
+ * closes those of the previous one, and closeAll() is called when crimeSpy exits. Snapshots still held when their
+ * database is closed are closed with it. A database file that has been
+ * deleted or replaced since it was opened is noticed on the next acquire and reopened.</p>
+ * <u>Example Use:</u><br>
+ *    Connection c = SQLiteConnectionManager.acquireReader(location);<br>
+ *    try {<br>
+ *        ...<br>
+ *    } finally {<br>
+ *        SQLiteConnectionManager.releaseReader(c);<br>
+ *    }<br>
+ */
+public class SQLiteConnectionManager {
+
+
+    /**
+     * LOGGER is the class wide instance of java.util.logging for SQLiteConnectionManager
+     * Logging to root directory: ./LOG_SQLiteConnectionManager
+     */
+    private static final Logger LOGGER = Logger.getLogger(SQLiteConnectionManager.class.getName());
+    private static final String LOG_FILE_STORE_LOC = "./LOG_SQLiteConnectionManager";
+
+    // initialise the logger for fileloc
+    private static Handler fileHandler;
+    private static SimpleFormatter simpleFormatter;
+
+    static {
+        try {
+            simpleFormatter = new SimpleFormatter();
+            fileHandler  = new FileHandler(LOG_FILE_STORE_LOC);
+            fileHandler.setFormatter(simpleFormatter);
+            LOGGER.addHandler(fileHandler);
+            fileHandler.setLevel(Level.INFO);
+            LOGGER.setUseParentHandlers(false);
+            LOGGER.setLevel(Level.INFO);
+            LOGGER.config("Configuration done.");
+        } catch (IOException e) {
+            LOGGER.warning("Failed to initiate file handler");
+            LOGGER.setLevel(Level.SEVERE); // for case of console only
+        }
+    }
+
+
+    /**
+     * The most idle reader connections kept open for each database
+     */
+    public static final Integer READER_POOL_SIZE = 4;
+
+    /**
+     * Profiles of PRAGMAs for the writer connection of a database (see getProfile())
+     */
+    public static final Integer PROFILE_INTERACTIVE = 0;
+    public static final Integer PROFILE_BULK_LOAD = 1;
+
+    /**
+     * The most bytes of a database mapped into memory by each connection in the interactive profile
+     */
+    public static final Long MMAP_SIZE = 256L * 1024 * 1024;
+
+    private static final String[] INTERACTIVE_PRAGMAS = {"PRAGMA journal_mode=WAL", "PRAGMA synchronous=NORMAL",
+            "PRAGMA cache_size=-2000", "PRAGMA temp_store=DEFAULT", "PRAGMA mmap_size=" + MMAP_SIZE};
+    private static final String[] BULK_LOAD_PRAGMAS = {"PRAGMA journal_mode=WAL", "PRAGMA synchronous=OFF",
+            "PRAGMA cache_size=-65536", "PRAGMA temp_store=MEMORY", "PRAGMA mmap_size=0"};
+    private static final String[] READER_PRAGMAS = {"PRAGMA mmap_size=" + MMAP_SIZE};
+
+    /**
+     * Files SQLite keeps next to a database, left behind if it was not closed
+     */
+    private static final String[] DATABASE_SIDE_FILES = {"-wal", "-shm", "-journal"};
+
+    private static final HashMap<String, DatabaseConnections> databases = new HashMap<String, DatabaseConnections>();
+    private static final Map<Connection, DatabaseConnections> owners = new IdentityHashMap<Connection, DatabaseConnections>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // Connection ACCESS
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Takes the writer connection of a database, waiting for any other thread that holds it.
+     * Must be given back with releaseWriter(), in a finally block.
+     * @param location the location of the database, it is created if it doesn't exist
+     * @return the writer connection, with auto commit turned off
+     * @throws SQLException the database could not be opened
+     */
+    public static Connection acquireWriter(String location) throws SQLException {
+        DatabaseConnections db = databaseFor(location);
+        db.writeLock.lock();
+        try {
+            synchronized (db) {
+                if (db.writer == null) {
+                    db.writer = connect(db, false);
+                }
+                return db.writer;
+            }
+        } catch (SQLException e) {
+            db.writeLock.unlock();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Gives back the writer connection of a database. Work that was not committed is rolled back.
+     * @param c a connection from acquireWriter()
+     */
+    public static void releaseWriter(Connection c) {
+        DatabaseConnections db = ownerOf(c);
+        if (db == null) {
+            return;
+        }
+        try {
+            if (db.writeLock.getHoldCount() == 1) {
+                if (!c.getAutoCommit()) {
+                    c.rollback();
+                }
+                synchronized (db) {
+                    if (db.retired) {
+                        db.writer = null;
+                        close(c);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+            synchronized (db) {
+                db.writer = null;
+            }
+            close(c);
+        } finally {
+            db.writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Takes a reader connection of a database. Must be given back with releaseReader(), in a finally block.
+     * @param location the location of the database, it is created if it doesn't exist
+     * @return a reader connection, with auto commit turned on
+     * @throws SQLException the database could not be opened
+     */
+    public static Connection acquireReader(String location) throws SQLException {
+        DatabaseConnections db = databaseFor(location);
+        synchronized (db) {
+            if (!db.idleReaders.isEmpty()) {
+                return db.idleReaders.pop();
+            }
+        }
+        return connect(db, true);
+    }
+
+
+    /**
+     * Gives back a reader connection, keeping it open for the next read unless enough readers are idle
+     * @param c a connection from acquireReader()
+     */
+    public static void releaseReader(Connection c) {
+        DatabaseConnections db = ownerOf(c);
+        if (db == null) {
+            return;
+        }
+        synchronized (db) {
+            if (!db.retired && db.idleReaders.size() < READER_POOL_SIZE) {
+                db.idleReaders.push(c);
+                return;
+            }
+        }
+        close(c);
+    }
+
+
+    /**
+     * Takes a reader connection holding a snapshot of a database. Every query on it sees the database as it was
+     * last committed when the snapshot was taken, even while the writer commits more. Must be given back with
+     * releaseSnapshot(), in a finally block.
+     * <p>The write ahead log can't be checkpointed past a snapshot that is held, so it grows with everything
+     * written to the database until the snapshot is given back.</p>
+     * @param location the location of the database, it is created if it doesn't exist
+     * @return a reader connection in a read transaction
+     * @throws SQLException the database could not be opened or read
+     */
+    public static Connection acquireSnapshot(String location) throws SQLException {
+        Connection c = acquireReader(location);
+        DatabaseConnections db = ownerOf(c);
+        try {
+            c.setAutoCommit(false);
+            // A read transaction only takes its snapshot at its first read
+            Statement stmt = c.createStatement();
+            try {
+                stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master;").close();
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            close(c);
+            throw e;
+        }
+        synchronized (db) {
+            db.snapshots.add(c);
+        }
+        return c;
+    }
+
+
+    /**
+     * Gives back a snapshot, ending its read transaction
+     * @param c a connection from acquireSnapshot(), it is ignored if it was closed with its database
+     */
+    public static void releaseSnapshot(Connection c) {
+        DatabaseConnections db = ownerOf(c);
+        if (db == null) {
+            return;
+        }
+        synchronized (db) {
+            db.snapshots.remove(c);
+        }
+        try {
+            c.setAutoCommit(true);
+        } catch (SQLException e) {
+            LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+            close(c);
+            return;
+        }
+        releaseReader(c);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // LIFECYCLE
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Opens the connections of a database ahead of its first use, creating the database if it doesn't exist
+     * @param location the location of the database
+     * @throws SQLException the database could not be opened
+     */
+    public static void open(String location) throws SQLException {
+        releaseWriter(acquireWriter(location));
+    }
+
+
+    /**
+     * Closes the connections of a database. Connections that are in use are closed when they are given back.
+     * @param location the location of the database
+     */
+    public static void close(String location) {
+        DatabaseConnections db;
+        synchronized (SQLiteConnectionManager.class) {
+            db = databases.remove(keyFor(location));
+        }
+        if (db != null) {
+            retire(db);
+            LOGGER.info("Closed the connections to " + db.location);
+        }
+    }
+
+
+    /**
+     * Closes the connections of every database, eg: when crimeSpy exits
+     */
+    public static void closeAll() {
+        ArrayList<DatabaseConnections> open;
+        synchronized (SQLiteConnectionManager.class) {
+            open = new ArrayList<DatabaseConnections>(databases.values());
+            databases.clear();
+        }
+        for (DatabaseConnections db : open) {
+            retire(db);
+        }
+        LOGGER.info("Closed the connections to " + open.size() + " databases");
+    }
+
+
+    /**
+     * Switches the writer of a database to the bulk load profile until a matching endBulkLoad()
+     * @param location the location of the database
+     * @throws SQLException the database could not be opened
+     */
+    public static void beginBulkLoad(String location) throws SQLException {
+        Connection c = acquireWriter(location);
+        try {
+            DatabaseConnections db = ownerOf(c);
+            db.bulkLoads++;
+            if (db.bulkLoads == 1) {
+                applyPragmas(c, BULK_LOAD_PRAGMAS);
+                LOGGER.info("Bulk load started on " + db.location);
+            }
+        } finally {
+            releaseWriter(c);
+        }
+    }
+
+
+    /**
+     * Ends a bulk load started by beginBulkLoad(), switching the writer back to the interactive profile once no
+     * other bulk load is running on the database
+     * @param location the location of the database
+     * @throws SQLException the database could not be opened
+     */
+    public static void endBulkLoad(String location) throws SQLException {
+        Connection c = acquireWriter(location);
+        try {
+            DatabaseConnections db = ownerOf(c);
+            if (db.bulkLoads == 0) {
+                return;
+            }
+            db.bulkLoads--;
+            if (db.bulkLoads == 0) {
+                applyPragmas(c, INTERACTIVE_PRAGMAS);
+                LOGGER.info("Bulk load ended on " + db.location);
+            }
+        } finally {
+            releaseWriter(c);
+        }
+    }
+
+
+    /**
+     * @param location the location of the database
+     * @return the profile of the database's writer, PROFILE_INTERACTIVE or PROFILE_BULK_LOAD
+     */
+    public static Integer getProfile(String location) {
+        DatabaseConnections db = databaseFor(location);
+        db.writeLock.lock();
+        try {
+            return (db.bulkLoads > 0) ? PROFILE_BULK_LOAD : PROFILE_INTERACTIVE;
+        } finally {
+            db.writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Moves the kept connections from one database to another, when the working collection changes
+     * @param previous the location of the database no longer in use, may be null
+     * @param next the location of the database now in use, may be null
+     */
+    static void switchDatabase(String previous, String next) {
+        if (previous != null && (next == null || !keyFor(previous).equals(keyFor(next)))) {
+            close(previous);
+        }
+        if (next != null) {
+            try {
+                open(next);
+            } catch (SQLException e) {
+                LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * @return the number of databases with connections kept open
+     */
+    public static synchronized Integer getOpenDatabaseCount() {
+        return databases.size();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // HELPERS
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Finds the connections of a database, starting over if the file was deleted or replaced since it was opened
+     */
+    private static synchronized DatabaseConnections databaseFor(String location) {
+        String key = keyFor(location);
+        DatabaseConnections db = databases.get(key);
+        if (db != null && !db.isSameFile()) {
+            LOGGER.info(db.location + " was deleted or replaced, reopening it");
+            databases.remove(key);
+            retire(db);
+            db = null;
+        }
+        if (db == null) {
+            db = new DatabaseConnections(key);
+            databases.put(key, db);
+        }
+        return db;
+    }
+
+
+    private static String keyFor(String location) {
+        return new File(location).getAbsolutePath();
+    }
+
+
+    private static DatabaseConnections ownerOf(Connection c) {
+        synchronized (owners) {
+            return owners.get(c);
+        }
+    }
+
+
+    /**
+     * Opens a new connection to a database
+     */
+    private static Connection connect(DatabaseConnections db, boolean autoCommit) throws SQLException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("The SQLite driver could not be loaded", e);
+        }
+        if (!new File(db.location).exists()) {
+            // Without the database these are stale, SQLite would otherwise replay an old log into a new database
+            for (String suffix : DATABASE_SIDE_FILES) {
+                new File(db.location + suffix).delete();
+            }
+        }
+        Connection c = DriverManager.getConnection("jdbc:sqlite:" + db.location);
+        if (autoCommit) {
+            applyPragmas(c, READER_PRAGMAS);
+        } else {
+            // The writer, only ever connected while holding the write lock
+            applyPragmas(c, (db.bulkLoads > 0) ? BULK_LOAD_PRAGMAS : INTERACTIVE_PRAGMAS);
+        }
+        c.setAutoCommit(autoCommit);
+        synchronized (db) {
+            if (db.fileKey == null && db.created == null) {
+                db.recordFile();
+            }
+        }
+        synchronized (owners) {
+            owners.put(c, db);
+        }
+        return c;
+    }
+
+
+    /**
+     * Runs PRAGMAs on a connection outside of any transaction, as the journal mode can't be changed inside one.
+     * A PRAGMA that fails is logged and skipped, the profiles only change how fast the database is.
+     */
+    private static void applyPragmas(Connection c, String[] pragmas) throws SQLException {
+        boolean autoCommit = c.getAutoCommit();
+        if (!autoCommit) {
+            c.commit();
+            c.setAutoCommit(true);
+        }
+        Statement stmt = c.createStatement();
+        try {
+            for (String pragma : pragmas) {
+                try {
+                    stmt.execute(pragma);
+                } catch (SQLException e) {
+                    LOGGER.warning(pragma + " failed: " + e.getMessage());
+                }
+            }
+        } finally {
+            stmt.close();
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
+
+    /**
+     * Closes the readers of a database that are not in use
+     */
+    private static void closeIdleReaders(DatabaseConnections db) {
+        ArrayList<Connection> idle;
+        synchronized (db) {
+            idle = new ArrayList<Connection>(db.idleReaders);
+            db.idleReaders.clear();
+        }
+        for (Connection c : idle) {
+            close(c);
+        }
+    }
+
+
+    /**
+     * Stops a database's connections being handed out and closes the ones that are not in use, and its snapshots
+     */
+    private static void retire(DatabaseConnections db) {
+        ArrayList<Connection> snapshots;
+        synchronized (db) {
+            db.retired = true;
+            snapshots = new ArrayList<Connection>(db.snapshots);
+            db.snapshots.clear();
+        }
+        closeIdleReaders(db);
+        for (Connection c : snapshots) {
+            close(c);
+        }
+        if (db.writeLock.tryLock()) {
+            try {
+                synchronized (db) {
+                    if (db.writer != null) {
+                        close(db.writer);
+                        db.writer = null;
+                    }
+                }
+            } finally {
+                db.writeLock.unlock();
+            }
+        }
+    }
+
+
+    private static void close(Connection c) {
+        synchronized (owners) {
+            owners.remove(c);
+        }
+        try {
+            c.close();
+        } catch (SQLException e) {
+            LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * The connections kept for a single database file
+     */
+    private static class DatabaseConnections {
+
+        private final String location;
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private final ArrayDeque<Connection> idleReaders = new ArrayDeque<Connection>();
+        private final Set<Connection> snapshots = Collections.newSetFromMap(new IdentityHashMap<Connection, Boolean>());
+        private Connection writer = null;
+        private Integer bulkLoads = 0;
+        private Boolean retired = false;
+        private Object fileKey = null;
+        private Object created = null;
+
+        DatabaseConnections(String location) {
+            this.location = location;
+        }
+
+        /**
+         * Remembers which file the connections were opened on
+         */
+        void recordFile() {
+            BasicFileAttributes attributes = readAttributes();
+            if (attributes != null) {
+                fileKey = attributes.fileKey();
+                created = attributes.creationTime();
+            }
+        }
+
+        /**
+         * @return true if the file at the location is still the one the connections were opened on
+         */
+        synchronized boolean isSameFile() {
+            if (fileKey == null && created == null) {
+                return true;
+            }
+            BasicFileAttributes attributes = readAttributes();
+            if (attributes == null) {
+                return false;
+            }
+            if (fileKey != null) {
+                return fileKey.equals(attributes.fileKey());
+            }
+            return created.equals(attributes.creationTime());
+        }
+
+        private BasicFileAttributes readAttributes() {
+            try {
+                return Files.readAttributes(new File(location).toPath(), BasicFileAttributes.class);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
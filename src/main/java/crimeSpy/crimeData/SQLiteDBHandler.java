@@ -2,19 +2,29 @@ package crimeSpy.crimeData;
 
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.sqlite.Function;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteErrorCode;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.logging.*;
 
 
 /**
  * A class to manage interactions between the crimeSpy system and the SQLite Database.
  * CollectionManager will use this to open/save/edit crime data to persistent storage.
+ * Connections are borrowed from SQLiteConnectionManager rather than opened for each call.
  * Relies on: sqllite-jdbc.3.8.11.1.jar
  */
 public class SQLiteDBHandler {
@@ -48,6 +58,160 @@ public class SQLiteDBHandler {
 
 
 
+    /**
+     * The number of inserts sent to SQLite at once by writeCrimeRecords when no batch size is given
+     */
+    public static final Integer INSERT_BATCH_SIZE = 500;
+
+    /**
+     * writeCrimeRecords switches the database to the bulk load profile (see SQLiteConnectionManager) when
+     * writing at least this many records
+     */
+    public static final Integer BULK_LOAD_MIN_RECORDS = 10000;
+
+    /**
+     * The columns of CRIME_RECORD
+     */
+    private static final String CRIME_RECORD_COLUMNS = "CRIME_RECORD_ID, CRIME_RECORD_DATE, CRIME_RECORD_BLOCK, " +
+            "CRIME_RECORD_LOCATION_DESCRIPTION, CRIME_RECORD_ARREST, CRIME_RECORD_DOMESTIC, CRIME_RECORD_BEAT, " +
+            "CRIME_RECORD_WARD, CRIME_RECORD_XCOORDINATE, CRIME_RECORD_YCOORDINATE, CRIME_RECORD_LATITUDE, " +
+            "CRIME_RECORD_LONGITUDE, CRIME_RECORD_LOCATIONSTR, PREV_CRIME_RECORD, NEXT_CRIME_RECORD, CRIME_TYPE_ID, " +
+            "CRIME_RECORD_FBICD";
+
+    /**
+     * Inserts a crime record, a record with a crime id that is already in the database is skipped
+     */
+    private static final String INSERT_CRIME_RECORD_SQL = "INSERT OR IGNORE INTO CRIME_RECORD (" +
+            CRIME_RECORD_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NULL, NULL, ?, ?)";
+
+    /**
+     * The temporary table crime records are staged in by mergeCrimeRecords() and mergeCrimeRecordsRenaming(), and
+     * the insert that stages a crime record. It takes the same parameters as INSERT_CRIME_RECORD_SQL.
+     */
+    private static final String MERGE_STAGE_TABLE = "temp.CRIME_RECORD_MERGE";
+
+    /**
+     * The characters appended to a case id that is already taken when crime records are merged (see
+     * mergeCrimeRecordsRenaming()), in the order they are tried, and the longest case id that is given one (the
+     * database can't store longer case ids)
+     */
+    static final String CASE_ID_SUFFIXES = "1234567890ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    static final Integer MAX_MERGED_CASE_ID_LENGTH = 19;
+    private static final String STAGE_CRIME_RECORD_SQL = "INSERT INTO " + MERGE_STAGE_TABLE + " (" +
+            CRIME_RECORD_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NULL, NULL, ?, ?)";
+
+    /**
+     * The name a crime database is attached as by writeFilteredCrimeRecords()
+     */
+    private static final String COPY_SOURCE = "COPY_SOURCE";
+
+    /**
+     * Overwrites a crime record, numbered so that it takes the same parameters as INSERT_CRIME_RECORD_SQL
+     */
+    private static final String UPDATE_CRIME_RECORD_SQL = "UPDATE CRIME_RECORD SET CRIME_RECORD_DATE = ?2, " +
+            "CRIME_RECORD_BLOCK = ?3, CRIME_RECORD_LOCATION_DESCRIPTION = ?4, CRIME_RECORD_ARREST = ?5, " +
+            "CRIME_RECORD_DOMESTIC = ?6, CRIME_RECORD_BEAT = ?7, CRIME_RECORD_WARD = ?8, " +
+            "CRIME_RECORD_XCOORDINATE = ?9, CRIME_RECORD_YCOORDINATE = ?10, CRIME_RECORD_LATITUDE = ?11, " +
+            "CRIME_RECORD_LONGITUDE = ?12, CRIME_RECORD_LOCATIONSTR = ?13, CRIME_TYPE_ID = ?14, " +
+            "CRIME_RECORD_FBICD = ?15 WHERE CRIME_RECORD_ID = ?1";
+
+    /**
+     * The version of the crime database schema made by this version of crimeSpy, kept in PRAGMA user_version.
+     * Older databases are migrated by upgradeCrimedb().
+     */
+    public static final Integer CRIME_DB_VERSION = 2;
+
+    /**
+     * The secondary indexes of CRIME_RECORD, created with the table and added to older databases when they are
+     * opened (see upgradeCrimedb()). The composite indexes also serve queries on their first column alone.
+     */
+    private static final String[][] CRIME_RECORD_INDEXES = {
+            {"CRIME_RECORD_DATE_ID_IDX", "CRIME_RECORD_DATE, CRIME_RECORD_ID"},
+            {"CRIME_RECORD_TYPE_DATE_IDX", "CRIME_TYPE_ID, CRIME_RECORD_DATE"},
+            {"CRIME_RECORD_BEAT_DATE_IDX", "CRIME_RECORD_BEAT, CRIME_RECORD_DATE"},
+            {"CRIME_RECORD_WARD_DATE_IDX", "CRIME_RECORD_WARD, CRIME_RECORD_DATE"},
+            {"CRIME_RECORD_ARREST_DOMESTIC_IDX", "CRIME_RECORD_ARREST, CRIME_RECORD_DOMESTIC, CRIME_RECORD_DATE"}
+    };
+
+    /**
+     * Indexes of CRIME_RECORD that were replaced by one of CRIME_RECORD_INDEXES and are dropped when it is created,
+     * eg: the index of the date alone, which can't order crime records by (date, case id) for paging
+     */
+    private static final String[] RETIRED_CRIME_RECORD_INDEXES = {"CRIME_RECORD_DATE_IDX"};
+
+    /**
+     * The optional full text index of CRIME_RECORD (see createCrimeSearchIndex()). Each row's docid is the rowid of
+     * its crime record.
+     */
+    private static final String CRIME_SEARCH_TABLE = "CRIME_RECORD_SEARCH";
+
+    /**
+     * The text of a crime record that is searched, from the crime record `r` and its crime type `t`
+     */
+    private static final String CRIME_SEARCH_COLUMNS = "CASE_ID, PRIMARY_DESCRIPTION, SECONDARY_DESCRIPTION, " +
+            "LOCATION, BLOCK, BEAT, WARD, IUCR, FBICD";
+    private static final String CRIME_SEARCH_VALUES = "r.CRIME_RECORD_ID, t.CRIME_TYPE_NAME, " +
+            "t.CRIME_TYPE_SECONDARY, r.CRIME_RECORD_LOCATION_DESCRIPTION, r.CRIME_RECORD_BLOCK, " +
+            "r.CRIME_RECORD_BEAT, r.CRIME_RECORD_WARD, r.CRIME_TYPE_ID, r.CRIME_RECORD_FBICD";
+
+    /**
+     * Keep CRIME_RECORD_SEARCH the same as CRIME_RECORD however the crime records are written
+     */
+    private static final String[] CRIME_SEARCH_TRIGGERS = {
+            "CREATE TRIGGER CRIME_RECORD_SEARCH_INSERT AFTER INSERT ON CRIME_RECORD BEGIN " +
+                    "INSERT INTO " + CRIME_SEARCH_TABLE + " (docid, " + CRIME_SEARCH_COLUMNS + ") " +
+                    "SELECT r.rowid, " + CRIME_SEARCH_VALUES + " FROM CRIME_RECORD r " +
+                    "LEFT JOIN CRIME_TYPE t ON t.CRIME_TYPE_ID = r.CRIME_TYPE_ID WHERE r.rowid = new.rowid; END",
+            "CREATE TRIGGER CRIME_RECORD_SEARCH_DELETE AFTER DELETE ON CRIME_RECORD BEGIN " +
+                    "DELETE FROM " + CRIME_SEARCH_TABLE + " WHERE docid = old.rowid; END",
+            "CREATE TRIGGER CRIME_RECORD_SEARCH_UPDATE AFTER UPDATE ON CRIME_RECORD BEGIN " +
+                    "DELETE FROM " + CRIME_SEARCH_TABLE + " WHERE docid = old.rowid; " +
+                    "INSERT INTO " + CRIME_SEARCH_TABLE + " (docid, " + CRIME_SEARCH_COLUMNS + ") " +
+                    "SELECT r.rowid, " + CRIME_SEARCH_VALUES + " FROM CRIME_RECORD r " +
+                    "LEFT JOIN CRIME_TYPE t ON t.CRIME_TYPE_ID = r.CRIME_TYPE_ID WHERE r.rowid = new.rowid; END"
+    };
+
+    /**
+     * The rollup tables of CRIME_RECORD, each the number of crime records (RECORD_COUNT) in every group of its
+     * columns, so that counts can be read from a few thousand rows rather than millions of crime records.
+     * Each is {table, columns...}. The columns are those of CRIME_RECORD, apart from ROLLUP_DAY (see
+     * ROLLUP_DAY_SQL). Triggers keep them up to date as crime records are written, edited and deleted, and they
+     * are rebuilt in one pass after a bulk load into an empty database (see createCrimeRollups()).
+     */
+    private static final String[][] CRIME_ROLLUPS = {
+            {"CRIME_ROLLUP_DAY", "ROLLUP_DAY", "CRIME_TYPE_ID", "CRIME_RECORD_ARREST", "CRIME_RECORD_DOMESTIC"},
+            {"CRIME_ROLLUP_BEAT", "CRIME_RECORD_BEAT", "CRIME_RECORD_WARD", "CRIME_TYPE_ID", "CRIME_RECORD_ARREST",
+                    "CRIME_RECORD_DOMESTIC"},
+            {"CRIME_ROLLUP_LOCATION", "CRIME_RECORD_LOCATION_DESCRIPTION", "CRIME_TYPE_ID", "CRIME_RECORD_ARREST",
+                    "CRIME_RECORD_DOMESTIC"}
+    };
+
+    /**
+     * The day of a crime record (%s) in UTC, eg: 2014-06-27. The rollups keep the day in UTC so that it is the same
+     * whichever time zone the database was written in, crime records are counted by the day in Joda's default time
+     * zone with localDaySQL().
+     */
+    private static final String ROLLUP_DAY_SQL = "date(%s.CRIME_RECORD_DATE / 1000, 'unixepoch')";
+
+    /**
+     * How each grouping of CrimeRecordCounts is counted (by its number), as {the column it needs, the SQL of the
+     * value counted}. %s is the column of the crime record or rollup row `r`, the crime type is `t`.
+     */
+    private static final String[][] COUNT_GROUPINGS = {
+            {"CRIME_TYPE_ID", "IFNULL(t.CRIME_TYPE_NAME, 'UNKNOWN')"},
+            {"CRIME_RECORD_LOCATION_DESCRIPTION", "%s"},
+            {"CRIME_RECORD_ARREST", "CASE WHEN %s THEN 'true' ELSE 'false' END"},
+            {"CRIME_RECORD_DOMESTIC", "CASE WHEN %s THEN 'true' ELSE 'false' END"},
+            {"ROLLUP_DAY", "%s"},
+            {"CRIME_RECORD_BEAT", "%s"},
+            {"CRIME_RECORD_WARD", "%s"}
+    };
+
+    /**
+     * The database that keeps track of the crime collections known to crimeSpy
+     */
+    static final String CRIME_COLLECTION_LIST_DB = "Crime_Collection_List.db";
+
     private static HashMap<String, ArrayList<String>> iucrToCrimeType = new HashMap<String, ArrayList<String>>();
 
 
@@ -62,34 +226,14 @@ public class SQLiteDBHandler {
      * @param crime is a CrimeCollection object
      */
     public static void writeCrimeRecord(CrimeRecord crime) throws Exception {
-        Connection c = null;
-        Statement stmt = null;
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:" + CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
-        c.setAutoCommit(false);
-        LOGGER.info("Opened Crime Record database for single write successfully");
-
-        stmt = c.createStatement();
-
-        OR_Map cr = new OR_Map(crime);
-
-
-        String sql = "SELECT * FROM CRIME_RECORD WHERE CRIME_RECORD_ID == '" + cr.getId() + "'";
-        ResultSet resultSet = stmt.executeQuery(sql);
-        if (!resultSet.next()) {
-            sql = "INSERT INTO CRIME_RECORD (CRIME_RECORD_ID, CRIME_RECORD_DATE, CRIME_RECORD_BLOCK, " +
-                    "CRIME_RECORD_LOCATION_DESCRIPTION, CRIME_RECORD_ARREST, CRIME_RECORD_DOMESTIC, " +
-                    "CRIME_RECORD_BEAT, CRIME_RECORD_WARD, CRIME_RECORD_XCOORDINATE, CRIME_RECORD_YCOORDINATE, " +
-                    "CRIME_RECORD_LATITUDE, CRIME_RECORD_LONGITUDE, CRIME_RECORD_LOCATIONSTR, PREV_CRIME_RECORD, " +
-                    "NEXT_CRIME_RECORD, CRIME_TYPE_ID, CRIME_RECORD_FBICD) " +
-                    "VALUES (" + cr.toDBCreateString() + ")";
-            stmt.executeUpdate(sql);
+        Connection c = SQLiteConnectionManager.acquireWriter(CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
+        try {
+            insertCrimeRecords(c, Collections.singletonList(crime));
             c.commit();
+            LOGGER.info("Record created successfully");
+        } finally {
+            SQLiteConnectionManager.releaseWriter(c);
         }
-
-        LOGGER.info("Record created successfully");
-        stmt.close();
-        c.close();
     }
 
 
@@ -100,38 +244,600 @@ public class SQLiteDBHandler {
      * @param crimes is a CrimeCollection object
      */
     public static void writeCrimeRecords(CrimeCollection crimes, String location) throws Exception {
-        Connection c = null;
-        Statement stmt = null;
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:" + location);
-        c.setAutoCommit(false);
-        LOGGER.info("Opened Crime Record database for collection write successfully");
-        for (CrimeRecord crime : crimes.getCrimes()) {
-            stmt = c.createStatement();
+        writeCrimeRecords(crimes, location, INSERT_BATCH_SIZE);
+    }
 
-            OR_Map cr = new OR_Map(crime);
 
-            String sql = "INSERT INTO CRIME_RECORD (CRIME_RECORD_ID, CRIME_RECORD_DATE, CRIME_RECORD_BLOCK, " +
-                        "CRIME_RECORD_LOCATION_DESCRIPTION, CRIME_RECORD_ARREST, CRIME_RECORD_DOMESTIC, " +
-                        "CRIME_RECORD_BEAT, CRIME_RECORD_WARD, CRIME_RECORD_XCOORDINATE, CRIME_RECORD_YCOORDINATE, " +
-                        "CRIME_RECORD_LATITUDE, CRIME_RECORD_LONGITUDE, CRIME_RECORD_LOCATIONSTR, PREV_CRIME_RECORD, " +
-                        "NEXT_CRIME_RECORD, CRIME_TYPE_ID, CRIME_RECORD_FBICD) " +
-                        "VALUES (" + cr.toDBCreateString() + ")";
+    /**
+     * Write a collection of crime data to persistent storage in a single transaction, sending the inserts to
+     * SQLite batchSize records at a time.
+     * Writes of BULK_LOAD_MIN_RECORDS or more records are done in the bulk load profile.
+     * @param crimes is a CrimeCollection object
+     * @param location the location of the crime database to write to
+     * @param batchSize the number of inserts sent to SQLite at once
+     * @throws Exception crime collection is not able to be written to the db
+     */
+    public static void writeCrimeRecords(CrimeCollection crimes, String location, Integer batchSize)
+            throws Exception {
+        boolean bulkLoad = crimes.getCrimes().size() >= BULK_LOAD_MIN_RECORDS;
+        if (bulkLoad) {
+            beginBulkLoad(location);
+        }
+        try {
+            Connection c = SQLiteConnectionManager.acquireWriter(location);
             try {
-                stmt.executeUpdate(sql);
-            } catch (SQLException e) {
-                LOGGER.warning(crime.getCaseID() + " is a duplicate crime record, it was not added to the crime database");
-                LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage() + crime.getCaseID());
+                insertCrimeRecords(c, crimes.getCrimes(), batchSize);
+                LOGGER.info("Commit");
+                c.commit();
+                LOGGER.info("Records created successfully");
+            } finally {
+                SQLiteConnectionManager.releaseWriter(c);
+            }
+        } finally {
+            if (bulkLoad) {
+                endBulkLoad(location);
+            }
+        }
+    }
+
+
+    /**
+     * Merges crime records into a crime database as one set. The crime records are staged in a temporary table,
+     * the ones whose crime ids are already in the database are found with a single join, and the rest are added
+     * with a single INSERT ... SELECT, all in one transaction. Merges of at least BULK_LOAD_MIN_RECORDS records
+     * use the bulk load profile (see SQLiteConnectionManager).
+     * @param location the location of the crime database to merge into
+     * @param crimes the crime records to merge, with crime ids that are unique amongst themselves
+     * @return the crime ids that were already in the database, those crime records were not added
+     * @throws SQLException the crime records could not be merged, none of them were added
+     */
+    public static List<String> mergeCrimeRecords(String location, List<CrimeRecord> crimes) throws SQLException {
+        List<String> existing = new ArrayList<String>();
+        Boolean bulkLoad = crimes.size() >= BULK_LOAD_MIN_RECORDS;
+        if (bulkLoad) {
+            beginBulkLoad(location);
+        }
+        try {
+            Connection c = SQLiteConnectionManager.acquireWriter(location);
+            try {
+                Statement stmt = c.createStatement();
+                try {
+                    stageCrimeRecords(c, stmt, crimes);
+                    ResultSet rs = stmt.executeQuery("SELECT CRIME_RECORD_ID FROM " + MERGE_STAGE_TABLE +
+                            " WHERE CRIME_RECORD_ID IN (SELECT CRIME_RECORD_ID FROM main.CRIME_RECORD);");
+                    while (rs.next()) {
+                        existing.add(rs.getString(1));
+                    }
+                    rs.close();
+                    Integer merged = stmt.executeUpdate("INSERT OR IGNORE INTO main.CRIME_RECORD (" +
+                            CRIME_RECORD_COLUMNS + ") SELECT " + CRIME_RECORD_COLUMNS + " FROM " +
+                            MERGE_STAGE_TABLE + ";");
+                    stmt.executeUpdate("DROP TABLE " + MERGE_STAGE_TABLE + ";");
+                    c.commit();
+                    LOGGER.info("Merged " + merged + " records successfully, " + existing.size() +
+                            " were already in the database");
+                } finally {
+                    stmt.close();
+                }
+            } finally {
+                SQLiteConnectionManager.releaseWriter(c);
+            }
+        } finally {
+            if (bulkLoad) {
+                endBulkLoad(location);
+            }
+        }
+        return existing;
+    }
+
+
+    /**
+     * Merges crime records into a crime database as one set, like mergeCrimeRecords(), but rather than skipping a
+     * crime record whose case id is taken it is renamed. The crime records are staged in a temporary table and the
+     * ones whose case ids are already in the database, or earlier in the stage, are found with a single join. Each
+     * of those has the first character of CASE_ID_SUFFIXES that makes its case id unique appended to it, if every
+     * one is taken the first is appended and the search carries on from there. The database is not read in full.
+     * @param location the location of the crime database to merge into
+     * @param crimes the crime records to merge, the renamed ones are given their new case ids
+     * @return the crime records added, in the order given. A crime record whose case id would be longer than
+     * MAX_MERGED_CASE_ID_LENGTH to be unique is left out.
+     * @throws SQLException the crime records could not be merged, none of them were added or renamed
+     */
+    public static List<CrimeRecord> mergeCrimeRecordsRenaming(String location, List<CrimeRecord> crimes)
+            throws SQLException {
+        Map<Integer, String> renamed = new HashMap<Integer, String>();
+        Boolean bulkLoad = crimes.size() >= BULK_LOAD_MIN_RECORDS;
+        if (bulkLoad) {
+            beginBulkLoad(location);
+        }
+        try {
+            Connection c = SQLiteConnectionManager.acquireWriter(location);
+            try {
+                Statement stmt = c.createStatement();
+                try {
+                    stageCrimeRecords(c, stmt, crimes);
+                    stmt.executeUpdate("CREATE INDEX temp.CRIME_RECORD_MERGE_ID ON CRIME_RECORD_MERGE " +
+                            "(CRIME_RECORD_ID);");
+                    // The stage is filled in order, so a crime record's rowid is one more than its index
+                    List<Integer> taken = new ArrayList<Integer>();
+                    List<String> takenIDs = new ArrayList<String>();
+                    ResultSet rs = stmt.executeQuery("SELECT s.rowid, s.CRIME_RECORD_ID FROM " + MERGE_STAGE_TABLE +
+                            " s WHERE s.CRIME_RECORD_ID IN (SELECT CRIME_RECORD_ID FROM main.CRIME_RECORD) OR " +
+                            "s.rowid > (SELECT MIN(e.rowid) FROM " + MERGE_STAGE_TABLE + " e " +
+                            "WHERE e.CRIME_RECORD_ID = s.CRIME_RECORD_ID) ORDER BY s.rowid;");
+                    while (rs.next()) {
+                        taken.add(rs.getInt(1));
+                        takenIDs.add(rs.getString(2));
+                    }
+                    rs.close();
+                    PreparedStatement isTaken = c.prepareStatement("SELECT EXISTS (SELECT 1 FROM " +
+                            "main.CRIME_RECORD WHERE CRIME_RECORD_ID = ?) OR EXISTS (SELECT 1 FROM " +
+                            MERGE_STAGE_TABLE + " WHERE CRIME_RECORD_ID = ?);");
+                    PreparedStatement rename = c.prepareStatement("UPDATE " + MERGE_STAGE_TABLE +
+                            " SET CRIME_RECORD_ID = ? WHERE rowid = ?;");
+                    PreparedStatement remove = c.prepareStatement("DELETE FROM " + MERGE_STAGE_TABLE +
+                            " WHERE rowid = ?;");
+                    try {
+                        for (int i = 0; i < taken.size(); i++) {
+                            String caseID = uniqueCaseID(isTaken, takenIDs.get(i));
+                            if (caseID == null) {
+                                remove.setInt(1, taken.get(i));
+                                remove.executeUpdate();
+                            } else {
+                                rename.setString(1, caseID);
+                                rename.setInt(2, taken.get(i));
+                                rename.executeUpdate();
+                            }
+                            renamed.put(taken.get(i) - 1, caseID);
+                        }
+                    } finally {
+                        isTaken.close();
+                        rename.close();
+                        remove.close();
+                    }
+                    Integer merged = stmt.executeUpdate("INSERT INTO main.CRIME_RECORD (" + CRIME_RECORD_COLUMNS +
+                            ") SELECT " + CRIME_RECORD_COLUMNS + " FROM " + MERGE_STAGE_TABLE + ";");
+                    stmt.executeUpdate("DROP TABLE " + MERGE_STAGE_TABLE + ";");
+                    c.commit();
+                    LOGGER.info("Merged " + merged + " records successfully, " + taken.size() +
+                            " had case ids that were taken");
+                } finally {
+                    stmt.close();
+                }
+            } finally {
+                SQLiteConnectionManager.releaseWriter(c);
+            }
+        } finally {
+            if (bulkLoad) {
+                endBulkLoad(location);
+            }
+        }
+        List<CrimeRecord> added = new ArrayList<CrimeRecord>(crimes.size());
+        for (int i = 0; i < crimes.size(); i++) {
+            CrimeRecord crime = crimes.get(i);
+            if (renamed.containsKey(i)) {
+                String caseID = renamed.get(i);
+                if (caseID == null) {
+                    LOGGER.warning(crime.getCaseID() + " is a duplicate crime record too long to be renamed, " +
+                            "it was not merged");
+                    continue;
+                }
+                crime.setCaseID(caseID);
+            }
+            added.add(crime);
+        }
+        return added;
+    }
+
+
+    /**
+     * Stages crime records in MERGE_STAGE_TABLE, in order and without keys, replacing anything staged before
+     */
+    private static void stageCrimeRecords(Connection c, Statement stmt, List<CrimeRecord> crimes)
+            throws SQLException {
+        stmt.executeUpdate("DROP TABLE IF EXISTS " + MERGE_STAGE_TABLE + ";");
+        // No keys on the stage, the primary key of CRIME_RECORD keeps the case ids unique
+        stmt.executeUpdate("CREATE TABLE " + MERGE_STAGE_TABLE + " AS SELECT " + CRIME_RECORD_COLUMNS +
+                " FROM main.CRIME_RECORD WHERE 0;");
+        insertCrimeRecords(c, crimes, INSERT_BATCH_SIZE, STAGE_CRIME_RECORD_SQL);
+    }
+
+
+    /**
+     * Finds the first free case id made by appending characters of CASE_ID_SUFFIXES to a case id that is taken.
+     * If every one of them is taken the first is appended and the search carries on from there.
+     * @param isTaken a query of whether a case id (given twice) is taken
+     * @param caseID the case id that is taken
+     * @return the case id to use, or null if it would be longer than MAX_MERGED_CASE_ID_LENGTH
+     */
+    private static String uniqueCaseID(PreparedStatement isTaken, String caseID) throws SQLException {
+        String base = caseID;
+        while (base.length() < MAX_MERGED_CASE_ID_LENGTH) {
+            for (int i = 0; i < CASE_ID_SUFFIXES.length(); i++) {
+                String candidate = base + CASE_ID_SUFFIXES.charAt(i);
+                isTaken.setString(1, candidate);
+                isTaken.setString(2, candidate);
+                ResultSet rs = isTaken.executeQuery();
+                try {
+                    if (rs.next() && rs.getInt(1) == 0) {
+                        return candidate;
+                    }
+                } finally {
+                    rs.close();
+                }
+            }
+            base = base + CASE_ID_SUFFIXES.charAt(0);
+        }
+        return null;
+    }
+
+
+    /**
+     * Copies a crime database page by page with SQLite's backup API, replacing anything at the save location.
+     * The copy is read from a snapshot (see SQLiteConnectionManager.acquireSnapshot()), so it is the database as
+     * last committed even while it is being written to. Its indexes, rollup tables and search index are copied
+     * as they are rather than built again.
+     * @param location the location of the crime database to copy
+     * @param saveLocation the location to copy it to
+     * @throws SQLException the database could not be copied
+     */
+    public static void copyCrimedb(String location, String saveLocation) throws SQLException {
+        // The copy replaces the database under any connections kept to the save location
+        SQLiteConnectionManager.close(saveLocation);
+        Connection c = SQLiteConnectionManager.acquireSnapshot(location);
+        try {
+            // Called on the driver rather than as a "backup to" statement, which can't quote every path
+            String path = new File(saveLocation).getAbsolutePath();
+            int result = ((SQLiteConnection) c).db().backup("main", path, null);
+            if (result != SQLiteErrorCode.SQLITE_OK.code) {
+                throw new SQLException("Could not copy " + location + " to " + saveLocation + ", SQLite error " +
+                        result);
+            }
+            LOGGER.info("Copied " + location + " to " + saveLocation);
+        } finally {
+            SQLiteConnectionManager.releaseSnapshot(c);
+        }
+    }
+
+
+    /**
+     * Copies the crime records of a crime database that match a filter into another crime database. The database
+     * is attached to the other and the crime records are copied with a single INSERT ... SELECT, in the bulk load
+     * profile (see SQLiteConnectionManager). Crime records already in the other database are skipped.
+     * @param location the location of the crime database to copy from
+     * @param filter the filter the crime records must match, matched as in countCrimeRecordsBy()
+     * @param saveLocation the location of the crime database to copy to, it must already be a crime database
+     * @return the number of crime records copied
+     * @throws SQLException the crime records could not be copied, none of them were
+     */
+    public static Integer writeFilteredCrimeRecords(String location, CrimeFilter filter, String saveLocation)
+            throws SQLException {
+        List<Object> params = new ArrayList<Object>();
+        String where = crimeFilterSQL(filter, new ArrayList<String>(), params);
+        String sql = "INSERT OR IGNORE INTO main.CRIME_RECORD (" + CRIME_RECORD_COLUMNS + ") SELECT r." +
+                CRIME_RECORD_COLUMNS.replace(", ", ", r.") + " FROM " + COPY_SOURCE + ".CRIME_RECORD r";
+        if (where.contains("t.CRIME_TYPE_")) {
+            sql += " LEFT JOIN " + COPY_SOURCE + ".CRIME_TYPE t ON t.CRIME_TYPE_ID = r.CRIME_TYPE_ID";
+        }
+        Integer copied;
+        beginBulkLoad(saveLocation);
+        try {
+            Connection c = SQLiteConnectionManager.acquireWriter(saveLocation);
+            try {
+                // A database can only be attached outside of a transaction, the writer is given back in one
+                c.commit();
+                c.setAutoCommit(true);
+                try {
+                    PreparedStatement attach = c.prepareStatement("ATTACH DATABASE ? AS " + COPY_SOURCE + ";");
+                    try {
+                        attach.setString(1, location);
+                        attach.executeUpdate();
+                    } finally {
+                        attach.close();
+                    }
+                    try {
+                        c.setAutoCommit(false);
+                        PreparedStatement stmt = c.prepareStatement(sql + where + ";");
+                        try {
+                            for (int i = 0; i < params.size(); i++) {
+                                stmt.setObject(i + 1, params.get(i));
+                            }
+                            copied = stmt.executeUpdate();
+                        } finally {
+                            stmt.close();
+                        }
+                        c.commit();
+                    } finally {
+                        c.rollback();
+                        c.setAutoCommit(true);
+                        Statement detach = c.createStatement();
+                        try {
+                            detach.executeUpdate("DETACH DATABASE " + COPY_SOURCE + ";");
+                        } finally {
+                            detach.close();
+                        }
+                    }
+                } finally {
+                    c.setAutoCommit(false);
+                }
+                LOGGER.info("Copied " + copied + " records from " + location + " to " + saveLocation);
+            } finally {
+                SQLiteConnectionManager.releaseWriter(c);
+            }
+        } finally {
+            endBulkLoad(saveLocation);
+        }
+        return copied;
+    }
+
+
+    /**
+     * Opens a writer that streams crime records to a crime database in bounded batches.
+     * Records are buffered until the batch is full and then written and committed together,
+     * so memory use does not grow with the number of records written.
+     * The writer only holds the database's writer connection while it commits a batch.
+     * The writer must be closed to write the final partial batch.
+     * @param location the location of the crime database to write to
+     * @param batchSize the maximum number of records to buffer before writing
+     * @return a CrimeRecordBatchWriter for the database
+     * @throws Exception the database could not be opened
+     */
+    public static CrimeRecordBatchWriter openCrimeRecordWriter(String location, Integer batchSize) throws Exception {
+        return openCrimeRecordWriter(location, batchSize, false);
+    }
+
+
+    /**
+     * Opens a writer that streams crime records to a crime database in bounded batches, optionally in the
+     * bulk load profile (see SQLiteConnectionManager). A bulk load ends when the writer is closed, so the writer
+     * must always be closed.
+     * @param location the location of the crime database to write to
+     * @param batchSize the maximum number of records to buffer before writing
+     * @param bulkLoad true to write in the bulk load profile, for imports
+     * @return a CrimeRecordBatchWriter for the database
+     * @throws Exception the database could not be opened
+     */
+    public static CrimeRecordBatchWriter openCrimeRecordWriter(String location, Integer batchSize, Boolean bulkLoad)
+            throws Exception {
+        SQLiteConnectionManager.open(location);
+        if (bulkLoad) {
+            beginBulkLoad(location);
+        }
+        LOGGER.info("Opened Crime Record database for batch write successfully");
+        return new CrimeRecordBatchWriter(location, batchSize, bulkLoad);
+    }
+
+
+    /**
+     * Switches a crime database to the bulk load profile (see SQLiteConnectionManager). If it has no crime records
+     * yet the secondary indexes of CRIME_RECORD and the triggers of the rollup tables are dropped as well, building
+     * them once at the end of the load is much quicker than updating them with every insert.
+     * @param location the location of the crime database
+     * @throws SQLException the database could not be opened
+     */
+    static void beginBulkLoad(String location) throws SQLException {
+        SQLiteConnectionManager.beginBulkLoad(location);
+        try {
+            dropCrimeRecordIndexesIfEmpty(location);
+        } catch (SQLException e) {
+            SQLiteConnectionManager.endBulkLoad(location);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Drops the secondary indexes of CRIME_RECORD and the triggers of the rollup tables if it has no crime records
+     */
+    private static void dropCrimeRecordIndexesIfEmpty(String location) throws SQLException {
+        Connection c = SQLiteConnectionManager.acquireWriter(location);
+        try {
+            Statement stmt = c.createStatement();
+            try {
+                ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM CRIME_RECORD);");
+                boolean empty = rs.getInt(1) == 0;
+                rs.close();
+                if (empty) {
+                    for (String[] index : CRIME_RECORD_INDEXES) {
+                        stmt.executeUpdate("DROP INDEX IF EXISTS " + index[0]);
+                    }
+                    dropCrimeRollupTriggers(stmt);
+                    c.commit();
+                }
+            } finally {
+                stmt.close();
+            }
+        } finally {
+            SQLiteConnectionManager.releaseWriter(c);
+        }
+    }
+
+
+    /**
+     * Ends a bulk load started by beginBulkLoad(), building any secondary indexes and rollup tables that were
+     * dropped for it
+     * @param location the location of the crime database
+     * @throws SQLException the indexes could not be built
+     */
+    static void endBulkLoad(String location) throws SQLException {
+        try {
+            Connection c = SQLiteConnectionManager.acquireWriter(location);
+            try {
+                Statement stmt = c.createStatement();
+                try {
+                    createCrimeRecordIndexes(stmt);
+                    createCrimeRollups(stmt);
+                } finally {
+                    stmt.close();
+                }
+                c.commit();
+            } finally {
+                SQLiteConnectionManager.releaseWriter(c);
             }
+        } finally {
+            SQLiteConnectionManager.endBulkLoad(location);
+        }
+    }
+
+
+    /**
+     * Inserts crime records using an open connection. The caller is responsible for committing.
+     * Duplicate crime records are logged and skipped.
+     * @param c an open connection to a crime database
+     * @param crimes the crime records to insert
+     * @throws SQLException the records could not be inserted
+     */
+    static void insertCrimeRecords(Connection c, Iterable<CrimeRecord> crimes) throws SQLException {
+        insertCrimeRecords(c, crimes, INSERT_BATCH_SIZE);
+    }
+
+
+    /**
+     * Inserts crime records using an open connection and a single prepared insert, which is parsed once and then
+     * sent to SQLite batchSize records at a time. The caller is responsible for committing.
+     * Duplicate crime records are logged and skipped.
+     * @param c an open connection to a crime database
+     * @param crimes the crime records to insert
+     * @param batchSize the number of inserts sent to SQLite at once
+     * @return the number of crime records inserted
+     * @throws SQLException the records could not be inserted
+     */
+    static Integer insertCrimeRecords(Connection c, Iterable<CrimeRecord> crimes, Integer batchSize)
+            throws SQLException {
+        return insertCrimeRecords(c, crimes, batchSize, INSERT_CRIME_RECORD_SQL);
+    }
+
+
+    /**
+     * Inserts crime records with a prepared insert that takes the parameters of INSERT_CRIME_RECORD_SQL, eg: into
+     * another table with the columns of CRIME_RECORD
+     */
+    private static Integer insertCrimeRecords(Connection c, Iterable<CrimeRecord> crimes, Integer batchSize,
+                                              String insertSQL) throws SQLException {
+        if (batchSize == null || batchSize < 1) {
+            batchSize = INSERT_BATCH_SIZE;
+        }
+        PreparedStatement stmt = c.prepareStatement(insertSQL);
+        List<String> batchIDs = new ArrayList<String>(batchSize);
+        Integer inserted = 0;
+        try {
+            for (CrimeRecord crime : crimes) {
+                bindCrimeRecord(stmt, crime);
+                stmt.addBatch();
+                batchIDs.add(crime.getCaseID());
+                if (batchIDs.size() >= batchSize) {
+                    inserted += executeInsertBatch(stmt, batchIDs);
+                }
+            }
+            if (!batchIDs.isEmpty()) {
+                inserted += executeInsertBatch(stmt, batchIDs);
+            }
+        } finally {
             stmt.close();
-            LOGGER.info("Saved");
         }
-        LOGGER.info("Commit");
-        c.commit();
-        LOGGER.info("Records created successfully");
+        return inserted;
+    }
 
-        stmt.close();
-        c.close();
+
+    /**
+     * Runs the inserts added to a prepared insert, logging the records that were skipped
+     * @param stmt the prepared insert
+     * @param batchIDs the crime ids of the records in the batch, in the order they were added. It is cleared.
+     * @return the number of crime records inserted
+     * @throws SQLException the batch could not be run
+     */
+    private static Integer executeInsertBatch(PreparedStatement stmt, List<String> batchIDs) throws SQLException {
+        int[] counts = stmt.executeBatch();
+        Integer inserted = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                LOGGER.warning(batchIDs.get(i) + " is a duplicate crime record, it was not added to the crime database");
+            } else {
+                inserted++;
+            }
+        }
+        batchIDs.clear();
+        return inserted;
+    }
+
+
+    /**
+     * Sets the parameters of INSERT_CRIME_RECORD_SQL to a crime record, storing each field the same way as
+     * OR_Map.toDBCreateString()
+     */
+    private static void bindCrimeRecord(PreparedStatement stmt, CrimeRecord crime) throws SQLException {
+        CrimeLocation location = crime.getCrimeLocation();
+        stmt.setString(1, crime.getCaseID());
+        stmt.setLong(2, crime.getDate().getMillis());
+        stmt.setString(3, location.getBlock());
+        stmt.setString(4, location.getLocationStr());
+        stmt.setInt(5, crime.getArrest() ? 1 : 0);
+        stmt.setInt(6, crime.getDomestic() ? 1 : 0);
+        stmt.setInt(7, location.getBeat());
+        stmt.setInt(8, location.getWard());
+        stmt.setDouble(9, location.getxCoordinate());
+        stmt.setDouble(10, location.getyCoordinate());
+        stmt.setDouble(11, location.getLatitude());
+        stmt.setDouble(12, location.getLongitude());
+        stmt.setString(13, location.getLocationStr());
+        stmt.setString(14, crime.getCrimeType().getIucr().replaceFirst("^0+(?!$)", "")); //Remove leading zeros
+        stmt.setString(15, crime.getFbiCD());
+    }
+
+
+    /**
+     * Saves the progress of a csv import using an open connection. The caller is responsible for committing,
+     * so that the checkpoint is saved in the same transaction as the records it covers.
+     * @param c an open connection to a crime database
+     * @param checkpoint the import progress to save
+     * @throws SQLException the checkpoint could not be written
+     */
+    static void writeImportCheckpoint(Connection c, ImportCheckpoint checkpoint) throws SQLException {
+        PreparedStatement stmt = c.prepareStatement("INSERT OR REPLACE INTO IMPORT_CHECKPOINT (IMPORT_SOURCE, " +
+                "IMPORT_SOURCE_SIZE, IMPORT_SOURCE_MODIFIED, IMPORT_BYTE_OFFSET, IMPORT_ROW_NUMBER, IMPORT_COMPLETE) " +
+                "VALUES (?, ?, ?, ?, ?, ?)");
+        try {
+            stmt.setString(1, checkpoint.getSource());
+            stmt.setLong(2, checkpoint.getSourceSize());
+            stmt.setLong(3, checkpoint.getSourceModified());
+            stmt.setLong(4, checkpoint.getByteOffset());
+            stmt.setLong(5, checkpoint.getRowNumber());
+            stmt.setInt(6, checkpoint.isComplete() ? 1 : 0);
+            stmt.executeUpdate();
+        } finally {
+            stmt.close();
+        }
+    }
+
+
+    /**
+     * Reads the saved progress of an import into a crime database
+     * @param location the location of the crime database
+     * @param source the csv that was imported
+     * @return the saved checkpoint, or null if the csv has never been imported into this database
+     * @throws SQLException the checkpoint could not be read
+     */
+    public static ImportCheckpoint readImportCheckpoint(String location, File source) throws Exception {
+        Connection c = SQLiteConnectionManager.acquireReader(location);
+        ImportCheckpoint checkpoint = null;
+        try {
+            if (!tableExist("IMPORT_CHECKPOINT", c)) {
+                return null;
+            }
+            PreparedStatement stmt = c.prepareStatement("SELECT * FROM IMPORT_CHECKPOINT WHERE IMPORT_SOURCE = ?");
+            stmt.setString(1, source.getAbsolutePath());
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                checkpoint = new ImportCheckpoint(rs.getString("IMPORT_SOURCE"), rs.getLong("IMPORT_SOURCE_SIZE"),
+                        rs.getLong("IMPORT_SOURCE_MODIFIED"), rs.getLong("IMPORT_BYTE_OFFSET"),
+                        rs.getLong("IMPORT_ROW_NUMBER"), rs.getInt("IMPORT_COMPLETE") == 1);
+            }
+            rs.close();
+            stmt.close();
+        } finally {
+            SQLiteConnectionManager.releaseReader(c);
+        }
+        return checkpoint;
     }
 
 
@@ -140,178 +846,715 @@ public class SQLiteDBHandler {
      * @param crimes A crime collection object
      */
     public static void writeNewCrimeCollection(CrimeCollection crimes) throws Exception {
+        Connection c = SQLiteConnectionManager.acquireWriter(CRIME_COLLECTION_LIST_DB);
+        try {
+            Statement stmt = c.createStatement();
+
+            String sql = "INSERT INTO CRIME_COLLECTION_LIST (CRIME_COLLECTION_ID, CRIME_COLLECTION_NAME, " +
+                        "CRIME_COLLECTION_LOCATION) " +
+                        "VALUES (" + crimes.getId() + ", '" + crimes.getName() + "', '" + crimes.getDirectory() + "')";
+            stmt.executeUpdate(sql);
+            c.commit();
+            stmt.close();
+        } finally {
+            SQLiteConnectionManager.releaseWriter(c);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // Database READERS
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Read a collection of crime records from persistent storage and return an
+     * equivalent CrimeCollection object consisting of CrimeRecord objects
+     * @return a CrimeRecord object
+     * @throws SQLException could not read from database
+     */
+    public static CrimeCollection readCrimeRecords() throws Exception {
+        Connection c = SQLiteConnectionManager.acquireReader(CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
+        CrimeCollection results = new CrimeCollection();
+        try {
+            Statement stmt = c.createStatement();
+            try {
+                ResultSet rs = stmt.executeQuery("SELECT * FROM CRIME_RECORD;");
+
+                results.setDirectory(CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
+                while (rs.next()) {
+                    results.addCrimeRecord(createTempCrimeRecord(rs));
+                }
+                rs.close();
+            } finally {
+                stmt.close();
+            }
+            LOGGER.info("Read All done successfully");
+        } finally {
+            SQLiteConnectionManager.releaseReader(c);
+        }
+        return results;
+    }
+
+
+    /**
+     * Read a collection of crime records from persistent storage and return an
+     * equivalent CrimeCollection object consisting of CrimeRecord objects
+     * @return a CrimeRecord object
+     * @param location Location of CrimeDB to read crime data from
+     * @throws SQLException could not read from database
+     */
+    public static ArrayList<CrimeRecord> readCrimeRecords(String location) throws Exception {
+        Connection c = SQLiteConnectionManager.acquireReader(location);
+        ArrayList<CrimeRecord> results = new ArrayList<CrimeRecord>();
+        try {
+            Statement stmt = c.createStatement();
+            try {
+                ResultSet rs = stmt.executeQuery("SELECT * FROM CRIME_RECORD;");
+
+                while (rs.next()) {
+                    //System.out.println(rs.getString("CRIME_RECORD_ID"));  //Reads all data and prints the ID to sys.out
+                    try {
+                        results.add(createTempCrimeRecord(rs));
+                    } catch (Exception e) {
+                        String err;
+                        err = "Exception encountered while attempting to add crime record to a new crime collection";
+                        LOGGER.info(err);
+                        LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+                    }
+                }
+                rs.close();
+            } finally {
+                stmt.close();
+            }
+            LOGGER.info("Read All done successfully");
+        } finally {
+            SQLiteConnectionManager.releaseReader(c);
+        }
+        return results;
+    }
+
+
+    /**
+     * Read a collection of crime records from persistent storage
+     * @throws SQLException could not read from database
+     */
+    public static void readCrimeCollections() throws Exception {
+        Connection c = SQLiteConnectionManager.acquireReader(CRIME_COLLECTION_LIST_DB);
+        try {
+            Statement stmt = c.createStatement();
+            try {
+                ResultSet rs = stmt.executeQuery("SELECT * FROM CRIME_COLLECTION_LIST;");
+                while (rs.next()) {
+                    CrimeCollection cc;
+                    //System.out.println(rs.getString("CRIME_RECORD_ID"));  //Reads all data and prints the ID to sys.out
+                    cc = new CrimeCollection(rs.getString("CRIME_COLLECTION_NAME"),
+                            rs.getInt("CRIME_COLLECTION_ID"),
+                            rs.getString("CRIME_COLLECTION_LOCATION"));
+                    CrimeCollectionManager.addCrimeCollection(cc);
+                    LOGGER.info("Read All done successfully");
+                }
+                rs.close();
+            } finally {
+                stmt.close();
+            }
+        } finally {
+            SQLiteConnectionManager.releaseReader(c);
+        }
+    }
+
+
+    /**
+     * Read a single crime record from persistent storage and return an
+     * equivalent CrimeRecord object
+     * @param crimeID A CrimeRecord ID
+     * @return a CrimeRecord object
+     * @throws SQLException unable to read the crime record from the database
+     */
+    public static CrimeRecord readCrimeRecord(String crimeID) throws Exception {
+        Connection c = SQLiteConnectionManager.acquireReader(CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
+        CrimeRecord cr;
+        try {
+            Statement stmt = c.createStatement();
+            try {
+                ResultSet rs = stmt.executeQuery("SELECT * FROM CRIME_RECORD WHERE CRIME_RECORD_ID='" + crimeID + "';");
+                cr = createTempCrimeRecord(rs);
+                rs.close();
+            } finally {
+                stmt.close();
+            }
+        } finally {
+            SQLiteConnectionManager.releaseReader(c);
+        }
+        LOGGER.info("Read All done successfully");
+        return cr;
+    }
+
+
+    /**
+     * Remove all crime records from the current database
+     * Not currently used - Untested
+     * Design change now using new and append rather than replace and append
+     */
+    @Deprecated
+    public static void deleteAllCrimeRecords() {
         Connection c = null;
-        Statement stmt = null;
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:Crime_Collection_List.db");
-        c.setAutoCommit(false);
-        LOGGER.info("Opened Crime Collection database for write successfully");
-        stmt = c.createStatement();
-
-        String sql = "INSERT INTO CRIME_COLLECTION_LIST (CRIME_COLLECTION_ID, CRIME_COLLECTION_NAME, " +
-                    "CRIME_COLLECTION_LOCATION) " +
-                    "VALUES (" + crimes.getId() + ", '" + crimes.getName() + "', '" + crimes.getDirectory() + "')";
-        stmt.executeUpdate(sql);
-        c.commit();
-        stmt.close();
-        c.close();
+        try {
+            c = SQLiteConnectionManager.acquireWriter(CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
+            Statement stmt = c.createStatement();
+            String sql = "DELETE FROM CRIME_RECORD;";
+            stmt.executeUpdate(sql);
+            c.commit();
+            stmt.close();
+            LOGGER.info("Delete done successfully");
+        } catch (Exception e) {
+            LOGGER.warning(e.getClass().getName() + ": " + e.getMessage());
+        } finally {
+            if (c != null) {
+                SQLiteConnectionManager.releaseWriter(c);
+            }
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // Database QUERIES
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Reads the crime records that happened between two dates, in order of date
+     * @param location Location of CrimeDB to read crime data from
+     * @param from the earliest date to include, null for no earliest date
+     * @param to the latest date to include, null for no latest date
+     * @return the crime records
+     * @throws SQLException could not read from database
+     */
+    public static ArrayList<CrimeRecord> readCrimeRecordsBetween(String location, DateTime from, DateTime to)
+            throws Exception {
+        ArrayList<Object> params = new ArrayList<Object>();
+        return queryCrimeRecords(location, "1" + dateRange(from, to, params) + " ORDER BY CRIME_RECORD_DATE", params);
+    }
+
+
+    /**
+     * Reads the crime records of a crime type, optionally between two dates, in order of date
+     * @param location Location of CrimeDB to read crime data from
+     * @param iucr the IUCR code of the crime type, leading zeros are ignored
+     * @param from the earliest date to include, null for no earliest date
+     * @param to the latest date to include, null for no latest date
+     * @return the crime records
+     * @throws SQLException could not read from database
+     */
+    public static ArrayList<CrimeRecord> readCrimeRecordsByType(String location, String iucr, DateTime from,
+                                                                DateTime to) throws Exception {
+        ArrayList<Object> params = new ArrayList<Object>();
+        params.add(iucr.replaceFirst("^0+(?!$)", ""));
+        return queryCrimeRecords(location, "CRIME_TYPE_ID = ?" + dateRange(from, to, params)
+                + " ORDER BY CRIME_RECORD_DATE", params);
+    }
+
+
+    /**
+     * Reads the crime records of a beat, in order of date
+     * @param location Location of CrimeDB to read crime data from
+     * @param beat the beat
+     * @return the crime records
+     * @throws SQLException could not read from database
+     */
+    public static ArrayList<CrimeRecord> readCrimeRecordsByBeat(String location, Integer beat) throws Exception {
+        ArrayList<Object> params = new ArrayList<Object>();
+        params.add(beat);
+        return queryCrimeRecords(location, "CRIME_RECORD_BEAT = ? ORDER BY CRIME_RECORD_DATE", params);
+    }
+
+
+    /**
+     * Reads the crime records of a ward, in order of date
+     * @param location Location of CrimeDB to read crime data from
+     * @param ward the ward
+     * @return the crime records
+     * @throws SQLException could not read from database
+     */
+    public static ArrayList<CrimeRecord> readCrimeRecordsByWard(String location, Integer ward) throws Exception {
+        ArrayList<Object> params = new ArrayList<Object>();
+        params.add(ward);
+        return queryCrimeRecords(location, "CRIME_RECORD_WARD = ? ORDER BY CRIME_RECORD_DATE", params);
+    }
+
+
+    /**
+     * Reads the crime records with or without an arrest, in order of date
+     * @param location Location of CrimeDB to read crime data from
+     * @param arrest true for crimes with an arrest
+     * @param domestic true for domestic crimes only, false for non domestic crimes only, null for either
+     * @return the crime records
+     * @throws SQLException could not read from database
+     */
+    public static ArrayList<CrimeRecord> readCrimeRecordsByArrest(String location, Boolean arrest, Boolean domestic)
+            throws Exception {
+        ArrayList<Object> params = new ArrayList<Object>();
+        params.add(arrest ? 1 : 0);
+        String where = "CRIME_RECORD_ARREST = ?";
+        if (domestic != null) {
+            where += " AND CRIME_RECORD_DOMESTIC = ?";
+            params.add(domestic ? 1 : 0);
+        }
+        return queryCrimeRecords(location, where + " ORDER BY CRIME_RECORD_DATE", params);
+    }
+
+
+    /**
+     * @param location Location of CrimeDB to count the crime records of
+     * @return the number of crime records in the database
+     * @throws SQLException could not read from database
+     */
+    public static Integer countCrimeRecords(String location) throws Exception {
+        Connection c = SQLiteConnectionManager.acquireReader(location);
+        try {
+            return countCrimeRecords(c);
+        } finally {
+            SQLiteConnectionManager.releaseReader(c);
+        }
+    }
+
+
+    /**
+     * @param c an open connection to a crime database, eg: a snapshot
+     * @return the number of crime records in the database
+     * @throws SQLException could not read from database
+     */
+    static Integer countCrimeRecords(Connection c) throws SQLException {
+        Statement stmt = c.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM CRIME_RECORD;");
+            Integer count = rs.getInt(1);
+            rs.close();
+            return count;
+        } finally {
+            stmt.close();
+        }
+    }
+
+
+    /**
+     * Counts the crime records of a crime database by a grouping in SQLite, without reading the crime records.
+     * The counts are read from a rollup table (see CRIME_ROLLUPS) if one has every column the grouping and filter
+     * need, otherwise the crime records matching the filter are counted with the indexes of CRIME_RECORD.
+     * Filtering by date always counts CRIME_RECORD, as the rollups only know the day, and so does counting by day
+     * unless Joda's default time zone is UTC, as the rollups only know the day in UTC.
+     * @param location Location of CrimeDB to count the crime records of
+     * @param grouping the grouping to count by, eg: CrimeRecordCounts.BY_ARREST
+     * @param filter the filter the crime records must match, null to count every crime record
+     * @return the number of crime records with each value of the grouping
+     * @throws SQLException could not read from database
+     */
+    public static CrimeRecordCounts countCrimeRecordsBy(String location, Integer grouping, CrimeFilter filter)
+            throws Exception {
+        String[] counted = COUNT_GROUPINGS[grouping];
+        List<String> columns = new ArrayList<String>();
+        columns.add(counted[0]);
+        List<Object> params = new ArrayList<Object>();
+        String where = (filter == null) ? "" : crimeFilterSQL(filter, columns, params);
+        // The rollups only know the day in UTC, which is the local day only if the default time zone is UTC
+        DateTimeZone zone = DateTimeZone.getDefault();
+        boolean byLocalDay = counted[0].equals("ROLLUP_DAY") && !(zone.isFixed() && zone.getOffset(0L) == 0);
+        Connection c = SQLiteConnectionManager.acquireReader(location);
+        try {
+            String table = "CRIME_RECORD";
+            for (String[] rollup : CRIME_ROLLUPS) {
+                if (!byLocalDay && Arrays.asList(rollup).subList(1, rollup.length).containsAll(columns) &&
+                        tableExist(rollup[0], c)) {
+                    table = rollup[0];
+                    break;
+                }
+            }
+            boolean fromRollup = !table.equals("CRIME_RECORD");
+            String value = String.format(counted[1], fromRollup ? "r." + counted[0]
+                    : byLocalDay ? localDaySQL(c, zone, "r") : rollupValue(counted[0], "r"));
+            String sql = "SELECT IFNULL(" + value + ", ''), " + (fromRollup ? "SUM(r.RECORD_COUNT)" : "COUNT(*)") +
+                    " FROM " + table + " r";
+            // Only join the crime types when they are used, it is a lookup for every crime record
+            if ((value + where).contains("t.CRIME_TYPE_")) {
+                sql += " LEFT JOIN CRIME_TYPE t ON t.CRIME_TYPE_ID = r.CRIME_TYPE_ID";
+            }
+            PreparedStatement stmt = c.prepareStatement(sql + where + " GROUP BY 1;");
+            try {
+                for (int i = 0; i < params.size(); i++) {
+                    stmt.setObject(i + 1, params.get(i));
+                }
+                SortedMap<String, Integer> counts = new TreeMap<String, Integer>();
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    counts.put(rs.getString(1), rs.getInt(2));
+                }
+                rs.close();
+                return new CrimeRecordCounts(grouping, counts);
+            } finally {
+                stmt.close();
+            }
+        } finally {
+            SQLiteConnectionManager.releaseReader(c);
+        }
+    }
+
+
+    /**
+     * The day of a crime record in a time zone, eg: 2014-06-27, the same day as a DateTime of the crime record in
+     * the zone. SQLite only knows UTC and the time zone of the process, so the date is moved by the zone's offset,
+     * which is looked up from the zone's transitions between the first and last crime records of the database,
+     * latest first.
+     * @param c an open connection to the crime database
+     * @param zone the time zone
+     * @param row the crime record
+     * @return the SQL of the day
+     * @throws SQLException could not read from database
+     */
+    private static String localDaySQL(Connection c, DateTimeZone zone, String row) throws SQLException {
+        String date = row + ".CRIME_RECORD_DATE";
+        Statement stmt = c.createStatement();
+        long first;
+        long last;
+        try {
+            ResultSet rs = stmt.executeQuery("SELECT MIN(CRIME_RECORD_DATE), MAX(CRIME_RECORD_DATE) " +
+                    "FROM CRIME_RECORD;");
+            first = rs.getLong(1);
+            last = rs.getLong(2);
+            rs.close();
+        } finally {
+            stmt.close();
+        }
+        String offset = String.valueOf(zone.getOffset(first));
+        String transitions = "";
+        long transition = zone.nextTransition(first);
+        while (transition > first && transition <= last) {
+            transitions = " WHEN " + date + " >= " + transition + " THEN " + zone.getOffset(transition) + transitions;
+            first = transition;
+            transition = zone.nextTransition(transition);
+        }
+        if (!transitions.isEmpty()) {
+            offset = "CASE" + transitions + " ELSE " + offset + " END";
+        }
+        return "date((" + date + " + " + offset + ") / 1000, 'unixepoch')";
+    }
+
+
+    /**
+     * Reads a random sample of the crime records of a crime database in SQLite, without reading the rest
+     * @param location Location of CrimeDB to read crime data from
+     * @param filter the filter the crime records must match, null to sample every crime record
+     * @param count the most crime records to read
+     * @return the crime records, in no particular order
+     * @throws SQLException could not read from database
+     */
+    public static ArrayList<CrimeRecord> readCrimeRecordSample(String location, CrimeFilter filter, Integer count)
+            throws SQLException {
+        List<Object> params = new ArrayList<Object>();
+        String where = (filter == null) ? "" : crimeFilterSQL(filter, new ArrayList<String>(), params);
+        String sample = "SELECT r.rowid FROM CRIME_RECORD r";
+        if (where.contains("t.CRIME_TYPE_")) {
+            sample += " LEFT JOIN CRIME_TYPE t ON t.CRIME_TYPE_ID = r.CRIME_TYPE_ID";
+        }
+        params.add(count);
+        return queryCrimeRecords(location, "rowid IN (" + sample + where + " ORDER BY RANDOM() LIMIT ?)", params);
+    }
+
+
+    /**
+     * Makes the where clause of a filter, matching crime records the same way as FilterCrimeCollection. A crime
+     * type that is not known is UNKNOWN, as in getCrimeTypeData().
+     * @param filter the filter
+     * @param columns the columns of CRIME_RECORD the where clause uses are added to this
+     * @param params the parameters of the where clause are added to this
+     * @return the where clause, an empty string if the filter does not filter
+     */
+    private static String crimeFilterSQL(CrimeFilter filter, List<String> columns, List<Object> params) {
+        List<String> conditions = new ArrayList<String>();
+        if (filter.getDomestic() != null) {
+            conditions.add("r.CRIME_RECORD_DOMESTIC = ?");
+            columns.add("CRIME_RECORD_DOMESTIC");
+            params.add(filter.getDomestic() ? 1 : 0);
+        }
+        if (filter.getArrest() != null) {
+            conditions.add("r.CRIME_RECORD_ARREST = ?");
+            columns.add("CRIME_RECORD_ARREST");
+            params.add(filter.getArrest() ? 1 : 0);
+        }
+        if (!filter.getCrimeTypes().isEmpty()) {
+            String in = "IFNULL(t.CRIME_TYPE_NAME, 'UNKNOWN') IN (?";
+            for (int i = 1; i < filter.getCrimeTypes().size(); i++) {
+                in += ", ?";
+            }
+            conditions.add(in + ")");
+            columns.add("CRIME_TYPE_ID");
+            params.addAll(filter.getCrimeTypes());
+        }
+        if (filter.getLocation() != null && !filter.getLocation().isEmpty()) {
+            conditions.add("instr(lower(r.CRIME_RECORD_LOCATION_DESCRIPTION), lower(?)) > 0");
+            columns.add("CRIME_RECORD_LOCATION_DESCRIPTION");
+            params.add(filter.getLocation());
+        }
+        if (filter.getBeat() >= 0) {
+            conditions.add("r.CRIME_RECORD_BEAT = ?");
+            columns.add("CRIME_RECORD_BEAT");
+            params.add(filter.getBeat());
+        }
+        if (filter.getWard() >= 0) {
+            conditions.add("r.CRIME_RECORD_WARD = ?");
+            columns.add("CRIME_RECORD_WARD");
+            params.add(filter.getWard());
+        }
+        if (filter.getBlock() != null && !filter.getBlock().isEmpty()) {
+            conditions.add("instr(lower(r.CRIME_RECORD_BLOCK), lower(?)) > 0");
+            columns.add("CRIME_RECORD_BLOCK");
+            params.add(filter.getBlock());
+        }
+        if (filter.getPrimary() != null && !filter.getPrimary().isEmpty()) {
+            conditions.add("lower(IFNULL(t.CRIME_TYPE_NAME, 'UNKNOWN')) = lower(?)");
+            columns.add("CRIME_TYPE_ID");
+            params.add(filter.getPrimary());
+        }
+        if (filter.getSecondary() != null && !filter.getSecondary().isEmpty()) {
+            conditions.add("instr(lower(IFNULL(t.CRIME_TYPE_SECONDARY, 'UNKNOWN')), lower(?)) > 0");
+            columns.add("CRIME_TYPE_ID");
+            params.add(filter.getSecondary());
+        }
+        if (filter.getIUCR() != null && !filter.getIUCR().isEmpty()) {
+            conditions.add("lower(r.CRIME_TYPE_ID) = lower(?)");
+            columns.add("CRIME_TYPE_ID");
+            params.add(filter.getIUCR());
+        }
+        if (filter.getFBICD() != null && !filter.getFBICD().isEmpty()) {
+            conditions.add("lower(r.CRIME_RECORD_FBICD) = lower(?)");
+            columns.add("CRIME_RECORD_FBICD");
+            params.add(filter.getFBICD());
+        }
+        if (filter.getTo() != null) {
+            conditions.add("r.CRIME_RECORD_DATE <= ?");
+            columns.add("CRIME_RECORD_DATE");
+            params.add(filter.getTo().getMillis());
+        }
+        if (filter.getFrom() != null) {
+            conditions.add("r.CRIME_RECORD_DATE >= ?");
+            columns.add("CRIME_RECORD_DATE");
+            params.add(filter.getFrom().getMillis());
+        }
+        String where = "";
+        for (String condition : conditions) {
+            where += (where.isEmpty() ? " WHERE " : " AND ") + condition;
+        }
+        return where;
+    }
+
+
+    /**
+     * Reads a page of crime records in order of (date, case id), starting after a crime record. Uses the date
+     * index to go straight to the crime record, so every page is as quick to read no matter how far in it is.
+     * @param c an open connection to a crime database, eg: a snapshot
+     * @param after the crime record just before the page
+     * @param limit the most crime records to read
+     * @return the crime records
+     * @throws SQLException could not read from database
+     */
+    static ArrayList<CrimeRecord> readCrimeRecordsAfter(Connection c, CrimeRecord after, Integer limit)
+            throws SQLException {
+        ArrayList<Object> params = new ArrayList<Object>();
+        params.add(after.getDate().getMillis());
+        params.add(after.getDate().getMillis());
+        params.add(after.getCaseID());
+        params.add(limit);
+        return queryCrimeRecords(c, "CRIME_RECORD_DATE >= ? AND (CRIME_RECORD_DATE > ? OR CRIME_RECORD_ID > ?) " +
+                "ORDER BY CRIME_RECORD_DATE, CRIME_RECORD_ID LIMIT ?", params);
     }
 
 
-    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
-    // Database READERS
-    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * Reads a page of crime records in order of (date, case id), ending before a crime record
+     * @param c an open connection to a crime database, eg: a snapshot
+     * @param before the crime record just after the page
+     * @param limit the most crime records to read
+     * @return the crime records, in order of (date, case id)
+     * @throws SQLException could not read from database
+     */
+    static ArrayList<CrimeRecord> readCrimeRecordsBefore(Connection c, CrimeRecord before, Integer limit)
+            throws SQLException {
+        ArrayList<Object> params = new ArrayList<Object>();
+        params.add(before.getDate().getMillis());
+        params.add(before.getDate().getMillis());
+        params.add(before.getCaseID());
+        params.add(limit);
+        ArrayList<CrimeRecord> page = queryCrimeRecords(c, "CRIME_RECORD_DATE <= ? AND " +
+                "(CRIME_RECORD_DATE < ? OR CRIME_RECORD_ID < ?) " +
+                "ORDER BY CRIME_RECORD_DATE DESC, CRIME_RECORD_ID DESC LIMIT ?", params);
+        Collections.reverse(page);
+        return page;
+    }
 
 
     /**
-     * Read a collection of crime records from persistent storage and return an
-     * equivalent CrimeCollection object consisting of CrimeRecord objects
-     * @return a CrimeRecord object
+     * Reads a page of crime records in order of (date, case id), starting at a position. SQLite steps over every
+     * crime record before the position, so readCrimeRecordsAfter() is used when the record before is known.
+     * @param c an open connection to a crime database, eg: a snapshot
+     * @param offset the position of the first crime record of the page
+     * @param limit the most crime records to read
+     * @return the crime records
      * @throws SQLException could not read from database
      */
-    public static CrimeCollection readCrimeRecords() throws Exception {
-        Connection c = null;
-        Statement stmt = null;
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:" + CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
-        c.setAutoCommit(false);
-        LOGGER.info("Opened database for getID successfully");
+    static ArrayList<CrimeRecord> readCrimeRecordsAt(Connection c, Integer offset, Integer limit)
+            throws SQLException {
+        ArrayList<Object> params = new ArrayList<Object>();
+        params.add(limit);
+        params.add(offset);
+        return queryCrimeRecords(c, "1 ORDER BY CRIME_RECORD_DATE, CRIME_RECORD_ID LIMIT ? OFFSET ?", params);
+    }
 
-        stmt = c.createStatement();
-        ResultSet rs = stmt.executeQuery("SELECT * FROM CRIME_RECORD;");
 
-        CrimeCollection results = new CrimeCollection();
-        results.setDirectory(CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
-        while (rs.next()) {
-            results.addCrimeRecord(createTempCrimeRecord(rs));
+    /**
+     * Adds the conditions for a range of dates to a query
+     * @param params the parameters of the query, the dates are added to it
+     * @return the conditions, starting with " AND " if there are any
+     */
+    private static String dateRange(DateTime from, DateTime to, List<Object> params) {
+        String where = "";
+        if (from != null) {
+            where += " AND CRIME_RECORD_DATE >= ?";
+            params.add(from.getMillis());
         }
-        rs.close();
-        stmt.close();
-        LOGGER.info("Read All done successfully");
-        c.close();
-        return results;
+        if (to != null) {
+            where += " AND CRIME_RECORD_DATE <= ?";
+            params.add(to.getMillis());
+        }
+        return where;
     }
 
 
     /**
-     * Read a collection of crime records from persistent storage and return an
-     * equivalent CrimeCollection object consisting of CrimeRecord objects
-     * @return a CrimeRecord object
+     * Reads the crime records matching a where clause
      * @param location Location of CrimeDB to read crime data from
+     * @param where the where clause, with ? for each parameter
+     * @param params the parameters of the where clause
+     * @return the crime records
      * @throws SQLException could not read from database
      */
-    public static ArrayList<CrimeRecord> readCrimeRecords(String location) throws Exception {
-        Connection c = null;
-        Statement stmt = null;
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:" + location);
-        c.setAutoCommit(false);
-        LOGGER.info("Opened database for getID successfully");
+    private static ArrayList<CrimeRecord> queryCrimeRecords(String location, String where, List<Object> params)
+            throws SQLException {
+        Connection c = SQLiteConnectionManager.acquireReader(location);
+        try {
+            return queryCrimeRecords(c, where, params);
+        } finally {
+            SQLiteConnectionManager.releaseReader(c);
+        }
+    }
 
-        stmt = c.createStatement();
-        ResultSet rs = stmt.executeQuery("SELECT * FROM CRIME_RECORD;");
 
+    /**
+     * Reads the crime records matching a where clause using an open connection
+     * @param c an open connection to a crime database, eg: a snapshot
+     * @param where the where clause, with ? for each parameter
+     * @param params the parameters of the where clause
+     * @return the crime records
+     * @throws SQLException could not read from database
+     */
+    private static ArrayList<CrimeRecord> queryCrimeRecords(Connection c, String where, List<Object> params)
+            throws SQLException {
         ArrayList<CrimeRecord> results = new ArrayList<CrimeRecord>();
-        while (rs.next()) {
-            //System.out.println(rs.getString("CRIME_RECORD_ID"));  //Reads all data and prints the ID to sys.out
-            try {
-                results.add(createTempCrimeRecord(rs));
-            } catch (Exception e) {
-                String err;
-                err = "Exception encountered while attempting to add crime record to a new crime collection";
-                LOGGER.info(err);
-                LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
+        PreparedStatement stmt = c.prepareStatement("SELECT * FROM CRIME_RECORD WHERE " + where + ";");
+        try {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
             }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                CrimeRecord crime = createTempCrimeRecord(rs);
+                if (crime != null) {
+                    results.add(crime);
+                }
+            }
+            rs.close();
+        } finally {
+            stmt.close();
         }
-        rs.close();
-        stmt.close();
-        LOGGER.info("Read All done successfully");
-        c.close();
         return results;
     }
 
 
     /**
-     * Read a collection of crime records from persistent storage
-     * @throws SQLException could not read from database
+     * Finds the crime records matching a search with the full text index of a crime database.
+     * The search is split into phrases by commas, a crime record matches if any of its searched text (see
+     * createCrimeSearchIndex()) has words starting with the words of any phrase, ignoring case.
+     * eg: "dep store, hx1111" matches "DEPARTMENT STORE" and the case id "HX111116".
+     * @param location Location of CrimeDB to search
+     * @param text the search
+     * @return the case ids of the matching crime records
+     * @throws SQLException the database has no full text index, or could not be read from
      */
-    public static void readCrimeCollections() throws Exception {
-        Connection c = null;
-        Statement stmt = null;
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:Crime_Collection_List.db");
-        c.setAutoCommit(false);
-        LOGGER.info("Opened database for collection read successfully");
-
-        stmt = c.createStatement();
-        ResultSet rs = stmt.executeQuery("SELECT * FROM CRIME_COLLECTION_LIST;");
-        while (rs.next()) {
-            CrimeCollection cc;
-            //System.out.println(rs.getString("CRIME_RECORD_ID"));  //Reads all data and prints the ID to sys.out
-            cc = new CrimeCollection(rs.getString("CRIME_COLLECTION_NAME"),
-                    rs.getInt("CRIME_COLLECTION_ID"),
-                    rs.getString("CRIME_COLLECTION_LOCATION"));
-            CrimeCollectionManager.addCrimeCollection(cc);
-            LOGGER.info("Read All done successfully");
+    public static ArrayList<String> searchCrimeRecordIDs(String location, String text) throws Exception {
+        ArrayList<String> ids = new ArrayList<String>();
+        String match = toSearchMatch(text);
+        if (match == null) {
+            return ids;
         }
-        rs.close();
-        stmt.close();
-        c.close();
-
+        Connection c = SQLiteConnectionManager.acquireReader(location);
+        try {
+            PreparedStatement stmt = c.prepareStatement("SELECT CASE_ID FROM " + CRIME_SEARCH_TABLE + " WHERE " +
+                    CRIME_SEARCH_TABLE + " MATCH ?;");
+            try {
+                stmt.setString(1, match);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+                rs.close();
+            } finally {
+                stmt.close();
+            }
+        } finally {
+            SQLiteConnectionManager.releaseReader(c);
+        }
+        return ids;
     }
 
 
     /**
-     * Read a single crime record from persistent storage and return an
-     * equivalent CrimeRecord object
-     * @param crimeID A CrimeRecord ID
-     * @return a CrimeRecord object
-     * @throws SQLException unable to read the crime record from the database
+     * Reads the crime records matching a search with the full text index of a crime database, in order of date.
+     * Only the matching crime records are read. See searchCrimeRecordIDs() for what matches.
+     * @param location Location of CrimeDB to search
+     * @param text the search
+     * @return the matching crime records
+     * @throws SQLException the database has no full text index, or could not be read from
      */
-    public static CrimeRecord readCrimeRecord(String crimeID) throws Exception {
-        Connection c = null;
-        Statement stmt = null;
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:" + CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
-        c.setAutoCommit(false);
-        LOGGER.info("Opened database for getID successfully");
-
-        stmt = c.createStatement();
-        ResultSet rs = stmt.executeQuery("SELECT * FROM CRIME_RECORD WHERE CRIME_RECORD_ID='" + crimeID + "';");
-        CrimeRecord cr = createTempCrimeRecord(rs);
-        rs.close();
-        stmt.close();
-        c.close();
-        LOGGER.info("Read All done successfully");
-        return cr;
+    public static ArrayList<CrimeRecord> searchCrimeRecords(String location, String text) throws Exception {
+        String match = toSearchMatch(text);
+        if (match == null) {
+            return new ArrayList<CrimeRecord>();
+        }
+        ArrayList<Object> params = new ArrayList<Object>();
+        params.add(match);
+        return queryCrimeRecords(location, "rowid IN (SELECT docid FROM " + CRIME_SEARCH_TABLE + " WHERE " +
+                CRIME_SEARCH_TABLE + " MATCH ?) ORDER BY CRIME_RECORD_DATE, CRIME_RECORD_ID", params);
     }
 
 
     /**
-     * Remove all crime records from the current database
-     * Not currently used - Untested
-     * Design change now using new and append rather than replace and append
+     * Turns a search into an FTS MATCH expression, each comma separated phrase becomes a phrase of word prefixes
+     * eg: "dep store, hx1111" becomes "dep* store*" OR "hx1111*"
+     * @return the expression, or null if the search has no words
      */
-    @Deprecated
-    public static void deleteAllCrimeRecords() {
-        Connection c = null;
-        Statement stmt = null;
-        try {
-            Class.forName("org.sqlite.JDBC");
-            c = DriverManager.getConnection("jdbc:sqlite:" + CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
-            c.setAutoCommit(false);
-            LOGGER.info("Opened database for Delete successfully");
-
-            stmt = c.createStatement();
-            String sql = "DELETE FROM CRIME_RECORD;";
-            stmt.executeUpdate(sql);
-            c.commit();
-            stmt.close();
-            c.close();
-            LOGGER.info("Delete done successfully");
-        } catch (Exception e) {
-            LOGGER.warning(e.getClass().getName() + ": " + e.getMessage());
+    private static String toSearchMatch(String text) {
+        StringBuilder match = new StringBuilder();
+        for (String phrase : text.split(",")) {
+            StringBuilder words = new StringBuilder();
+            // Anything that isn't a letter or digit separates words in the index too
+            for (String word : phrase.split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) {
+                    words.append(words.length() == 0 ? "" : " ").append(word).append('*');
+                }
+            }
+            if (words.length() > 0) {
+                match.append(match.length() == 0 ? "" : " OR ").append('"').append(words).append('"');
+            }
         }
+        return (match.length() == 0) ? null : match.toString();
     }
 
 
@@ -320,23 +1563,71 @@ public class SQLiteDBHandler {
     ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
 
+    /**
+     * Deletes, overwrites and adds crime records of a crime database in one transaction, in that order, so a crime
+     * id that is both deleted and added is replaced. Used by CrimeRecordWriteQueue.
+     * @param location the location of the crime database
+     * @param deletes the crime ids of the crime records to delete
+     * @param updates the crime records to overwrite
+     * @param inserts the crime records to add, crime ids already in the database are skipped
+     * @throws SQLException the changes could not be written, none of them were
+     */
+    static void writeCrimeRecordChanges(String location, List<String> deletes, List<CrimeRecord> updates,
+                                        List<CrimeRecord> inserts) throws SQLException {
+        Connection c = SQLiteConnectionManager.acquireWriter(location);
+        try {
+            if (!deletes.isEmpty()) {
+                PreparedStatement stmt = c.prepareStatement("DELETE FROM CRIME_RECORD WHERE CRIME_RECORD_ID = ?;");
+                try {
+                    for (String crimeID : deletes) {
+                        stmt.setString(1, crimeID);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                } finally {
+                    stmt.close();
+                }
+            }
+            if (!updates.isEmpty()) {
+                PreparedStatement stmt = c.prepareStatement(UPDATE_CRIME_RECORD_SQL);
+                try {
+                    for (CrimeRecord crime : updates) {
+                        bindCrimeRecord(stmt, crime);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                } finally {
+                    stmt.close();
+                }
+            }
+            if (!inserts.isEmpty()) {
+                insertCrimeRecords(c, inserts);
+            }
+            c.commit();
+            LOGGER.info("Wrote " + deletes.size() + " deletions, " + updates.size() + " edits and " + inserts.size() +
+                    " additions successfully");
+        } finally {
+            SQLiteConnectionManager.releaseWriter(c);
+        }
+    }
+
+
     /**
      * Deletes a single crime record object given a crimeID
      * @param crimeID the crime if of the crime record to be deleted
      * @throws SQLException
      */
     public static void deleteCrimeRecord(String crimeID) throws Exception {
-        Connection c = null;
-        Statement stmt = null;
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:" + CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
-        LOGGER.info("Opened database for Deletion successfully");
-
-        stmt = c.createStatement();
-        stmt.executeUpdate("DELETE FROM CRIME_RECORD WHERE CRIME_RECORD_ID = '" + crimeID + "';");
-        LOGGER.info("Deletion done successfully");
-        stmt.close();
-        c.close();
+        Connection c = SQLiteConnectionManager.acquireWriter(CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
+        try {
+            Statement stmt = c.createStatement();
+            stmt.executeUpdate("DELETE FROM CRIME_RECORD WHERE CRIME_RECORD_ID = '" + crimeID + "';");
+            c.commit();
+            LOGGER.info("Deletion done successfully");
+            stmt.close();
+        } finally {
+            SQLiteConnectionManager.releaseWriter(c);
+        }
     }
 
 
@@ -345,22 +1636,19 @@ public class SQLiteDBHandler {
      * equivalent CrimeCollection object consisting of CrimeRecord objects
      */
     public static void editCrimeRecord(CrimeRecord crime) throws Exception {
-        int exitCode = 1;
-        Connection c = null;
-        Statement stmt = null;
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:" + CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
-        c.setAutoCommit(false);
-        LOGGER.info("Opened database for Update successfully");
-        stmt = c.createStatement();
-        OR_Map cr = new OR_Map(crime);
-        String sql = "UPDATE CRIME_RECORD SET " + cr.toDBUpdateString() + " WHERE CRIME_RECORD_ID = '" + crime.getCaseID() + "';";
-        stmt.executeUpdate(sql);
-        c.commit();
-        LOGGER.info("Operation done successfully");
+        Connection c = SQLiteConnectionManager.acquireWriter(CrimeCollectionManager.getCurrWorkingCollection().getDirectory());
+        try {
+            Statement stmt = c.createStatement();
+            OR_Map cr = new OR_Map(crime);
+            String sql = "UPDATE CRIME_RECORD SET " + cr.toDBUpdateString() + " WHERE CRIME_RECORD_ID = '" + crime.getCaseID() + "';";
+            stmt.executeUpdate(sql);
+            c.commit();
+            LOGGER.info("Operation done successfully");
 
-        stmt.close();
-        c.close();
+            stmt.close();
+        } finally {
+            SQLiteConnectionManager.releaseWriter(c);
+        }
     }
 
 
@@ -375,10 +1663,8 @@ public class SQLiteDBHandler {
      * @throws SQLException new Crime_Collection_List database was not able to be created
      */
     public static void createNewCrimeCollectiondb() throws Exception {
-        Connection c = null;
-        Class.forName("org.sqlite.JDBC");
         // In the future we need to specify the working directory better here
-        c = DriverManager.getConnection("jdbc:sqlite:Crime_Collection_List.db");
+        SQLiteConnectionManager.open(CRIME_COLLECTION_LIST_DB);
         LOGGER.info("Opened collection list successfully");
         createNewCrimeCollectionTable();
     }
@@ -389,25 +1675,24 @@ public class SQLiteDBHandler {
      * @throws SQLException crime collection table could not be added to the database
      */
     private static void createNewCrimeCollectionTable() throws Exception{
-        Connection c = null;
-        Statement stmt = null;
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:Crime_Collection_List.db");
-        LOGGER.info("Opened database successfully");
+        Connection c = SQLiteConnectionManager.acquireWriter(CRIME_COLLECTION_LIST_DB);
         try {
-            stmt = c.createStatement();
-
-            String sql = "CREATE TABLE CRIME_COLLECTION_LIST " +
-                    "(CRIME_COLLECTION_ID INT PRIMARY KEY     NOT NULL," +
-                    " CRIME_COLLECTION_NAME           VARCHAR(100)    NOT NULL, " +
-                    " CRIME_COLLECTION_LOCATION            VARCHAR(500)     NOT NULL)";
-            stmt.executeUpdate(sql);
-        } catch (SQLException e) {
-            LOGGER.info("Crime collection table already exists");
+            Statement stmt = c.createStatement();
+            try {
+                String sql = "CREATE TABLE CRIME_COLLECTION_LIST " +
+                        "(CRIME_COLLECTION_ID INT PRIMARY KEY     NOT NULL," +
+                        " CRIME_COLLECTION_NAME           VARCHAR(100)    NOT NULL, " +
+                        " CRIME_COLLECTION_LOCATION            VARCHAR(500)     NOT NULL)";
+                stmt.executeUpdate(sql);
+                c.commit();
+            } catch (SQLException e) {
+                LOGGER.info("Crime collection table already exists");
+            }
+            LOGGER.info("collection list table created successfully");
+            stmt.close();
+        } finally {
+            SQLiteConnectionManager.releaseWriter(c);
         }
-        LOGGER.info("collection list table created successfully");
-        stmt.close();
-        c.close();
     }
 
 
@@ -417,11 +1702,8 @@ public class SQLiteDBHandler {
      * @throws SQLException crime collection database could not be created
      */
     public static void createNewCrimedb(String location) throws Exception {
-        Connection c = null;
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:" + location);
+        SQLiteConnectionManager.open(location);
         LOGGER.info("Opened collection successfully");
-        c.close();
         createNewCrimeTable(location);
     }
 
@@ -432,13 +1714,20 @@ public class SQLiteDBHandler {
      * @throws SQLException tables could not be added
      */
     private static void createNewCrimeTable(String location) throws Exception {
-        Connection c = null;
-        Statement stmt = null;
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:" + location);
-        LOGGER.info("Opened database successfully");
+        Connection c = SQLiteConnectionManager.acquireWriter(location);
+        try {
+            createNewCrimeTable(location, c);
+        } finally {
+            SQLiteConnectionManager.releaseWriter(c);
+        }
+    }
+
 
-        stmt = c.createStatement();
+    /**
+     * creates the database structure using the writer connection of the database
+     */
+    private static void createNewCrimeTable(String location, Connection c) throws Exception {
+        Statement stmt = c.createStatement();
         String sql = "";
         if (!tableExist("CRIME_TYPE", c)) {
             sql = "CREATE TABLE CRIME_TYPE " +
@@ -449,36 +1738,361 @@ public class SQLiteDBHandler {
         }
 
         if (!tableExist("CRIME_RECORD", c)) {
-            sql = "CREATE TABLE CRIME_RECORD " +
-                    "(CRIME_RECORD_ID VARCHAR(20) PRIMARY KEY     NOT NULL," +
-                    " CRIME_RECORD_DATE           VARCHAR(50), " +
-                    " CRIME_RECORD_BLOCK            VARCHAR(50)     NOT NULL, " +
-                    " CRIME_RECORD_LOCATION_DESCRIPTION        VARCHAR(50), " +
-                    " CRIME_RECORD_ARREST        BOOLEAN, " +
-                    " CRIME_RECORD_DOMESTIC        BOOLEAN, " +
-                    " CRIME_RECORD_BEAT        INT, " +
-                    " CRIME_RECORD_WARD        INT, " +
-                    " CRIME_RECORD_XCOORDINATE        INT, " +
-                    " CRIME_RECORD_YCOORDINATE        INT, " +
-                    " CRIME_RECORD_LATITUDE        INT, " +
-                    " CRIME_RECORD_LONGITUDE        INT, " +
-                    " CRIME_RECORD_LOCATIONSTR        VARCHAR(50), " +
-                    " PREV_CRIME_RECORD        INT, " +
-                    " NEXT_CRIME_RECORD        INT, " +
-                    " CRIME_TYPE_ID        VARCHAR(20)  NOT NULL, " +
-                    " CRIME_RECORD_FBICD        VARCHAR(20), " +
-                    " FOREIGN KEY(PREV_CRIME_RECORD) REFERENCES CRIME_RECORD(CRIME_RECORD_ID), " +
-                    " FOREIGN KEY(NEXT_CRIME_RECORD) REFERENCES CRIME_RECORD(CRIME_RECORD_ID), " +
-                    " FOREIGN KEY(CRIME_TYPE_ID) REFERENCES CRIME_TYPE(CRIME_TYPE_ID))";
+            stmt.executeUpdate(crimeRecordTableSQL("CRIME_RECORD"));
+            stmt.executeUpdate("PRAGMA user_version = " + CRIME_DB_VERSION);
+        } else {
+            upgradeCrimeRecordTable(c);
+        }
+        createCrimeRecordIndexes(stmt);
+        createCrimeRollups(stmt);
+
+        if (!tableExist("IMPORT_CHECKPOINT", c)) {
+            sql = "CREATE TABLE IMPORT_CHECKPOINT " +
+                    "(IMPORT_SOURCE VARCHAR(260) PRIMARY KEY     NOT NULL, " +
+                    " IMPORT_SOURCE_SIZE        INTEGER, " +
+                    " IMPORT_SOURCE_MODIFIED        INTEGER, " +
+                    " IMPORT_BYTE_OFFSET        INTEGER, " +
+                    " IMPORT_ROW_NUMBER        INTEGER, " +
+                    " IMPORT_COMPLETE        BOOLEAN)";
             stmt.executeUpdate(sql);
         }
+        c.commit();
 
         populateIUCR(location);
         LOGGER.info("Crime table created successfully");
         stmt.close();
-        c.close();
     }
 
+    /**
+     * The CREATE TABLE statement of the current version of CRIME_RECORD.
+     * Dates are milliseconds since 1970-01-01T00:00Z, coordinates are REAL and the previous and next crime records
+     * are the ids of other crime records, NULL when there isn't one.
+     * @param tableName the name to create the table with
+     */
+    private static String crimeRecordTableSQL(String tableName) {
+        return "CREATE TABLE " + tableName + " " +
+                "(CRIME_RECORD_ID VARCHAR(20) PRIMARY KEY     NOT NULL," +
+                " CRIME_RECORD_DATE           INTEGER, " +
+                " CRIME_RECORD_BLOCK            VARCHAR(50)     NOT NULL, " +
+                " CRIME_RECORD_LOCATION_DESCRIPTION        VARCHAR(50), " +
+                " CRIME_RECORD_ARREST        BOOLEAN, " +
+                " CRIME_RECORD_DOMESTIC        BOOLEAN, " +
+                " CRIME_RECORD_BEAT        INT, " +
+                " CRIME_RECORD_WARD        INT, " +
+                " CRIME_RECORD_XCOORDINATE        REAL, " +
+                " CRIME_RECORD_YCOORDINATE        REAL, " +
+                " CRIME_RECORD_LATITUDE        REAL, " +
+                " CRIME_RECORD_LONGITUDE        REAL, " +
+                " CRIME_RECORD_LOCATIONSTR        VARCHAR(50), " +
+                " PREV_CRIME_RECORD        VARCHAR(20), " +
+                " NEXT_CRIME_RECORD        VARCHAR(20), " +
+                " CRIME_TYPE_ID        VARCHAR(20)  NOT NULL, " +
+                " CRIME_RECORD_FBICD        VARCHAR(20), " +
+                " FOREIGN KEY(PREV_CRIME_RECORD) REFERENCES CRIME_RECORD(CRIME_RECORD_ID), " +
+                " FOREIGN KEY(NEXT_CRIME_RECORD) REFERENCES CRIME_RECORD(CRIME_RECORD_ID), " +
+                " FOREIGN KEY(CRIME_TYPE_ID) REFERENCES CRIME_TYPE(CRIME_TYPE_ID))";
+    }
+
+
+    /**
+     * Brings a crime database made by an older version of crimeSpy up to date, migrating CRIME_RECORD to the
+     * current schema version and adding the secondary indexes it is missing. A database that is up to date is
+     * left alone, so this is quick to call every time a database is opened.
+     * @param location the location of the crime database
+     * @throws SQLException the database could not be upgraded, it is left as it was
+     */
+    public static void upgradeCrimedb(String location) throws Exception {
+        Connection c = SQLiteConnectionManager.acquireWriter(location);
+        try {
+            if (!tableExist("CRIME_RECORD", c)) {
+                return;
+            }
+            Statement stmt = c.createStatement();
+            try {
+                upgradeCrimeRecordTable(c);
+                createCrimeRecordIndexes(stmt);
+                createCrimeRollups(stmt);
+            } finally {
+                stmt.close();
+            }
+            c.commit();
+        } finally {
+            SQLiteConnectionManager.releaseWriter(c);
+        }
+    }
+
+
+    /**
+     * @param location the location of the crime database
+     * @return the schema version of the database, 1 for databases made before schema versions were kept
+     * @throws SQLException could not read from database
+     */
+    public static Integer getCrimedbVersion(String location) throws Exception {
+        Connection c = SQLiteConnectionManager.acquireReader(location);
+        try {
+            return getSchemaVersion(c);
+        } finally {
+            SQLiteConnectionManager.releaseReader(c);
+        }
+    }
+
+
+    /**
+     * @return the version in PRAGMA user_version, 1 if it was never set
+     */
+    private static Integer getSchemaVersion(Connection c) throws SQLException {
+        Statement stmt = c.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("PRAGMA user_version;");
+            Integer version = rs.getInt(1);
+            rs.close();
+            return Math.max(version, 1);
+        } finally {
+            stmt.close();
+        }
+    }
+
+
+    /**
+     * Migrates CRIME_RECORD to the current schema version, in the writer's transaction. The caller commits.
+     * SQLite can't change the type of a column, so the records are copied into a new table that then replaces
+     * the old one. Version 1 stored dates as ISO 8601 strings, coordinates as INT and the previous and next
+     * crime records as INT.
+     * @param c the writer connection of the database
+     * @throws SQLException the table could not be migrated
+     */
+    private static void upgradeCrimeRecordTable(Connection c) throws SQLException {
+        Integer version = getSchemaVersion(c);
+        if (version >= CRIME_DB_VERSION) {
+            return;
+        }
+        LOGGER.info("Upgrading crime database from version " + version + " to " + CRIME_DB_VERSION);
+        final int[] malformedDates = {0};
+        Function.create(c, "PARSE_CRIME_DATE", new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                try {
+                    result(DateTime.parse(value_text(0)).getMillis());
+                } catch (Exception e) {
+                    // null or not a date, the record is kept with the placeholder date as a csv import would
+                    malformedDates[0]++;
+                    result(CrimeDateParser.placeholderDate().getMillis());
+                }
+            }
+        });
+        Statement stmt = c.createStatement();
+        try {
+            stmt.executeUpdate(crimeRecordTableSQL("CRIME_RECORD_UPGRADE"));
+            stmt.executeUpdate("INSERT INTO CRIME_RECORD_UPGRADE SELECT CRIME_RECORD_ID, " +
+                    "PARSE_CRIME_DATE(CRIME_RECORD_DATE), CRIME_RECORD_BLOCK, CRIME_RECORD_LOCATION_DESCRIPTION, " +
+                    "CRIME_RECORD_ARREST, CRIME_RECORD_DOMESTIC, CRIME_RECORD_BEAT, CRIME_RECORD_WARD, " +
+                    "CAST(CRIME_RECORD_XCOORDINATE AS REAL), CAST(CRIME_RECORD_YCOORDINATE AS REAL), " +
+                    "CAST(CRIME_RECORD_LATITUDE AS REAL), CAST(CRIME_RECORD_LONGITUDE AS REAL), " +
+                    "CRIME_RECORD_LOCATIONSTR, NULLIF(PREV_CRIME_RECORD, 0), NULLIF(NEXT_CRIME_RECORD, 0), " +
+                    "CRIME_TYPE_ID, CRIME_RECORD_FBICD FROM CRIME_RECORD;");
+            if (malformedDates[0] > 0) {
+                LOGGER.warning(malformedDates[0] + " malformed dates were replaced with a placeholder date");
+            }
+            stmt.executeUpdate("DROP TABLE CRIME_RECORD;");
+            stmt.executeUpdate("ALTER TABLE CRIME_RECORD_UPGRADE RENAME TO CRIME_RECORD;");
+            stmt.executeUpdate("PRAGMA user_version = " + CRIME_DB_VERSION);
+        } finally {
+            stmt.close();
+            Function.destroy(c, "PARSE_CRIME_DATE");
+        }
+    }
+
+
+    /**
+     * Creates (or rebuilds) the full text index of a crime database used to search it. The case id, primary and
+     * secondary description, location description, block, beat, ward, IUCR and FBI code of every crime record are
+     * indexed, and triggers keep the index up to date as crime records are written, edited and deleted.
+     * The index makes writing crime records slower, so it is only made when asked for.
+     * @param location the location of the crime database
+     * @throws SQLException the index could not be created
+     */
+    public static void createCrimeSearchIndex(String location) throws Exception {
+        Connection c = SQLiteConnectionManager.acquireWriter(location);
+        try {
+            Statement stmt = c.createStatement();
+            try {
+                dropCrimeSearchIndex(stmt);
+                stmt.executeUpdate("CREATE VIRTUAL TABLE " + CRIME_SEARCH_TABLE + " USING fts4(" +
+                        CRIME_SEARCH_COLUMNS + ", tokenize=unicode61);");
+                stmt.executeUpdate("INSERT INTO " + CRIME_SEARCH_TABLE + " (docid, " + CRIME_SEARCH_COLUMNS + ") " +
+                        "SELECT r.rowid, " + CRIME_SEARCH_VALUES + " FROM CRIME_RECORD r " +
+                        "LEFT JOIN CRIME_TYPE t ON t.CRIME_TYPE_ID = r.CRIME_TYPE_ID;");
+                for (String sql : CRIME_SEARCH_TRIGGERS) {
+                    stmt.executeUpdate(sql);
+                }
+                c.commit();
+                // Merge the index into one b-tree so searches only look in one place. This must be in a
+                // transaction of its own, optimizing drops the terms that have not been committed yet
+                stmt.executeUpdate("INSERT INTO " + CRIME_SEARCH_TABLE + " (" + CRIME_SEARCH_TABLE + ") " +
+                        "VALUES ('optimize');");
+            } finally {
+                stmt.close();
+            }
+            c.commit();
+            LOGGER.info("Search index created successfully");
+        } finally {
+            SQLiteConnectionManager.releaseWriter(c);
+        }
+    }
+
+
+    /**
+     * Removes the full text index of a crime database, if it has one
+     * @param location the location of the crime database
+     * @throws SQLException the index could not be removed
+     */
+    public static void dropCrimeSearchIndex(String location) throws Exception {
+        Connection c = SQLiteConnectionManager.acquireWriter(location);
+        try {
+            Statement stmt = c.createStatement();
+            try {
+                dropCrimeSearchIndex(stmt);
+            } finally {
+                stmt.close();
+            }
+            c.commit();
+        } finally {
+            SQLiteConnectionManager.releaseWriter(c);
+        }
+    }
+
+
+    private static void dropCrimeSearchIndex(Statement stmt) throws SQLException {
+        for (String trigger : new String[]{"INSERT", "DELETE", "UPDATE"}) {
+            stmt.executeUpdate("DROP TRIGGER IF EXISTS CRIME_RECORD_SEARCH_" + trigger + ";");
+        }
+        stmt.executeUpdate("DROP TABLE IF EXISTS " + CRIME_SEARCH_TABLE + ";");
+    }
+
+
+    /**
+     * @param location the location of the crime database
+     * @return true if the crime database has a full text index (see createCrimeSearchIndex())
+     * @throws SQLException could not read from database
+     */
+    public static Boolean hasCrimeSearchIndex(String location) throws Exception {
+        Connection c = SQLiteConnectionManager.acquireReader(location);
+        try {
+            return tableExist(CRIME_SEARCH_TABLE, c);
+        } finally {
+            SQLiteConnectionManager.releaseReader(c);
+        }
+    }
+
+
+    /**
+     * Creates any of the secondary indexes of CRIME_RECORD that do not exist
+     * @param stmt a statement of the writer connection of the database
+     */
+    private static void createCrimeRecordIndexes(Statement stmt) throws SQLException {
+        for (String index : RETIRED_CRIME_RECORD_INDEXES) {
+            stmt.executeUpdate("DROP INDEX IF EXISTS " + index);
+        }
+        for (String[] index : CRIME_RECORD_INDEXES) {
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS " + index[0] + " ON CRIME_RECORD (" + index[1] + ")");
+        }
+    }
+
+
+    /**
+     * Creates the rollup tables of CRIME_RECORD and the triggers that keep them up to date. A rollup without its
+     * triggers (one that is new, or was left by a bulk load) is rebuilt from CRIME_RECORD with one GROUP BY.
+     * Rollups that are up to date are left alone, so this is quick to call every time a database is opened.
+     * @param stmt a statement of the writer connection of the database
+     */
+    private static void createCrimeRollups(Statement stmt) throws SQLException {
+        for (String[] rollup : CRIME_ROLLUPS) {
+            String add = "INSERT INTO " + rollup[0] + " SELECT " + rollupValues(rollup, "new") + ", 0 " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM " + rollup[0] + " WHERE " + rollupMatch(rollup, null, "new") +
+                    "); UPDATE " + rollup[0] + " SET RECORD_COUNT = RECORD_COUNT + 1 WHERE " +
+                    rollupMatch(rollup, null, "new") + "; ";
+            String insertTrigger = "CREATE TRIGGER " + rollup[0] + "_INSERT AFTER INSERT ON CRIME_RECORD BEGIN " +
+                    add + "END";
+            // A rollup made by an older version of crimeSpy (eg: with days in local time) has different triggers
+            ResultSet rs = stmt.executeQuery("SELECT sql FROM sqlite_master WHERE type = 'trigger' " +
+                    "AND name = '" + rollup[0] + "_INSERT';");
+            boolean current = rs.next() && insertTrigger.equals(rs.getString(1));
+            rs.close();
+            if (current) {
+                continue;
+            }
+            String columns = rollupValues(rollup, null);
+            String values = rollupValues(rollup, "CRIME_RECORD");
+            dropCrimeRollupTriggers(stmt, rollup);
+            stmt.executeUpdate("DROP TABLE IF EXISTS " + rollup[0] + ";");
+            stmt.executeUpdate("CREATE TABLE " + rollup[0] + " (" + columns + ", RECORD_COUNT INTEGER NOT NULL);");
+            stmt.executeUpdate("INSERT INTO " + rollup[0] + " SELECT " + values + ", COUNT(*) FROM CRIME_RECORD " +
+                    "GROUP BY " + values + ";");
+            // NULLs are not equal in a unique index, the triggers match them with IS instead
+            stmt.executeUpdate("CREATE UNIQUE INDEX " + rollup[0] + "_IDX ON " + rollup[0] + " (" + columns + ");");
+            String remove = "UPDATE " + rollup[0] + " SET RECORD_COUNT = RECORD_COUNT - 1 WHERE " +
+                    rollupMatch(rollup, null, "old") + "; DELETE FROM " + rollup[0] + " WHERE RECORD_COUNT = 0 AND " +
+                    rollupMatch(rollup, null, "old") + "; ";
+            stmt.executeUpdate(insertTrigger + ";");
+            stmt.executeUpdate("CREATE TRIGGER " + rollup[0] + "_DELETE AFTER DELETE ON CRIME_RECORD BEGIN " +
+                    remove + "END;");
+            stmt.executeUpdate("CREATE TRIGGER " + rollup[0] + "_UPDATE AFTER UPDATE ON CRIME_RECORD WHEN NOT (" +
+                    rollupMatch(rollup, "old", "new") + ") BEGIN " + remove + add + "END;");
+        }
+    }
+
+
+    /**
+     * Drops the triggers of every rollup, so they are not kept up to date until createCrimeRollups() rebuilds them
+     * @param stmt a statement of the writer connection of the database
+     */
+    private static void dropCrimeRollupTriggers(Statement stmt) throws SQLException {
+        for (String[] rollup : CRIME_ROLLUPS) {
+            dropCrimeRollupTriggers(stmt, rollup);
+        }
+    }
+
+
+    private static void dropCrimeRollupTriggers(Statement stmt, String[] rollup) throws SQLException {
+        for (String trigger : new String[]{"INSERT", "DELETE", "UPDATE"}) {
+            stmt.executeUpdate("DROP TRIGGER IF EXISTS " + rollup[0] + "_" + trigger + ";");
+        }
+    }
+
+
+    /**
+     * @return the values of a rollup's columns for the crime record `row`, or the columns themselves if row is null
+     */
+    private static String rollupValues(String[] rollup, String row) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 1; i < rollup.length; i++) {
+            sql.append((i > 1) ? ", " : "").append(rollupValue(rollup[i], row));
+        }
+        return sql.toString();
+    }
+
+
+    /**
+     * @return the condition that the rollup values of `left` (or the columns if null) and `right` are the same
+     */
+    private static String rollupMatch(String[] rollup, String left, String right) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 1; i < rollup.length; i++) {
+            sql.append((i > 1) ? " AND " : "").append(rollupValue(rollup[i], left)).append(" IS ")
+                    .append(rollupValue(rollup[i], right));
+        }
+        return sql.toString();
+    }
+
+
+    private static String rollupValue(String column, String row) {
+        if (row == null) {
+            return column;
+        }
+        return column.equals("ROLLUP_DAY") ? String.format(ROLLUP_DAY_SQL, row) : row + "." + column;
+    }
+
+
     /**
      * Checks if a table with the name already exists.
      * @param tableName the name of the table being checked.
@@ -489,7 +2103,12 @@ public class SQLiteDBHandler {
     private static boolean tableExist(String tableName, Connection c) throws SQLException {
         DatabaseMetaData dbm = c.getMetaData();
         ResultSet tables = dbm.getTables(null, null, tableName, null);
-        return tables.next();
+        try {
+            return tables.next();
+        } finally {
+            // An open result set would keep a pooled connection reading the database
+            tables.close();
+        }
     }
 
     /**
@@ -500,29 +2119,28 @@ public class SQLiteDBHandler {
      */
     private static void populateIUCR(String location) throws Exception {
         List<String[]> iucrCodes = CSVFileHandler.readIUCRcodes();
-        Connection c = null;
-        Statement stmt = null;
-        Class.forName("org.sqlite.JDBC");
-        c = DriverManager.getConnection("jdbc:sqlite:" + location);
-        c.setAutoCommit(false);
-
-        LOGGER.info("Opened IUCR database for write successfully");
-        for (String[] code : iucrCodes) {
-            stmt = c.createStatement();
-            String crimeId = code[0].replaceFirst("^0+(?!$)", "");
-            String sql = "SELECT * FROM CRIME_TYPE WHERE CRIME_TYPE_ID == '" + crimeId + "'";
-            ResultSet resultSet = stmt.executeQuery(sql);
-            if (!resultSet.next()){
-                sql = "INSERT INTO CRIME_TYPE (CRIME_TYPE_ID, CRIME_TYPE_NAME, CRIME_TYPE_SECONDARY) " +
-                        "VALUES ('" + crimeId + "', '" + code[1] + "', '" + code[2] + "')";
-                stmt.executeUpdate(sql);
+        Connection c = SQLiteConnectionManager.acquireWriter(location);
+        try {
+            Statement stmt = c.createStatement();
+            for (String[] code : iucrCodes) {
+                String crimeId = code[0].replaceFirst("^0+(?!$)", "");
+                String sql = "SELECT * FROM CRIME_TYPE WHERE CRIME_TYPE_ID == '" + crimeId + "'";
+                ResultSet resultSet = stmt.executeQuery(sql);
+                boolean exists = resultSet.next();
+                resultSet.close();
+                if (!exists) {
+                    sql = "INSERT INTO CRIME_TYPE (CRIME_TYPE_ID, CRIME_TYPE_NAME, CRIME_TYPE_SECONDARY) " +
+                            "VALUES ('" + crimeId + "', '" + code[1] + "', '" + code[2] + "')";
+                    stmt.executeUpdate(sql);
+                }
             }
+            stmt.close();
+            c.commit();
+        } finally {
+            SQLiteConnectionManager.releaseWriter(c);
         }
-
-        c.commit();
         populateIucrHashMap(location);
         LOGGER.info("IUCR codes populated successfully");
-        c.close();
     }
 
 
@@ -537,15 +2155,12 @@ public class SQLiteDBHandler {
      */
     private static void populateIucrHashMap(String location) {
         Connection c = null;
-        Statement stmt = null;
 
         try {
-            Class.forName("org.sqlite.JDBC");
-            c = DriverManager.getConnection("jdbc:sqlite:" + location);
-            c.setAutoCommit(false);
+            c = SQLiteConnectionManager.acquireReader(location);
             LOGGER.info("Populating IUCR HashMap");
 
-            stmt = c.createStatement();
+            Statement stmt = c.createStatement();
             ResultSet rs = stmt.executeQuery("SELECT * FROM CRIME_TYPE");
 
             while (rs.next()) {
@@ -558,10 +2173,13 @@ public class SQLiteDBHandler {
             }
             rs.close();
             stmt.close();
-            c.close();
             LOGGER.info("Finished the hashmap");
         } catch (Exception e) {
             LOGGER.warning("Failure in populateIucrHashMap " + e.getClass().getName() + ": " + e.getMessage());
+        } finally {
+            if (c != null) {
+                SQLiteConnectionManager.releaseReader(c);
+            }
         }
     }
 
@@ -597,7 +2215,7 @@ public class SQLiteDBHandler {
             boolean domestic = rs.getInt("CRIME_RECORD_DOMESTIC") == 1;
             CrimeRecord cr;
             cr = new CrimeRecord(rs.getString("CRIME_RECORD_ID"),               // caseID
-                    DateTime.parse(rs.getString("CRIME_RECORD_DATE")),          // date
+                    new DateTime(rs.getLong("CRIME_RECORD_DATE")),              // date
                     arrest,                                                     // arrest
                     domestic,                                                   // domestic
                     // CrimeType info
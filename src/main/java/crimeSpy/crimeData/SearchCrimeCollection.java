@@ -1,8 +1,11 @@
 package crimeSpy.crimeData;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.FileHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -11,6 +14,9 @@ import java.util.logging.Logger;
 
 /**
  * Class to handle searching of the crime collection
+ * <p>If the database of the working collection has a full text index (see SQLiteDBHandler.createCrimeSearchIndex())
+ * the index is searched instead of every crime record. The index matches the start of words rather than any part of
+ * the text, eg: "dep" finds "DEPARTMENT STORE" but "partment" does not.</p>
  */
 public class SearchCrimeCollection {
 
@@ -50,7 +56,12 @@ public class SearchCrimeCollection {
             return CrimeCollectionManager.getCurrWorkingCollection();
         }
 
-        CrimeCollection searchedCollection = new CrimeCollection();
+        CrimeCollection searchedCollection = searchUsingIndex(text);
+        if (searchedCollection != null) {
+            return searchedCollection;
+        }
+
+        searchedCollection = new CrimeCollection();
         ArrayList<String> stringArray = separateString(text);
 
         for (String searchElement : stringArray) {
@@ -60,6 +71,45 @@ public class SearchCrimeCollection {
     }
 
 
+    /**
+     * Searches the full text index of the working collection's database, if it has one
+     * @param text is the string input in the search box
+     * @return a CrimeCollection of CrimeRecords that match the search, or null if the index could not be searched
+     */
+    private static CrimeCollection searchUsingIndex(String text) {
+        CrimeCollection current = CrimeCollectionManager.getCurrWorkingCollection();
+        String location = current.getDirectory();
+        if (location == null || !new File(location).exists()) {
+            return null;
+        }
+        CrimeCollection searchedCollection = new CrimeCollection();
+        try {
+            if (!SQLiteDBHandler.hasCrimeSearchIndex(location)) {
+                return null;
+            }
+            // The index only sees changes once they are written
+            CrimeRecordWriteQueue.forDatabase(location).flush();
+            if (current.getPages() != null) {
+                // Only the matching crime records are read from the database
+                for (CrimeRecord cR : SQLiteDBHandler.searchCrimeRecords(location, text)) {
+                    searchedCollection.addCrimeRecord(cR);
+                }
+            } else {
+                Set<String> matches = new HashSet<String>(SQLiteDBHandler.searchCrimeRecordIDs(location, text));
+                for (CrimeRecord cR : current.getCrimes()) {
+                    if (matches.contains(cR.getCaseID())) {
+                        searchedCollection.addCrimeRecord(cR);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warning("Search index not used, " + e.getClass().getName() + ": " + e.getMessage());
+            return null;
+        }
+        return searchedCollection;
+    }
+
+
     /**
      * Separates string by commas
      * @param commasString comma separated string
@@ -1,12 +1,13 @@
 package crimeSpy.uiElements;
 
 
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
-import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
@@ -29,8 +30,10 @@ import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.PeriodFormatter;
 import org.joda.time.format.PeriodFormatterBuilder;
+import crimeSpy.crimeData.CrimeCollection;
 import crimeSpy.crimeData.CrimeCollectionManager;
 import crimeSpy.crimeData.CrimeRecord;
+import crimeSpy.crimeData.CrimeRecordCounts;
 import crimeSpy.crimeData.FilterCrimeCollection;
 import crimeSpy.crimeData.SearchCrimeCollection;
 import crimeSpy.uiElements.Graphs.*;
@@ -120,49 +123,49 @@ public class CrimeSpyController {
     private TabPane tabPane;
 
     @FXML
-    private TableView gridTable;
+    private TableView<CrimeRecord> gridTable;
 
     @FXML
-    private TableColumn caseIDCol;
+    private TableColumn<CrimeRecord, String> caseIDCol;
 
     @FXML
-    private TableColumn dateCol;
+    private TableColumn<CrimeRecord, DateTime> dateCol;
 
     @FXML
-    private TableColumn arrestCol;
+    private TableColumn<CrimeRecord, Boolean> arrestCol;
 
     @FXML
-    private TableColumn domesticCol;
+    private TableColumn<CrimeRecord, Boolean> domesticCol;
 
     @FXML
-    private TableColumn iucrCol;
+    private TableColumn<CrimeRecord, String> iucrCol;
 
     @FXML
-    private TableColumn fbiCDCol;
+    private TableColumn<CrimeRecord, String> fbiCDCol;
 
     @FXML
-    private TableColumn priDescripCol;
+    private TableColumn<CrimeRecord, String> priDescripCol;
 
     @FXML
-    private TableColumn secDescripCol;
+    private TableColumn<CrimeRecord, String> secDescripCol;
 
     @FXML
-    private TableColumn blockCol;
+    private TableColumn<CrimeRecord, String> blockCol;
 
     @FXML
-    private TableColumn beatCol;
+    private TableColumn<CrimeRecord, Integer> beatCol;
 
     @FXML
-    private TableColumn wardCol;
+    private TableColumn<CrimeRecord, Integer> wardCol;
 
     @FXML
-    private TableColumn latitudeCol;
+    private TableColumn<CrimeRecord, Double> latitudeCol;
 
     @FXML
-    private TableColumn longitudeCol;
+    private TableColumn<CrimeRecord, Double> longitudeCol;
 
     @FXML
-    private TableColumn locStrCol;
+    private TableColumn<CrimeRecord, String> locStrCol;
 
     @FXML
     private CheckBox filterIsDomestic;
@@ -360,51 +363,142 @@ public class CrimeSpyController {
     }
 
 
+    // The collection the grid shows, its list is shown again whenever it is replaced (eg: the pages are read in full)
+    private CrimeCollection gridCollection = null;
+    private final ChangeListener<ObservableList<CrimeRecord>> gridListListener =
+            new ChangeListener<ObservableList<CrimeRecord>>() {
+        @Override
+        public void changed(ObservableValue<? extends ObservableList<CrimeRecord>> ov,
+                            ObservableList<CrimeRecord> oldList, final ObservableList<CrimeRecord> newList) {
+            if (Platform.isFxApplicationThread()) {
+                showGridList(newList);
+            } else {
+                Platform.runLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        showGridList(newList);
+                    }
+                });
+            }
+        }
+    };
+
+
     /**
      * For data initializing when needed for gridTable view etc.
      */
     private void initializeTableView() {
         LOGGER.info("Beginning Table View Init from initializeTableView()");
+        // Pages can't be sorted in place, so the crime records are read before the columns sort them
+        gridTable.setOnSort(new EventHandler<SortEvent<TableView<CrimeRecord>>>() {
+            @Override
+            public void handle(SortEvent<TableView<CrimeRecord>> event) {
+                if (gridCollection == null || gridCollection.getPages() == null || gridTable.getSortOrder().isEmpty()) {
+                    return;
+                }
+                event.consume();
+                final List<TableColumn<CrimeRecord, ?>> sortOrder =
+                        new ArrayList<TableColumn<CrimeRecord, ?>>(gridTable.getSortOrder());
+                final CrimeCollection sorted = gridCollection;
+                // Read once the sort order has finished changing, showing the crime records clears the sort order
+                Platform.runLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        sorted.getCrimes();
+                        if (sorted == gridCollection) {
+                            gridTable.getSortOrder().setAll(sortOrder);
+                        }
+                    }
+                });
+            }
+        });
                 caseIDCol = new TableColumn<CrimeRecord, String>("Case ID");
-                caseIDCol.setCellValueFactory(new PropertyValueFactory("caseID"));
-                dateCol = new TableColumn<CrimeRecord, String>("Time/Date");
-                dateCol.setCellValueFactory(new PropertyValueFactory("date"));
+                caseIDCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, String>("caseID"));
+                dateCol = new TableColumn<CrimeRecord, DateTime>("Time/Date");
+                dateCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, DateTime>("date"));
                 arrestCol = new TableColumn<CrimeRecord, Boolean>("Arrest made");
-                arrestCol.setCellValueFactory(new PropertyValueFactory("arrest"));
+                arrestCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, Boolean>("arrest"));
                 domesticCol = new TableColumn<CrimeRecord, Boolean>("Domestic");
-                domesticCol.setCellValueFactory(new PropertyValueFactory("domestic"));
+                domesticCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, Boolean>("domestic"));
                 iucrCol = new TableColumn<CrimeRecord, String>("IUCR");
-                iucrCol.setCellValueFactory(new PropertyValueFactory("iucr"));
+                iucrCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, String>("iucr"));
                 fbiCDCol = new TableColumn<CrimeRecord, String>("FBI Crime Descriptor");
-                fbiCDCol.setCellValueFactory(new PropertyValueFactory("fbiCD"));
+                fbiCDCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, String>("fbiCD"));
                 priDescripCol = new TableColumn<CrimeRecord, String>("Primary Description");
-                priDescripCol.setCellValueFactory(new PropertyValueFactory("primaryDescription"));
+                priDescripCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, String>("primaryDescription"));
                 secDescripCol = new TableColumn<CrimeRecord, String>("Secondary Description");
-                secDescripCol.setCellValueFactory(new PropertyValueFactory("secondaryDescription"));
+                secDescripCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, String>("secondaryDescription"));
                 blockCol = new TableColumn<CrimeRecord, String>("Block");
-                blockCol.setCellValueFactory(new PropertyValueFactory("block"));
+                blockCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, String>("block"));
                 beatCol = new TableColumn<CrimeRecord, Integer>("Beat");
                 beatCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, Integer>("beat"));
                 wardCol = new TableColumn<CrimeRecord, Integer>("Ward");
-                wardCol.setCellValueFactory(new PropertyValueFactory("ward"));
+                wardCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, Integer>("ward"));
                 latitudeCol = new TableColumn<CrimeRecord, Double>("Latitude");
-                latitudeCol.setCellValueFactory(new PropertyValueFactory("latitude"));
+                latitudeCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, Double>("latitude"));
                 longitudeCol = new TableColumn<CrimeRecord, Double>("Longitude");
-                longitudeCol.setCellValueFactory(new PropertyValueFactory("longitude"));
+                longitudeCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, Double>("longitude"));
                 locStrCol = new TableColumn<CrimeRecord, String>("Location");
-                locStrCol.setCellValueFactory(new PropertyValueFactory("locStr"));
-        gridTable.getColumns().setAll(caseIDCol, dateCol, arrestCol, domesticCol, iucrCol, fbiCDCol, priDescripCol,
-                secDescripCol, blockCol, beatCol, wardCol, latitudeCol, longitudeCol, locStrCol);
+                locStrCol.setCellValueFactory(new PropertyValueFactory<CrimeRecord, String>("locStr"));
+        setGridColumns();
     }
 
+    /**
+     * Shows the columns of the grid, in order
+     */
+    private void setGridColumns() {
+        List<TableColumn<CrimeRecord, ?>> columns = new ArrayList<TableColumn<CrimeRecord, ?>>();
+        columns.add(caseIDCol);
+        columns.add(dateCol);
+        columns.add(arrestCol);
+        columns.add(domesticCol);
+        columns.add(iucrCol);
+        columns.add(fbiCDCol);
+        columns.add(priDescripCol);
+        columns.add(secDescripCol);
+        columns.add(blockCol);
+        columns.add(beatCol);
+        columns.add(wardCol);
+        columns.add(latitudeCol);
+        columns.add(longitudeCol);
+        columns.add(locStrCol);
+        gridTable.getColumns().setAll(columns);
+    }
+
+
     /**
      * Updates the table view with the current working collection
      */
     private void updateTableView() {
-        gridTable.getColumns().setAll(caseIDCol, dateCol, arrestCol, domesticCol, iucrCol, fbiCDCol, priDescripCol,
-                secDescripCol, blockCol, beatCol, wardCol, latitudeCol, longitudeCol, locStrCol);
-        ObservableList<CrimeRecord> crimes = CrimeCollectionManager.getCurrWorkingCollection().getObservableCrList();
-        gridTable.setItems(crimes);
+        setGridColumns();
+        setGridItems(CrimeCollectionManager.getCurrWorkingCollection());
+    }
+
+
+    /**
+     * Shows the crime records of a collection in the grid
+     * @param cc the crime collection to show
+     */
+    private void setGridItems(CrimeCollection cc) {
+        if (gridCollection != cc) {
+            if (gridCollection != null) {
+                gridCollection.observableCrListProperty().removeListener(gridListListener);
+            }
+            cc.observableCrListProperty().addListener(gridListListener);
+            gridCollection = cc;
+        }
+        gridTable.setItems(cc.getObservableCrList());
+    }
+
+
+    /**
+     * Shows the replaced list of the collection in the grid, if the grid still shows the collection
+     * @param list the list of the collection
+     */
+    private void showGridList(ObservableList<CrimeRecord> list) {
+        if (gridCollection != null && list == gridCollection.observableCrListProperty().get()) {
+            gridTable.setItems(list);
+        }
     }
 
 
@@ -893,7 +987,7 @@ public class CrimeSpyController {
                 .appendSuffix(" minute", " minutes")
                 .toFormatter();
 
-        CrimeRecord cR = (CrimeRecord) gridTable.getSelectionModel().getSelectedItem();
+        CrimeRecord cR = gridTable.getSelectionModel().getSelectedItem();
         // Only if we have loaded data otherwise we could have some null pointer exceptions thrown
         if (cR != null) {
             infoCrimeID.setText(cR.getCaseID());
@@ -915,10 +1009,13 @@ public class CrimeSpyController {
             infoXCoor.setText(Double.toString(cR.getCrimeLocation().getxCoordinate()));
             infoYCoor.setText(Double.toString(cR.getCrimeLocation().getyCoordinate()));
             infoLocation.setText(cR.getCrimeLocation().getLocationStr());
-            infoDistNext.setText(cR.getNextCrimeDistance().toString());
-            infoTimeNext.setText(cR.getNextCrimeTimeSince().toString(periodFormat));
-            infoDistPrev.setText(CrimeCollectionManager.getFullWorkingCollection().getCrimeRecord(cR.getPrevCrimeID()).getNextCrimeDistance().toString());
-            infoTimePrev.setText(CrimeCollectionManager.getFullWorkingCollection().getCrimeRecord(cR.getPrevCrimeID()).getNextCrimeTimeSince().toString(periodFormat));
+            // Read from the database if the collection is paged, rather than reading the whole collection
+            CrimeRecord nextCR = CrimeCollectionManager.getFullWorkingCollection().getNextCrimeRecord(cR);
+            CrimeRecord prevCR = CrimeCollectionManager.getFullWorkingCollection().getPrevCrimeRecord(cR);
+            infoDistNext.setText(cR.distanceBetween(nextCR).toString());
+            infoTimeNext.setText(cR.millisBetween(nextCR).toString(periodFormat));
+            infoDistPrev.setText(prevCR.distanceBetween(cR).toString());
+            infoTimePrev.setText(prevCR.millisBetween(cR).toString(periodFormat));
 
             MapController.initMiniMap(miniMap, infoLat, infoLong);
             // Keep up to date with what we want to be able to retrieve
@@ -1053,7 +1150,7 @@ public class CrimeSpyController {
         if (validationFieldsOk()) {
             if (gridTable.getSelectionModel().getSelectedItem() != null) {
                 //We are editing rather than creating
-                CrimeRecord cR = (CrimeRecord) gridTable.getSelectionModel().getSelectedItem();
+                CrimeRecord cR = gridTable.getSelectionModel().getSelectedItem();
                 if (infoBlock.getText().equals("") || infoIUCR.getText().equals("")) {
                     //check block or Iucr are not Null
                     displayWarning("Warning", "Block or IUCR have not been set");
@@ -1312,7 +1409,7 @@ public class CrimeSpyController {
     @FXML
     void goToDeleteMenu() throws IOException {
         try {
-            CrimeRecord cR = (CrimeRecord) gridTable.getSelectionModel().getSelectedItem();
+            CrimeRecord cR = gridTable.getSelectionModel().getSelectedItem();
             FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource("confirmDeletionBox.fxml"));
             Parent root = fxmlLoader.load();
             ConfirmDeletionBoxController confirmDeletionBoxController = fxmlLoader.getController();
@@ -1384,7 +1481,7 @@ public class CrimeSpyController {
     void goSearchButton(){
         try {
 
-            gridTable.setItems(SearchCrimeCollection.search(searchItem.getText()).getObservableCrList());
+            setGridItems(SearchCrimeCollection.search(searchItem.getText()));
         } catch (Exception e) {
             LOGGER.warning("Error in " + e.getClass().getName() + ": " + e.getMessage());
         }
@@ -1458,7 +1555,7 @@ public class CrimeSpyController {
         if(tabPane.getSelectionModel().getSelectedItem().equals(gridTab)) {
             // If there is no crime data loaded then this would be silly to set right?
             if (CrimeCollectionManager.getCurrWorkingCollection() != null) {
-                gridTable.setItems(CrimeCollectionManager.getCurrWorkingCollection().getObservableCrList());
+                setGridItems(CrimeCollectionManager.getCurrWorkingCollection());
             }
         } else if (tabPane.getSelectionModel().getSelectedItem().equals(mapTab)){
             MapController.plotPoints();
@@ -1498,15 +1595,17 @@ public class CrimeSpyController {
      */
     private void initFilter() {
         try {
-            List<CrimeRecord> currentRecords = CrimeCollectionManager.getCurrWorkingCollection().getCrimes();
-            HashSet<String> crimeTypes = new HashSet();
+            // Counted in the database (see CrimeCollectionManager.countCurrWorkingCollection()), so a paged
+            // collection is not read in full
+            CrimeRecordCounts crimeTypes = CrimeCollectionManager.countCurrWorkingCollection(
+                    CrimeRecordCounts.BY_PRIMARY_DESCRIPTION);
             filterCrimeType.getChildren().clear();
             String crimeType;
             CheckBox tempCheckBox;
-            for(CrimeRecord cR : currentRecords) {
-                crimeType = cR.getCrimeType().getPrimaryDescription(); //.toLowerCase();//makes the first letter captize
+            for (int i = 0; i < crimeTypes.size(); i++) {
+                crimeType = crimeTypes.getValue(i); //.toLowerCase();//makes the first letter captize
                 //crimeType = crimeType.substring(0,1).toUpperCase() + crimeType.substring(1);
-                if(crimeTypes.add(cR.getCrimeType().getPrimaryDescription())){
+                if (!crimeType.isEmpty()) {
                     tempCheckBox = new CheckBox();
                     tempCheckBox.setText(crimeType);
                     tempCheckBox.selectedProperty().addListener(new ChangeListener<Boolean>() {
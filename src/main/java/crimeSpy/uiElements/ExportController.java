@@ -60,7 +60,9 @@ public class ExportController {
         Scene scene = browseButton.getScene();
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Export File");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV File", "*.csv"));
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV File", "*.csv"),
+                new FileChooser.ExtensionFilter("Compressed CSV File", "*.csv.gz"));
         Window window = scene.getWindow();
         File selectedFile = fileChooser.showSaveDialog(window);
         if (selectedFile != null) {
@@ -78,7 +80,7 @@ public class ExportController {
             displayWarning("Warning", "Save Location has not been set");
         } else {
             // Ensures correct suffix on save file name
-            if (!saveLocationText.getText().substring(saveLocationText.getText().length() - 4).equals(".csv")) {
+            if (!saveLocationText.getText().endsWith(".csv") && !saveLocationText.getText().endsWith(".csv.gz")) {
                 saveLocationText.setText(saveLocationText.getText() + ".csv");
             }
             Integer resCode = CrimeCollectionManager.exportCrimeCSV(saveLocationText.getText());
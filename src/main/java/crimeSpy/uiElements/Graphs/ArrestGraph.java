@@ -5,7 +5,7 @@ import javafx.collections.ObservableList;
 import javafx.scene.chart.Chart;
 import javafx.scene.chart.PieChart;
 import crimeSpy.crimeData.CrimeCollectionManager;
-import crimeSpy.crimeData.CrimeRecord;
+import crimeSpy.crimeData.CrimeRecordCounts;
 
 /**
  * A Class for handling drawing a Arrest Pie Chart Graph
@@ -57,19 +57,9 @@ public class ArrestGraph implements CrimeSpyCharts {
      */
     private void graph(){
         ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList();
-        Integer noArrest = 0;
-        Integer arrests = 0;
-
-        // Ensure there is data
-        if (CrimeCollectionManager.getCurrWorkingCollection() != null) {
-            for(CrimeRecord cR : CrimeCollectionManager.getCurrWorkingCollection().getCrimes()){
-                if (cR.getArrest()){
-                    arrests += 1;
-                }else{
-                    noArrest += 1;
-                }
-            }
-        }
+        CrimeRecordCounts counts = CrimeCollectionManager.countCurrWorkingCollection(CrimeRecordCounts.BY_ARREST);
+        Integer noArrest = counts.getCount("false");
+        Integer arrests = counts.getCount("true");
         pieChartData.add(new PieChart.Data("Yes", arrests));
         pieChartData.add(new PieChart.Data("No", noArrest));
         chart = new PieChart(pieChartData);
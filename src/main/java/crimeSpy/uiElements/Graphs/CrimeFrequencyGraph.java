@@ -3,10 +3,7 @@ package crimeSpy.uiElements.Graphs;
 import javafx.scene.chart.*;
 import javafx.scene.text.Font;
 import crimeSpy.crimeData.CrimeCollectionManager;
-import crimeSpy.crimeData.CrimeRecord;
-
-import java.util.HashMap;
-import java.util.Map;
+import crimeSpy.crimeData.CrimeRecordCounts;
 
 /**
  * A Class for handling drawing a Crime Frequency Bar Chart Graph
@@ -60,30 +57,18 @@ public class CrimeFrequencyGraph implements CrimeSpyCharts {
      * Creates a bar graph of location vs crime frequency
      */
     private void graph(){
-        String key;
         final CategoryAxis xAxis = new CategoryAxis();
         final NumberAxis yAxis = new NumberAxis();
         final BarChart<String,Number> barChart =
                 new BarChart<String,Number>(xAxis,yAxis);
         barChart.setTitle("Frequency of Crime Type");
-        HashMap<String, Integer> barData = new HashMap<String, Integer>();
-        Integer total = 0;
-        //Ensure there is data
-        if (CrimeCollectionManager.getCurrWorkingCollection() != null) {
-            total = CrimeCollectionManager.getCurrWorkingCollection().getCrimes().size();
-            for (CrimeRecord cR : CrimeCollectionManager.getCurrWorkingCollection().getCrimes()) {
-                key = cR.getCrimeType().getPrimaryDescription();
-                if (barData.containsKey(key)) {
-                    barData.replace(key, barData.get(key) + 1);
-                } else {
-                    barData.put(key, 1);
-                }
-            }
-        }
+        CrimeRecordCounts barData = CrimeCollectionManager.countCurrWorkingCollection(
+                CrimeRecordCounts.BY_PRIMARY_DESCRIPTION);
+        Integer total = barData.getTotal();
         XYChart.Series series = new XYChart.Series();
-        for (Map.Entry<String, Integer> bar : barData.entrySet()){
-            if(bar.getValue() > (total * 0.03)){
-                series.getData().add(new XYChart.Data(bar.getKey(), bar.getValue()));
+        for (int i = 0; i < barData.size(); i++){
+            if(barData.getCount(i) > (total * 0.03)){
+                series.getData().add(new XYChart.Data(barData.getValue(i), barData.getCount(i)));
             }
         }
         barChart.getData().add(series);
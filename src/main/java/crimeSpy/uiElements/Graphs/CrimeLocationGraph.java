@@ -3,7 +3,7 @@ package crimeSpy.uiElements.Graphs;
 import javafx.scene.chart.*;
 import javafx.scene.text.Font;
 import crimeSpy.crimeData.CrimeCollectionManager;
-import crimeSpy.crimeData.CrimeRecord;
+import crimeSpy.crimeData.CrimeRecordCounts;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -64,21 +64,15 @@ public class CrimeLocationGraph implements CrimeSpyCharts {
         final BarChart<String,Number> barChart =
                 new BarChart<String,Number>(xAxis,yAxis);
         HashMap<String, Integer> barData = new HashMap<String, Integer>();
-        Integer total = 0;
-        //Ensure there is data
-        if (CrimeCollectionManager.getCurrWorkingCollection() != null) {
-            total =  CrimeCollectionManager.getCurrWorkingCollection().getCrimes().size();
-            for (CrimeRecord cR : CrimeCollectionManager.getCurrWorkingCollection().getCrimes()) {
-                key = cR.getCrimeLocation().getLocationStr();
-                if(key.length() > 25){
-                    key = key.substring(0,24) + "\n" + key.substring(24);
-                }
-                if (barData.containsKey(key)) {
-                    barData.replace(key, barData.get(key) + 1);
-                } else {
-                    barData.put(key, 1);
-                }
+        CrimeRecordCounts counts = CrimeCollectionManager.countCurrWorkingCollection(
+                CrimeRecordCounts.BY_LOCATION_DESCRIPTION);
+        Integer total = counts.getTotal();
+        for (int i = 0; i < counts.size(); i++) {
+            key = counts.getValue(i);
+            if(key.length() > 25){
+                key = key.substring(0,24) + "\n" + key.substring(24);
             }
+            barData.put(key, counts.getCount(i));
         }
         XYChart.Series series = new XYChart.Series();
         for (Map.Entry<String, Integer> bar : barData.entrySet()){
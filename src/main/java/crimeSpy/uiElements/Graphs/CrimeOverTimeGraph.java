@@ -5,7 +5,8 @@ import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 import crimeSpy.crimeData.CrimeCollectionManager;
-import crimeSpy.crimeData.CrimeRecord;
+import crimeSpy.crimeData.CrimeRecordCounts;
+import org.joda.time.LocalDate;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -65,17 +66,19 @@ public class CrimeOverTimeGraph implements CrimeSpyCharts {
         Integer max = 0;
         HashMap<Integer, Integer> lineData = new HashMap<Integer, Integer>();
 
-        // Ensure there is data
-        if (CrimeCollectionManager.getCurrWorkingCollection() != null) {
-            for (CrimeRecord cR : CrimeCollectionManager.getCurrWorkingCollection().getCrimes()) {
-                key = cR.getDate().getDayOfYear();
-                min = key < min ? key : min;
-                max = key > max ? key : max;
-                if (lineData.containsKey(key)) {
-                    lineData.replace(key, lineData.get(key) + 1);
-                } else {
-                    lineData.put(key, 1);
-                }
+        CrimeRecordCounts days = CrimeCollectionManager.countCurrWorkingCollection(CrimeRecordCounts.BY_DAY);
+        for (int i = 0; i < days.size(); i++) {
+            // Crime records without a date
+            if (days.getValue(i).isEmpty()) {
+                continue;
+            }
+            key = LocalDate.parse(days.getValue(i)).getDayOfYear();
+            min = key < min ? key : min;
+            max = key > max ? key : max;
+            if (lineData.containsKey(key)) {
+                lineData.replace(key, lineData.get(key) + days.getCount(i));
+            } else {
+                lineData.put(key, days.getCount(i));
             }
         }
         final NumberAxis xAxis = new NumberAxis(min, max, 30);
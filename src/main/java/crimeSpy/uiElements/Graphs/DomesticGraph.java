@@ -4,7 +4,7 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.chart.PieChart;
 import crimeSpy.crimeData.CrimeCollectionManager;
-import crimeSpy.crimeData.CrimeRecord;
+import crimeSpy.crimeData.CrimeRecordCounts;
 
 /**
  * A Class for handling drawing a Domestic Pie Chart Graph
@@ -34,20 +34,10 @@ public class DomesticGraph implements CrimeSpyCharts {
      */
     private void graph() {
         ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList();
-        Integer domestic = 0;
-        Integer noDomestic = 0;
-
-        // Ensure there is data to chart!
-        if (CrimeCollectionManager.getCurrWorkingCollection() != null) {
-            for(CrimeRecord cR : CrimeCollectionManager.getCurrWorkingCollection().getCrimes()){
-                // aggregate data for the red/black pie chart.
-                if (cR.getDomestic()) {
-                    domestic += 1;
-                } else {
-                    noDomestic += 1;
-                }
-            }
-        }
+        // aggregate data for the red/black pie chart, counted in the database.
+        CrimeRecordCounts counts = CrimeCollectionManager.countCurrWorkingCollection(CrimeRecordCounts.BY_DOMESTIC);
+        Integer domestic = counts.getCount("true");
+        Integer noDomestic = counts.getCount("false");
         pieChartData.add(new PieChart.Data("Yes", domestic));
         pieChartData.add(new PieChart.Data("No", noDomestic));
         domesticChart = new PieChart(pieChartData);
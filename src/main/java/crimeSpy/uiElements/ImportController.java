@@ -1,17 +1,30 @@
 package crimeSpy.uiElements;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.TextField;
 import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.Window;
+import javafx.stage.WindowEvent;
+import javafx.util.Duration;
 import crimeSpy.crimeData.CrimeCollectionManager;
+import crimeSpy.crimeData.ImportProgress;
 
 import java.io.File;
 
@@ -19,15 +32,26 @@ import java.io.File;
 /**
 * The Import Menu Dialog
 * Allows the user to import contents of a specific file to the current Database
+* The import runs on a background thread, its progress is shown under the file location and it can be stopped
+* with the cancel button
 */
 public class ImportController {
 
+
+    /**
+     * How often the progress of a running import is redrawn
+     */
+    private static final Double PROGRESS_REFRESH_MILLIS = 250.0;
+
     @FXML
     private RadioButton appendRadio;
 
     @FXML
     private RadioButton newRadio;
 
+    @FXML
+    private CheckBox followCheck;
+
     @FXML
     private Button cancelButton;
 
@@ -37,12 +61,26 @@ public class ImportController {
     @FXML
     private Button browseButton;
 
+    @FXML
+    private Button importButton;
+
+    @FXML
+    private ProgressBar importProgressBar;
+
+    @FXML
+    private Label progressLabel;
+
 
     /**
      * The file directory and location where the currently selected file is stored
      */
     private File file;
 
+    /**
+     * The progress of the running import, null if no import is running
+     */
+    private ImportProgress importProgress = null;
+
 
     /**
      * Initializes Data in this menu.
@@ -53,13 +91,40 @@ public class ImportController {
             newRadio.setSelected(true);
             appendRadio.setDisable(true);
         }
+        goImportTypeChanged();
     }
 
 
     /**
-     * Hides the current menu form view and returns user to the main UI
+     * Only a csv imported as new data can be followed, as the followed rows are added to the database made from it
+     */
+    @FXML
+    public void goImportTypeChanged() {
+        followCheck.setDisable(!newRadio.isSelected() || importProgress != null);
+        if (!newRadio.isSelected()) {
+            followCheck.setSelected(false);
+        }
+    }
+
+
+    /**
+     * Cancels the running import, or if there isn't one hides the current menu form view and returns user to the
+     * main UI
      */
     public void goCancelButton() {
+        if (importProgress != null) {
+            importProgress.cancel();
+            progressLabel.setText("Cancelling...");
+            return;
+        }
+        hideWindow();
+    }
+
+
+    /**
+     * Hides the current menu form view and returns user to the main UI
+     */
+    private void hideWindow() {
         Scene scene = cancelButton.getScene();
         if (scene != null) {
             Window window = scene.getWindow();
@@ -78,7 +143,7 @@ public class ImportController {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Import File");
         fileChooser.getExtensionFilters().addAll(
-                new FileChooser.ExtensionFilter("CSV Files", "*.csv"),
+                new FileChooser.ExtensionFilter("CSV Files", "*.csv", "*.csv.gz", "*.zip"),
                 new FileChooser.ExtensionFilter("All Files", "*.*"));
         Window window = scene.getWindow();
         file = fileChooser.showOpenDialog(window);
@@ -90,44 +155,158 @@ public class ImportController {
 
     @FXML
     /**
-     * Checks to selected .csv file from file chooser and attempts to read crime data into a CrimeCollection, which is
-     * then added to the working set and made the working collection.
+     * Checks to selected .csv file from file chooser and starts reading crime data into a CrimeCollection on a
+     * background thread. Once finished the collection is added to the working set and made the working collection.
      */
     public void goImportButton() {
-        Integer resCode;
         if (importLocationText.getText().equals("") || importLocationText.getText().equals("Browse...")) {
             displayWarning("Warning", "Import Location has not been set");
-        } else {
-            if (appendRadio.isSelected() && CrimeCollectionManager.getCurrWorkingCollection() != null) {  //Append
-                resCode = CrimeCollectionManager.importNewCrimeDB_Append(file);
+        } else if (importProgress == null) {
+            startImport();
+        }
+    }
+
+
+    /**
+     * Runs the import as a background task, redrawing its progress until it finishes
+     */
+    private void startImport() {
+        final File importFile = file;
+        final Boolean append = appendRadio.isSelected() && CrimeCollectionManager.getCurrWorkingCollection() != null;
+        final Boolean follow = followCheck.isSelected() && !append;
+        final ImportProgress progress = new ImportProgress(importFile);
+        final Task<Integer> importTask = new Task<Integer>() {
+            @Override
+            protected Integer call() {
+                if (append) {
+                    return CrimeCollectionManager.importNewCrimeDB_Append(importFile, progress);
+                }
+                return CrimeCollectionManager.importNewCrimeDB_Replace(importFile, progress);
+            }
+        };
 
-            } else {
-                resCode = CrimeCollectionManager.importNewCrimeDB_Replace(file);
+        final Timeline refresh = new Timeline(new KeyFrame(Duration.millis(PROGRESS_REFRESH_MILLIS),
+                new EventHandler<ActionEvent>() {
+                    @Override
+                    public void handle(ActionEvent event) {
+                        showProgress(progress);
+                    }
+                }));
+        refresh.setCycleCount(Animation.INDEFINITE);
+
+        importTask.setOnSucceeded(new EventHandler<WorkerStateEvent>() {
+            @Override
+            public void handle(WorkerStateEvent event) {
+                refresh.stop();
+                Integer resCode = importTask.getValue();
+                if (resCode == 0 && follow) {
+                    // Started here rather than on the import thread, new rows are added to the collection on the FX thread
+                    resCode = followImport(importFile);
+                }
+                finishImport(progress, resCode);
+            }
+        });
+        importTask.setOnFailed(new EventHandler<WorkerStateEvent>() {
+            @Override
+            public void handle(WorkerStateEvent event) {
+                refresh.stop();
+                finishImport(progress, 4);
             }
+        });
 
-            if (resCode == 0) {
-                displayWarning("Success", "File has been successfully imported");
-                goCancelButton();
-            } else if (resCode == 4) {
-                displayWarning("Error", "Problem with reading your csv");
-            } else if (resCode == 5) {
-                displayWarning("Error", "SQL Problem with writing to the Crime Record database file");
-            } else if (resCode == 6) {
-                displayWarning("Error", "Unknown problem during Crime Record database write");
-            } else if (resCode == 7) {
-                displayWarning("Error", "SQL Problem with writing to the Crime Collection database file");
-            } else if (resCode == 8) {
-                displayWarning("Error", "Unknown problem during Crime Collection database write");
-            } else if (resCode == 1) {
-                displayWarning("Error", "SQL error when creating a new crime record database file");
-            } else if (resCode == 2) {
-                displayWarning("Error", "SQL error when creating a new crime record database file");
-            } else if (resCode == 3) {
-                displayWarning("Error", "The csv file was in the wrong format");
-            } else if (resCode == 9) {
-                displayWarning("Error", "Problem merging the two collections");
+        // Closing the window while importing cancels the import rather than leaving it running unseen
+        importButton.getScene().getWindow().setOnCloseRequest(new EventHandler<WindowEvent>() {
+            @Override
+            public void handle(WindowEvent event) {
+                if (importProgress != null) {
+                    event.consume();
+                    goCancelButton();
+                }
             }
+        });
+
+        importProgress = progress;
+        setInputsDisabled(true);
+        Thread thread = new Thread(importTask, "Import " + importFile.getName());
+        thread.setDaemon(true);
+        thread.start();
+        refresh.play();
+    }
+
+
+    /**
+     * Starts following the imported csv so rows added to it are imported as they are written
+     * @param importFile the csv that has been imported
+     * @return 0 if success, 11 if the csv could not be followed
+     */
+    private Integer followImport(File importFile) {
+        if (CrimeCollectionManager.followCrimeCSV(importFile) != 0) {
+            return 11;
         }
+        return 0;
+    }
+
+
+    /**
+     * Shows the result of an import once it has finished
+     * @param progress the progress of the finished import
+     * @param resCode the result code of the import
+     */
+    private void finishImport(ImportProgress progress, Integer resCode) {
+        importProgress = null;
+        setInputsDisabled(false);
+        showProgress(progress);
+
+        if (resCode == 0) {
+            displayWarning("Success", "File has been successfully imported");
+            hideWindow();
+        } else if (resCode == 10) {
+            displayWarning("Cancelled", "The import was cancelled");
+        } else if (resCode == 11) {
+            displayWarning("Error", "The file was imported but new rows added to it can't be followed");
+        } else if (resCode == 4) {
+            displayWarning("Error", "Problem with reading your csv");
+        } else if (resCode == 5) {
+            displayWarning("Error", "SQL Problem with writing to the Crime Record database file");
+        } else if (resCode == 6) {
+            displayWarning("Error", "Unknown problem during Crime Record database write");
+        } else if (resCode == 7) {
+            displayWarning("Error", "SQL Problem with writing to the Crime Collection database file");
+        } else if (resCode == 8) {
+            displayWarning("Error", "Unknown problem during Crime Collection database write");
+        } else if (resCode == 1) {
+            displayWarning("Error", "SQL error when creating a new crime record database file");
+        } else if (resCode == 2) {
+            displayWarning("Error", "SQL error when creating a new crime record database file");
+        } else if (resCode == 3) {
+            displayWarning("Error", "The csv file was in the wrong format");
+        } else if (resCode == 9) {
+            displayWarning("Error", "Problem merging the two collections");
+        }
+    }
+
+
+    /**
+     * Redraws the progress bar and the progress summary
+     * @param progress the progress of the import
+     */
+    private void showProgress(ImportProgress progress) {
+        importProgressBar.setProgress(progress.getFractionDone());
+        progressLabel.setText(progress.getReport());
+    }
+
+
+    /**
+     * Stops the import settings being changed while an import is running
+     * @param disabled true to disable the inputs
+     */
+    private void setInputsDisabled(Boolean disabled) {
+        importButton.setDisable(disabled);
+        browseButton.setDisable(disabled);
+        importLocationText.setDisable(disabled);
+        newRadio.setDisable(disabled);
+        appendRadio.setDisable(disabled || CrimeCollectionManager.getFullWorkingCollection() == null);
+        goImportTypeChanged();
     }
 
 
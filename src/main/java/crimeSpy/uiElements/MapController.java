@@ -13,7 +13,6 @@ import crimeSpy.exceptionHandling.ResourceNotFoundException;
 
 import java.io.IOException;
 import java.net.URL;
-import java.util.Collections;
 import java.util.List;
 import java.util.logging.*;
 
@@ -226,10 +225,8 @@ public class MapController {
             String crimeID;
             String iconURL;
 
-            // Add first 100 point data to the javascript array
-            List<CrimeRecord> crs = crimes.getCrimes();
-            Collections.shuffle(crs);
-            List<CrimeRecord> crimesSample = crs.subList(0, MAX_NUM_POINTS);
+            // Add a random 100 point data to the javascript array, picked in the database so it isn't read in full
+            List<CrimeRecord> crimesSample = CrimeCollectionManager.sampleCurrWorkingCollection(MAX_NUM_POINTS);
             for (CrimeRecord crime : crimesSample){
                 latitude = crime.getCrimeLocation().getLatitude();
                 longitude = crime.getCrimeLocation().getLongitude();
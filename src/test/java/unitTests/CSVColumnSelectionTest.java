@@ -0,0 +1,157 @@
+package unitTests;
+
+import crimeSpy.crimeData.*;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import static org.junit.Assert.*;
+
+public class CSVColumnSelectionTest {
+
+    private File testFile1 = new File("TestColumns.csv");
+    private static File testCrimeDB_gen = new File("TestCrimeDB_gen.db");
+    private String testCSV = "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv";
+
+    @BeforeClass
+    public static void setupDB() throws Exception {
+        try {
+            SQLiteDBHandler.createNewCrimedb(testCrimeDB_gen.getAbsolutePath());
+        } catch (Exception e) {
+            // Only create if it doesn't already exist
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        CrimeCollectionManager.setCurrWorkingCollection(new CrimeCollection("test", 0, testCrimeDB_gen.getAbsolutePath()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        testFile1.delete();
+        testCrimeDB_gen.delete();
+    }
+
+
+    @Test
+    public void testReadCrimeRecords_selectedColumnsOnly() throws Exception {
+        List<CrimeRecord> full = CSVFileHandler.readCrimeRecords(testCSV);
+        CSVColumnSelection columns = new CSVColumnSelection(CSVColumnSelection.DATE, CSVColumnSelection.BEAT,
+                CSVColumnSelection.LATITUDE);
+        List<CrimeRecord> projected = CSVFileHandler.readCrimeRecords(testCSV, columns);
+        assertEquals(full.size(), projected.size());
+        DateTime placeholder = new DateTime(1, 1, 1, 1, 0, 0, 0);
+        for (int i = 0; i < full.size(); i++) {
+            CrimeRecord expected = full.get(i);
+            CrimeRecord crime = projected.get(i);
+            assertEquals(expected.getCaseID(), crime.getCaseID());
+            assertEquals(expected.getDate(), crime.getDate());
+            assertEquals(expected.getCrimeLocation().getBeat(), crime.getCrimeLocation().getBeat());
+            assertEquals(expected.getCrimeLocation().getLatitude(), crime.getCrimeLocation().getLatitude());
+            // Left as defaults
+            assertNotEquals(placeholder, crime.getDate());
+            assertEquals(CSVColumnSelection.UNSELECTED_IUCR, crime.getCrimeType().getIucr());
+            assertEquals("UNKNOWN", crime.getCrimeType().getPrimaryDescription());
+            assertEquals("", crime.getFbiCD());
+            assertEquals("", crime.getCrimeLocation().getBlock());
+            assertEquals("", crime.getCrimeLocation().getLocationStr());
+            assertEquals(0, (int) crime.getCrimeLocation().getWard());
+            assertEquals(0.0, crime.getCrimeLocation().getLongitude(), 0.0);
+            assertEquals(0.0, crime.getCrimeLocation().getxCoordinate(), 0.0);
+            assertFalse(crime.getArrest());
+            assertFalse(crime.getDomestic());
+        }
+    }
+
+
+    @Test
+    public void testReadCrimeRecords_dateNotSelected() throws Exception {
+        List<CrimeRecord> projected = CSVFileHandler.readCrimeRecords(testCSV,
+                new CSVColumnSelection(CSVColumnSelection.IUCR, CSVColumnSelection.ARREST));
+        List<CrimeRecord> full = CSVFileHandler.readCrimeRecords(testCSV);
+        for (int i = 0; i < full.size(); i++) {
+            assertEquals(new DateTime(1, 1, 1, 1, 0, 0, 0), projected.get(i).getDate());
+            assertEquals(full.get(i).getCrimeType().getIucr(), projected.get(i).getCrimeType().getIucr());
+            assertEquals(full.get(i).getCrimeType().getPrimaryDescription(),
+                    projected.get(i).getCrimeType().getPrimaryDescription());
+            assertEquals(full.get(i).getArrest(), projected.get(i).getArrest());
+        }
+    }
+
+
+    @Test
+    public void testReadCrimeRecords_allSameAsFullRead() throws Exception {
+        List<CrimeRecord> full = CSVFileHandler.readCrimeRecords(testCSV);
+        List<CrimeRecord> all = CSVFileHandler.readCrimeRecords(testCSV, CSVColumnSelection.ALL);
+        assertEquals(full.size(), all.size());
+        for (int i = 0; i < full.size(); i++) {
+            assertEquals(full.get(i).toString(), all.get(i).toString());
+        }
+    }
+
+
+    @Test
+    public void testReadCrimeRecords_parallel() throws Exception {
+        // Enough copies of the test csv to be read on several threads
+        BufferedReader reader = new BufferedReader(new FileReader(testCSV));
+        FileWriter writer = new FileWriter(testFile1);
+        writer.write(reader.readLine() + "\n");
+        StringBuilder body = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            body.append(line).append("\n");
+        }
+        reader.close();
+        while (testFile1.length() < CSVFileHandler.PARALLEL_READ_THRESHOLD) {
+            writer.write(body.toString());
+            writer.flush();
+        }
+        writer.close();
+
+        final CSVColumnSelection columns = new CSVColumnSelection(CSVColumnSelection.WARD);
+        List<CrimeRecord> single = CSVFileHandler.readCrimeRecords(testFile1.getAbsolutePath(), columns);
+        final List<CrimeRecord> parallel = new ArrayList<CrimeRecord>();
+        CSVFileHandler.readCrimeRecords(testFile1.getAbsolutePath(), new CrimeRecordSink() {
+            @Override
+            public void accept(CrimeRecord crime) {
+                parallel.add(crime);
+            }
+        }, 4, null, null, columns);
+        assertEquals(single.size(), parallel.size());
+        for (int i = 0; i < single.size(); i++) {
+            assertEquals(single.get(i).toString(), parallel.get(i).toString());
+            assertEquals("", parallel.get(i).getCrimeLocation().getBlock());
+        }
+    }
+
+
+    @Test
+    public void testFromNames() throws Exception {
+        CSVColumnSelection columns = CSVColumnSelection.fromNames(" date  of occurrence", "Beat", "LOCATION");
+        assertTrue(columns.isSelected(CSVColumnSelection.CASE_ID));
+        assertTrue(columns.isSelected(CSVColumnSelection.DATE));
+        assertTrue(columns.isSelected(CSVColumnSelection.BEAT));
+        assertTrue(columns.isSelected(CSVColumnSelection.LATITUDE));
+        assertTrue(columns.isSelected(CSVColumnSelection.LONGITUDE));
+        assertFalse(columns.isSelected(CSVColumnSelection.WARD));
+        assertFalse(columns.isAll());
+        assertTrue(CSVColumnSelection.ALL.isAll());
+    }
+
+
+    @Test(expected = DataFormatException.class)
+    public void testFromNames_unknownColumn() throws Exception {
+        CSVColumnSelection.fromNames("DATE OF OCCURRENCE", "WEATHER");
+    }
+}
@@ -0,0 +1,201 @@
+package unitTests;
+
+import crimeSpy.crimeData.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class CSVFileFollowerTest {
+
+    private File testFile1 = new File("TestFollow.csv");
+    private File testDB = new File("TestFollow.db");
+    private static File testCrimeDB_gen = new File("TestCrimeDB_gen.db");
+    private String testCSV = "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv";
+    private List<String> lines;
+    private CrimeCollection cc;
+
+    private Executor direct = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    @BeforeClass
+    public static void setupDB() throws Exception {
+        try {
+            SQLiteDBHandler.createNewCrimedb(testCrimeDB_gen.getAbsolutePath());
+        } catch (Exception e) {
+            // Only create if it doesn't already exist
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        CrimeCollectionManager.setCurrWorkingCollection(new CrimeCollection("test", 0, testCrimeDB_gen.getAbsolutePath()));
+        lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(testCSV));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        reader.close();
+        SQLiteDBHandler.createNewCrimedb(testDB.getAbsolutePath());
+        cc = new CrimeCollection("follow", 0, testDB.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        testFile1.delete();
+        testDB.delete();
+        testCrimeDB_gen.delete();
+    }
+
+
+    /**
+     * Writes the header and lines [from, to) of the test csv to the end of the followed file
+     */
+    private void append(int from, int to) throws Exception {
+        FileWriter writer = new FileWriter(testFile1, true);
+        if (from == 0) {
+            from = 1;
+            writer.write(lines.get(0) + "\n");
+        }
+        for (int i = from; i < to; i++) {
+            writer.write(lines.get(i) + "\n");
+        }
+        writer.close();
+    }
+
+
+    private void appendText(String text) throws Exception {
+        OutputStream out = new FileOutputStream(testFile1, true);
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.close();
+    }
+
+
+    @Test
+    public void testPoll_onlyNewRecords() throws Exception {
+        CSVFileFollower follower = new CSVFileFollower(testFile1, cc, direct);
+        append(0, 101);
+        assertEquals(100, (int) follower.poll());
+        assertEquals(0, (int) follower.poll());
+        assertEquals(100, cc.getCrimes().size());
+
+        append(101, 151);
+        assertEquals(50, (int) follower.poll());
+        assertEquals(150, cc.getCrimes().size());
+        assertEquals(150, SQLiteDBHandler.readCrimeRecords(testDB.getAbsolutePath()).size());
+        assertEquals(testFile1.length(), (long) follower.getCheckpoint().getByteOffset());
+    }
+
+
+    @Test
+    public void testPoll_partialRecordLeft() throws Exception {
+        CSVFileFollower follower = new CSVFileFollower(testFile1, cc, direct);
+        append(0, 11);
+        String next = lines.get(11);
+        appendText(next.substring(0, 20));
+        assertEquals("The unfinished record should be left", 10, (int) follower.poll());
+
+        appendText(next.substring(20) + "\n");
+        assertEquals(1, (int) follower.poll());
+        List<CrimeRecord> expected = CSVFileHandler.readCrimeRecords(testFile1.getAbsolutePath());
+        assertEquals(11, expected.size());
+        assertEquals(11, cc.getCrimes().size());
+        List<String> caseIDs = new ArrayList<String>();
+        for (CrimeRecord crime : cc.getCrimes()) {
+            caseIDs.add(crime.getCaseID());
+        }
+        assertTrue("The finished record should have been read", caseIDs.contains(expected.get(10).getCaseID()));
+    }
+
+
+    @Test
+    public void testPoll_resumesFromSavedCheckpoint() throws Exception {
+        append(0, 201);
+        assertEquals(200, (int) new CSVFileFollower(testFile1, cc, direct).poll());
+
+        append(201, 211);
+        CrimeCollection reopened = new CrimeCollection("follow", 0, testDB.getAbsolutePath());
+        reopened.populateCrimeRecords(SQLiteDBHandler.readCrimeRecords(testDB.getAbsolutePath()));
+        CSVFileFollower follower = new CSVFileFollower(testFile1, reopened, direct);
+        assertEquals("Only the records added since the last poll should be read", 10, (int) follower.poll());
+        assertEquals(210, reopened.getCrimes().size());
+        assertEquals(210L, (long) follower.getCheckpoint().getRowNumber());
+    }
+
+
+    @Test
+    public void testPoll_replacedFile() throws Exception {
+        CSVFileFollower follower = new CSVFileFollower(testFile1, cc, direct);
+        append(0, 101);
+        assertEquals(100, (int) follower.poll());
+
+        testFile1.delete();
+        append(0, 51);
+        follower.poll();
+        assertEquals("Records already in the collection should be skipped", 100, cc.getCrimes().size());
+        assertEquals(testFile1.length(), (long) follower.getCheckpoint().getByteOffset());
+    }
+
+
+    @Test
+    public void testPoll_collectionChangedByExecutor() throws Exception {
+        final List<Runnable> queued = new ArrayList<Runnable>();
+        CSVFileFollower follower = new CSVFileFollower(testFile1, cc, new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                queued.add(task);
+            }
+        });
+        append(0, 101);
+        assertEquals(100, (int) follower.poll());
+        assertEquals("The records are written before the collection is changed", 100,
+                SQLiteDBHandler.readCrimeRecords(testDB.getAbsolutePath()).size());
+        assertEquals(1, queued.size());
+        assertEquals(0, cc.getCrimes().size());
+
+        queued.get(0).run();
+        List<CrimeRecord> crimes = cc.getCrimes();
+        assertEquals(100, crimes.size());
+        for (int i = 1; i < crimes.size(); i++) {
+            assertFalse(crimes.get(i).getDate().isBefore(crimes.get(i - 1).getDate()));
+        }
+    }
+
+
+    @Test
+    public void testStart_followsGrowth() throws Exception {
+        append(0, 21);
+        CSVFileFollower follower = new CSVFileFollower(testFile1, cc, direct);
+        follower.start();
+        try {
+            assertTrue(follower.isFollowing());
+            append(21, 41);
+            long deadline = System.currentTimeMillis() + 4 * CSVFileFollower.CHECK_INTERVAL_MILLIS + 5000;
+            while (cc.getCrimes().size() < 40 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(40, cc.getCrimes().size());
+        } finally {
+            follower.stop();
+        }
+        assertFalse(follower.isFollowing());
+    }
+}
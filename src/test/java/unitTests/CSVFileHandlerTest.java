@@ -8,15 +8,29 @@ import org.junit.Test;
 import crimeSpy.crimeData.*;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class CSVFileHandlerTest {
 
     private File testFile1 = new File("TestFile.csv");
+    private File testFileGz = new File("TestFile.csv.gz");
+    private File testFileZip = new File("TestFile.zip");
+    private String testCSV = "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv";
     private static File testCrimeDB_gen   = new File("TestCrimeDB_gen.db");
 
     @BeforeClass
@@ -32,6 +46,8 @@ public class CSVFileHandlerTest {
     @After
     public void tearDown() throws Exception {
         testFile1.delete();
+        testFileGz.delete();
+        testFileZip.delete();
         testCrimeDB_gen.delete();
     }
 
@@ -86,4 +102,148 @@ public class CSVFileHandlerTest {
         String[] expected4 = {"5132","OTHER OFFENSE","VIOLENT OFFENDER: FAIL TO REGISTER NEW ADDRESS","N"};
         assertArrayEquals("The last element is incorrect", expected4, result.get(400));
     }
-}
\ No newline at end of file
+
+
+    @Test
+    public void testParallelRead_sameAsSequential() throws Exception {
+        String location = new File("src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv")
+                .getAbsolutePath();
+        List<CrimeRecord> expected = CSVFileHandler.readCrimeRecords(location);
+        final List<CrimeRecord> results = new ArrayList<CrimeRecord>();
+        // Small chunks so that the file is split into many ranges
+        Integer count = new ParallelCSVReader(4, 16L * 1024).read(location, new CrimeRecordSink() {
+            @Override
+            public void accept(CrimeRecord crime) {
+                results.add(crime);
+            }
+        });
+
+        assertEquals("The parallel read returned a different number of records", expected.size(), (int) count);
+        assertEquals(expected.size(), results.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("Record " + i + " was not read in file order", expected.get(i).toString(), results.get(i).toString());
+        }
+    }
+
+
+    @Test
+    public void testParallelRead_quotedNewlines() throws Exception {
+        CrimeCollection cc = new CrimeCollection("test", 0, testCrimeDB_gen.getAbsolutePath());
+        CrimeCollectionManager.setCurrWorkingCollection(cc);
+        FileWriter writer = new FileWriter(testFile1);
+        writer.append("CASE#,DATE  OF OCCURRENCE,BLOCK, IUCR, PRIMARY DESCRIPTION, SECONDARY DESCRIPTION, " +
+                "LOCATION DESCRIPTION,ARREST,DOMESTIC,BEAT,WARD,FBI CD,X COORDINATE,Y COORDINATE,LATITUDE," +
+                "LONGITUDE,LOCATION\n");
+        for (int i = 0; i < 200; i++) {
+            // Every third record has a newline inside its quoted location description
+            String location = (i % 3 == 0) ? "\"SCHOOL,\nPUBLIC, BUILDING\"" : "STREET";
+            writer.append("HX" + (100000 + i) + ",06/27/2014 07:31:00 PM,080XX S HALSTED ST,0860,THEFT,RETAIL THEFT," +
+                    location + ",Y,N,621,21,06,1172409,1851438,41.8808655731203,-87.70587610484924," +
+                    "\"(41.8808655731203, -87.70587610484924)\"\n");
+        }
+        writer.close();
+
+        List<CrimeRecord> expected = CSVFileHandler.readCrimeRecords(testFile1.getAbsolutePath());
+        assertEquals("Quoted newlines should not start a new record", 200, expected.size());
+        for (long chunkSize = 64; chunkSize < 512; chunkSize += 37) {
+            final List<CrimeRecord> results = new ArrayList<CrimeRecord>();
+            new ParallelCSVReader(3, chunkSize).read(testFile1.getAbsolutePath(), new CrimeRecordSink() {
+                @Override
+                public void accept(CrimeRecord crime) {
+                    results.add(crime);
+                }
+            });
+            assertEquals("Chunk size " + chunkSize + " split a quoted record", expected.size(), results.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).toString(), results.get(i).toString());
+            }
+        }
+    }
+
+
+    private void copy(InputStream in, OutputStream out) throws Exception {
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+    }
+
+
+    private void assertSameRecords(List<CrimeRecord> expected, List<CrimeRecord> results) {
+        assertEquals(expected.size(), results.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), results.get(i).toString());
+        }
+    }
+
+
+    @Test
+    public void testReadCrimeRecords_gzip() throws Exception {
+        CrimeCollection cc = new CrimeCollection("test", 0, testCrimeDB_gen.getAbsolutePath());
+        CrimeCollectionManager.setCurrWorkingCollection(cc);
+        GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(testFileGz));
+        copy(new FileInputStream(testCSV), out);
+        out.close();
+
+        assertTrue(CSVFileHandler.isCompressed(testFileGz.getAbsolutePath()));
+        List<CrimeRecord> expected = CSVFileHandler.readCrimeRecords(testCSV);
+        assertSameRecords(expected, CSVFileHandler.readCrimeRecords(testFileGz.getAbsolutePath()));
+        assertSameRecords(expected, CSVFileHandler.readCrimeRecords(testFileGz.getAbsolutePath(), 4));
+    }
+
+
+    @Test
+    public void testReadCrimeRecords_zip() throws Exception {
+        CrimeCollection cc = new CrimeCollection("test", 0, testCrimeDB_gen.getAbsolutePath());
+        CrimeCollectionManager.setCurrWorkingCollection(cc);
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(testFileZip));
+        out.putNextEntry(new ZipEntry("readme.txt"));
+        out.write("not a csv".getBytes());
+        out.putNextEntry(new ZipEntry("crimes.csv"));
+        copy(new FileInputStream(testCSV), out);
+        out.close();
+
+        assertTrue(CSVFileHandler.isCompressed(testFileZip.getAbsolutePath()));
+        assertFalse(CSVFileHandler.isCompressed(testCSV));
+        assertSameRecords(CSVFileHandler.readCrimeRecords(testCSV),
+                CSVFileHandler.readCrimeRecords(testFileZip.getAbsolutePath()));
+    }
+
+
+    @Test(expected = DataFormatException.class)
+    public void testReadCrimeRecords_zipWithoutCsv() throws Exception {
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(testFileZip));
+        out.putNextEntry(new ZipEntry("readme.txt"));
+        out.write("not a csv".getBytes());
+        out.close();
+        CSVFileHandler.readCrimeRecords(testFileZip.getAbsolutePath());
+    }
+
+
+    @Test
+    public void testWriteCrimeRecords_gzip() throws Exception {
+        CrimeCollection cc = new CrimeCollection("test", 0, testCrimeDB_gen.getAbsolutePath());
+        CrimeCollectionManager.setCurrWorkingCollection(cc);
+        cc.populateCrimeRecords(CSVFileHandler.readCrimeRecords(testCSV));
+        CSVFileHandler.writeCrimeRecords(cc, testFile1.getAbsolutePath());
+        CSVFileHandler.writeCrimeRecords(cc, testFileGz.getAbsolutePath());
+
+        assertTrue("The export should be gzip compressed", CSVFileHandler.isCompressed(testFileGz.getAbsolutePath()));
+        assertTrue(testFileGz.length() < testFile1.length());
+        assertSameRecords(CSVFileHandler.readCrimeRecords(testFile1.getAbsolutePath()),
+                CSVFileHandler.readCrimeRecords(testFileGz.getAbsolutePath()));
+    }
+
+
+    @Test
+    public void testStripCSVExtension() {
+        assertEquals("crimes", CSVFileHandler.stripCSVExtension("crimes.csv"));
+        assertEquals("crimes", CSVFileHandler.stripCSVExtension("crimes.csv.gz"));
+        assertEquals("crimes", CSVFileHandler.stripCSVExtension("crimes.CSV.GZ"));
+        assertEquals("crimes", CSVFileHandler.stripCSVExtension("crimes.zip"));
+        assertEquals("crimes.2014", CSVFileHandler.stripCSVExtension("crimes.2014.gz"));
+        assertEquals("crimes", CSVFileHandler.stripCSVExtension("crimes"));
+    }
+}
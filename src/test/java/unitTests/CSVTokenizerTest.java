@@ -0,0 +1,147 @@
+package unitTests;
+
+import crimeSpy.crimeData.CSVTokenizer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CSVTokenizerTest {
+
+    private CSVTokenizer tokenizer;
+
+    private String chicagoLine = "HX322301,06/27/2014 07:35:00 PM,031XX W MADISON ST,0460,BATTERY,SIMPLE," +
+            "GROCERY FOOD STORE,N,N,1124,28,08B,1155119,1899802,41.8808655731203,-87.70587610484924," +
+            "\"(41.8808655731203, -87.70587610484924)\"";
+
+    @Before
+    public void setUp() {
+        tokenizer = new CSVTokenizer();
+    }
+
+
+    @Test
+    public void testTokenize_fieldCount() {
+        assertEquals("A chicago crime line should have 17 fields", 17, tokenizer.tokenize(chicagoLine));
+        assertEquals(17, tokenizer.getFieldCount());
+    }
+
+
+    @Test
+    public void testGetField() {
+        tokenizer.tokenize(chicagoLine);
+        assertEquals("HX322301", tokenizer.getField(0));
+        assertEquals("031XX W MADISON ST", tokenizer.getField(2));
+        assertEquals("08B", tokenizer.getField(11));
+    }
+
+
+    @Test
+    public void testQuotedComma_keptInOneField() {
+        tokenizer.tokenize(chicagoLine);
+        assertEquals("The quoted location should not be split on its comma",
+                "\"(41.8808655731203, -87.70587610484924)\"", tokenizer.getField(16));
+    }
+
+
+    @Test
+    public void testEmptyFields() {
+        tokenizer.tokenize("HX321538,,080XX S HALSTED ST,,,");
+        assertEquals(6, tokenizer.getFieldCount());
+        assertTrue(tokenizer.isEmpty(1));
+        assertEquals("", tokenizer.getField(3));
+        assertEquals(0, tokenizer.getInt(4));
+        assertEquals(0.0, tokenizer.getDouble(5), 0.0);
+    }
+
+
+    @Test
+    public void testEmptyLine() {
+        assertEquals("An empty line is a single empty field", 1, tokenizer.tokenize(""));
+        assertTrue(tokenizer.isEmpty(0));
+    }
+
+
+    @Test
+    public void testGetInt() {
+        tokenizer.tokenize("1124,-28,+7,0021");
+        assertEquals(1124, tokenizer.getInt(0));
+        assertEquals(-28, tokenizer.getInt(1));
+        assertEquals(7, tokenizer.getInt(2));
+        assertEquals(21, tokenizer.getInt(3));
+    }
+
+
+    @Test(expected = NumberFormatException.class)
+    public void testGetInt_notANumber() {
+        tokenizer.tokenize("12a4");
+        tokenizer.getInt(0);
+    }
+
+
+    @Test
+    public void testGetDouble_matchesParseDouble() {
+        String[] values = {"41.8808655731203", "-87.70587610484924", "1155119", "0.1", "-0.0", "5.",
+                "1.7976931348623157E308", "123456789012345678901234", " 2.5"};
+        String line = "";
+        for (String value : values) {
+            line += value + ",";
+        }
+        tokenizer.tokenize(line);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals("Field " + values[i] + " was not converted exactly",
+                    Double.doubleToLongBits(Double.parseDouble(values[i])),
+                    Double.doubleToLongBits(tokenizer.getDouble(i)));
+        }
+    }
+
+
+    @Test
+    public void testFieldEquals() {
+        tokenizer.tokenize("Y,N,YES,");
+        assertTrue(tokenizer.fieldEquals(0, "Y"));
+        assertFalse(tokenizer.fieldEquals(1, "Y"));
+        assertFalse(tokenizer.fieldEquals(2, "Y"));
+        assertFalse(tokenizer.fieldEquals(3, "Y"));
+    }
+
+
+    @Test
+    public void testGetFieldWithoutLeadingZeros() {
+        tokenizer.tokenize("0460,041A,0000,110");
+        assertEquals("460", tokenizer.getFieldWithoutLeadingZeros(0));
+        assertEquals("41A", tokenizer.getFieldWithoutLeadingZeros(1));
+        assertEquals("0", tokenizer.getFieldWithoutLeadingZeros(2));
+        assertEquals("110", tokenizer.getFieldWithoutLeadingZeros(3));
+    }
+
+
+    @Test
+    public void testIsInQuotes() {
+        tokenizer.tokenize("HX1,\"SCHOOL, PUBLIC");
+        assertTrue("The line ended inside a quoted field", tokenizer.isInQuotes());
+        tokenizer.tokenize("HX1,\"SCHOOL, PUBLIC\nBUILDING\",N");
+        assertFalse(tokenizer.isInQuotes());
+        assertEquals(3, tokenizer.getFieldCount());
+    }
+
+
+    @Test
+    public void testTokenizerReuse_manyFields() {
+        String longLine = "";
+        for (int i = 0; i < 50; i++) {
+            longLine += i + ",";
+        }
+        assertEquals(51, tokenizer.tokenize(longLine));
+        assertEquals(49, tokenizer.getInt(49));
+        assertEquals(2, tokenizer.tokenize("a,b"));
+        assertEquals("b", tokenizer.getField(1));
+    }
+
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetField_outOfRange() {
+        tokenizer.tokenize("a,b");
+        tokenizer.getField(2);
+    }
+}
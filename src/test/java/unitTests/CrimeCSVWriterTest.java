@@ -0,0 +1,126 @@
+package unitTests;
+
+import crimeSpy.crimeData.*;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CrimeCSVWriterTest {
+
+    private File testFile1 = new File("TestFile.csv");
+    private static File testCrimeDB_gen = new File("TestCrimeDB_gen.db");
+    private String testCSV = "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv";
+    private String header;
+
+    @BeforeClass
+    public static void setupDB() throws Exception {
+        try {
+            SQLiteDBHandler.createNewCrimedb(testCrimeDB_gen.getAbsolutePath());
+        } catch (Exception e) {
+            // Only create if it doesn't already exist
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        CrimeCollectionManager.setCurrWorkingCollection(new CrimeCollection("test", 0, testCrimeDB_gen.getAbsolutePath()));
+        BufferedReader reader = new BufferedReader(new FileReader(testCSV));
+        header = reader.readLine();
+        reader.close();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        testFile1.delete();
+        testCrimeDB_gen.delete();
+    }
+
+
+    /**
+     * What the csv exports used to be written as
+     */
+    private byte[] orMapBytes(List<CrimeRecord> crimes) {
+        StringBuilder expected = new StringBuilder(header + "\n");
+        for (CrimeRecord crime : crimes) {
+            expected.append(new OR_Map(crime).toCSVString());
+        }
+        return expected.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    private byte[] write(List<CrimeRecord> crimes, Integer bufferSize) throws Exception {
+        FileChannel channel = FileChannel.open(testFile1.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        CrimeCSVWriter writer = new CrimeCSVWriter(channel, bufferSize);
+        writer.writeLine(header);
+        for (CrimeRecord crime : crimes) {
+            writer.accept(crime);
+        }
+        writer.close();
+        return Files.readAllBytes(testFile1.toPath());
+    }
+
+
+    private CrimeRecord newCrime(String caseID, DateTime date, String block, double x, double y, double lat,
+                                 double lon) {
+        return new CrimeRecord(caseID, date, true, false, "860", "06", block, 621, 21, x, y, lat, lon, "STREET");
+    }
+
+
+    @Test
+    public void testAccept_sameAsORMap() throws Exception {
+        List<CrimeRecord> crimes = CSVFileHandler.readCrimeRecords(testCSV);
+        assertArrayEquals(orMapBytes(crimes), write(crimes, CrimeCSVWriter.DEFAULT_BUFFER_SIZE));
+    }
+
+
+    @Test
+    public void testAccept_smallBuffer() throws Exception {
+        List<CrimeRecord> crimes = CSVFileHandler.readCrimeRecords(testCSV);
+        assertArrayEquals(orMapBytes(crimes), write(crimes, 1024));
+    }
+
+
+    @Test
+    public void testAccept_edgeValues() throws Exception {
+        DateTime date = new DateTime(2014, 6, 27, 19, 31, 5, 0);
+        List<CrimeRecord> crimes = new ArrayList<CrimeRecord>();
+        crimes.add(newCrime("HX100000", date, "080XX S HALSTED ST", 0.0, -0.0, 41.88, -87.70));
+        crimes.add(newCrime("HX100001", date, "CAF\u00c9 \u00d1AND\u00da \u4e2d \ud83d\ude00", 1.0, 9999999.0, 1e7, -1e7));
+        crimes.add(newCrime("HX100002", new DateTime(1, 1, 1, 1, 0, 0, 0), "", -1.0, -1234567.0, 12345678.5,
+                0.001));
+        crimes.add(newCrime("HX100003", new DateTime(2015, 12, 31, 0, 0, 0, 0), "A", 1.5, 1e-5, Double.NaN,
+                -0.5));
+        crimes.add(newCrime("HX100004", new DateTime(2015, 1, 1, 12, 59, 59, 0), "\uD800", 1172409.0, 1851438.0,
+                41.8808655731203, -87.70587610484924));
+        assertArrayEquals(orMapBytes(crimes), write(crimes, 1024));
+    }
+
+
+    @Test
+    public void testWriteCrimeRecords_roundTrip() throws Exception {
+        CrimeCollection cc = new CrimeCollection();
+        cc.populateCrimeRecords(CSVFileHandler.readCrimeRecords(testCSV));
+        CSVFileHandler.writeCrimeRecords(cc, testFile1.getAbsolutePath());
+        List<CrimeRecord> read = CSVFileHandler.readCrimeRecords(testFile1.getAbsolutePath());
+        assertEquals(cc.getCrimes().size(), read.size());
+        for (int i = 0; i < read.size(); i++) {
+            assertEquals(cc.getCrimes().get(i).toString(), read.get(i).toString());
+        }
+    }
+}
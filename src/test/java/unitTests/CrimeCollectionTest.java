@@ -282,6 +282,41 @@ public class CrimeCollectionTest {
         assertEquals(expected, testCC_01.getObservableCrList());
         }
 
+
+    /**
+     * Checks that saved crime records are merged into time order and linked, skipping case ids that are taken
+     * @throws Exception General exception
+     */
+    @Test
+    public void insertSavedCrimeRecordsTest() throws Exception {
+        DateTime date_temp01 = DateTimeFormat.forPattern("MM/dd/yyyy HH:mm:ss a").parseDateTime("7/01/2014 7:31:00" +
+                " PM");
+        CrimeRecord testCR_temp01 = new CrimeRecord("HX111113", date_temp01, true, false, "112", "6",
+                "080XX S HALSTED ST", 621, 21, 1172409, 1851438, 41.8808655731203, -87.7058761048492,
+                "DEPARTMENT STORE");
+        CrimeRecord testCR_temp02 = new CrimeRecord(testCR_02);
+        testCR_temp02.setCaseID("HX111114");
+        testCR_temp02.setDate(date02.plusDays(1));
+        testCC_01.populateCrimeRecords(crimeArrayList);
+
+        ArrayList<CrimeRecord> saved = new ArrayList<CrimeRecord>();
+        saved.add(testCR_temp02);
+        saved.add(new CrimeRecord(testCR_01));
+        saved.add(testCR_temp01);
+        assertEquals(2, (int) testCC_01.insertSavedCrimeRecords(saved));
+
+        ArrayList<CrimeRecord> expected = new ArrayList<CrimeRecord>();
+        expected.add(testCR_01);
+        expected.add(testCR_temp01);
+        expected.add(testCR_02);
+        expected.add(testCR_temp02);
+        assertEquals(expected, testCC_01.getCrimes());
+        assertEquals(testCR_temp01.getCaseID(), testCR_01.getNextCrimeID());
+        assertEquals(testCR_01.getCaseID(), testCR_temp01.getPrevCrimeID());
+        assertEquals(testCR_02.getCaseID(), testCR_temp01.getNextCrimeID());
+        assertEquals(testCR_temp02.getCaseID(), testCR_02.getNextCrimeID());
+    }
+
     }
 
 
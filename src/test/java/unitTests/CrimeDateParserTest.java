@@ -0,0 +1,102 @@
+package unitTests;
+
+import crimeSpy.crimeData.CrimeDateParser;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CrimeDateParserTest {
+
+    private CrimeDateParser parser;
+    private DateTimeFormatter formatter = DateTimeFormat.forPattern("MM/dd/yyyy HH:mm:ss a");
+    private DateTimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        parser = new CrimeDateParser();
+        defaultZone = DateTimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeZone.setDefault(defaultZone);
+    }
+
+
+    /**
+     * What the csv dates used to be read as, including the placeholder for a date that can't be read
+     */
+    private DateTime jodaParse(String date) {
+        try {
+            return formatter.parseDateTime(date);
+        } catch (Exception e) {
+            return formatter.parseDateTime("01/01/0001 01:00:00 AM");
+        }
+    }
+
+
+    @Test
+    public void testParse() {
+        assertEquals(new DateTime(2014, 6, 27, 7, 31, 0, 0), parser.parse("06/27/2014 07:31:00 PM"));
+        assertEquals(new DateTime(2014, 6, 27, 19, 31, 5, 0), parser.parse("06/27/2014 19:31:05 PM"));
+        assertEquals(new DateTime(2014, 6, 7, 7, 31, 0, 0), parser.parse("6/7/2014 7:31:00 PM"));
+        assertEquals(0, (int) parser.getMalformedCount());
+    }
+
+
+    @Test
+    public void testParse_sameAsFormatter() {
+        String[] dates = {"06/27/2014 07:31:00 PM", "06/27/2014 12:00:00 AM", "06/27/2014 12:00:00 PM",
+                "06/27/2014 00:31:00 AM", "06/27/2014 23:59:59 pm", "02/29/2016 01:00:00 AM", "01/01/0001 01:00:00 AM",
+                "06/27/14 07:31:00 PM", "12/31/1999 11:59:59 PM", "06/27/2014 07:31:00 XM", "06/27/2014 07:31:00",
+                "2014-06-27 07:31:00 PM", "006/27/2014 07:31:00 PM", "06/27/20145 07:31:00 PM", ""};
+        for (String date : dates) {
+            assertEquals(date, jodaParse(date), parser.parse(date));
+        }
+    }
+
+
+    @Test
+    public void testParse_randomSameAsFormatter() {
+        DateTimeZone.setDefault(DateTimeZone.forID("America/Chicago"));
+        CrimeDateParser chicagoParser = new CrimeDateParser();
+        Random random = new Random(202);
+        for (int i = 0; i < 20000; i++) {
+            // Includes out of range fields and the hours skipped and repeated by daylight savings
+            String date = String.format("%02d/%02d/%04d %02d:%02d:%02d %s", random.nextInt(14), random.nextInt(33),
+                    2000 + random.nextInt(30), random.nextInt(25), random.nextInt(61), random.nextInt(61),
+                    random.nextBoolean() ? "AM" : "PM");
+            assertEquals(date, jodaParse(date), chicagoParser.parse(date));
+        }
+    }
+
+
+    @Test
+    public void testParse_malformedCounted() {
+        DateTime placeholder = jodaParse("");
+        assertEquals(placeholder, parser.parse("02/30/2014 01:00:00 AM"));
+        assertEquals(placeholder, parser.parse("06/27/2014 24:00:00 AM"));
+        assertEquals(placeholder, parser.parse("not a date"));
+        assertEquals(placeholder, parser.parse((String) null));
+        assertEquals(4, (int) parser.getMalformedCount());
+        parser.parse("06/27/2014 07:31:00 PM");
+        assertEquals(4, (int) parser.getMalformedCount());
+    }
+
+
+    @Test
+    public void testParse_repeatedTimestampReused() {
+        DateTime first = parser.parse("06/27/2014 07:30:00 PM");
+        parser.parse("06/28/2014 07:30:00 PM");
+        assertSame("A repeated timestamp should come from the cache", first, parser.parse("06/27/2014 07:30:00 PM"));
+    }
+}
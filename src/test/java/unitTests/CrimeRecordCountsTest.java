@@ -0,0 +1,154 @@
+package unitTests;
+
+import crimeSpy.crimeData.*;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CrimeRecordCountsTest {
+
+    private File testDB = new File("TestCrimeRecordCounts.db");
+    private String testCSV = "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv";
+    private Integer[] groupings = {CrimeRecordCounts.BY_PRIMARY_DESCRIPTION, CrimeRecordCounts.BY_LOCATION_DESCRIPTION,
+            CrimeRecordCounts.BY_ARREST, CrimeRecordCounts.BY_DOMESTIC, CrimeRecordCounts.BY_DAY,
+            CrimeRecordCounts.BY_BEAT, CrimeRecordCounts.BY_WARD};
+    private String location;
+    private CrimeCollection cc;
+
+    @Before
+    public void setUp() throws Exception {
+        location = testDB.getAbsolutePath();
+        SQLiteConnectionManager.close(location);
+        testDB.delete();
+        SQLiteDBHandler.createNewCrimedb(location);
+        CrimeCollection csv = new CrimeCollection();
+        csv.populateCrimeRecords(CSVFileHandler.readCrimeRecords(testCSV));
+        SQLiteDBHandler.writeCrimeRecords(csv, location);
+        cc = new CrimeCollection("counts", 0, location);
+        CrimeCollectionManager.setCurrWorkingCollection(cc);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        CrimeCollectionManager.setCurrWorkingCollection(new CrimeCollection());
+        SQLiteConnectionManager.close(location);
+        testDB.delete();
+    }
+
+
+    private void assertSameCounts(CrimeRecordCounts expected, CrimeRecordCounts actual) {
+        assertEquals(expected.getGrouping(), actual.getGrouping());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getValue(i), actual.getValue(i));
+            assertEquals(expected.getValue(i), expected.getCount(i), actual.getCount(i));
+        }
+        assertEquals(expected.getTotal(), actual.getTotal());
+    }
+
+
+    @Test
+    public void testCountCrimeRecordsBy_sameAsCountingInMemory() throws Exception {
+        CrimeRecord sample = cc.getCrimes().get(42);
+        DateTime from = sample.getDate().minusDays(10);
+        List<CrimeFilter> filters = Arrays.asList(
+                new CrimeFilter(null, true, new ArrayList<String>(), "", -1, -1, "", "", "", "", "", null, null),
+                new CrimeFilter(false, null, new ArrayList<String>(Arrays.asList("THEFT", "BATTERY")), "", -1, -1, "",
+                        "", "", "", "", null, null),
+                new CrimeFilter(null, null, new ArrayList<String>(), "street", sample.getCrimeLocation().getBeat(),
+                        -1, "", "", "", "", "", null, null),
+                new CrimeFilter(null, false, new ArrayList<String>(), "", -1, sample.getCrimeLocation().getWard(),
+                        "", "", "", "", "", null, null),
+                new CrimeFilter(null, null, new ArrayList<String>(), "", -1, -1, "ave", "theft", "over", "", "",
+                        null, null),
+                new CrimeFilter(null, null, new ArrayList<String>(), "", -1, -1, "", "", "",
+                        sample.getCrimeType().getIucr().toLowerCase(), sample.getFbiCD(), sample.getDate(), from));
+        for (CrimeFilter filter : filters) {
+            FilterCrimeCollection.filter(filter.getDomestic(), filter.getArrest(), filter.getCrimeTypes(),
+                    filter.getLocation(), filter.getBeat(), filter.getWard(), filter.getBlock(), filter.getPrimary(),
+                    filter.getSecondary(), filter.getIUCR(), filter.getFBICD(), filter.getTo(), filter.getFrom());
+            List<CrimeRecord> filtered = CrimeCollectionManager.getCurrWorkingCollection().getCrimes();
+            assertFalse("Filter " + filters.indexOf(filter) + " matches nothing", filtered.isEmpty());
+            for (Integer grouping : groupings) {
+                assertSameCounts(CrimeRecordCounts.count(filtered, grouping),
+                        SQLiteDBHandler.countCrimeRecordsBy(location, grouping, filter));
+            }
+        }
+        for (Integer grouping : groupings) {
+            assertSameCounts(CrimeRecordCounts.count(cc.getCrimes(), grouping),
+                    SQLiteDBHandler.countCrimeRecordsBy(location, grouping, null));
+        }
+    }
+
+
+    @Test
+    public void testCountCurrWorkingCollection_withoutLoading() throws Exception {
+        CrimeRecordCounts arrests = CrimeCollectionManager.countCurrWorkingCollection(CrimeRecordCounts.BY_ARREST);
+        assertNotNull("The crime records should not have been read", cc.getPages());
+        assertEquals(cc.getPages().size(), (int) arrests.getTotal());
+        assertEquals(arrests.getTotal(), (Integer) (arrests.getCount("true") + arrests.getCount("false")));
+
+        // Edits waiting to be written are counted
+        CrimeRecord added = new CrimeRecord(cc.getPages().get(0));
+        added.setCaseID("HZ999999");
+        added.setArrest(true);
+        cc.addCrimeRecordtoDB(added);
+        assertEquals(arrests.getCount("true") + 1, (int) CrimeCollectionManager.countCurrWorkingCollection(
+                CrimeRecordCounts.BY_ARREST).getCount("true"));
+
+        // The active filter is counted in the database too
+        FilterCrimeCollection.filter(null, null, new ArrayList<String>(), "", -1, -1, "", "", "", "", "", null, null);
+        FilterCrimeCollection.filter(true, null, new ArrayList<String>(), "", -1, -1, "", "", "", "", "", null, null);
+        assertSameCounts(CrimeRecordCounts.count(CrimeCollectionManager.getCurrWorkingCollection().getCrimes(),
+                CrimeRecordCounts.BY_DAY), CrimeCollectionManager.countCurrWorkingCollection(CrimeRecordCounts.BY_DAY));
+        assertEquals(0, (int) CrimeCollectionManager.countCurrWorkingCollection(CrimeRecordCounts.BY_DOMESTIC)
+                .getCount("false"));
+    }
+
+
+    @Test
+    public void testCountCrimeRecordsBy_dayInDefaultTimeZone() throws Exception {
+        DateTimeZone defaultZone = DateTimeZone.getDefault();
+        CrimeFilter arrests = new CrimeFilter(null, true, new ArrayList<String>(), "", -1, -1, "", "", "", "", "",
+                null, null);
+        try {
+            for (String zone : new String[]{"UTC", "America/Chicago", "Asia/Kathmandu", "Pacific/Chatham"}) {
+                DateTimeZone.setDefault(DateTimeZone.forID(zone));
+                // Read again so the crime records' dates are in the zone
+                List<CrimeRecord> read = SQLiteDBHandler.readCrimeRecords(location);
+                assertSameCounts(CrimeRecordCounts.count(read, CrimeRecordCounts.BY_DAY),
+                        SQLiteDBHandler.countCrimeRecordsBy(location, CrimeRecordCounts.BY_DAY, null));
+                List<CrimeRecord> arrested = new ArrayList<CrimeRecord>();
+                for (CrimeRecord crime : read) {
+                    if (crime.getArrest()) {
+                        arrested.add(crime);
+                    }
+                }
+                assertSameCounts(CrimeRecordCounts.count(arrested, CrimeRecordCounts.BY_DAY),
+                        SQLiteDBHandler.countCrimeRecordsBy(location, CrimeRecordCounts.BY_DAY, arrests));
+            }
+        } finally {
+            DateTimeZone.setDefault(defaultZone);
+        }
+    }
+
+
+    @Test
+    public void testCount_inOrder() throws Exception {
+        CrimeRecordCounts counts = CrimeRecordCounts.count(cc.getCrimes(), CrimeRecordCounts.BY_PRIMARY_DESCRIPTION);
+        for (int i = 1; i < counts.size(); i++) {
+            assertTrue(counts.getValue(i - 1).compareTo(counts.getValue(i)) < 0);
+        }
+        assertEquals(0, (int) counts.getCount("NOT A PRIMARY DESCRIPTION"));
+        assertEquals(cc.getCrimes().size(), (int) counts.getTotal());
+    }
+}
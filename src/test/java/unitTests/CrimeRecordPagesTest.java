@@ -0,0 +1,178 @@
+package unitTests;
+
+import crimeSpy.crimeData.*;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ObservableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CrimeRecordPagesTest {
+
+    private File testDB = new File("TestCrimeRecordPages.db");
+    private String testCSV = "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv";
+    private List<CrimeRecord> expected;
+
+    @Before
+    public void setUp() throws Exception {
+        SQLiteConnectionManager.close(testDB.getAbsolutePath());
+        testDB.delete();
+        SQLiteDBHandler.createNewCrimedb(testDB.getAbsolutePath());
+        CrimeCollection cc = new CrimeCollection();
+        cc.populateCrimeRecords(CSVFileHandler.readCrimeRecords(testCSV));
+        SQLiteDBHandler.writeCrimeRecords(cc, testDB.getAbsolutePath());
+        expected = SQLiteDBHandler.readCrimeRecordsBetween(testDB.getAbsolutePath(), null, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SQLiteConnectionManager.close(testDB.getAbsolutePath());
+        testDB.delete();
+    }
+
+
+    @Test
+    public void testGet_forwards() throws Exception {
+        CrimeRecordPages pages = new CrimeRecordPages(testDB.getAbsolutePath(), 64, 3);
+        assertEquals(expected.size(), pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            assertEquals(expected.get(i).getCaseID(), pages.get(i).getCaseID());
+            assertTrue(pages.getCachedPageCount() <= 3);
+        }
+    }
+
+
+    @Test
+    public void testGet_backwardsAndJumps() throws Exception {
+        CrimeRecordPages pages = new CrimeRecordPages(testDB.getAbsolutePath(), 50, 4);
+        for (int i = pages.size() - 1; i >= 0; i--) {
+            assertEquals(expected.get(i).getCaseID(), pages.get(i).getCaseID());
+        }
+        int[] jumps = {4321, 7, pages.size() - 1, 2500, 2549, 2550, 0, 3333};
+        for (int i : jumps) {
+            assertEquals(expected.get(i).getCaseID(), pages.get(i).getCaseID());
+            assertEquals(expected.get(i).toString(), pages.get(i).toString());
+        }
+    }
+
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGet_pastEnd() throws Exception {
+        new CrimeRecordPages(testDB.getAbsolutePath()).get(expected.size());
+    }
+
+
+    @Test
+    public void testRefresh() throws Exception {
+        CrimeRecordPages pages = new CrimeRecordPages(testDB.getAbsolutePath(), 100, 3);
+        CrimeRecord first = pages.get(0);
+        CrimeRecord earlier = new CrimeRecord(first);
+        earlier.setCaseID("AA000000");
+        earlier.setDate(first.getDate().minusYears(1));
+        CrimeCollection cc = new CrimeCollection();
+        cc.addCrimeRecord(earlier);
+        SQLiteDBHandler.writeCrimeRecords(cc, testDB.getAbsolutePath());
+
+        assertEquals("Not seen until refreshed", first.getCaseID(), pages.get(0).getCaseID());
+        pages.refresh();
+        assertEquals(expected.size() + 1, pages.size());
+        assertEquals("AA000000", pages.get(0).getCaseID());
+        assertEquals(expected.get(expected.size() - 1).getCaseID(), pages.get(pages.size() - 1).getCaseID());
+    }
+
+
+    @Test
+    public void testSetCurrWorkingCollection_openedPaged() throws Exception {
+        CrimeCollection cc = new CrimeCollection("paged", 0, testDB.getAbsolutePath());
+        CrimeCollectionManager.setCurrWorkingCollection(cc);
+        assertNotNull("The crime records should not have been read", cc.getPages());
+        assertEquals(expected.size(), cc.getObservableCrList().size());
+        assertEquals(expected.get(10).getCaseID(), ((CrimeRecord) cc.getObservableCrList().get(10)).getCaseID());
+
+        // Using the crime records reads them all
+        List<String> ids = new ArrayList<String>();
+        for (CrimeRecord crime : cc.getCrimes()) {
+            ids.add(crime.getCaseID());
+        }
+        assertNull(cc.getPages());
+        assertEquals(expected.size(), ids.size());
+        assertEquals(expected.size(), cc.getObservableCrList().size());
+    }
+
+
+    @Test
+    public void testGetNextAndPrevious() throws Exception {
+        CrimeRecordPages pages = new CrimeRecordPages(testDB.getAbsolutePath(), 100, 3);
+        int[] positions = {1, 99, 100, 2500, expected.size() - 2};
+        for (int i : positions) {
+            assertEquals(expected.get(i + 1).getCaseID(), pages.getNext(expected.get(i)).getCaseID());
+            assertEquals(expected.get(i - 1).getCaseID(), pages.getPrevious(expected.get(i)).getCaseID());
+        }
+        assertNull(pages.getPrevious(expected.get(0)));
+        assertNull(pages.getNext(expected.get(expected.size() - 1)));
+        pages.close();
+        assertNull(pages.getNext(expected.get(0)));
+    }
+
+
+    @Test
+    public void testSetCurrWorkingCollection_staysPaged() throws Exception {
+        CrimeCollection cc = new CrimeCollection("paged", 0, testDB.getAbsolutePath());
+        CrimeCollectionManager.setCurrWorkingCollection(cc);
+        final List<ObservableList<CrimeRecord>> shown = new ArrayList<ObservableList<CrimeRecord>>();
+        cc.observableCrListProperty().addListener(new ChangeListener<ObservableList<CrimeRecord>>() {
+            @Override
+            public void changed(ObservableValue<? extends ObservableList<CrimeRecord>> ov,
+                                ObservableList<CrimeRecord> oldList, ObservableList<CrimeRecord> newList) {
+                shown.add(newList);
+            }
+        });
+
+        assertEquals(100, CrimeCollectionManager.sampleCurrWorkingCollection(100).size());
+        CrimeRecordCounts types = CrimeCollectionManager.countCurrWorkingCollection(
+                CrimeRecordCounts.BY_PRIMARY_DESCRIPTION);
+        assertEquals((Integer) expected.size(), types.getTotal());
+        assertEquals(expected.get(11).getCaseID(), cc.getNextCrimeRecord(expected.get(10)).getCaseID());
+        assertEquals(expected.get(9).getCaseID(), cc.getPrevCrimeRecord(expected.get(10)).getCaseID());
+        assertNotNull("The crime records should not have been read", cc.getPages());
+        assertTrue(shown.isEmpty());
+
+        // Reading the crime records replaces the list shown
+        List<CrimeRecord> crimes = cc.getCrimes();
+        assertEquals(1, shown.size());
+        assertEquals(expected.size(), shown.get(0).size());
+        assertEquals(crimes, shown.get(0));
+    }
+
+
+    @Test
+    public void testGet_afterDatabaseClosed() throws Exception {
+        CrimeRecordPages pages = new CrimeRecordPages(testDB.getAbsolutePath(), 100, 3);
+        assertEquals(expected.get(0).getCaseID(), pages.get(0).getCaseID());
+        SQLiteConnectionManager.close(testDB.getAbsolutePath());
+        // The first read after finds the snapshot closed, takes a new one and reads the page from it
+        assertEquals("A new snapshot is read", expected.get(2000).getCaseID(), pages.get(2000).getCaseID());
+        pages.close();
+    }
+
+
+    @Test
+    public void testGet_afterClose() throws Exception {
+        CrimeRecordPages pages = new CrimeRecordPages(testDB.getAbsolutePath(), 100, 3);
+        assertEquals(expected.get(0).getCaseID(), pages.get(0).getCaseID());
+        pages.close();
+        SQLiteConnectionManager.close(testDB.getAbsolutePath());
+        Integer openDatabases = SQLiteConnectionManager.getOpenDatabaseCount();
+        assertNull(pages.get(0));
+        assertNull(pages.get(2000));
+        pages.refresh();
+        assertEquals("A closed list takes no snapshot", openDatabases, SQLiteConnectionManager.getOpenDatabaseCount());
+    }
+}
@@ -0,0 +1,150 @@
+package unitTests;
+
+import crimeSpy.crimeData.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CrimeRecordWriteQueueTest {
+
+    private File testDB = new File("TestWriteQueue.db");
+    private String location;
+    private CrimeRecordWriteQueue queue;
+    private List<CrimeRecord> csv;
+
+    @Before
+    public void setUp() throws Exception {
+        location = testDB.getAbsolutePath();
+        SQLiteConnectionManager.close(location);
+        testDB.delete();
+        SQLiteDBHandler.createNewCrimedb(location);
+        CrimeCollectionManager.setCurrWorkingCollection(new CrimeCollection("queue", 0, location));
+        csv = CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv").subList(0, 20);
+        queue = CrimeRecordWriteQueue.forDatabase(location);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        queue.setDurable(false);
+        queue.flush();
+        CrimeCollectionManager.setCurrWorkingCollection(new CrimeCollection());
+        SQLiteConnectionManager.close(location);
+        testDB.delete();
+    }
+
+
+    private Map<String, CrimeRecord> readAll() throws Exception {
+        Map<String, CrimeRecord> read = new HashMap<String, CrimeRecord>();
+        for (CrimeRecord crime : SQLiteDBHandler.readCrimeRecords(location)) {
+            read.put(crime.getCaseID(), crime);
+        }
+        return read;
+    }
+
+
+    @Test
+    public void testQueue_coalescesChangesToACrimeID() throws Exception {
+        CrimeRecord added = csv.get(0);
+        queue.insert(added);
+        added.getCrimeLocation().setBlock("EDITED ONCE");
+        queue.update(added);
+        added.getCrimeLocation().setBlock("EDITED TWICE");
+        queue.update(added);
+        CrimeRecord dropped = csv.get(1);
+        queue.insert(dropped);
+        queue.delete(dropped.getCaseID());
+        added.getCrimeLocation().setBlock("NOT QUEUED");
+        assertEquals("Only the first crime record is left to write", 1, (int) queue.getPendingCount());
+
+        queue.flush();
+        assertEquals(0, (int) queue.getPendingCount());
+        Map<String, CrimeRecord> read = readAll();
+        assertEquals(1, read.size());
+        assertEquals("The crime record is copied when it is queued", "EDITED TWICE",
+                read.get(added.getCaseID()).getCrimeLocation().getBlock());
+    }
+
+
+    @Test
+    public void testQueue_deletedThenAddedIsReplaced() throws Exception {
+        CrimeRecord crime = csv.get(0);
+        queue.insert(crime);
+        queue.flush();
+
+        queue.update(crime);
+        queue.delete(crime.getCaseID());
+        crime.getCrimeLocation().setBlock("ADDED AGAIN");
+        queue.insert(crime);
+        queue.flush();
+        assertEquals("ADDED AGAIN", readAll().get(crime.getCaseID()).getCrimeLocation().getBlock());
+
+        queue.delete(crime.getCaseID());
+        queue.flush();
+        assertTrue(readAll().isEmpty());
+    }
+
+
+    @Test
+    public void testQueue_writtenInTheBackground() throws Exception {
+        for (CrimeRecord crime : csv) {
+            queue.insert(crime);
+        }
+        long giveUp = System.currentTimeMillis() + 5000;
+        while (SQLiteDBHandler.countCrimeRecords(location) < csv.size() && System.currentTimeMillis() < giveUp) {
+            Thread.sleep(50);
+        }
+        assertEquals(csv.size(), (int) SQLiteDBHandler.countCrimeRecords(location));
+        assertEquals(0, (int) queue.getPendingCount());
+    }
+
+
+    @Test
+    public void testSetDurable_writesBeforeReturning() throws Exception {
+        queue.insert(csv.get(0));
+        queue.setDurable(true);
+        assertEquals("Waiting changes are written", 1, (int) SQLiteDBHandler.countCrimeRecords(location));
+        queue.insert(csv.get(1));
+        assertEquals(0, (int) queue.getPendingCount());
+        assertEquals(2, (int) SQLiteDBHandler.countCrimeRecords(location));
+
+        CrimeRecord edited = new CrimeRecord(csv.get(1));
+        edited.setArrest(!edited.getArrest());
+        edited.getCrimeLocation().setWard(99);
+        queue.update(edited);
+        CrimeRecord read = readAll().get(edited.getCaseID());
+        assertEquals(edited.getArrest(), read.getArrest());
+        assertEquals(99, (int) read.getCrimeLocation().getWard());
+        assertEquals(edited.getDate(), read.getDate());
+        assertEquals(edited.getCrimeLocation().getBlock(), read.getCrimeLocation().getBlock());
+    }
+
+
+    @Test
+    public void testCrimeCollection_editsGoThroughTheQueue() throws Exception {
+        CrimeCollection cc = CrimeCollectionManager.getFullWorkingCollection();
+        CrimeRecord crime = csv.get(0);
+        assertEquals(0, (int) cc.addCrimeRecordtoDB(crime));
+        assertEquals("Duplicate case id", 1, (int) cc.addCrimeRecordtoDB(crime));
+        crime.setFbiCD("26");
+        assertEquals(0, (int) cc.updateCrimeRecord(crime));
+        assertEquals("The collection is changed straight away", crime, cc.getCrimeRecord(crime.getCaseID()));
+
+        // Opening the database again reads the queued changes back
+        CrimeCollection reopened = new CrimeCollection("reopened", 1, location);
+        CrimeCollectionManager.openKnownCrimeDB(reopened);
+        assertEquals("26", reopened.getCrimeRecord(crime.getCaseID()).getFbiCD());
+
+        assertEquals(0, (int) cc.removeCrimeRecord(crime));
+        assertNull(cc.getCrimeRecord(crime.getCaseID()));
+        queue.flush();
+        assertEquals(0, (int) SQLiteDBHandler.countCrimeRecords(location));
+    }
+}
@@ -0,0 +1,111 @@
+package unitTests;
+
+import crimeSpy.crimeData.*;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CrimeStringDictionaryTest {
+
+    private static File testCrimeDB_gen = new File("TestCrimeDB_gen.db");
+    private CrimeStringDictionary dictionary;
+
+    @BeforeClass
+    public static void setupDB() throws Exception {
+        try {
+            SQLiteDBHandler.createNewCrimedb(testCrimeDB_gen.getAbsolutePath());
+        } catch (Exception e) {
+            // Only create if it doesn't already exist
+        }
+    }
+
+    @Before
+    public void setUp() {
+        CrimeCollectionManager.setCurrWorkingCollection(new CrimeCollection("test", 0, testCrimeDB_gen.getAbsolutePath()));
+        dictionary = new CrimeStringDictionary();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        testCrimeDB_gen.delete();
+    }
+
+
+    private CrimeRecord newCrime(String caseID) {
+        // new String() makes sure every record starts with its own copies, as it would when read from a csv
+        return new CrimeRecord(caseID, new DateTime(2014, 6, 27, 7, 31, 0, 0), true, false,
+                new String("860"), new String("06"), new String("080XX S HALSTED ST"), 621, 21,
+                1172409.0, 1851438.0, 41.88, -87.70, new String("STREET"));
+    }
+
+
+    @Test
+    public void testIntern_sameInstance() {
+        String first = new String("080XX S HALSTED ST");
+        String second = new String("080XX S HALSTED ST");
+        assertSame(first, dictionary.intern(CrimeStringDictionary.BLOCK, first));
+        assertSame("An equal value should give the first copy", first,
+                dictionary.intern(CrimeStringDictionary.BLOCK, second));
+        assertNull(dictionary.intern(CrimeStringDictionary.BLOCK, null));
+    }
+
+
+    @Test
+    public void testIntern_fieldsKeptSeparate() {
+        String block = new String("06");
+        String fbiCD = new String("06");
+        dictionary.intern(CrimeStringDictionary.BLOCK, block);
+        assertSame(fbiCD, dictionary.intern(CrimeStringDictionary.FBICD, fbiCD));
+        assertEquals(1, (int) dictionary.getDistinctCount(CrimeStringDictionary.BLOCK));
+        assertEquals(1, (int) dictionary.getDistinctCount(CrimeStringDictionary.FBICD));
+    }
+
+
+    @Test
+    public void testIntern_statistics() {
+        dictionary.intern(CrimeStringDictionary.LOCATION, new String("STREET"));
+        assertEquals(0L, (long) dictionary.getBytesSaved(CrimeStringDictionary.LOCATION));
+        dictionary.intern(CrimeStringDictionary.LOCATION, new String("STREET"));
+        dictionary.intern(CrimeStringDictionary.LOCATION, new String("SIDEWALK"));
+        assertEquals(3L, (long) dictionary.getLookupCount(CrimeStringDictionary.LOCATION));
+        assertEquals(2, (int) dictionary.getDistinctCount(CrimeStringDictionary.LOCATION));
+        assertTrue(dictionary.getBytesSaved(CrimeStringDictionary.LOCATION) > 0);
+        assertEquals(dictionary.getBytesSaved(CrimeStringDictionary.LOCATION), dictionary.getTotalBytesSaved());
+    }
+
+
+    @Test
+    public void testIntern_crimeRecord() {
+        CrimeRecord crime1 = newCrime("HX100000");
+        CrimeRecord crime2 = newCrime("HX100001");
+        dictionary.intern(crime1);
+        dictionary.intern(crime2);
+        assertSame(crime1.getCrimeLocation().getBlock(), crime2.getCrimeLocation().getBlock());
+        assertSame(crime1.getCrimeLocation().getLocationStr(), crime2.getCrimeLocation().getLocationStr());
+        assertSame(crime1.getFbiCD(), crime2.getFbiCD());
+        assertSame(crime1.getCrimeType().getIucr(), crime2.getCrimeType().getIucr());
+        assertEquals("080XX S HALSTED ST", crime2.getCrimeLocation().getBlock());
+    }
+
+
+    @Test
+    public void testPopulateCrimeRecords_interned() {
+        CrimeCollection cc = new CrimeCollection();
+        List<CrimeRecord> crimes = new ArrayList<CrimeRecord>();
+        for (int i = 0; i < 10; i++) {
+            crimes.add(newCrime("HX10000" + i));
+        }
+        cc.populateCrimeRecords(crimes);
+        assertSame(cc.getCrimes().get(0).getCrimeLocation().getBlock(), cc.getCrimes().get(9).getCrimeLocation().getBlock());
+        assertEquals(10L, (long) cc.getStringDictionary().getLookupCount(CrimeStringDictionary.BLOCK));
+        assertEquals(1, (int) cc.getStringDictionary().getDistinctCount(CrimeStringDictionary.BLOCK));
+    }
+}
@@ -198,9 +198,10 @@ public class FilterCrimeCollectionTest {
     public void filterFBICDCrimeCollection() {
         CrimeCollectionManager.setCurrWorkingCollection(testCC_01);
         FilterCrimeCollection.filter(null, null, new ArrayList<String>(), "", -1
-                , -1, "", "", "", "", "111", null, null);
+                , -1, "", "", "", "", "5", null, null);
         ArrayList<CrimeRecord> tempArray = new ArrayList<CrimeRecord>();
         tempArray.add(testCR_01);
+        tempArray.add(testCR_05);
         assertEquals(tempArray, CrimeCollectionManager.getCurrWorkingCollection().getCrimes());
     }
 
@@ -211,10 +212,9 @@ public class FilterCrimeCollectionTest {
     public void filterIUCRCrimeCollection() {
         CrimeCollectionManager.setCurrWorkingCollection(testCC_01);
         FilterCrimeCollection.filter(null, null, new ArrayList<String>(), "", -1
-                , -1, "", "", "", "5", "", null, null);
+                , -1, "", "", "", "111", "", null, null);
         ArrayList<CrimeRecord> tempArray = new ArrayList<CrimeRecord>();
         tempArray.add(testCR_01);
-        tempArray.add(testCR_05);
         assertEquals(tempArray, CrimeCollectionManager.getCurrWorkingCollection().getCrimes());
     }
 
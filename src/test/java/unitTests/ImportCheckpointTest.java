@@ -0,0 +1,173 @@
+package unitTests;
+
+import crimeSpy.crimeData.*;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ImportCheckpointTest {
+
+    private File testFile1 = new File("TestFile.csv");
+    private File testFileGz = new File("TestFile.csv.gz");
+    private File testDB = new File("TestCheckpoint.db");
+    private static File testCrimeDB_gen = new File("TestCrimeDB_gen.db");
+    private String testCSV = "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv";
+
+    @BeforeClass
+    public static void setupDB() throws Exception {
+        try {
+            SQLiteDBHandler.createNewCrimedb(testCrimeDB_gen.getAbsolutePath());
+        } catch (Exception e) {
+            // Only create if it doesn't already exist
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        testFile1.delete();
+        testFileGz.delete();
+        testDB.delete();
+        testCrimeDB_gen.delete();
+    }
+
+
+    /**
+     * Reads a csv from a checkpoint. If stopAfter records are read, a copy of the checkpoint as it was just after
+     * the last of them is returned in saved, the way a batch writer would have committed it, and the read is stopped.
+     */
+    private List<CrimeRecord> readFrom(String location, final ImportCheckpoint checkpoint, final int stopAfter,
+                                       final ImportCheckpoint[] saved, Integer parallelism) throws Exception {
+        final List<CrimeRecord> results = new ArrayList<CrimeRecord>();
+        CrimeRecordSink sink = new CrimeRecordSink() {
+            @Override
+            public void accept(CrimeRecord crime) throws Exception {
+                results.add(crime);
+                if (results.size() == stopAfter) {
+                    saved[0] = copy(checkpoint);
+                    throw new Exception("Import stopped");
+                }
+            }
+        };
+        try {
+            if (parallelism > 1) {
+                new ParallelCSVReader(parallelism, 16L * 1024).read(location, sink, checkpoint);
+            } else {
+                CSVFileHandler.readCrimeRecords(location, sink, 1, checkpoint);
+            }
+        } catch (Exception e) {
+            assertEquals("Import stopped", e.getMessage());
+        }
+        return results;
+    }
+
+
+    private ImportCheckpoint copy(ImportCheckpoint checkpoint) {
+        return new ImportCheckpoint(checkpoint.getSource(), checkpoint.getSourceSize(), checkpoint.getSourceModified(),
+                checkpoint.getByteOffset(), checkpoint.getRowNumber(), checkpoint.isComplete());
+    }
+
+
+    private void copyFile(String from, OutputStream out) throws Exception {
+        InputStream in = new FileInputStream(from);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        out.close();
+    }
+
+
+    private void assertResumes(File csv, Integer parallelism) throws Exception {
+        List<CrimeRecord> expected = CSVFileHandler.readCrimeRecords(testCSV);
+        ImportCheckpoint[] saved = new ImportCheckpoint[1];
+        List<CrimeRecord> first = readFrom(csv.getAbsolutePath(), new ImportCheckpoint(csv), 1234, saved, parallelism);
+        assertEquals(1234, first.size());
+        assertEquals(1234L, (long) saved[0].getRowNumber());
+        assertTrue(saved[0].canResume(csv));
+
+        List<CrimeRecord> rest = readFrom(csv.getAbsolutePath(), saved[0], -1, saved, parallelism);
+        assertEquals(expected.size() - 1234, rest.size());
+        for (int i = 0; i < rest.size(); i++) {
+            assertEquals(expected.get(i + 1234).toString(), rest.get(i).toString());
+        }
+        assertEquals((long) expected.size(), (long) saved[0].getRowNumber());
+    }
+
+
+    @Test
+    public void testCanResume() throws Exception {
+        copyFile(testCSV, new FileOutputStream(testFile1));
+        assertFalse("Nothing has been imported yet", new ImportCheckpoint(testFile1).canResume(testFile1));
+
+        ImportCheckpoint checkpoint = new ImportCheckpoint(testFile1.getAbsolutePath(), testFile1.length(),
+                testFile1.lastModified(), 500L, 3L, false);
+        assertTrue(checkpoint.canResume(testFile1));
+        assertFalse("A different csv", checkpoint.canResume(new File(testCSV)));
+        checkpoint.setComplete(true);
+        assertFalse("The import has finished", checkpoint.canResume(testFile1));
+
+        checkpoint = new ImportCheckpoint(testFile1.getAbsolutePath(), testFile1.length() - 1,
+                testFile1.lastModified(), 500L, 3L, false);
+        assertFalse("The csv has changed", checkpoint.canResume(testFile1));
+    }
+
+
+    @Test
+    public void testResume_mapped() throws Exception {
+        copyFile(testCSV, new FileOutputStream(testFile1));
+        assertResumes(testFile1, 1);
+    }
+
+
+    @Test
+    public void testResume_parallel() throws Exception {
+        copyFile(testCSV, new FileOutputStream(testFile1));
+        assertResumes(testFile1, 3);
+    }
+
+
+    @Test
+    public void testResume_compressed() throws Exception {
+        copyFile(testCSV, new GZIPOutputStream(new FileOutputStream(testFileGz)));
+        assertResumes(testFileGz, 1);
+    }
+
+
+    @Test
+    public void testCheckpointWrittenWithBatch() throws Exception {
+        copyFile(testCSV, new FileOutputStream(testFile1));
+        SQLiteDBHandler.createNewCrimedb(testDB.getAbsolutePath());
+        assertNull(SQLiteDBHandler.readImportCheckpoint(testDB.getAbsolutePath(), testFile1));
+
+        ImportCheckpoint checkpoint = new ImportCheckpoint(testFile1);
+        ImportCheckpoint[] saved = new ImportCheckpoint[1];
+        CrimeRecordBatchWriter writer = SQLiteDBHandler.openCrimeRecordWriter(testDB.getAbsolutePath(), 100);
+        writer.setCheckpoint(checkpoint);
+        List<CrimeRecord> crimes = readFrom(testFile1.getAbsolutePath(), checkpoint, 250, saved, 1);
+        for (CrimeRecord crime : crimes) {
+            writer.accept(crime);
+        }
+        writer.close();
+
+        ImportCheckpoint read = SQLiteDBHandler.readImportCheckpoint(testDB.getAbsolutePath(), testFile1);
+        assertEquals(250L, (long) read.getRowNumber());
+        assertEquals(saved[0].getByteOffset(), read.getByteOffset());
+        assertEquals(testFile1.length(), (long) read.getSourceSize());
+        assertFalse(read.isComplete());
+        assertTrue(read.canResume(testFile1));
+        assertEquals(250, SQLiteDBHandler.readCrimeRecords(testDB.getAbsolutePath()).size());
+    }
+}
@@ -0,0 +1,131 @@
+package unitTests;
+
+import crimeSpy.crimeData.*;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ImportProgressTest {
+
+    private File testFileGz = new File("TestFile.csv.gz");
+    private File testDB = new File("TestProgress.db");
+    private static File testCrimeDB_gen = new File("TestCrimeDB_gen.db");
+    private File testCSV = new File("src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv");
+
+    @BeforeClass
+    public static void setupDB() throws Exception {
+        try {
+            SQLiteDBHandler.createNewCrimedb(testCrimeDB_gen.getAbsolutePath());
+        } catch (Exception e) {
+            // Only create if it doesn't already exist
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        testFileGz.delete();
+        testDB.delete();
+        testCrimeDB_gen.delete();
+    }
+
+
+    private Integer read(File csv, final List<CrimeRecord> results, ImportProgress progress, Integer parallelism)
+            throws Exception {
+        return CSVFileHandler.readCrimeRecords(csv.getAbsolutePath(), new CrimeRecordSink() {
+            @Override
+            public void accept(CrimeRecord crime) {
+                results.add(crime);
+            }
+        }, parallelism, null, progress);
+    }
+
+
+    @Test
+    public void testProgress_plain() throws Exception {
+        ImportProgress progress = new ImportProgress(testCSV);
+        assertEquals(0.0, progress.getFractionDone(), 0.0);
+        assertEquals(-1L, (long) progress.getEtaMillis());
+
+        Integer count = read(testCSV, new ArrayList<CrimeRecord>(), progress, 1);
+        assertEquals((long) count, (long) progress.getRowsParsed());
+        assertEquals(testCSV.length(), (long) progress.getBytesRead());
+        assertEquals(1.0, progress.getFractionDone(), 0.0);
+        assertEquals(0L, (long) progress.getEtaMillis());
+        assertTrue(progress.getRowsPerSecond() > 0);
+        assertTrue(progress.getReport(), progress.getReport().startsWith(count + " rows read, 0 written"));
+    }
+
+
+    @Test
+    public void testProgress_compressed() throws Exception {
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(testFileGz));
+        InputStream in = new FileInputStream(testCSV);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        out.close();
+
+        ImportProgress progress = new ImportProgress(testFileGz);
+        Integer count = read(testFileGz, new ArrayList<CrimeRecord>(), progress, 1);
+        assertEquals((long) count, (long) progress.getRowsParsed());
+        assertEquals("Compressed bytes should be counted", testFileGz.length(), (long) progress.getBytesRead());
+        assertEquals(1.0, progress.getFractionDone(), 0.0);
+    }
+
+
+    @Test
+    public void testCancel() throws Exception {
+        for (Integer parallelism : new Integer[] {1, 3}) {
+            final ImportProgress progress = new ImportProgress(testCSV);
+            final List<CrimeRecord> results = new ArrayList<CrimeRecord>();
+            try {
+                CSVFileHandler.readCrimeRecords(testCSV.getAbsolutePath(), new CrimeRecordSink() {
+                    @Override
+                    public void accept(CrimeRecord crime) {
+                        results.add(crime);
+                        if (results.size() == 100) {
+                            progress.cancel();
+                        }
+                    }
+                }, parallelism, null, progress);
+                fail("The read should have been cancelled");
+            } catch (CancellationException e) {
+                assertEquals(100, results.size());
+                assertEquals(100L, (long) progress.getRowsParsed());
+                assertTrue(progress.isCancelled());
+            }
+        }
+    }
+
+
+    @Test
+    public void testRowsWritten() throws Exception {
+        SQLiteDBHandler.createNewCrimedb(testDB.getAbsolutePath());
+        ImportProgress progress = new ImportProgress(testCSV);
+        CrimeRecordBatchWriter writer = SQLiteDBHandler.openCrimeRecordWriter(testDB.getAbsolutePath(), 100);
+        writer.setProgress(progress);
+        List<CrimeRecord> crimes = new ArrayList<CrimeRecord>();
+        read(testCSV, crimes, null, 1);
+        for (int i = 0; i < 250; i++) {
+            writer.accept(crimes.get(i));
+        }
+        assertEquals("Only full batches have been committed", 200L, (long) progress.getRowsWritten());
+        writer.close();
+        assertEquals(250L, (long) progress.getRowsWritten());
+    }
+}
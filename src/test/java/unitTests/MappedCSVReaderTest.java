@@ -0,0 +1,148 @@
+package unitTests;
+
+import crimeSpy.crimeData.*;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedCSVReaderTest {
+
+    private File testFile1 = new File("TestFile.csv");
+    private static File testCrimeDB_gen = new File("TestCrimeDB_gen.db");
+    private String testCSV = "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv";
+
+    private String header = "CASE#,DATE  OF OCCURRENCE,BLOCK, IUCR, PRIMARY DESCRIPTION, SECONDARY DESCRIPTION, " +
+            "LOCATION DESCRIPTION,ARREST,DOMESTIC,BEAT,WARD,FBI CD,X COORDINATE,Y COORDINATE,LATITUDE," +
+            "LONGITUDE,LOCATION";
+
+    @BeforeClass
+    public static void setupDB() throws Exception {
+        try {
+            SQLiteDBHandler.createNewCrimedb(testCrimeDB_gen.getAbsolutePath());
+        } catch (Exception e) {
+            // Only create if it doesn't already exist
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        testFile1.delete();
+        testCrimeDB_gen.delete();
+    }
+
+
+    private List<CrimeRecord> readMapped(String location, Long windowSize) throws Exception {
+        final List<CrimeRecord> results = new ArrayList<CrimeRecord>();
+        new MappedCSVReader(windowSize).read(location, new CrimeRecordSink() {
+            @Override
+            public void accept(CrimeRecord crime) {
+                results.add(crime);
+            }
+        });
+        return results;
+    }
+
+
+    private List<CrimeRecord> readStreamed(String location) throws Exception {
+        final List<CrimeRecord> results = new ArrayList<CrimeRecord>();
+        BufferedReader reader = new BufferedReader(new FileReader(location));
+        try {
+            CSVFileHandler.readCrimeRecords(reader, new CrimeRecordSink() {
+                @Override
+                public void accept(CrimeRecord crime) {
+                    results.add(crime);
+                }
+            });
+        } finally {
+            reader.close();
+        }
+        return results;
+    }
+
+
+    private void assertSameRecords(String message, List<CrimeRecord> expected, List<CrimeRecord> results) {
+        assertEquals(message, expected.size(), results.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(message, expected.get(i).toString(), results.get(i).toString());
+        }
+    }
+
+
+    @Test
+    public void testRead_sameAsStreamed() throws Exception {
+        CrimeCollection cc = new CrimeCollection("test", 0, testCrimeDB_gen.getAbsolutePath());
+        CrimeCollectionManager.setCurrWorkingCollection(cc);
+        List<CrimeRecord> expected = readStreamed(testCSV);
+        assertEquals(5000, expected.size());
+        assertSameRecords("Default window", expected, readMapped(testCSV, MappedCSVReader.DEFAULT_WINDOW_SIZE));
+        // Small windows force most records to be re-mapped across a window edge
+        assertSameRecords("4KB window", expected, readMapped(testCSV, 4096L));
+        assertSameRecords("1000 byte window", expected, readMapped(testCSV, 1000L));
+    }
+
+
+    @Test
+    public void testRead_quotedNewlinesAndCRLF() throws Exception {
+        CrimeCollection cc = new CrimeCollection("test", 0, testCrimeDB_gen.getAbsolutePath());
+        CrimeCollectionManager.setCurrWorkingCollection(cc);
+        FileWriter writer = new FileWriter(testFile1);
+        writer.append(header + "\r\n");
+        for (int i = 0; i < 100; i++) {
+            // Every third record has a newline inside its quoted location description
+            String location = (i % 3 == 0) ? "\"SCHOOL,\nPUBLIC, BUILDING\"" : "STREET";
+            writer.append("HX" + (100000 + i) + ",06/27/2014 07:31:00 PM,080XX S HALSTED ST,0860,THEFT,RETAIL THEFT," +
+                    location + ",Y,N,621,21,06,1172409,1851438,41.8808655731203,-87.70587610484924," +
+                    "\"(41.8808655731203, -87.70587610484924)\"\r\n");
+        }
+        writer.close();
+
+        List<CrimeRecord> expected = readStreamed(testFile1.getAbsolutePath());
+        assertEquals("Quoted newlines should not start a new record", 100, expected.size());
+        assertSameRecords("Default window", expected, readMapped(testFile1.getAbsolutePath(), null));
+        // Windows smaller than a single record have to grow to fit it
+        for (long windowSize = 16; windowSize < 600; windowSize += 61) {
+            assertSameRecords("Window size " + windowSize, expected,
+                    readMapped(testFile1.getAbsolutePath(), windowSize));
+        }
+    }
+
+
+    @Test
+    public void testRead_noTrailingNewline() throws Exception {
+        CrimeCollection cc = new CrimeCollection("test", 0, testCrimeDB_gen.getAbsolutePath());
+        CrimeCollectionManager.setCurrWorkingCollection(cc);
+        FileWriter writer = new FileWriter(testFile1);
+        writer.append(header + "\n");
+        writer.append("HX100000,06/27/2014 07:31:00 PM,080XX S HALSTED ST,0860,THEFT,RETAIL THEFT,STREET,Y,N,621,21," +
+                "06,1172409,1851438,41.8808655731203,-87.70587610484924,\"(41.8808655731203, -87.70587610484924)\"");
+        writer.close();
+        assertSameRecords("Last record without a newline", readStreamed(testFile1.getAbsolutePath()),
+                readMapped(testFile1.getAbsolutePath(), 64L));
+    }
+
+
+    @Test(expected = DataFormatException.class)
+    public void testRead_badHeader() throws Exception {
+        FileWriter writer = new FileWriter(testFile1);
+        writer.append("CASE#,DATE\n");
+        writer.close();
+        readMapped(testFile1.getAbsolutePath(), null);
+    }
+
+
+    @Test(expected = FileNotFoundException.class)
+    public void testRead_missingFile() throws Exception {
+        readMapped("NoSuchFile.csv", null);
+    }
+}
@@ -0,0 +1,264 @@
+package unitTests;
+
+import crimeSpy.crimeData.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class SQLiteConnectionManagerTest {
+
+    private File testDB = new File("TestConnections.db");
+    private File testDB2 = new File("TestConnections2.db");
+
+    @Before
+    public void setUp() throws Exception {
+        SQLiteConnectionManager.closeAll();
+        SQLiteDBHandler.createNewCrimedb(testDB.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SQLiteConnectionManager.closeAll();
+        testDB.delete();
+        testDB2.delete();
+        new File(testDB.getPath() + "-wal").delete();
+        new File(testDB.getPath() + "-shm").delete();
+    }
+
+
+    private Integer countRecords(String location) throws Exception {
+        Connection c = SQLiteConnectionManager.acquireReader(location);
+        try {
+            Statement stmt = c.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM CRIME_RECORD");
+            Integer count = rs.getInt(1);
+            rs.close();
+            stmt.close();
+            return count;
+        } finally {
+            SQLiteConnectionManager.releaseReader(c);
+        }
+    }
+
+
+    @Test
+    public void testAcquireReader_reused() throws Exception {
+        Connection first = SQLiteConnectionManager.acquireReader(testDB.getAbsolutePath());
+        SQLiteConnectionManager.releaseReader(first);
+        Connection second = SQLiteConnectionManager.acquireReader(testDB.getAbsolutePath());
+        SQLiteConnectionManager.releaseReader(second);
+        assertSame(first, second);
+        assertFalse(second.isClosed());
+    }
+
+
+    @Test
+    public void testAcquireReader_neverWaits() throws Exception {
+        Connection[] readers = new Connection[SQLiteConnectionManager.READER_POOL_SIZE + 2];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = SQLiteConnectionManager.acquireReader(testDB.getAbsolutePath());
+        }
+        for (Connection reader : readers) {
+            SQLiteConnectionManager.releaseReader(reader);
+        }
+        int closed = 0;
+        for (Connection reader : readers) {
+            if (reader.isClosed()) {
+                closed++;
+            }
+        }
+        assertEquals("Only READER_POOL_SIZE idle readers should be kept", 2, closed);
+    }
+
+
+    @Test
+    public void testAcquireWriter_oneThreadAtATime() throws Exception {
+        final String location = testDB.getAbsolutePath();
+        Connection writer = SQLiteConnectionManager.acquireWriter(location);
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final AtomicBoolean sameConnection = new AtomicBoolean(false);
+        final Connection held = writer;
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Connection c = SQLiteConnectionManager.acquireWriter(location);
+                    sameConnection.set(c == held);
+                    SQLiteConnectionManager.releaseWriter(c);
+                    acquired.countDown();
+                } catch (Exception e) {
+                    // the latch is never counted down
+                }
+            }
+        });
+        other.start();
+        try {
+            assertFalse("The writer is held", acquired.await(300, TimeUnit.MILLISECONDS));
+        } finally {
+            SQLiteConnectionManager.releaseWriter(writer);
+        }
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        assertTrue(sameConnection.get());
+    }
+
+
+    @Test
+    public void testReleaseWriter_rollsBackUncommitted() throws Exception {
+        String location = testDB.getAbsolutePath();
+        Connection writer = SQLiteConnectionManager.acquireWriter(location);
+        Statement stmt = writer.createStatement();
+        stmt.executeUpdate("INSERT INTO CRIME_RECORD (CRIME_RECORD_ID, CRIME_RECORD_BLOCK, CRIME_TYPE_ID) " +
+                "VALUES ('HX100000', 'BLOCK', '460')");
+        stmt.close();
+
+        // Acquired again by the same thread, the inner release must not end the transaction
+        Connection inner = SQLiteConnectionManager.acquireWriter(location);
+        assertSame(writer, inner);
+        SQLiteConnectionManager.releaseWriter(inner);
+        assertEquals(0, (int) countRecords(location));
+
+        SQLiteConnectionManager.releaseWriter(writer);
+        assertEquals(0, (int) countRecords(location));
+        assertFalse(writer.isClosed());
+    }
+
+
+    @Test
+    public void testAcquire_deletedDatabaseReopened() throws Exception {
+        String location = testDB.getAbsolutePath();
+        Connection before = SQLiteConnectionManager.acquireReader(location);
+        SQLiteConnectionManager.releaseReader(before);
+        assertTrue(testDB.delete());
+
+        SQLiteDBHandler.createNewCrimedb(location);
+        assertTrue(before.isClosed());
+        assertEquals(0, (int) countRecords(location));
+    }
+
+
+    @Test
+    public void testSetCurrWorkingCollection_switchesConnections() throws Exception {
+        SQLiteDBHandler.createNewCrimedb(testDB2.getAbsolutePath());
+        CrimeCollectionManager.setCurrWorkingCollection(new CrimeCollection("first", 0, testDB.getAbsolutePath()));
+        SQLiteConnectionManager.closeAll();
+
+        CrimeCollectionManager.setCurrWorkingCollection(new CrimeCollection("first", 0, testDB.getAbsolutePath()));
+        assertEquals(1, (int) SQLiteConnectionManager.getOpenDatabaseCount());
+        Connection first = SQLiteConnectionManager.acquireReader(testDB.getAbsolutePath());
+        SQLiteConnectionManager.releaseReader(first);
+
+        CrimeCollectionManager.setCurrWorkingCollection(new CrimeCollection("second", 1, testDB2.getAbsolutePath()));
+        assertTrue("The previous collection's connections should be closed", first.isClosed());
+        assertEquals(1, (int) SQLiteConnectionManager.getOpenDatabaseCount());
+    }
+
+
+    private String pragma(String location, String name) throws Exception {
+        Connection c = SQLiteConnectionManager.acquireWriter(location);
+        try {
+            Statement stmt = c.createStatement();
+            ResultSet rs = stmt.executeQuery("PRAGMA " + name);
+            String value = rs.getString(1);
+            rs.close();
+            stmt.close();
+            return value;
+        } finally {
+            SQLiteConnectionManager.releaseWriter(c);
+        }
+    }
+
+
+    @Test
+    public void testProfile_interactiveByDefault() throws Exception {
+        String location = testDB.getAbsolutePath();
+        assertEquals(SQLiteConnectionManager.PROFILE_INTERACTIVE, SQLiteConnectionManager.getProfile(location));
+        assertEquals("wal", pragma(location, "journal_mode"));
+        assertEquals("1", pragma(location, "synchronous"));
+    }
+
+
+    @Test
+    public void testBeginBulkLoad_nested() throws Exception {
+        String location = testDB.getAbsolutePath();
+        SQLiteConnectionManager.beginBulkLoad(location);
+        SQLiteConnectionManager.beginBulkLoad(location);
+        assertEquals(SQLiteConnectionManager.PROFILE_BULK_LOAD, SQLiteConnectionManager.getProfile(location));
+        assertEquals("wal", pragma(location, "journal_mode"));
+        assertEquals("0", pragma(location, "synchronous"));
+
+        SQLiteConnectionManager.endBulkLoad(location);
+        assertEquals("The outer bulk load is still running", "0", pragma(location, "synchronous"));
+
+        SQLiteConnectionManager.endBulkLoad(location);
+        assertEquals(SQLiteConnectionManager.PROFILE_INTERACTIVE, SQLiteConnectionManager.getProfile(location));
+        assertEquals("wal", pragma(location, "journal_mode"));
+        assertEquals("1", pragma(location, "synchronous"));
+        // Unmatched ends are ignored
+        SQLiteConnectionManager.endBulkLoad(location);
+        assertEquals(SQLiteConnectionManager.PROFILE_INTERACTIVE, SQLiteConnectionManager.getProfile(location));
+    }
+
+
+    @Test
+    public void testOpenCrimeRecordWriter_bulkLoadUntilClosed() throws Exception {
+        String location = testDB.getAbsolutePath();
+        CrimeRecordBatchWriter writer = SQLiteDBHandler.openCrimeRecordWriter(location, 10, true);
+        assertEquals(SQLiteConnectionManager.PROFILE_BULK_LOAD, SQLiteConnectionManager.getProfile(location));
+        for (CrimeRecord crime : CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv")) {
+            writer.accept(crime);
+        }
+        writer.close();
+        writer.close();
+        assertEquals(SQLiteConnectionManager.PROFILE_INTERACTIVE, SQLiteConnectionManager.getProfile(location));
+        assertEquals(writer.getWrittenCount(), countRecords(location));
+    }
+
+
+    @Test
+    public void testAcquireSnapshot_seesLastCommit() throws Exception {
+        String location = testDB.getAbsolutePath();
+        Connection snapshot = SQLiteConnectionManager.acquireSnapshot(location);
+        CrimeRecordBatchWriter writer = SQLiteDBHandler.openCrimeRecordWriter(location, 1000, true);
+        for (CrimeRecord crime : CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv")) {
+            writer.accept(crime);
+        }
+        assertTrue("Batches were committed during the bulk load", countRecords(location) > 0);
+        writer.close();
+
+        Statement stmt = snapshot.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM CRIME_RECORD");
+        assertEquals("The snapshot still sees the empty database", 0, rs.getInt(1));
+        rs.close();
+        stmt.close();
+        SQLiteConnectionManager.releaseSnapshot(snapshot);
+
+        Connection reader = SQLiteConnectionManager.acquireReader(location);
+        SQLiteConnectionManager.releaseReader(reader);
+        assertSame("The snapshot went back to the pool", snapshot, reader);
+        assertTrue(reader.getAutoCommit());
+        assertEquals(writer.getWrittenCount(), countRecords(location));
+    }
+
+
+    @Test
+    public void testAcquireSnapshot_closedWithDatabase() throws Exception {
+        String location = testDB.getAbsolutePath();
+        Connection snapshot = SQLiteConnectionManager.acquireSnapshot(location);
+        SQLiteConnectionManager.close(location);
+        assertTrue(snapshot.isClosed());
+        SQLiteConnectionManager.releaseSnapshot(snapshot);
+        assertEquals(0, (int) countRecords(location));
+    }
+}
@@ -4,16 +4,29 @@ import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.junit.*;
 import org.junit.rules.TestName;
+import crimeSpy.crimeData.CSVFileHandler;
 import crimeSpy.crimeData.CrimeCollection;
 import crimeSpy.crimeData.CrimeCollectionManager;
+import crimeSpy.crimeData.CrimeDateParser;
 import crimeSpy.crimeData.CrimeRecord;
+import crimeSpy.crimeData.FilterCrimeCollection;
+import crimeSpy.crimeData.SQLiteConnectionManager;
 import crimeSpy.crimeData.SQLiteDBHandler;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -275,4 +288,588 @@ public class SQLiteDBHandlerTest {
         assertEquals("Crime collection manager should have two crime collections", 2, CrimeCollectionManager.getLength());
     }
 
+
+    @Test
+    public void testWriteCrimeRecords_batchedWithDuplicates() throws Exception {
+        DateTime date01 = DateTimeFormat.forPattern("MM/dd/yyyy HH:mm:ss a").parseDateTime("6/27/2014 7:31:00 PM");
+        CrimeCollection cc = new CrimeCollection();
+        for (int i = 0; i < 25; i++) {
+            cc.addCrimeRecord(new CrimeRecord("HX1000" + (10 + i), date01, i % 2 == 0, false, "460", "08B",
+                    "080XX S HALSTED ST", 621, 21, 1172409, 1851438, 41.8808655731203, -87.7058761048492, "STREET"));
+        }
+        SQLiteDBHandler.writeCrimeRecords(cc, testCrimeDB1.getAbsolutePath(), 7);
+        // Writing the same records again skips every one of them
+        SQLiteDBHandler.writeCrimeRecords(cc, testCrimeDB1.getAbsolutePath(), 7);
+
+        CrimeCollection read = new CrimeCollection();
+        read.populateCrimeRecords(SQLiteDBHandler.readCrimeRecords(testCrimeDB1.getAbsolutePath()));
+        assertEquals(25, read.getCrimes().size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals(cc.getCrimes().get(i).toString(), read.getCrimes().get(i).toString());
+        }
+    }
+
+
+    @Test
+    public void testWriteCrimeRecords_quotesInText() throws Exception {
+        DateTime date01 = DateTimeFormat.forPattern("MM/dd/yyyy HH:mm:ss a").parseDateTime("6/27/2014 7:31:00 PM");
+        CrimeRecord crime = new CrimeRecord("HX111113", date01, true, false, "111", "5", "O'HARE ST', 'x",
+                621, 21, 1172409, 1851438, 41.8808655731203, -87.7058761048492, "BAR'); DROP TABLE CRIME_RECORD; --");
+        CrimeCollection cc = new CrimeCollection();
+        cc.addCrimeRecord(crime);
+        SQLiteDBHandler.writeCrimeRecords(cc, testCrimeDB1.getAbsolutePath());
+
+        CrimeCollection read = new CrimeCollection();
+        read.populateCrimeRecords(SQLiteDBHandler.readCrimeRecords(testCrimeDB1.getAbsolutePath()));
+        assertEquals(1, read.getCrimes().size());
+        assertEquals("O'HARE ST', 'x", read.getCrimes().get(0).getCrimeLocation().getBlock());
+        assertEquals(crime.toString(), read.getCrimes().get(0).toString());
+    }
+
+
+    private Integer countIndexes(String location) throws Exception {
+        Connection c = DriverManager.getConnection("jdbc:sqlite:" + location);
+        Statement stmt = c.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' " +
+                "AND tbl_name = 'CRIME_RECORD' AND sql IS NOT NULL;");
+        Integer count = rs.getInt(1);
+        rs.close();
+        stmt.close();
+        c.close();
+        return count;
+    }
+
+
+    /**
+     * @return the number of rows of the rollup tables that are not the same as counting CRIME_RECORD
+     */
+    private Integer countRollupDifferences(String location) throws Exception {
+        String[][] rollups = {
+                {"CRIME_ROLLUP_DAY", "date(CRIME_RECORD_DATE / 1000, 'unixepoch'), CRIME_TYPE_ID, " +
+                        "CRIME_RECORD_ARREST, CRIME_RECORD_DOMESTIC"},
+                {"CRIME_ROLLUP_BEAT", "CRIME_RECORD_BEAT, CRIME_RECORD_WARD, CRIME_TYPE_ID, CRIME_RECORD_ARREST, " +
+                        "CRIME_RECORD_DOMESTIC"},
+                {"CRIME_ROLLUP_LOCATION", "CRIME_RECORD_LOCATION_DESCRIPTION, CRIME_TYPE_ID, CRIME_RECORD_ARREST, " +
+                        "CRIME_RECORD_DOMESTIC"}
+        };
+        Connection c = DriverManager.getConnection("jdbc:sqlite:" + location);
+        Statement stmt = c.createStatement();
+        Integer differences = 0;
+        for (String[] rollup : rollups) {
+            String counted = "SELECT " + rollup[1] + ", COUNT(*) FROM CRIME_RECORD GROUP BY " + rollup[1];
+            ResultSet rs = stmt.executeQuery("SELECT (SELECT COUNT(*) FROM (" + counted + " EXCEPT SELECT * FROM " +
+                    rollup[0] + ")) + (SELECT COUNT(*) FROM (SELECT * FROM " + rollup[0] + " EXCEPT " + counted + "));");
+            differences += rs.getInt(1);
+            rs.close();
+        }
+        stmt.close();
+        c.close();
+        return differences;
+    }
+
+
+    private Set<String> caseIDs(List<CrimeRecord> crimes) {
+        Set<String> ids = new HashSet<String>();
+        for (CrimeRecord crime : crimes) {
+            ids.add(crime.getCaseID());
+        }
+        return ids;
+    }
+
+
+    @Test
+    public void testQueries_sameAsFilteringAllRecords() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        List<CrimeRecord> csv = CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv");
+        CrimeCollection cc = new CrimeCollection();
+        for (int copy = 0; copy < 2; copy++) {
+            for (CrimeRecord crime : csv) {
+                CrimeRecord copied = new CrimeRecord(crime);
+                copied.setCaseID(crime.getCaseID() + "_" + copy);
+                cc.addCrimeRecord(copied);
+            }
+        }
+        assertTrue(cc.getCrimes().size() >= SQLiteDBHandler.BULK_LOAD_MIN_RECORDS);
+        SQLiteDBHandler.writeCrimeRecords(cc, location);
+        assertEquals("The indexes dropped for the bulk load should be built again", 5, (int) countIndexes(location));
+
+        CrimeRecord sample = csv.get(csv.size() / 2);
+        DateTime from = sample.getDate().minusDays(3);
+        DateTime to = sample.getDate();
+        List<CrimeRecord> between = new ArrayList<CrimeRecord>();
+        List<CrimeRecord> type = new ArrayList<CrimeRecord>();
+        List<CrimeRecord> beat = new ArrayList<CrimeRecord>();
+        List<CrimeRecord> ward = new ArrayList<CrimeRecord>();
+        List<CrimeRecord> arrest = new ArrayList<CrimeRecord>();
+        for (CrimeRecord crime : cc.getCrimes()) {
+            boolean inRange = !crime.getDate().isBefore(from) && !crime.getDate().isAfter(to);
+            if (inRange) {
+                between.add(crime);
+            }
+            if (inRange && crime.getCrimeType().getIucr().equals(sample.getCrimeType().getIucr())) {
+                type.add(crime);
+            }
+            if (crime.getCrimeLocation().getBeat().equals(sample.getCrimeLocation().getBeat())) {
+                beat.add(crime);
+            }
+            if (crime.getCrimeLocation().getWard().equals(sample.getCrimeLocation().getWard())) {
+                ward.add(crime);
+            }
+            if (crime.getArrest() && !crime.getDomestic()) {
+                arrest.add(crime);
+            }
+        }
+        assertFalse(type.isEmpty());
+
+        List<CrimeRecord> read = SQLiteDBHandler.readCrimeRecordsBetween(location, from, to);
+        assertEquals(caseIDs(between), caseIDs(read));
+        for (int i = 1; i < read.size(); i++) {
+            assertFalse("Should be in order of date", read.get(i).getDate().isBefore(read.get(i - 1).getDate()));
+        }
+        assertEquals(caseIDs(type), caseIDs(SQLiteDBHandler.readCrimeRecordsByType(location,
+                "0" + sample.getCrimeType().getIucr(), from, to)));
+        assertEquals(caseIDs(beat), caseIDs(SQLiteDBHandler.readCrimeRecordsByBeat(location,
+                sample.getCrimeLocation().getBeat())));
+        assertEquals(caseIDs(ward), caseIDs(SQLiteDBHandler.readCrimeRecordsByWard(location,
+                sample.getCrimeLocation().getWard())));
+        assertEquals(caseIDs(arrest), caseIDs(SQLiteDBHandler.readCrimeRecordsByArrest(location, true, false)));
+    }
+
+
+    @Test
+    public void testUpgradeCrimedb_addsIndexes() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        assertEquals(5, (int) countIndexes(location));
+        // A database made before the indexes were added
+        SQLiteConnectionManager.close(location);
+        Connection c = DriverManager.getConnection("jdbc:sqlite:" + location);
+        Statement stmt = c.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND sql IS NOT NULL;");
+        List<String> indexes = new ArrayList<String>();
+        while (rs.next()) {
+            indexes.add(rs.getString(1));
+        }
+        rs.close();
+        for (String index : indexes) {
+            stmt.executeUpdate("DROP INDEX " + index);
+        }
+        // The index of the date alone, replaced by one of (date, case id)
+        stmt.executeUpdate("CREATE INDEX CRIME_RECORD_DATE_IDX ON CRIME_RECORD (CRIME_RECORD_DATE)");
+        stmt.close();
+        c.close();
+        assertEquals(1, (int) countIndexes(location));
+
+        SQLiteDBHandler.upgradeCrimedb(location);
+        assertEquals(5, (int) countIndexes(location));
+        c = DriverManager.getConnection("jdbc:sqlite:" + location);
+        stmt = c.createStatement();
+        rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE name = 'CRIME_RECORD_DATE_IDX';");
+        assertEquals(0, rs.getInt(1));
+        rs.close();
+        stmt.close();
+        c.close();
+        // Upgrading an up to date database changes nothing
+        SQLiteDBHandler.upgradeCrimedb(location);
+        assertEquals(5, (int) countIndexes(location));
+    }
+
+
+    @Test
+    public void testUpgradeCrimedb_fromVersion1() throws Exception {
+        File legacy = new File("TestLegacyCrimeDB.db");
+        Files.copy(new File("samples/5k_crimes.db").toPath(), legacy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try {
+            String location = legacy.getAbsolutePath();
+            // What the version 1 table holds
+            Map<String, Long> dates = new HashMap<String, Long>();
+            Map<String, Double> latitudes = new HashMap<String, Double>();
+            Connection c = DriverManager.getConnection("jdbc:sqlite:" + location);
+            Statement stmt = c.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT * FROM CRIME_RECORD;");
+            while (rs.next()) {
+                dates.put(rs.getString("CRIME_RECORD_ID"),
+                        DateTime.parse(rs.getString("CRIME_RECORD_DATE")).getMillis());
+                latitudes.put(rs.getString("CRIME_RECORD_ID"), rs.getDouble("CRIME_RECORD_LATITUDE"));
+            }
+            rs.close();
+            // A date that can't be read is given the placeholder date
+            rs = stmt.executeQuery("SELECT CRIME_RECORD_ID FROM CRIME_RECORD LIMIT 1;");
+            String malformed = rs.getString(1);
+            rs.close();
+            stmt.executeUpdate("UPDATE CRIME_RECORD SET CRIME_RECORD_DATE = 'not a date' WHERE CRIME_RECORD_ID = '" +
+                    malformed + "';");
+            dates.put(malformed, CrimeDateParser.placeholderDate().getMillis());
+            stmt.close();
+            c.close();
+            assertEquals(1, (int) SQLiteDBHandler.getCrimedbVersion(location));
+
+            SQLiteDBHandler.upgradeCrimedb(location);
+            assertEquals(SQLiteDBHandler.CRIME_DB_VERSION, SQLiteDBHandler.getCrimedbVersion(location));
+            SQLiteConnectionManager.close(location);
+            c = DriverManager.getConnection("jdbc:sqlite:" + location);
+            stmt = c.createStatement();
+            rs = stmt.executeQuery("SELECT typeof(CRIME_RECORD_DATE), typeof(CRIME_RECORD_XCOORDINATE), " +
+                    "typeof(CRIME_RECORD_LATITUDE), typeof(PREV_CRIME_RECORD), COUNT(*) FROM CRIME_RECORD " +
+                    "GROUP BY 1, 2, 3, 4;");
+            assertTrue(rs.next());
+            assertEquals("integer", rs.getString(1));
+            assertEquals("real", rs.getString(2));
+            assertEquals("real", rs.getString(3));
+            assertEquals("null", rs.getString(4));
+            assertEquals(dates.size(), rs.getInt(5));
+            assertFalse("Every record should have the same types", rs.next());
+            rs.close();
+            stmt.close();
+            c.close();
+            assertEquals(5, (int) countIndexes(location));
+
+            List<CrimeRecord> read = SQLiteDBHandler.readCrimeRecords(location);
+            assertEquals(dates.size(), read.size());
+            for (CrimeRecord crime : read) {
+                assertEquals((long) dates.get(crime.getCaseID()), crime.getDate().getMillis());
+                assertEquals(latitudes.get(crime.getCaseID()), crime.getCrimeLocation().getLatitude(), 0.0);
+            }
+        } finally {
+            SQLiteConnectionManager.close(legacy.getAbsolutePath());
+            legacy.delete();
+        }
+    }
+
+
+    @Test
+    public void testCreateNewCrimedb_currentVersion() throws Exception {
+        assertEquals(SQLiteDBHandler.CRIME_DB_VERSION,
+                SQLiteDBHandler.getCrimedbVersion(testCrimeDB1.getAbsolutePath()));
+    }
+
+
+    @Test
+    public void testCrimeSearchIndex_keptInSync() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        List<CrimeRecord> csv = CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv");
+        CrimeCollection cc = new CrimeCollection();
+        cc.populateCrimeRecords(csv);
+        SQLiteDBHandler.writeCrimeRecords(cc, location);
+        assertFalse(SQLiteDBHandler.hasCrimeSearchIndex(location));
+        SQLiteDBHandler.createCrimeSearchIndex(location);
+        assertTrue(SQLiteDBHandler.hasCrimeSearchIndex(location));
+
+        CrimeRecord sample = csv.get(0);
+        assertTrue(SQLiteDBHandler.searchCrimeRecordIDs(location, sample.getCaseID()).contains(sample.getCaseID()));
+        assertTrue(SQLiteDBHandler.searchCrimeRecordIDs(location, "zzyzx").isEmpty());
+
+        // Written, edited and deleted through the working collection
+        CrimeRecord added = new CrimeRecord(sample);
+        added.setCaseID("HZ999999");
+        added.getCrimeLocation().setLocationStr("ZZYZX GARAGE");
+        SQLiteDBHandler.writeCrimeRecord(added);
+        assertEquals(Collections.singletonList("HZ999999"), SQLiteDBHandler.searchCrimeRecordIDs(location, "zzyzx"));
+
+        added.getCrimeLocation().setLocationStr("QUUX YARD");
+        SQLiteDBHandler.editCrimeRecord(added);
+        assertTrue(SQLiteDBHandler.searchCrimeRecordIDs(location, "zzyzx").isEmpty());
+        assertEquals(Collections.singletonList("HZ999999"), SQLiteDBHandler.searchCrimeRecordIDs(location, "quux"));
+
+        SQLiteDBHandler.deleteCrimeRecord("HZ999999");
+        assertTrue(SQLiteDBHandler.searchCrimeRecordIDs(location, "quux").isEmpty());
+
+        // Without the index its triggers are gone too, so crime records can still be written
+        SQLiteDBHandler.dropCrimeSearchIndex(location);
+        assertFalse(SQLiteDBHandler.hasCrimeSearchIndex(location));
+        SQLiteDBHandler.writeCrimeRecord(added);
+        assertEquals(csv.size() + 1, (int) SQLiteDBHandler.countCrimeRecords(location));
+    }
+
+
+    @Test
+    public void testSearchCrimeRecords_wordPrefixes() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        List<CrimeRecord> csv = CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv");
+        CrimeCollection cc = new CrimeCollection();
+        cc.populateCrimeRecords(csv);
+        SQLiteDBHandler.writeCrimeRecords(cc, location);
+        SQLiteDBHandler.createCrimeSearchIndex(location);
+
+        Set<String> theft = new HashSet<String>();
+        Set<String> theftOrStreet = new HashSet<String>();
+        for (CrimeRecord crime : csv) {
+            boolean isTheft = crime.getCrimeType().getPrimaryDescription().equalsIgnoreCase("THEFT");
+            if (isTheft) {
+                theft.add(crime.getCaseID());
+            }
+            if (isTheft || crime.getCrimeLocation().getLocationStr().equalsIgnoreCase("STREET")) {
+                theftOrStreet.add(crime.getCaseID());
+            }
+        }
+        assertFalse(theft.isEmpty());
+
+        List<CrimeRecord> read = SQLiteDBHandler.searchCrimeRecords(location, "thef");
+        assertTrue(caseIDs(read).containsAll(theft));
+        for (int i = 1; i < read.size(); i++) {
+            assertFalse("Should be in order of date", read.get(i).getDate().isBefore(read.get(i - 1).getDate()));
+        }
+        assertTrue(new HashSet<String>(SQLiteDBHandler.searchCrimeRecordIDs(location, "THEFT, street"))
+                .containsAll(theftOrStreet));
+        assertTrue("Words are matched from their start",
+                SQLiteDBHandler.searchCrimeRecords(location, "heft").isEmpty());
+        assertTrue(SQLiteDBHandler.searchCrimeRecords(location, " , ").isEmpty());
+    }
+
+
+    @Test
+    public void testMergeCrimeRecords_skipsExisting() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        List<CrimeRecord> csv = CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv");
+        CrimeCollection cc = new CrimeCollection();
+        cc.populateCrimeRecords(csv.subList(0, 3000));
+        SQLiteDBHandler.writeCrimeRecords(cc, location);
+
+        List<String> existing = SQLiteDBHandler.mergeCrimeRecords(location, csv.subList(2000, csv.size()));
+        assertEquals(caseIDs(csv.subList(2000, 3000)), new HashSet<String>(existing));
+        assertEquals(caseIDs(csv), caseIDs(SQLiteDBHandler.readCrimeRecords(location)));
+    }
+
+
+    @Test
+    public void testMergeCollections_renamesCollisions() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        List<CrimeRecord> csv = CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv");
+        CrimeCollection working = new CrimeCollection("merge", 0, location);
+        working.populateCrimeRecords(csv.subList(0, 100));
+        SQLiteDBHandler.writeCrimeRecords(working, location);
+
+        CrimeCollection incoming = new CrimeCollection();
+        for (CrimeRecord crime : csv.subList(50, 150)) {
+            incoming.addCrimeRecord(new CrimeRecord(crime));
+        }
+        CrimeRecord once = new CrimeRecord(csv.get(0));
+        CrimeRecord twice = new CrimeRecord(csv.get(0));
+        incoming.getCrimes().add(once);
+        incoming.getCrimes().add(twice);
+        CrimeCollectionManager.mergeCollections(working, incoming);
+
+        assertEquals(202, working.getCrimes().size());
+        assertEquals("The first free suffix is used", csv.get(50).getCaseID() + "1",
+                working.getCrimes().get(100).getCaseID());
+        assertEquals(csv.get(0).getCaseID() + "1", once.getCaseID());
+        assertEquals("Suffixes already merged are not reused", csv.get(0).getCaseID() + "2", twice.getCaseID());
+        List<CrimeRecord> read = SQLiteDBHandler.readCrimeRecords(location);
+        assertEquals(caseIDs(working.getCrimes()), caseIDs(read));
+    }
+
+
+    @Test
+    public void testMergeCollections_pagedTargetNotRead() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        List<CrimeRecord> csv = CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv");
+        CrimeCollection written = new CrimeCollection();
+        written.populateCrimeRecords(csv.subList(0, 100));
+        SQLiteDBHandler.writeCrimeRecords(written, location);
+        CrimeCollection working = new CrimeCollection("merge", 0, location);
+        CrimeCollectionManager.setCurrWorkingCollection(working);
+        assertNotNull(working.getPages());
+
+        CrimeCollection incoming = new CrimeCollection();
+        for (CrimeRecord crime : csv.subList(50, 150)) {
+            incoming.addCrimeRecord(new CrimeRecord(crime));
+        }
+        CrimeCollectionManager.mergeCollections(working, incoming);
+
+        assertNotNull("The collection should not have been read", working.getPages());
+        assertEquals(200, working.getObservableCrList().size());
+        Set<String> read = caseIDs(SQLiteDBHandler.readCrimeRecords(location));
+        assertEquals(200, read.size());
+        assertTrue(read.contains(csv.get(50).getCaseID() + "1"));
+        assertTrue(read.contains(csv.get(149).getCaseID()));
+    }
+
+
+    @Test
+    public void testCrimeRollups_keptInSync() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        List<CrimeRecord> csv = CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv");
+        CrimeCollection cc = new CrimeCollection();
+        cc.populateCrimeRecords(csv);
+        SQLiteDBHandler.writeCrimeRecords(cc, location);
+        assertEquals(0, (int) countRollupDifferences(location));
+
+        CrimeRecord added = new CrimeRecord(csv.get(0));
+        added.setCaseID("HZ999999");
+        added.setDate(added.getDate().plusYears(1));
+        SQLiteDBHandler.writeCrimeRecord(added);
+        assertEquals(0, (int) countRollupDifferences(location));
+
+        added.setArrest(!added.getArrest());
+        added.getCrimeLocation().setBeat(9999);
+        added.getCrimeLocation().setWard(null);
+        added.getCrimeLocation().setLocationStr("QUUX YARD");
+        SQLiteDBHandler.editCrimeRecord(added);
+        assertEquals(0, (int) countRollupDifferences(location));
+
+        SQLiteDBHandler.deleteCrimeRecord("HZ999999");
+        assertEquals(0, (int) countRollupDifferences(location));
+    }
+
+
+    @Test
+    public void testCrimeRollups_rebuiltAfterBulkLoad() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        List<CrimeRecord> csv = CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv");
+        List<CrimeRecord> twice = new ArrayList<CrimeRecord>(csv);
+        for (CrimeRecord crime : csv) {
+            CrimeRecord copy = new CrimeRecord(crime);
+            copy.setCaseID("C" + crime.getCaseID());
+            twice.add(copy);
+        }
+        assertTrue(twice.size() >= SQLiteDBHandler.BULK_LOAD_MIN_RECORDS);
+        CrimeCollection cc = new CrimeCollection();
+        cc.populateCrimeRecords(twice);
+        SQLiteDBHandler.writeCrimeRecords(cc, location);
+        assertEquals(0, (int) countRollupDifferences(location));
+
+        // The rollups are kept up to date again after the load
+        CrimeRecord added = new CrimeRecord(csv.get(0));
+        added.setCaseID("HZ999999");
+        SQLiteDBHandler.mergeCrimeRecords(location, Collections.singletonList(added));
+        assertEquals(0, (int) countRollupDifferences(location));
+
+        // A database made before the rollups were added
+        SQLiteConnectionManager.close(location);
+        Connection c = DriverManager.getConnection("jdbc:sqlite:" + location);
+        Statement stmt = c.createStatement();
+        for (String rollup : new String[]{"DAY", "BEAT", "LOCATION"}) {
+            for (String trigger : new String[]{"INSERT", "DELETE", "UPDATE"}) {
+                stmt.executeUpdate("DROP TRIGGER CRIME_ROLLUP_" + rollup + "_" + trigger + ";");
+            }
+        }
+        stmt.executeUpdate("DELETE FROM CRIME_RECORD WHERE CRIME_RECORD_ID LIKE 'C%';");
+        stmt.close();
+        c.close();
+        assertNotEquals(0, (int) countRollupDifferences(location));
+        SQLiteDBHandler.upgradeCrimedb(location);
+        assertEquals(0, (int) countRollupDifferences(location));
+    }
+
+
+    @Test
+    public void testCrimeRollups_rebuiltFromLocalTime() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        CrimeCollection cc = new CrimeCollection();
+        cc.populateCrimeRecords(CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv"));
+        SQLiteDBHandler.writeCrimeRecords(cc, location);
+
+        // A day rollup made by an older version, with days in the time zone of the computer that wrote it
+        SQLiteConnectionManager.close(location);
+        Connection c = DriverManager.getConnection("jdbc:sqlite:" + location);
+        Statement stmt = c.createStatement();
+        stmt.executeUpdate("DROP TRIGGER CRIME_ROLLUP_DAY_INSERT;");
+        stmt.executeUpdate("CREATE TRIGGER CRIME_ROLLUP_DAY_INSERT AFTER INSERT ON CRIME_RECORD BEGIN " +
+                "UPDATE CRIME_ROLLUP_DAY SET ROLLUP_DAY = date(new.CRIME_RECORD_DATE / 1000, 'unixepoch', " +
+                "'localtime') WHERE 0; END;");
+        stmt.executeUpdate("UPDATE CRIME_ROLLUP_DAY SET RECORD_COUNT = RECORD_COUNT + 1;");
+        stmt.close();
+        c.close();
+        assertNotEquals(0, (int) countRollupDifferences(location));
+        SQLiteDBHandler.upgradeCrimedb(location);
+        assertEquals(0, (int) countRollupDifferences(location));
+    }
+
+
+    @Test
+    public void testSaveCrimeDB_copiesDatabase() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        List<CrimeRecord> csv = CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv");
+        CrimeCollection written = new CrimeCollection();
+        written.populateCrimeRecords(csv);
+        SQLiteDBHandler.writeCrimeRecords(written, location);
+        SQLiteDBHandler.createCrimeSearchIndex(location);
+        CrimeCollection cc = new CrimeCollection("save", 0, location);
+        CrimeCollectionManager.setCurrWorkingCollection(cc);
+        // Still waiting in the write queue
+        CrimeRecord added = new CrimeRecord(csv.get(0));
+        added.setCaseID("HZ999999");
+        cc.addCrimeRecordtoDB(added);
+
+        assertEquals(0, (int) CrimeCollectionManager.saveCrimeDB(false, testCrimeDB2.getAbsolutePath()));
+        String saved = testCrimeDB2.getAbsolutePath();
+        assertEquals(caseIDs(SQLiteDBHandler.readCrimeRecords(location)),
+                caseIDs(SQLiteDBHandler.readCrimeRecords(saved)));
+        assertEquals(csv.size() + 1, SQLiteDBHandler.readCrimeRecords(saved).size());
+        assertTrue(SQLiteDBHandler.hasCrimeSearchIndex(saved));
+        assertEquals(0, (int) countRollupDifferences(saved));
+        SQLiteConnectionManager.close(saved);
+    }
+
+
+    @Test
+    public void testSaveCrimeDB_filteredInSQL() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        CrimeCollection written = new CrimeCollection();
+        written.populateCrimeRecords(CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv"));
+        SQLiteDBHandler.writeCrimeRecords(written, location);
+        CrimeCollectionManager.setCurrWorkingCollection(new CrimeCollection("save", 0, location));
+        ArrayList<String> crimeTypes = new ArrayList<String>();
+        crimeTypes.add("THEFT");
+        FilterCrimeCollection.filter(null, true, crimeTypes, "", -1, -1, "", "", "", "", "", null, null);
+        List<CrimeRecord> filtered = CrimeCollectionManager.getCurrWorkingCollection().getCrimes();
+        assertFalse(filtered.isEmpty());
+
+        assertEquals(0, (int) CrimeCollectionManager.saveCrimeDB(true, testCrimeDB2.getAbsolutePath()));
+        String saved = testCrimeDB2.getAbsolutePath();
+        assertEquals(caseIDs(filtered), caseIDs(SQLiteDBHandler.readCrimeRecords(saved)));
+        assertEquals(0, (int) countRollupDifferences(saved));
+        SQLiteConnectionManager.close(saved);
+    }
+
+
+    @Test
+    public void testSampleCurrWorkingCollection_filteredInSQL() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        CrimeCollection written = new CrimeCollection();
+        written.populateCrimeRecords(CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv"));
+        SQLiteDBHandler.writeCrimeRecords(written, location);
+        CrimeCollectionManager.setCurrWorkingCollection(new CrimeCollection("sample", 0, location));
+        ArrayList<String> crimeTypes = new ArrayList<String>();
+        crimeTypes.add("THEFT");
+        FilterCrimeCollection.filter(null, null, crimeTypes, "", -1, -1, "", "", "", "", "", null, null);
+        List<CrimeRecord> filtered = CrimeCollectionManager.getCurrWorkingCollection().getCrimes();
+        assertTrue(filtered.size() > 50);
+
+        List<CrimeRecord> sample = CrimeCollectionManager.sampleCurrWorkingCollection(50);
+        assertEquals(50, sample.size());
+        assertEquals(50, new HashSet<String>(caseIDs(sample)).size());
+        assertTrue(caseIDs(filtered).containsAll(caseIDs(sample)));
+        assertEquals(filtered.size(), CrimeCollectionManager.sampleCurrWorkingCollection(filtered.size() + 1).size());
+    }
+
+
+    @Test
+    public void testCopyCrimedb_quotedPath() throws Exception {
+        String location = testCrimeDB1.getAbsolutePath();
+        CrimeCollection written = new CrimeCollection();
+        written.populateCrimeRecords(CSVFileHandler.readCrimeRecords(
+                "src/test/test resources/seng202_2015_crimes_one_year_prior_to_present_5k.csv"));
+        SQLiteDBHandler.writeCrimeRecords(written, location);
+        File quoted = new File("Test\"Crime'DB.db");
+        try {
+            SQLiteDBHandler.copyCrimedb(location, quoted.getAbsolutePath());
+            assertEquals(caseIDs(SQLiteDBHandler.readCrimeRecords(location)),
+                    caseIDs(SQLiteDBHandler.readCrimeRecords(quoted.getAbsolutePath())));
+        } finally {
+            SQLiteConnectionManager.close(quoted.getAbsolutePath());
+            quoted.delete();
+        }
+    }
 }
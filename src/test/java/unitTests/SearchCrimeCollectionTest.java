@@ -7,11 +7,17 @@ import org.junit.Test;
 import crimeSpy.crimeData.CrimeCollection;
 import crimeSpy.crimeData.CrimeCollectionManager;
 import crimeSpy.crimeData.CrimeRecord;
+import crimeSpy.crimeData.SQLiteConnectionManager;
+import crimeSpy.crimeData.SQLiteDBHandler;
 import crimeSpy.crimeData.SearchCrimeCollection;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 
 
 /**
@@ -123,4 +129,44 @@ public class SearchCrimeCollectionTest {
         tempArray.add(testCR_06);
         assertEquals(tempArray, SearchCrimeCollection.search("DEPARTMENT STORE, HX111116").getCrimes());
     }
+
+
+    /**
+     * Assert that searching a collection whose database has a search index finds the start of words
+     */
+    @Test
+    public void searchWithIndex() throws Exception {
+        File testDB = new File("TestSearchIndex.db");
+        SQLiteConnectionManager.close(testDB.getAbsolutePath());
+        testDB.delete();
+        try {
+            SQLiteDBHandler.createNewCrimedb(testDB.getAbsolutePath());
+            SQLiteDBHandler.writeCrimeRecords(testCC_01, testDB.getAbsolutePath());
+            SQLiteDBHandler.createCrimeSearchIndex(testDB.getAbsolutePath());
+
+            // Only the matches are read from a paged collection, in order of date
+            CrimeCollection paged = new CrimeCollection("indexed", 0, testDB.getAbsolutePath());
+            CrimeCollectionManager.setCurrWorkingCollection(paged);
+            assertNotNull(paged.getPages());
+            List<String> ids = new ArrayList<String>();
+            for (CrimeRecord cR : SearchCrimeCollection.search("dep sto, HX111116").getCrimes()) {
+                ids.add(cR.getCaseID());
+            }
+            assertEquals(Arrays.asList("HX111116", "HX111112"), ids);
+            assertNotNull("The collection should still be paged", paged.getPages());
+
+            // The crime records of a loaded collection are kept
+            testCC_01.setDirectory(testDB.getAbsolutePath());
+            CrimeCollectionManager.setCurrWorkingCollection(testCC_01);
+            ArrayList<CrimeRecord> tempArray = new ArrayList<CrimeRecord>();
+            tempArray.add(testCR_01);
+            tempArray.add(testCR_04);
+            assertEquals(tempArray, SearchCrimeCollection.search("mall").getCrimes());
+            assertEquals("Not the start of a word", 0, SearchCrimeCollection.search("ank").getCrimes().size());
+        } finally {
+            CrimeCollectionManager.setCurrWorkingCollection(new CrimeCollection());
+            SQLiteConnectionManager.close(testDB.getAbsolutePath());
+            testDB.delete();
+        }
+    }
 }